@@ -0,0 +1,96 @@
+package com.medilynk.analyticsservice.dedup;
+
+import java.util.Arrays;
+
+/**
+ * Exact set of 128-bit keys (two longs each) with a fixed memory footprint.
+ *
+ * Keys live in two open-addressing tables with linear probing, each a pair of long[] arrays (high and low
+ * halves), so there are no entry objects or boxed keys. New keys go into the current table; once it is half
+ * full, the previous table is cleared and the two swap roles. The set therefore always holds at least the
+ * last capacity / 2 keys added, and lookups check both tables. The key (0, 0) marks an empty slot and can't
+ * be stored.
+ */
+public class BoundedLongPairSet {
+
+    private long[] currentHigh;
+    private long[] currentLow;
+    private long[] previousHigh;
+    private long[] previousLow;
+    private final int mask;
+    private final int maxSize;
+    private int currentSize;
+
+    /**
+     * @param capacity Slots per table, rounded up to a power of two
+     */
+    public BoundedLongPairSet(int capacity) {
+        int slots = Math.max(16, Integer.highestOneBit(capacity - 1) << 1);
+        this.currentHigh = new long[slots];
+        this.currentLow = new long[slots];
+        this.previousHigh = new long[slots];
+        this.previousLow = new long[slots];
+        this.mask = slots - 1;
+        this.maxSize = slots / 2; // Keeps probe sequences short
+    }
+
+    public boolean contains(long high, long low) {
+        long hash = Hashing.mix(high, low);
+        return indexOf(currentHigh, currentLow, high, low, hash) >= 0
+                || indexOf(previousHigh, previousLow, high, low, hash) >= 0;
+    }
+
+    /**
+     * @return false if the key was already in the set
+     */
+    public boolean add(long high, long low) {
+        if (high == 0 && low == 0) {
+            throw new IllegalArgumentException("(0, 0) is reserved for empty slots");
+        }
+        long hash = Hashing.mix(high, low);
+        if (indexOf(previousHigh, previousLow, high, low, hash) >= 0) {
+            return false;
+        }
+        int slot = (int) hash & mask;
+        while (currentHigh[slot] != 0 || currentLow[slot] != 0) {
+            if (currentHigh[slot] == high && currentLow[slot] == low) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        currentHigh[slot] = high;
+        currentLow[slot] = low;
+        if (++currentSize >= maxSize) {
+            swap();
+        }
+        return true;
+    }
+
+    public long memoryBytes() {
+        return 4L * currentHigh.length * Long.BYTES;
+    }
+
+    private int indexOf(long[] highs, long[] lows, long high, long low, long hash) {
+        int slot = (int) hash & mask;
+        while (highs[slot] != 0 || lows[slot] != 0) {
+            if (highs[slot] == high && lows[slot] == low) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // The previous table's keys are the oldest ones; drop them and start filling that table again
+    private void swap() {
+        Arrays.fill(previousHigh, 0L);
+        Arrays.fill(previousLow, 0L);
+        long[] high = previousHigh;
+        long[] low = previousLow;
+        previousHigh = currentHigh;
+        previousLow = currentLow;
+        currentHigh = high;
+        currentLow = low;
+        currentSize = 0;
+    }
+}
@@ -0,0 +1,102 @@
+package com.medilynk.analyticsservice.dedup;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Recognizes patient events that were already processed, by event id (a UUID as two longs).
+ *
+ * - A time-partitioned Bloom filter answers first. Most events are new, and for those it says "definitely
+ *   not seen" after a few bit reads, without touching the exact set.
+ * - A bounded exact set confirms the Bloom filter's "maybe": only an id found there counts as a duplicate,
+ *   so a Bloom false positive never drops an event. A "maybe" the exact set can't confirm (a false positive,
+ *   or an id it has already evicted) is processed and counted as unconfirmed.
+ *
+ * Ids are recorded only after the event was processed successfully, so records coming back from the retry
+ * topics are not mistaken for duplicates. Memory is fixed by configuration (reported by the
+ * patient.events.dedup.memory gauge) and lookups don't allocate.
+ */
+@Component
+public class EventDeduplicator {
+
+    private final TimePartitionedBloomFilter bloomFilter;
+    private final BoundedLongPairSet exactSet;
+    private final Counter duplicates;
+    private final Counter unconfirmed;
+
+    /**
+     * @param window            How long the Bloom filter remembers an id
+     * @param generations       Generations the window is split into; one is cleared at a time
+     * @param bloomSize         Bloom filter memory per generation
+     * @param hashes            Bits set per id in the Bloom filter
+     * @param exactCapacity     Slots of each of the exact set's two tables; at least half as many of the
+     *                          most recent ids are kept
+     * @param meterRegistry     Registry for the dedup metrics
+     */
+    public EventDeduplicator(
+            @Value("${analytics.dedup.window:1h}") Duration window,
+            @Value("${analytics.dedup.bloom.generations:6}") int generations,
+            @Value("${analytics.dedup.bloom.size-per-generation:1MB}") DataSize bloomSize,
+            @Value("${analytics.dedup.bloom.hashes:7}") int hashes,
+            @Value("${analytics.dedup.exact.capacity:524288}") int exactCapacity,
+            MeterRegistry meterRegistry) {
+        this.bloomFilter = new TimePartitionedBloomFilter(
+                generations, bloomSize.toBytes() * 8, hashes, window.toMillis() / generations, System.currentTimeMillis());
+        this.exactSet = new BoundedLongPairSet(exactCapacity);
+        this.duplicates = Counter.builder("patient.events.duplicates")
+                .description("Patient events skipped because their id was already processed")
+                .register(meterRegistry);
+        this.unconfirmed = Counter.builder("patient.events.dedup.unconfirmed")
+                .description("Events the Bloom filter reported as seen but the exact set did not hold (false positive or evicted)")
+                .register(meterRegistry);
+        Gauge.builder("patient.events.dedup.memory", this, EventDeduplicator::memoryBytes)
+                .description("Memory held by the dedup Bloom filter and exact set")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true if an event with this id was already processed; ids of (0, 0) are never duplicates
+     */
+    public boolean isDuplicate(long idHigh, long idLow) {
+        return isDuplicate(idHigh, idLow, System.currentTimeMillis());
+    }
+
+    /**
+     * Records the id of an event that was processed successfully.
+     */
+    public void markProcessed(long idHigh, long idLow) {
+        markProcessed(idHigh, idLow, System.currentTimeMillis());
+    }
+
+    public long memoryBytes() {
+        return bloomFilter.memoryBytes() + exactSet.memoryBytes();
+    }
+
+    // Synchronized because the main and retry topic listeners run on different threads
+    synchronized boolean isDuplicate(long idHigh, long idLow, long nowMillis) {
+        if ((idHigh == 0 && idLow == 0) || !bloomFilter.mightContain(idHigh, idLow, nowMillis)) {
+            return false;
+        }
+        if (exactSet.contains(idHigh, idLow)) {
+            duplicates.increment();
+            return true;
+        }
+        unconfirmed.increment();
+        return false;
+    }
+
+    synchronized void markProcessed(long idHigh, long idLow, long nowMillis) {
+        if (idHigh == 0 && idLow == 0) {
+            return;
+        }
+        bloomFilter.put(idHigh, idLow, nowMillis);
+        exactSet.add(idHigh, idLow);
+    }
+}
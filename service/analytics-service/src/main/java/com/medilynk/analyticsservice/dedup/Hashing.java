@@ -0,0 +1,34 @@
+package com.medilynk.analyticsservice.dedup;
+
+/**
+ * 64-bit hashes of 128-bit keys (UUIDs as two longs) for the dedup structures and the demographics index.
+ */
+public final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * Mixes both halves into 64 well-distributed bits. Time-ordered UUIDs differ mostly in a few bits of
+     * the high half, so a plain XOR would cluster; the MurmurHash3 finalizer spreads every input bit.
+     */
+    public static long mix(long high, long low) {
+        return fmix64(high ^ fmix64(low));
+    }
+
+    /**
+     * Second, independent hash of an already mixed value; odd.
+     */
+    static long second(long hash) {
+        return fmix64(hash ^ 0x9E3779B97F4A7C15L) | 1L;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,113 @@
+package com.medilynk.analyticsservice.dedup;
+
+import java.util.Arrays;
+
+/**
+ * Bloom filter over 128-bit keys that forgets old keys a generation at a time.
+ *
+ * The window is split into a ring of generations, each a plain Bloom filter of the same size. Keys are added
+ * to the current generation and looked up in all of them; when the current generation's period is over, the
+ * oldest one is cleared and becomes the current one. A key is therefore remembered for at least
+ * (generations - 1) periods and at most generations periods, and memory is fixed at
+ * generations * bitsPerGeneration bits, however many keys arrive.
+ *
+ * Each generation is a blocked Bloom filter: one hash picks a 512-bit block (a cache line) and the k bits of
+ * the key are all set within that block, taken 9 bits at a time from a second hash. A lookup then costs one
+ * cache miss per generation instead of up to k, for a slightly higher false positive rate than spreading the
+ * bits over the whole filter. Nothing is allocated.
+ */
+public class TimePartitionedBloomFilter {
+
+    private static final int BLOCK_WORDS = 8; // 512 bits
+    private static final int BITS_PER_INDEX = 9; // log2(512)
+
+    private final long[][] generations;
+    private final long blockMask;
+    private final int hashes;
+    private final long periodMillis;
+    private int current;
+    private long currentStartMillis;
+
+    /**
+     * @param generationCount   Generations in the ring
+     * @param bitsPerGeneration Bits of each generation, rounded up to a power of two (at least 512)
+     * @param hashes            Bits set per key (k), at most 7
+     * @param periodMillis      Time each generation stays current
+     * @param nowMillis         Start of the first generation
+     */
+    public TimePartitionedBloomFilter(int generationCount, long bitsPerGeneration, int hashes, long periodMillis, long nowMillis) {
+        if (generationCount < 2) {
+            throw new IllegalArgumentException("At least 2 generations are needed, got " + generationCount);
+        }
+        if (hashes < 1 || hashes * BITS_PER_INDEX > Long.SIZE) {
+            throw new IllegalArgumentException("Between 1 and 7 hashes are supported, got " + hashes);
+        }
+        long bits = Math.max(512, Long.highestOneBit(bitsPerGeneration - 1) << 1);
+        if (bits / 64 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Generation too large: " + bitsPerGeneration + " bits");
+        }
+        this.generations = new long[generationCount][(int) (bits / 64)];
+        this.blockMask = bits / 512 - 1;
+        this.hashes = hashes;
+        this.periodMillis = periodMillis;
+        this.currentStartMillis = nowMillis;
+    }
+
+    public boolean mightContain(long high, long low, long nowMillis) {
+        rotate(nowMillis);
+        long h1 = Hashing.mix(high, low);
+        int block = block(h1);
+        long h2 = Hashing.second(h1);
+        for (long[] generation : generations) {
+            if (contains(generation, block, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void put(long high, long low, long nowMillis) {
+        rotate(nowMillis);
+        long h1 = Hashing.mix(high, low);
+        int block = block(h1);
+        long h2 = Hashing.second(h1);
+        long[] generation = generations[current];
+        for (int i = 0; i < hashes; i++) {
+            int bit = (int) (h2 >>> (i * BITS_PER_INDEX)) & 511;
+            generation[block + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public long memoryBytes() {
+        return (long) generations.length * generations[0].length * Long.BYTES;
+    }
+
+    // First word of the key's block
+    private int block(long h1) {
+        return (int) (h1 & blockMask) * BLOCK_WORDS;
+    }
+
+    private boolean contains(long[] generation, int block, long h2) {
+        for (int i = 0; i < hashes; i++) {
+            int bit = (int) (h2 >>> (i * BITS_PER_INDEX)) & 511;
+            if ((generation[block + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rotate(long nowMillis) {
+        // After a long quiet period every generation has expired; clearing each once is enough
+        int expired = 0;
+        while (nowMillis - currentStartMillis >= periodMillis && expired < generations.length) {
+            current = (current + 1) % generations.length;
+            Arrays.fill(generations[current], 0L);
+            currentStartMillis += periodMillis;
+            expired++;
+        }
+        if (nowMillis - currentStartMillis >= periodMillis) {
+            currentStartMillis = nowMillis;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.medilynk.analyticsservice.demographics;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Patient counts by demographics, e.g. patients registered last quarter aged 65+:
+ * GET /analytics/demographics?registeredFrom=2025-07-01&amp;registeredTo=2025-09-30&amp;minAge=65
+ */
+@RestController
+@RequestMapping("/analytics/demographics")
+public class DemographicsController {
+
+    private final PatientColumnStore patientColumnStore;
+
+    public DemographicsController(PatientColumnStore patientColumnStore) {
+        this.patientColumnStore = patientColumnStore;
+    }
+
+    @GetMapping
+    public DemographicsResult query(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate registeredFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate registeredTo,
+            @RequestParam(required = false) Integer minAge,
+            @RequestParam(required = false) Integer maxAge,
+            @RequestParam(required = false) String emailDomain,
+            @RequestParam(defaultValue = "NONE") GroupBy groupBy,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        return patientColumnStore.query(
+                new DemographicsQuery(registeredFrom, registeredTo, minAge, maxAge, emailDomain, groupBy, asOf));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleIllegalArgument(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+    }
+}
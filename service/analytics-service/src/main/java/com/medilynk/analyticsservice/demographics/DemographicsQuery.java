@@ -0,0 +1,37 @@
+package com.medilynk.analyticsservice.demographics;
+
+import java.time.LocalDate;
+
+/**
+ * Filters and grouping of a demographics query. Null filters match every patient; a patient whose date is
+ * unknown only matches when that date isn't filtered on.
+ *
+ * @param registeredFrom First registration date included
+ * @param registeredTo   Last registration date included
+ * @param minAge         Minimum age in whole years on asOf
+ * @param maxAge         Maximum age in whole years on asOf
+ * @param emailDomain    Email domain, e.g. example.com
+ * @param groupBy        Dimension to count by
+ * @param asOf           Date ages are computed on
+ */
+public record DemographicsQuery(
+        LocalDate registeredFrom,
+        LocalDate registeredTo,
+        Integer minAge,
+        Integer maxAge,
+        String emailDomain,
+        GroupBy groupBy,
+        LocalDate asOf) {
+
+    public DemographicsQuery {
+        if (groupBy == null) {
+            groupBy = GroupBy.NONE;
+        }
+        if (asOf == null) {
+            asOf = LocalDate.now();
+        }
+        if ((minAge != null && minAge < 0) || (maxAge != null && maxAge < 0)) {
+            throw new IllegalArgumentException("Ages must not be negative");
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.medilynk.analyticsservice.demographics;
+
+import java.util.Map;
+
+/**
+ * Patients matching a demographics query.
+ *
+ * @param total       Matching patients
+ * @param groups      Matching patients per group, in group order; groups without patients are left out
+ * @param scannedRows Rows scanned, including deleted ones
+ * @param tookMicros  Time spent scanning
+ */
+public record DemographicsResult(
+        long total,
+        Map<String, Long> groups,
+        int scannedRows,
+        long tookMicros) {
+}
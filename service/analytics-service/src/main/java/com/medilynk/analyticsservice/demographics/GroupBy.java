@@ -0,0 +1,14 @@
+package com.medilynk.analyticsservice.demographics;
+
+/**
+ * Dimension a demographics query counts patients by.
+ */
+public enum GroupBy {
+    NONE,
+    /** 0-17, 18-34, 35-49, 50-64 and 65+ years old on the query's asOf date */
+    AGE_BAND,
+    REGISTRATION_YEAR,
+    REGISTRATION_QUARTER,
+    REGISTRATION_MONTH,
+    EMAIL_DOMAIN
+}
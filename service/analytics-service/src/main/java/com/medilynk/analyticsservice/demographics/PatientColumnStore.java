@@ -0,0 +1,396 @@
+package com.medilynk.analyticsservice.demographics;
+
+import com.medilynk.analyticsservice.dedup.Hashing;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory, column-oriented copy of the patient attributes demographics queries need, kept up to date from
+ * the patient events.
+ *
+ * Every attribute is its own primitive array indexed by row: dates as epoch days in int[] columns, the email
+ * domain as an int code into a dictionary. A query reads only the columns it filters and groups on,
+ * sequentially, and counts without allocating per row. Deleted patients keep their row and are marked in a
+ * tombstone bitmap (one bit per row) that the scan masks out; the row is reused if the patient comes back.
+ * Every row also keeps the time of the last event applied to it, and older events are dropped: events of one
+ * patient can arrive out of order (e.g. an update retried from a retry topic after the patient's deletion), and
+ * a late update must not bring a deleted patient back. For the same reason a deletion of a patient the store
+ * hasn't seen yet leaves a tombstoned row behind.
+ * Rows are found by patient id through an open-addressing index of row numbers, keyed by the id's two
+ * longs. All columns grow by doubling.
+ *
+ * Writers (the Kafka consumer) take the write lock, queries the read lock, so a query sees a consistent
+ * snapshot and concurrent queries don't block each other.
+ */
+@Component
+public class PatientColumnStore {
+
+    /** Date column value of a patient whose date isn't known; lower than every real date */
+    public static final int UNKNOWN_DATE = Integer.MIN_VALUE;
+    /** Email domain code of a patient without an email */
+    static final int UNKNOWN_DOMAIN = -1;
+    private static final String UNKNOWN_LABEL = "unknown";
+    private static final String[] AGE_BANDS = {UNKNOWN_LABEL, "65+", "50-64", "35-49", "18-34", "0-17"};
+    private static final int[] AGE_BAND_ORDER = {5, 4, 3, 2, 1, 0}; // Youngest first, unknown last
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final StringDictionary emailDomains = new StringDictionary();
+
+    // Columns, one entry per row
+    private long[] idHigh;
+    private long[] idLow;
+    private int[] dateOfBirth;
+    private int[] registeredDate;
+    private int[] emailDomain;
+    private long[] lastEventMillis; // Time of the last event applied to the row
+    private long[] deleted; // Tombstone bitmap
+    private int rows;
+    private int deletedRows;
+
+    // Range of the known dates, sizing the per-query lookup tables
+    private int minDateOfBirth = Integer.MAX_VALUE;
+    private int maxDateOfBirth = Integer.MIN_VALUE;
+    private int minRegisteredDate = Integer.MAX_VALUE;
+    private int maxRegisteredDate = Integer.MIN_VALUE;
+
+    private int[] index; // Row + 1 per slot, 0 when empty
+    private int indexMask;
+
+    /**
+     * @param initialCapacity Rows allocated up front
+     */
+    public PatientColumnStore(
+            @Value("${analytics.demographics.initial-capacity:65536}") int initialCapacity,
+            MeterRegistry meterRegistry) {
+        int capacity = Math.max(16, initialCapacity);
+        this.idHigh = new long[capacity];
+        this.idLow = new long[capacity];
+        this.dateOfBirth = new int[capacity];
+        this.registeredDate = new int[capacity];
+        this.emailDomain = new int[capacity];
+        this.lastEventMillis = new long[capacity];
+        this.deleted = new long[(capacity + 63) >>> 6];
+        this.index = new int[Integer.highestOneBit(capacity - 1) << 2]; // At most half full
+        this.indexMask = index.length - 1;
+
+        Gauge.builder("analytics.demographics.patients", this, PatientColumnStore::patients)
+                .description("Patients in the demographics store, excluding deleted ones")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds or replaces a patient; clears its tombstone if it was deleted. Does nothing if the patient's row
+     * was last changed by a later event.
+     *
+     * @param eventMillis    When the event was created
+     * @param dateOfBirth    Epoch day, or UNKNOWN_DATE
+     * @param registeredDate Epoch day, or UNKNOWN_DATE
+     * @param emailDomain    Lower case domain, or null
+     * @return false if the event was older than the row and dropped
+     */
+    public boolean upsert(long high, long low, long eventMillis, int dateOfBirth, int registeredDate, String emailDomain) {
+        lock.writeLock().lock();
+        try {
+            int row = find(high, low);
+            if (row < 0) {
+                row = append(high, low);
+            } else if (eventMillis < lastEventMillis[row]) {
+                return false;
+            } else if (isDeleted(row)) {
+                deleted[row >>> 6] &= ~(1L << row);
+                deletedRows--;
+            }
+            this.lastEventMillis[row] = eventMillis;
+            this.dateOfBirth[row] = dateOfBirth;
+            this.registeredDate[row] = registeredDate;
+            this.emailDomain[row] = emailDomain == null ? UNKNOWN_DOMAIN : emailDomains.encode(emailDomain);
+            if (dateOfBirth != UNKNOWN_DATE) {
+                minDateOfBirth = Math.min(minDateOfBirth, dateOfBirth);
+                maxDateOfBirth = Math.max(maxDateOfBirth, dateOfBirth);
+            }
+            if (registeredDate != UNKNOWN_DATE) {
+                minRegisteredDate = Math.min(minRegisteredDate, registeredDate);
+                maxRegisteredDate = Math.max(maxRegisteredDate, registeredDate);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks a patient deleted, adding a deleted row if the store hasn't seen the patient yet, so its earlier
+     * events are dropped when they arrive. Does nothing if the patient's row was last changed by a later event.
+     *
+     * @param eventMillis When the event was created
+     * @return true if a patient counted by queries was deleted
+     */
+    public boolean delete(long high, long low, long eventMillis) {
+        lock.writeLock().lock();
+        try {
+            int row = find(high, low);
+            boolean known = row >= 0;
+            if (!known) {
+                row = append(high, low);
+                dateOfBirth[row] = UNKNOWN_DATE;
+                registeredDate[row] = UNKNOWN_DATE;
+                emailDomain[row] = UNKNOWN_DOMAIN;
+            } else if (eventMillis < lastEventMillis[row]) {
+                return false;
+            }
+            lastEventMillis[row] = eventMillis;
+            if (isDeleted(row)) {
+                return false;
+            }
+            deleted[row >>> 6] |= 1L << row;
+            deletedRows++;
+            return known;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int patients() {
+        lock.readLock().lock();
+        try {
+            return rows - deletedRows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public DemographicsResult query(DemographicsQuery query) {
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            // Every filter becomes an inclusive range over an int column; an unfiltered column matches
+            // everything, including UNKNOWN_DATE, a filtered one never matches UNKNOWN_DATE
+            int dobFrom = UNKNOWN_DATE;
+            int dobTo = Integer.MAX_VALUE;
+            if (query.maxAge() != null) {
+                // Younger than maxAge + 1 on asOf
+                dobFrom = (int) query.asOf().minusYears(query.maxAge() + 1L).plusDays(1).toEpochDay();
+            }
+            if (query.minAge() != null) {
+                dobFrom = Math.max(dobFrom, UNKNOWN_DATE + 1);
+                dobTo = (int) query.asOf().minusYears(query.minAge()).toEpochDay();
+            }
+            int registeredFrom = UNKNOWN_DATE;
+            int registeredTo = Integer.MAX_VALUE;
+            if (query.registeredFrom() != null) {
+                registeredFrom = (int) query.registeredFrom().toEpochDay();
+            }
+            if (query.registeredTo() != null) {
+                registeredFrom = Math.max(registeredFrom, UNKNOWN_DATE + 1);
+                registeredTo = (int) query.registeredTo().toEpochDay();
+            }
+            boolean anyDomain = query.emailDomain() == null;
+            int domainCode = anyDomain ? UNKNOWN_DOMAIN : emailDomains.find(query.emailDomain().toLowerCase());
+            if (!anyDomain && domainCode < 0) {
+                return new DemographicsResult(0, Map.of(), rows, micros(start));
+            }
+
+            Buckets buckets = buckets(query);
+            long[] counts = scan(buckets, dobFrom, dobTo, registeredFrom, registeredTo, anyDomain, domainCode);
+
+            long total = 0;
+            Map<String, Long> groups = new LinkedHashMap<>();
+            for (int bucket : buckets.order()) {
+                total += counts[bucket];
+                if (query.groupBy() != GroupBy.NONE && counts[bucket] > 0) {
+                    groups.put(buckets.labels().get(bucket), counts[bucket]);
+                }
+            }
+            return new DemographicsResult(total, groups, rows, micros(start));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The hot loop. Each row's filters are combined with non-short-circuit operators and the result is added
+     * to its bucket's count, so there is no data-dependent branch to mispredict, only sequential reads of
+     * the int columns and one bitmap word per 64 rows. The bucket comes from a lookup table indexed by the
+     * grouped column's value minus base (values below base, i.e. unknown, are clamped to slot 0).
+     */
+    private long[] scan(Buckets buckets, int dobFrom, int dobTo, int registeredFrom, int registeredTo,
+                        boolean anyDomain, int domainCode) {
+        int[] dobs = dateOfBirth;
+        int[] registered = registeredDate;
+        int[] domains = emailDomain;
+        long[] tombstones = deleted;
+        int[] groupColumn = buckets.column();
+        int[] table = buckets.table();
+        int base = buckets.base();
+        long[] counts = new long[buckets.labels().size()];
+        int rowCount = rows;
+
+        for (int row = 0; row < rowCount; row++) {
+            int dob = dobs[row];
+            int registration = registered[row];
+            boolean match = dob >= dobFrom & dob <= dobTo
+                    & registration >= registeredFrom & registration <= registeredTo
+                    & (anyDomain | domains[row] == domainCode)
+                    & (tombstones[row >>> 6] & (1L << row)) == 0;
+            counts[table[Math.max(groupColumn[row], base) - base]] += match ? 1 : 0;
+        }
+        return counts;
+    }
+
+    /**
+     * Lookup table from a column value to a bucket, and the bucket labels.
+     *
+     * @param column Column grouped on
+     * @param base   Lowest value the table covers, at slot 0
+     * @param table  Bucket of each value from base up
+     * @param labels Label of each bucket
+     * @param order  Buckets in the order they are reported
+     */
+    private record Buckets(int[] column, int base, int[] table, List<String> labels, int[] order) {
+    }
+
+    private Buckets buckets(DemographicsQuery query) {
+        return switch (query.groupBy()) {
+            case NONE -> new Buckets(emailDomain, UNKNOWN_DOMAIN, new int[emailDomains.size() + 1],
+                    List.of(UNKNOWN_LABEL), new int[]{0});
+            case EMAIL_DOMAIN -> {
+                int[] table = new int[emailDomains.size() + 1];
+                List<String> labels = new ArrayList<>(table.length);
+                labels.add(UNKNOWN_LABEL);
+                int[] order = new int[table.length];
+                for (int code = 0; code < emailDomains.size(); code++) {
+                    table[code + 1] = code + 1;
+                    labels.add(emailDomains.decode(code));
+                    order[code] = code + 1;
+                }
+                yield new Buckets(emailDomain, UNKNOWN_DOMAIN, table, labels, order); // order ends with unknown (0)
+            }
+            case AGE_BAND -> ageBands(query.asOf());
+            case REGISTRATION_YEAR, REGISTRATION_QUARTER, REGISTRATION_MONTH -> registrationPeriods(query.groupBy());
+        };
+    }
+
+    private Buckets ageBands(LocalDate asOf) {
+        // A date of birth after the cutoff means younger than that age
+        int[] cutoffs = {
+                (int) asOf.minusYears(65).toEpochDay(),
+                (int) asOf.minusYears(50).toEpochDay(),
+                (int) asOf.minusYears(35).toEpochDay(),
+                (int) asOf.minusYears(18).toEpochDay()};
+        if (minDateOfBirth > maxDateOfBirth) {
+            return new Buckets(dateOfBirth, UNKNOWN_DATE, new int[1], List.of(AGE_BANDS), AGE_BAND_ORDER);
+        }
+        int base = minDateOfBirth - 1; // Slot 0: unknown
+        int[] table = new int[maxDateOfBirth - base + 1];
+        for (int slot = 1; slot < table.length; slot++) {
+            int day = base + slot;
+            int band = 1;
+            for (int cutoff : cutoffs) {
+                band += day > cutoff ? 1 : 0;
+            }
+            table[slot] = band;
+        }
+        return new Buckets(dateOfBirth, base, table, List.of(AGE_BANDS), AGE_BAND_ORDER);
+    }
+
+    private Buckets registrationPeriods(GroupBy groupBy) {
+        List<String> labels = new ArrayList<>();
+        labels.add(UNKNOWN_LABEL);
+        if (minRegisteredDate > maxRegisteredDate) {
+            return new Buckets(registeredDate, UNKNOWN_DATE, new int[1], labels, new int[]{0});
+        }
+        int base = minRegisteredDate - 1; // Slot 0: unknown
+        int[] table = new int[maxRegisteredDate - base + 1];
+        int period = Integer.MIN_VALUE;
+        for (int slot = 1; slot < table.length; slot++) {
+            // Days are visited in order, so each new period gets the next bucket
+            LocalDate day = LocalDate.ofEpochDay(base + slot);
+            int dayPeriod = switch (groupBy) {
+                case REGISTRATION_YEAR -> day.getYear();
+                case REGISTRATION_QUARTER -> day.getYear() * 4 + day.get(IsoFields.QUARTER_OF_YEAR) - 1;
+                default -> day.getYear() * 12 + day.getMonthValue() - 1;
+            };
+            if (dayPeriod != period) {
+                period = dayPeriod;
+                labels.add(switch (groupBy) {
+                    case REGISTRATION_YEAR -> String.valueOf(day.getYear());
+                    case REGISTRATION_QUARTER -> day.getYear() + "-Q" + day.get(IsoFields.QUARTER_OF_YEAR);
+                    default -> String.format("%d-%02d", day.getYear(), day.getMonthValue());
+                });
+            }
+            table[slot] = labels.size() - 1;
+        }
+        int[] order = new int[labels.size()]; // Chronological, then unknown
+        for (int bucket = 1; bucket < labels.size(); bucket++) {
+            order[bucket - 1] = bucket;
+        }
+        return new Buckets(registeredDate, base, table, labels, order);
+    }
+
+    private int find(long high, long low) {
+        int slot = (int) Hashing.mix(high, low) & indexMask;
+        while (index[slot] != 0) {
+            int row = index[slot] - 1;
+            if (idHigh[row] == high && idLow[row] == low) {
+                return row;
+            }
+            slot = (slot + 1) & indexMask;
+        }
+        return -1;
+    }
+
+    private int append(long high, long low) {
+        if (rows == idHigh.length) {
+            grow();
+        }
+        int row = rows++;
+        idHigh[row] = high;
+        idLow[row] = low;
+        insertIntoIndex(row);
+        return row;
+    }
+
+    private void insertIntoIndex(int row) {
+        int slot = (int) Hashing.mix(idHigh[row], idLow[row]) & indexMask;
+        while (index[slot] != 0) {
+            slot = (slot + 1) & indexMask;
+        }
+        index[slot] = row + 1;
+    }
+
+    private void grow() {
+        int capacity = idHigh.length * 2;
+        idHigh = Arrays.copyOf(idHigh, capacity);
+        idLow = Arrays.copyOf(idLow, capacity);
+        dateOfBirth = Arrays.copyOf(dateOfBirth, capacity);
+        registeredDate = Arrays.copyOf(registeredDate, capacity);
+        emailDomain = Arrays.copyOf(emailDomain, capacity);
+        lastEventMillis = Arrays.copyOf(lastEventMillis, capacity);
+        deleted = Arrays.copyOf(deleted, (capacity + 63) >>> 6);
+
+        index = new int[index.length * 2];
+        indexMask = index.length - 1;
+        for (int row = 0; row < rows; row++) {
+            insertIntoIndex(row);
+        }
+    }
+
+    private boolean isDeleted(int row) {
+        return (deleted[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private static long micros(long start) {
+        return (System.nanoTime() - start) / 1_000;
+    }
+}
@@ -0,0 +1,45 @@
+package com.medilynk.analyticsservice.demographics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoding for a low-cardinality string column: each distinct value is stored once and rows hold
+ * its int code, so a filter or group-by on the column compares and indexes ints instead of strings.
+ * Not thread-safe; PatientColumnStore guards it with its lock.
+ */
+class StringDictionary {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * Code of the value, adding it if it is new.
+     */
+    int encode(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    /**
+     * Code of the value, or -1 if no row has it.
+     */
+    int find(String value) {
+        return codes.getOrDefault(value, -1);
+    }
+
+    String decode(int code) {
+        return values.get(code);
+    }
+
+    int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,148 @@
+package com.medilynk.analyticsservice.kafka;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Bulk replay of the dead-letter topic: POST /actuator/dltreplay (optionally {"maxRecords": 500}) sends the
+ * records in patient-dlt back to the patient topic, once the cause of the failures has been fixed.
+ *
+ * The replay consumer has its own group (analytics-service-dlt-replay), so each call continues after the
+ * records replayed by the previous one; offsets are committed only after the copies have been acknowledged
+ * by the broker. The failure, original-record and retry headers are dropped so replayed records start over
+ * with a full set of attempts; other headers (e.g. trace context) are kept.
+ */
+@Component
+@Endpoint(id = "dltreplay")
+public class DltReplayEndpoint {
+
+    static final String GROUP_ID = "analytics-service-dlt-replay";
+
+    private static final Logger log = LoggerFactory.getLogger(DltReplayEndpoint.class);
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(2);
+    // Added by the dead-letter publisher (exception, original topic/offset) and the retry topics (attempts, backoff)
+    private static final List<String> FAILURE_HEADER_PREFIXES = List.of(
+            KafkaHeaders.PREFIX + "exception-", KafkaHeaders.PREFIX + "original-", KafkaHeaders.PREFIX + "dlt-", "retry_topic-");
+
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final int defaultMaxRecords;
+    private final Counter replayed;
+
+    /**
+     * @param defaultMaxRecords Records replayed by one call when the request does not say
+     */
+    public DltReplayEndpoint(
+            ConsumerFactory<String, byte[]> consumerFactory,
+            KafkaTemplate<String, byte[]> kafkaTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${analytics.kafka.dlt-replay.max-records:10000}") int defaultMaxRecords) {
+        this.consumerFactory = consumerFactory;
+        this.kafkaTemplate = kafkaTemplate;
+        this.defaultMaxRecords = defaultMaxRecords;
+        this.replayed = Counter.builder("patient.events.dead.letters.replayed")
+                .description("Dead-lettered patient events sent back to the main topic")
+                .register(meterRegistry);
+    }
+
+    @WriteOperation
+    public synchronized Map<String, Object> replay(@Nullable Integer maxRecords) throws Exception {
+        int limit = maxRecords == null ? defaultMaxRecords : maxRecords;
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, Math.min(limit, 500));
+
+        try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer(GROUP_ID, null, null, overrides)) {
+            List<TopicPartition> partitions = consumer.partitionsFor(KafkaConsumer.DLT_TOPIC).stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            // Only records already dead-lettered when the replay starts: a record that fails again after being
+            // replayed lands behind this mark instead of being replayed over and over
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+            int count = 0;
+            while (count < limit && !caughtUp(consumer, endOffsets)) {
+                List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(POLL_TIMEOUT)) {
+                    if (records.size() < limit - count
+                            && record.offset() < endOffsets.get(new TopicPartition(record.topic(), record.partition()))) {
+                        records.add(record);
+                    }
+                }
+                if (records.isEmpty()) {
+                    break; // Nothing left below the mark, or the broker stopped answering
+                }
+                // Skipped records are not committed, so the next call starts with them
+                send(records);
+                consumer.commitSync(nextOffsets(records));
+                count += records.size();
+            }
+            replayed.increment(count);
+            log.info("Replayed {} records from {} to {}", count, KafkaConsumer.DLT_TOPIC, KafkaConsumer.TOPIC);
+            return Map.of("replayed", count);
+        }
+    }
+
+    private void send(List<ConsumerRecord<String, byte[]>> records)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        List<CompletableFuture<?>> sent = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            ProducerRecord<String, byte[]> copy = new ProducerRecord<>(KafkaConsumer.TOPIC, record.key(), record.value());
+            for (Header header : record.headers()) {
+                if (!isFailureHeader(header.key())) {
+                    copy.headers().add(header);
+                }
+            }
+            sent.add(kafkaTemplate.send(copy));
+        }
+        CompletableFuture.allOf(sent.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+    }
+
+    private static boolean caughtUp(Consumer<?, ?> consumer, Map<TopicPartition, Long> endOffsets) {
+        return endOffsets.entrySet().stream().allMatch(end -> consumer.position(end.getKey()) >= end.getValue());
+    }
+
+    private static boolean isFailureHeader(String key) {
+        return FAILURE_HEADER_PREFIXES.stream().anyMatch(key::startsWith);
+    }
+
+    private static Map<TopicPartition, OffsetAndMetadata> nextOffsets(List<ConsumerRecord<String, byte[]>> records) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            offsets.merge(new TopicPartition(record.topic(), record.partition()),
+                    new OffsetAndMetadata(record.offset() + 1),
+                    (current, next) -> next.offset() > current.offset() ? next : current);
+        }
+        return offsets;
+    }
+}
@@ -1,26 +1,146 @@
 package com.medilynk.analyticsservice.kafka;
 
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.medilynk.analyticsservice.dedup.EventDeduplicator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Service;
 import patent.event.PatientEvent;
 
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consumes patient events with non-blocking retries: a record that fails is republished to the next
+ * retry topic (patient-retry-0, patient-retry-1, ...) and processed again once its backoff has elapsed,
+ * so the main topic's partition moves on to the next record instead of stalling. After the last attempt,
+ * or immediately for records that can never succeed (unparseable bytes), the record goes to patient-dlt,
+ * from where DltReplayEndpoint can send it back to the main topic.
+ *
+ * Events whose id was already processed (producer retries, redelivery after a rebalance) are skipped by
+ * EventDeduplicator.
+ */
 @Service
 public class KafkaConsumer {
 
+    public static final String TOPIC = "patient";
+    public static final String DLT_TOPIC = TOPIC + "-dlt";
+
     private static final Logger log = LoggerFactory.getLogger(KafkaConsumer.class);
 
-    @KafkaListener(topics = "patient", groupId = "analytics-service")
-    public void consumeEvent(byte[] event) {
+    private final PatientEventProcessor processor;
+    private final EventDeduplicator deduplicator;
+    private final MeterRegistry meterRegistry;
+    private final Timer processingTimer;
+    private final Counter deserializationErrors;
+    // Age of the most recently consumed record (now - record timestamp), i.e. how far behind the producer we are
+    private final AtomicLong lastRecordLagMillis = new AtomicLong();
+
+    public KafkaConsumer(PatientEventProcessor processor, EventDeduplicator deduplicator, MeterRegistry meterRegistry) {
+        this.processor = processor;
+        this.deduplicator = deduplicator;
+        this.meterRegistry = meterRegistry;
+        this.processingTimer = Timer.builder("patient.events.consume")
+                .description("Time spent processing a patient event")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.deserializationErrors = Counter.builder("patient.events.deserialization.errors")
+                .description("Patient events that could not be parsed")
+                .register(meterRegistry);
+        Gauge.builder("patient.events.consumer.lag", lastRecordLagMillis, AtomicLong::get)
+                .description("Milliseconds between a patient event being produced and consumed")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @RetryableTopic(
+            attempts = "${analytics.kafka.retry.attempts:4}",
+            backoff = @Backoff(
+                    delayExpression = "${analytics.kafka.retry.initial-delay-ms:1000}",
+                    multiplierExpression = "${analytics.kafka.retry.multiplier:4}",
+                    maxDelayExpression = "${analytics.kafka.retry.max-delay-ms:60000}"),
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+            numPartitions = "${analytics.kafka.retry.partitions:1}",
+            exclude = InvalidProtocolBufferException.class,
+            traversingCauses = "true")
+    @KafkaListener(topics = TOPIC, groupId = "analytics-service")
+    public void consumeEvent(
+            byte[] event,
+            @Header(KafkaHeaders.RECEIVED_TIMESTAMP) long timestamp,
+            @Header(KafkaHeaders.RECEIVED_TOPIC) String topic) throws InvalidProtocolBufferException {
+        if (topic.equals(TOPIC)) {
+            lastRecordLagMillis.set(Math.max(0, System.currentTimeMillis() - timestamp));
+        } else {
+            retries(topic).increment();
+        }
+        long startNanos = System.nanoTime();
         try {
-            PatientEvent patientEvent = PatientEvent.parseFrom(event);
-            // Process the event (e.g., log it, store it in a database, etc.)
-            log.info("Received Patient Event: {}", patientEvent);
-        } catch (InvalidProtocolBufferException e) {
-            log.error("Error deserializing event {}", e.getMessage());
+            PatientEvent patientEvent;
+            try {
+                patientEvent = PatientEvent.parseFrom(event);
+            } catch (InvalidProtocolBufferException e) {
+                deserializationErrors.increment();
+                log.error("Error deserializing event {}", e.getMessage());
+                throw e; // Not retryable, goes straight to the DLT
+            }
+            // Redelivered by the producer or after a rebalance
+            if (deduplicator.isDuplicate(patientEvent.getEventIdHigh(), patientEvent.getEventIdLow())) {
+                log.debug("Skipping duplicate patient event for patient {}", patientEvent.getPatientId());
+                return;
+            }
+            processor.process(patientEvent);
+            deduplicator.markProcessed(patientEvent.getEventIdHigh(), patientEvent.getEventIdLow());
+        } finally {
+            processingTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @DltHandler
+    public void deadLetter(ConsumerRecord<String, byte[]> record) {
+        // The listener's exception wraps the one thrown while processing
+        String cause = header(record, KafkaHeaders.EXCEPTION_CAUSE_FQCN);
+        if (cause == null) {
+            cause = header(record, KafkaHeaders.EXCEPTION_FQCN);
         }
+        String exception = cause == null ? "unknown" : simpleName(cause);
+        Counter.builder("patient.events.dead.letters")
+                .description("Patient events moved to the dead-letter topic")
+                .tag("exception", exception)
+                .register(meterRegistry)
+                .increment();
+        log.warn("Patient event moved to {} (offset {}) after {}: {}", DLT_TOPIC, record.offset(), exception,
+                header(record, KafkaHeaders.EXCEPTION_MESSAGE));
+    }
+
+    // Top-level class name, so nested exception types share the tag of their parent
+    private static String simpleName(String className) {
+        String name = className.substring(className.lastIndexOf('.') + 1);
+        int nested = name.indexOf('$');
+        return nested < 0 ? name : name.substring(0, nested);
+    }
+
+    private static String header(ConsumerRecord<?, ?> record, String name) {
+        org.apache.kafka.common.header.Header header = record.headers().lastHeader(name);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
 
+    private Counter retries(String topic) {
+        return Counter.builder("patient.events.retries")
+                .description("Patient events processed again from a retry topic")
+                .tag("topic", topic)
+                .register(meterRegistry);
     }
 }
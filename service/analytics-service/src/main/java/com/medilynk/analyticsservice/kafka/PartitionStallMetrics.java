@@ -0,0 +1,53 @@
+package com.medilynk.analyticsservice.kafka;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.event.ConsumerPartitionPausedEvent;
+import org.springframework.kafka.event.ConsumerPartitionResumedEvent;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures how long consumer partitions are paused, as the patient.events.partition.stall timer tagged with
+ * the topic, plus a gauge of the partitions paused right now. With non-blocking retries only the retry
+ * topics are paused (while their head record waits out its backoff); a pause on the main topic would mean
+ * new events are not being consumed.
+ */
+@Component
+public class PartitionStallMetrics {
+
+    private final MeterRegistry meterRegistry;
+    // Pause start (System.nanoTime()) by partition
+    private final Map<TopicPartition, Long> pausedSince = new ConcurrentHashMap<>();
+
+    public PartitionStallMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("patient.events.partitions.paused", pausedSince, Map::size)
+                .description("Consumer partitions currently paused")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onPaused(ConsumerPartitionPausedEvent event) {
+        pausedSince.putIfAbsent(event.getPartition(), System.nanoTime());
+    }
+
+    @EventListener
+    public void onResumed(ConsumerPartitionResumedEvent event) {
+        Long since = pausedSince.remove(event.getPartition());
+        if (since == null) {
+            return;
+        }
+        Timer.builder("patient.events.partition.stall")
+                .description("Time a consumer partition was paused")
+                .tag("topic", event.getPartition().topic())
+                .register(meterRegistry)
+                .record(Duration.ofNanos(System.nanoTime() - since));
+    }
+}
@@ -0,0 +1,74 @@
+package com.medilynk.analyticsservice.kafka;
+
+import com.medilynk.analyticsservice.demographics.PatientColumnStore;
+import com.medilynk.analyticsservice.state.PatientStateStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import patent.event.PatientEvent;
+
+import java.util.UUID;
+
+/**
+ * Handles a parsed patient event. Any exception thrown here sends the record through the retry topics
+ * and, if it keeps failing, to the dead-letter topic.
+ */
+@Service
+public class PatientEventProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientEventProcessor.class);
+
+    private final PatientColumnStore patientColumnStore;
+    private final PatientStateStore patientStateStore;
+
+    public PatientEventProcessor(PatientColumnStore patientColumnStore, PatientStateStore patientStateStore) {
+        this.patientColumnStore = patientColumnStore;
+        this.patientStateStore = patientStateStore;
+    }
+
+    public void process(PatientEvent patientEvent) {
+        log.debug("Received Patient Event: {}", patientEvent);
+
+        UUID patientId;
+        try {
+            patientId = UUID.fromString(patientEvent.getPatientId());
+        } catch (IllegalArgumentException e) {
+            // Retrying won't make the id valid
+            log.warn("Skipping patient event with invalid patient id: {}", patientEvent.getPatientId());
+            return;
+        }
+
+        long eventMillis = eventMillis(patientEvent);
+        patientStateStore.record(patientId.getMostSignificantBits(), patientId.getLeastSignificantBits(),
+                patientEvent.getEventType(), eventMillis);
+        if ("PATIENT_DELETED".equals(patientEvent.getEventType())) {
+            patientColumnStore.delete(patientId.getMostSignificantBits(), patientId.getLeastSignificantBits(), eventMillis);
+        } else if (!patientColumnStore.upsert(
+                patientId.getMostSignificantBits(),
+                patientId.getLeastSignificantBits(),
+                eventMillis,
+                patientEvent.hasDateOfBirth() ? patientEvent.getDateOfBirth() : PatientColumnStore.UNKNOWN_DATE,
+                patientEvent.hasRegisteredDate() ? patientEvent.getRegisteredDate() : PatientColumnStore.UNKNOWN_DATE,
+                emailDomain(patientEvent.getEmail()))) {
+            // E.g. an update retried after the patient was deleted
+            log.debug("Skipped {} of patient {}: the store already has a later event", patientEvent.getEventType(), patientId);
+        }
+    }
+
+    /**
+     * When the event was created: version 7 event ids start with its epoch millisecond. Events without one
+     * are taken to be from now.
+     */
+    static long eventMillis(PatientEvent patientEvent) {
+        long high = patientEvent.getEventIdHigh();
+        return (high >>> 12 & 0xF) == 7 ? high >>> 16 : System.currentTimeMillis();
+    }
+
+    /**
+     * Lower case part after the last '@', or null.
+     */
+    static String emailDomain(String email) {
+        int at = email.lastIndexOf('@');
+        return at < 0 || at == email.length() - 1 ? null : email.substring(at + 1).toLowerCase();
+    }
+}
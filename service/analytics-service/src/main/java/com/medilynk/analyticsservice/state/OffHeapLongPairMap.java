@@ -0,0 +1,223 @@
+package com.medilynk.analyticsservice.state;
+
+import com.medilynk.analyticsservice.dedup.Hashing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Open-addressing hash map from 128-bit keys (UUIDs as two longs) to fixed-size values, stored outside the
+ * Java heap.
+ *
+ * The table is one ByteBuffer of capacity slots, each holding the key's two longs, a used flag and
+ * valueBytes of value (a multiple of 8, so every long stays aligned). Callers look a key up once to get its slot and then read and write the value fields
+ * at fixed offsets, so neither lookups nor updates allocate, and the garbage collector never sees the
+ * entries: a map with millions of keys costs the heap one buffer object. Collisions are resolved by linear
+ * probing. The capacity is fixed (keys can't be removed and the table never grows), so size it for the
+ * expected keys at a load factor of at most 0.75.
+ *
+ * The buffer is either direct memory or a file mapped read-write, in which case the entries survive a
+ * restart. A mapped file starts with a header recording the layout, and is only reused if the layout
+ * matches. Not thread-safe.
+ */
+public class OffHeapLongPairMap implements AutoCloseable {
+
+    private static final long MAGIC = 0x4D4C4B5041495231L; // "MLKPAIR1"
+    private static final int HEADER_BYTES = 32; // magic, capacity, valueBytes, size
+    private static final int KEY_BYTES = 3 * Long.BYTES; // high, low, used flag (padded to keep values aligned)
+    private static final int SIZE_OFFSET = 16;
+
+    private final ByteBuffer buffer;
+    private final FileChannel channel; // null when not persisted
+    private final int capacity;
+    private final int mask;
+    private final int valueBytes;
+    private final int slotBytes;
+    private int size;
+
+    private OffHeapLongPairMap(ByteBuffer buffer, FileChannel channel, int capacity, int valueBytes) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.channel = channel;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.valueBytes = valueBytes;
+        this.slotBytes = KEY_BYTES + valueBytes;
+    }
+
+    /**
+     * Map in direct memory, lost when the process exits.
+     *
+     * @param capacity   Slots, rounded up to a power of two
+     * @param valueBytes Bytes of value per key
+     */
+    public static OffHeapLongPairMap allocate(int capacity, int valueBytes) {
+        int slots = slots(capacity);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.toIntExact(bytes(slots, valueBytes))); // Zeroed
+        OffHeapLongPairMap map = new OffHeapLongPairMap(buffer, null, slots, valueBytes);
+        map.writeHeader();
+        return map;
+    }
+
+    /**
+     * Map backed by a file, reopened if it was written with the same capacity and value size and created
+     * (or recreated) otherwise.
+     */
+    public static OffHeapLongPairMap map(Path file, int capacity, int valueBytes) throws IOException {
+        int slots = slots(capacity);
+        long bytes = bytes(slots, valueBytes);
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean reuse = channel.size() == bytes && headerMatches(channel, slots, valueBytes);
+            if (!reuse) {
+                channel.truncate(0); // Mapping past the end extends the file with zeros
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            OffHeapLongPairMap map = new OffHeapLongPairMap(buffer, channel, slots, valueBytes);
+            if (reuse) {
+                map.size = (int) map.buffer.getLong(SIZE_OFFSET);
+            } else {
+                map.writeHeader();
+            }
+            return map;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Slot of the key, or -1 if it isn't in the map.
+     */
+    public int find(long high, long low) {
+        int slot = (int) Hashing.mix(high, low) & mask;
+        for (int probes = 0; probes < capacity; probes++) {
+            int offset = offset(slot);
+            if (buffer.getLong(offset + 2 * Long.BYTES) == 0) {
+                return -1;
+            }
+            if (buffer.getLong(offset) == high && buffer.getLong(offset + Long.BYTES) == low) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Slot of the key, adding it with a zeroed value if it isn't in the map.
+     *
+     * @throws IllegalStateException if the key is new and the map is full
+     */
+    public int findOrInsert(long high, long low) {
+        int slot = (int) Hashing.mix(high, low) & mask;
+        for (int probes = 0; probes < capacity; probes++) {
+            int offset = offset(slot);
+            if (buffer.getLong(offset + 2 * Long.BYTES) == 0) {
+                buffer.putLong(offset, high);
+                buffer.putLong(offset + Long.BYTES, low);
+                buffer.putLong(offset + 2 * Long.BYTES, 1);
+                buffer.putLong(SIZE_OFFSET, ++size);
+                return slot;
+            }
+            if (buffer.getLong(offset) == high && buffer.getLong(offset + Long.BYTES) == low) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        throw new IllegalStateException("Off-heap map is full (" + capacity + " keys)");
+    }
+
+    public long getLong(int slot, int valueOffset) {
+        return buffer.getLong(valueOffset(slot, valueOffset, Long.BYTES));
+    }
+
+    public void putLong(int slot, int valueOffset, long value) {
+        buffer.putLong(valueOffset(slot, valueOffset, Long.BYTES), value);
+    }
+
+    public int getInt(int slot, int valueOffset) {
+        return buffer.getInt(valueOffset(slot, valueOffset, Integer.BYTES));
+    }
+
+    public void putInt(int slot, int valueOffset, int value) {
+        buffer.putInt(valueOffset(slot, valueOffset, Integer.BYTES), value);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long memoryBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Writes the changes of a file-backed map to disk; does nothing for a map in memory.
+     */
+    public void flush() {
+        if (buffer instanceof MappedByteBuffer mapped) {
+            mapped.force();
+        }
+    }
+
+    /**
+     * Flushes a file-backed map and closes the file. A mapped buffer is only unmapped once it is garbage
+     * collected, so the map must not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            flush();
+            channel.close();
+        }
+    }
+
+    private int offset(int slot) {
+        return HEADER_BYTES + slot * slotBytes;
+    }
+
+    private int valueOffset(int slot, int valueOffset, int width) {
+        if (valueOffset < 0 || valueOffset > valueBytes - width) {
+            throw new IndexOutOfBoundsException("Value offset " + valueOffset + " outside " + valueBytes + " bytes");
+        }
+        return offset(slot) + KEY_BYTES + valueOffset;
+    }
+
+    private void writeHeader() {
+        buffer.putLong(0, MAGIC);
+        buffer.putInt(8, capacity);
+        buffer.putInt(12, valueBytes);
+        buffer.putLong(SIZE_OFFSET, size);
+    }
+
+    private static boolean headerMatches(FileChannel channel, int slots, int valueBytes) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        return header.getLong(0) == MAGIC && header.getInt(8) == slots && header.getInt(12) == valueBytes;
+    }
+
+    private static int slots(int capacity) {
+        return Math.max(16, Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+    }
+
+    private static long bytes(int slots, int valueBytes) {
+        if (valueBytes <= 0 || valueBytes % Long.BYTES != 0) {
+            throw new IllegalArgumentException("Value size must be a positive multiple of 8, not " + valueBytes);
+        }
+        long bytes = HEADER_BYTES + (long) slots * (KEY_BYTES + valueBytes);
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(slots + " slots of " + valueBytes + " bytes don't fit in one 2GB buffer");
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,12 @@
+package com.medilynk.analyticsservice.state;
+
+/**
+ * What analytics-service has seen of one patient.
+ *
+ * @param firstSeenMillis Time of the first event, epoch milliseconds
+ * @param lastEventMillis Time of the latest event, epoch milliseconds
+ * @param eventCount      Events processed
+ * @param lastEventType   Type of the latest event, e.g. PATIENT_UPDATED
+ */
+public record PatientState(long firstSeenMillis, long lastEventMillis, long eventCount, String lastEventType) {
+}
@@ -0,0 +1,127 @@
+package com.medilynk.analyticsservice.state;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Per-patient state (first seen, last event and its type, event count) for every patient analytics-service
+ * has seen, in an OffHeapLongPairMap keyed by patient id.
+ *
+ * Recording an event is a hash probe plus a few writes to the off-heap slot, with no allocation, so millions
+ * of patients neither fill the heap nor lengthen GC pauses. With analytics.patient-state.file set the map is
+ * a memory-mapped file: state survives restarts (the OS writes dirty pages back even if the process
+ * crashes), though events redelivered after a restart are counted again. New patients are not tracked once
+ * the table is 75% full, counted in analytics.patient.state.full; raise the capacity if that happens.
+ */
+@Component
+public class PatientStateStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientStateStore.class);
+
+    // Value layout of a slot
+    private static final int FIRST_SEEN = 0;
+    private static final int LAST_EVENT = 8;
+    private static final int EVENT_COUNT = 16;
+    private static final int LAST_EVENT_TYPE = 24;
+    private static final int VALUE_BYTES = 32;
+
+    private static final String[] EVENT_TYPES = {"UNKNOWN", "PATIENT_CREATED", "PATIENT_UPDATED", "PATIENT_DELETED"};
+
+    private final OffHeapLongPairMap map;
+    private final int maxPatients;
+    private final Counter full;
+
+    /**
+     * @param capacity Slots of the table, rounded up to a power of two; holds 75% as many patients
+     * @param file     File to persist the table in, or empty to keep it in memory
+     */
+    public PatientStateStore(
+            @Value("${analytics.patient-state.capacity:1048576}") int capacity,
+            @Value("${analytics.patient-state.file:}") String file,
+            MeterRegistry meterRegistry) throws IOException {
+        this.map = file.isBlank()
+                ? OffHeapLongPairMap.allocate(capacity, VALUE_BYTES)
+                : OffHeapLongPairMap.map(Path.of(file), capacity, VALUE_BYTES);
+        this.maxPatients = map.capacity() / 4 * 3;
+        if (!file.isBlank()) {
+            log.info("Patient state mapped from {}: {} patients", file, map.size());
+        }
+
+        Gauge.builder("analytics.patient.state.patients", this, PatientStateStore::patients)
+                .description("Patients with tracked state")
+                .register(meterRegistry);
+        Gauge.builder("analytics.patient.state.memory", map, OffHeapLongPairMap::memoryBytes)
+                .description("Off-heap memory of the patient state table")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.full = Counter.builder("analytics.patient.state.full")
+                .description("Events of new patients not tracked because the patient state table is full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records an event of the patient. Allocation-free.
+     *
+     * @param eventMillis Time of the event, epoch milliseconds
+     */
+    public synchronized void record(long high, long low, String eventType, long eventMillis) {
+        int slot = map.find(high, low);
+        if (slot < 0) {
+            if (map.size() >= maxPatients) {
+                full.increment();
+                return;
+            }
+            slot = map.findOrInsert(high, low);
+            map.putLong(slot, FIRST_SEEN, eventMillis);
+        }
+        // Retried events can arrive after newer ones
+        if (eventMillis >= map.getLong(slot, LAST_EVENT)) {
+            map.putLong(slot, LAST_EVENT, eventMillis);
+            map.putInt(slot, LAST_EVENT_TYPE, eventTypeCode(eventType));
+        }
+        map.putLong(slot, FIRST_SEEN, Math.min(map.getLong(slot, FIRST_SEEN), eventMillis));
+        map.putLong(slot, EVENT_COUNT, map.getLong(slot, EVENT_COUNT) + 1);
+    }
+
+    /**
+     * State of the patient, or null if no event of it was recorded.
+     */
+    public synchronized PatientState get(long high, long low) {
+        int slot = map.find(high, low);
+        if (slot < 0) {
+            return null;
+        }
+        return new PatientState(
+                map.getLong(slot, FIRST_SEEN),
+                map.getLong(slot, LAST_EVENT),
+                map.getLong(slot, EVENT_COUNT),
+                EVENT_TYPES[map.getInt(slot, LAST_EVENT_TYPE)]);
+    }
+
+    public synchronized int patients() {
+        return map.size();
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        map.close();
+    }
+
+    private static int eventTypeCode(String eventType) {
+        return switch (eventType) {
+            case "PATIENT_CREATED" -> 1;
+            case "PATIENT_UPDATED" -> 2;
+            case "PATIENT_DELETED" -> 3;
+            default -> 0;
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package com.medilynk.analyticsservice.benchmark;
+
+import com.medilynk.analyticsservice.demographics.DemographicsQuery;
+import com.medilynk.analyticsservice.demographics.DemographicsResult;
+import com.medilynk.analyticsservice.demographics.GroupBy;
+import com.medilynk.analyticsservice.demographics.PatientColumnStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full scans of the demographics store: a filtered count ("registered last quarter, aged 65+") and
+ * group-bys over every row. Patients are born 1925-2024 and registered 2015-2025 at random, spread over
+ * 20 email domains, with 2% deleted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class DemographicsQueryBenchmark {
+
+    private static final LocalDate AS_OF = LocalDate.of(2025, 10, 15);
+
+    @Param({"2000000"})
+    public int patients;
+
+    private PatientColumnStore store;
+
+    @Setup
+    public void setUp() {
+        store = new PatientColumnStore(patients, new SimpleMeterRegistry());
+        SplittableRandom random = new SplittableRandom(42);
+        int firstBirth = (int) LocalDate.of(1925, 1, 1).toEpochDay();
+        int firstRegistration = (int) LocalDate.of(2015, 1, 1).toEpochDay();
+        for (int i = 0; i < patients; i++) {
+            long high = random.nextLong();
+            long low = random.nextLong();
+            store.upsert(high, low, i,
+                    firstBirth + random.nextInt(100 * 365),
+                    firstRegistration + random.nextInt(3_940),
+                    "domain" + random.nextInt(20) + ".example");
+            if (random.nextInt(50) == 0) {
+                store.delete(high, low, i);
+            }
+        }
+    }
+
+    @Benchmark
+    public DemographicsResult seniorsRegisteredLastQuarter() {
+        return store.query(new DemographicsQuery(
+                LocalDate.of(2025, 7, 1), LocalDate.of(2025, 9, 30), 65, null, null, GroupBy.NONE, AS_OF));
+    }
+
+    @Benchmark
+    public DemographicsResult ageBands() {
+        return store.query(new DemographicsQuery(null, null, null, null, null, GroupBy.AGE_BAND, AS_OF));
+    }
+
+    @Benchmark
+    public DemographicsResult registrationMonthsByDomain() {
+        return store.query(new DemographicsQuery(
+                null, null, 18, 64, "domain7.example", GroupBy.REGISTRATION_MONTH, AS_OF));
+    }
+}
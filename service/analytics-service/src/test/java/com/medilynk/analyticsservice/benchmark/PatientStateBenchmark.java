@@ -0,0 +1,110 @@
+package com.medilynk.analyticsservice.benchmark;
+
+import com.medilynk.analyticsservice.state.PatientStateStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording an event for one of 2M known patients, in the off-heap PatientStateStore and in the on-heap
+ * HashMap of UUID to state object it replaces. Each operation also allocates 512 bytes, roughly what parsing
+ * the Kafka record and the PatientEvent costs, so young collections run as they would in the consumer;
+ * compare gc.time, and the heap retained after setup printed in the run log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class PatientStateBenchmark {
+
+    private static final int PATIENTS = 2_000_000;
+    private static final String[] EVENT_TYPES = {"PATIENT_CREATED", "PATIENT_UPDATED", "PATIENT_DELETED"};
+
+    @Param({"offHeap", "onHeap"})
+    public String store;
+
+    private PatientStateStore offHeap;
+    private Map<UUID, MutableState> onHeap;
+    private final long[] high = new long[PATIENTS];
+    private final long[] low = new long[PATIENTS];
+    private final SplittableRandom random = new SplittableRandom(7);
+    private long clock;
+
+    /**
+     * Per-patient state the way it would be kept on the heap.
+     */
+    static final class MutableState {
+        long firstSeenMillis;
+        long lastEventMillis;
+        long eventCount;
+        String lastEventType;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        for (int i = 0; i < PATIENTS; i++) {
+            high[i] = random.nextLong();
+            low[i] = random.nextLong();
+        }
+        if (store.equals("offHeap")) {
+            offHeap = new PatientStateStore(4_194_304, "", new SimpleMeterRegistry());
+        } else {
+            onHeap = new HashMap<>(4_194_304);
+        }
+        for (int i = 0; i < PATIENTS; i++) {
+            update(i, "PATIENT_CREATED");
+        }
+        System.gc();
+        System.out.printf("%n%s: %d MB of heap used after setup%n", store,
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (offHeap != null) {
+            offHeap.close();
+        }
+    }
+
+    @Benchmark
+    public void recordEvent(Blackhole blackhole) {
+        blackhole.consume(new byte[512]);
+        update(random.nextInt(PATIENTS), EVENT_TYPES[random.nextInt(EVENT_TYPES.length)]);
+    }
+
+    private void update(int patient, String eventType) {
+        long now = ++clock;
+        if (offHeap != null) {
+            offHeap.record(high[patient], low[patient], eventType, now);
+            return;
+        }
+        MutableState state = onHeap.computeIfAbsent(new UUID(high[patient], low[patient]), id -> new MutableState());
+        if (state.eventCount == 0) {
+            state.firstSeenMillis = now;
+        }
+        state.lastEventMillis = now;
+        state.lastEventType = eventType;
+        state.eventCount++;
+    }
+}
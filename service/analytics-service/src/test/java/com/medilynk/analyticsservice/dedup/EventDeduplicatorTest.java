@@ -0,0 +1,95 @@
+package com.medilynk.analyticsservice.dedup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventDeduplicatorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void reportsProcessedIdsAsDuplicates() {
+        EventDeduplicator deduplicator = deduplicator(1024);
+        UUID id = UUID.randomUUID();
+
+        assertFalse(deduplicator.isDuplicate(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        deduplicator.markProcessed(id.getMostSignificantBits(), id.getLeastSignificantBits());
+
+        assertTrue(deduplicator.isDuplicate(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        assertEquals(1.0, meterRegistry.get("patient.events.duplicates").counter().count());
+    }
+
+    @Test
+    void neverTreatsEventsWithoutIdAsDuplicates() {
+        EventDeduplicator deduplicator = deduplicator(1024);
+
+        deduplicator.markProcessed(0, 0);
+
+        assertFalse(deduplicator.isDuplicate(0, 0));
+    }
+
+    @Test
+    void forgetsIdsOnceTheirBloomGenerationsExpire() {
+        EventDeduplicator deduplicator = deduplicator(1024);
+        long start = System.currentTimeMillis();
+        deduplicator.markProcessed(1, 2, start);
+
+        // 1 minute window in 4 generations: still remembered 30 seconds later, gone after the whole ring turned
+        assertTrue(deduplicator.isDuplicate(1, 2, start + 30_000));
+        assertFalse(deduplicator.isDuplicate(1, 2, start + 90_000));
+    }
+
+    @Test
+    void keepsTheMostRecentIdsWithinTheExactCapacity() {
+        EventDeduplicator deduplicator = deduplicator(1024);
+        long now = System.currentTimeMillis();
+        for (long i = 1; i <= 10_000; i++) {
+            deduplicator.markProcessed(i, i, now);
+        }
+
+        // At least the last 512 (half the capacity) are held exactly
+        for (long i = 10_000 - 511; i <= 10_000; i++) {
+            assertTrue(deduplicator.isDuplicate(i, i, now), "id " + i);
+        }
+        // The oldest were evicted: the Bloom filter still says "maybe", but nothing is dropped on that alone
+        assertFalse(deduplicator.isDuplicate(1, 1, now));
+        assertTrue(meterRegistry.get("patient.events.dedup.unconfirmed").counter().count() >= 1);
+    }
+
+    @Test
+    void boundsMemoryByConfiguration() {
+        EventDeduplicator deduplicator = deduplicator(1024);
+
+        // 4 generations of 64KB, plus 2 tables of 1024 slots with two longs each
+        assertEquals(4 * 65_536 + 2 * 1024 * 2 * 8, deduplicator.memoryBytes());
+        assertEquals((double) deduplicator.memoryBytes(), meterRegistry.get("patient.events.dedup.memory").gauge().value());
+    }
+
+    @Test
+    void bloomFilterFalsePositiveRateMatchesItsSizing() {
+        // 64KB (524288 bits) per generation with k = 7 holds 50000 ids at about 1% false positives
+        TimePartitionedBloomFilter filter = new TimePartitionedBloomFilter(2, 524_288, 7, 60_000, 0);
+        for (long i = 0; i < 50_000; i++) {
+            filter.put(UUID.randomUUID().getMostSignificantBits(), i, 0);
+        }
+        int falsePositives = 0;
+        for (long i = 0; i < 100_000; i++) {
+            if (filter.mightContain(UUID.randomUUID().getMostSignificantBits(), -i, 0)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, falsePositives + " false positives in 100000 lookups");
+    }
+
+    private EventDeduplicator deduplicator(int exactCapacity) {
+        return new EventDeduplicator(Duration.ofMinutes(1), 4, DataSize.ofKilobytes(64), 7, exactCapacity, meterRegistry);
+    }
+}
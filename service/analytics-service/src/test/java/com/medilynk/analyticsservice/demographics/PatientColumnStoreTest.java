@@ -0,0 +1,152 @@
+package com.medilynk.analyticsservice.demographics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.medilynk.analyticsservice.demographics.PatientColumnStore.UNKNOWN_DATE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PatientColumnStoreTest {
+
+    private static final LocalDate AS_OF = LocalDate.of(2025, 10, 15);
+
+    // Starts small so the columns and the index grow during the tests
+    private final PatientColumnStore store = new PatientColumnStore(16, new SimpleMeterRegistry());
+    private long eventMillis; // Advanced by every event, so they are applied in call order
+
+    @Test
+    void filtersOnAgeRegistrationAndEmailDomain() {
+        add(1, "1950-03-01", "2025-08-10", "example.com");  // 75, registered last quarter
+        add(2, "1960-10-15", "2025-09-30", "EXAMPLE.com");  // 65 today, registered last quarter
+        add(3, "1960-10-16", "2025-07-01", "example.com");  // 64 until tomorrow
+        add(4, "1940-01-01", "2025-06-30", "example.com");  // registered the quarter before
+        add(5, "1945-01-01", "2025-08-01", "other.org");
+
+        assertEquals(3, count(new DemographicsQuery(
+                LocalDate.parse("2025-07-01"), LocalDate.parse("2025-09-30"), 65, null, null, GroupBy.NONE, AS_OF)));
+        assertEquals(2, count(new DemographicsQuery(
+                LocalDate.parse("2025-07-01"), LocalDate.parse("2025-09-30"), 65, null, "example.com", GroupBy.NONE, AS_OF)));
+        assertEquals(1, count(new DemographicsQuery(null, null, null, 64, "example.com", GroupBy.NONE, AS_OF)));
+        assertEquals(0, count(new DemographicsQuery(null, null, null, null, "nobody.net", GroupBy.NONE, AS_OF)));
+    }
+
+    @Test
+    void unknownDatesOnlyMatchWhenNotFilteredOn() {
+        store.upsert(0, 1, ++eventMillis, UNKNOWN_DATE, UNKNOWN_DATE, null);
+        add(2, "1990-01-01", "2025-01-01", "example.com");
+
+        assertEquals(2, count(new DemographicsQuery(null, null, null, null, null, GroupBy.NONE, AS_OF)));
+        assertEquals(1, count(new DemographicsQuery(null, null, 18, null, null, GroupBy.NONE, AS_OF)));
+        assertEquals(1, count(new DemographicsQuery(null, LocalDate.parse("2025-12-31"), null, null, null, GroupBy.NONE, AS_OF)));
+    }
+
+    @Test
+    void groupsByAgeBandYoungestFirst() {
+        add(1, "2015-01-01", "2025-01-01", "example.com"); // 10
+        add(2, "2007-10-15", "2025-01-01", "example.com"); // 18 today
+        add(3, "1985-01-01", "2025-01-01", "example.com"); // 40
+        add(4, "1985-06-01", "2025-01-01", "example.com"); // 40
+        add(5, "1950-01-01", "2025-01-01", "example.com"); // 75
+        store.upsert(0, 6, ++eventMillis, UNKNOWN_DATE, UNKNOWN_DATE, null);
+
+        DemographicsResult result = store.query(new DemographicsQuery(null, null, null, null, null, GroupBy.AGE_BAND, AS_OF));
+
+        Map<String, Long> expected = new LinkedHashMap<>();
+        expected.put("0-17", 1L);
+        expected.put("18-34", 1L);
+        expected.put("35-49", 2L);
+        expected.put("65+", 1L);
+        expected.put("unknown", 1L);
+        assertEquals(expected, result.groups());
+        assertEquals(6, result.total());
+    }
+
+    @Test
+    void groupsByRegistrationPeriodInOrder() {
+        add(1, "1990-01-01", "2024-12-31", "example.com");
+        add(2, "1990-01-01", "2025-01-01", "example.com");
+        add(3, "1990-01-01", "2025-05-20", "example.com");
+        add(4, "1990-01-01", "2025-06-01", "example.com");
+
+        assertEquals("{2024-Q4=1, 2025-Q1=1, 2025-Q2=2}", store.query(
+                new DemographicsQuery(null, null, null, null, null, GroupBy.REGISTRATION_QUARTER, AS_OF)).groups().toString());
+        assertEquals("{2024-12=1, 2025-01=1, 2025-05=1, 2025-06=1}", store.query(
+                new DemographicsQuery(null, null, null, null, null, GroupBy.REGISTRATION_MONTH, AS_OF)).groups().toString());
+        assertEquals("{2024=1, 2025=3}", store.query(
+                new DemographicsQuery(null, null, null, null, null, GroupBy.REGISTRATION_YEAR, AS_OF)).groups().toString());
+    }
+
+    @Test
+    void groupsByEmailDomain() {
+        add(1, "1990-01-01", "2025-01-01", "example.com");
+        add(2, "1990-01-01", "2025-01-01", "other.org");
+        add(3, "1990-01-01", "2025-01-01", "example.com");
+
+        assertEquals("{example.com=2, other.org=1}", store.query(
+                new DemographicsQuery(null, null, null, null, null, GroupBy.EMAIL_DOMAIN, AS_OF)).groups().toString());
+    }
+
+    @Test
+    void deletedPatientsAreSkippedUntilAddedAgain() {
+        for (int i = 1; i <= 100; i++) {
+            add(i, "1990-01-01", "2025-01-01", "example.com");
+        }
+        add(50, "1950-01-01", "2025-01-01", "example.com"); // Update keeps the row
+
+        store.delete(0, 10, ++eventMillis);
+        store.delete(0, 70, ++eventMillis);
+        assertFalse(store.delete(0, 70, ++eventMillis));
+        assertFalse(store.delete(0, 1000, ++eventMillis)); // Leaves a deleted row behind
+        assertEquals(98, store.patients());
+        assertEquals(1, count(new DemographicsQuery(null, null, 65, null, null, GroupBy.NONE, AS_OF)));
+
+        add(70, "1950-01-01", "2025-01-01", "example.com");
+        DemographicsResult result = store.query(new DemographicsQuery(null, null, 65, null, null, GroupBy.NONE, AS_OF));
+        assertEquals(2, result.total());
+        assertEquals(101, result.scannedRows());
+    }
+
+    @Test
+    void eventsOlderThanThePatientsLastEventAreDropped() {
+        add(1, "1950-01-01", "2025-01-01", "example.com");
+        long updated = ++eventMillis;
+        assertTrue(store.delete(0, 1, ++eventMillis));
+
+        // The update was created before the deletion but arrives after it, e.g. from a retry topic
+        assertFalse(store.upsert(0, 1, updated, (int) LocalDate.parse("1950-01-01").toEpochDay(),
+                (int) LocalDate.parse("2025-01-01").toEpochDay(), "example.com"));
+        assertEquals(0, store.patients());
+
+        // Deleted before its creation arrived
+        long created = ++eventMillis;
+        assertFalse(store.delete(0, 2, ++eventMillis));
+        assertFalse(store.upsert(0, 2, created, UNKNOWN_DATE, UNKNOWN_DATE, null));
+        assertEquals(0, store.patients());
+
+        // A patient created again later is back
+        add(1, "1950-01-01", "2025-01-01", "example.com");
+        assertEquals(1, count(new DemographicsQuery(null, null, 65, null, null, GroupBy.NONE, AS_OF)));
+    }
+
+    @Test
+    void rejectsNegativeAges() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new DemographicsQuery(null, null, -1, null, null, GroupBy.NONE, AS_OF));
+    }
+
+    private long count(DemographicsQuery query) {
+        return store.query(query).total();
+    }
+
+    private void add(long id, String dateOfBirth, String registeredDate, String emailDomain) {
+        store.upsert(0, id, ++eventMillis, (int) LocalDate.parse(dateOfBirth).toEpochDay(),
+                (int) LocalDate.parse(registeredDate).toEpochDay(), emailDomain.toLowerCase());
+    }
+}
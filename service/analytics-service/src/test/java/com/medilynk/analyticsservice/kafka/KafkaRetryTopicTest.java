@@ -0,0 +1,134 @@
+package com.medilynk.analyticsservice.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import patent.event.PatientEvent;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the consumer against an embedded broker with short backoffs: transient failures are retried from the
+ * retry topics (without being mistaken for duplicates), a redelivered event is skipped, records that keep
+ * failing or can't be parsed end up in the dead-letter topic, and the replay endpoint sends dead letters back
+ * through the main topic. Over HTTP the endpoint is off unless turned on.
+ */
+@SpringBootTest(properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.consumer.auto-offset-reset=earliest",
+        "analytics.kafka.retry.initial-delay-ms=100",
+        "analytics.kafka.retry.multiplier=2",
+        "analytics.kafka.dlt-replay.max-records=100"
+})
+@EmbeddedKafka(partitions = 1, topics = KafkaConsumer.TOPIC)
+@AutoConfigureMockMvc
+class KafkaRetryTopicTest {
+
+    @Autowired
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    @Autowired
+    private DltReplayEndpoint dltReplayEndpoint;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoBean
+    private PatientEventProcessor processor;
+
+    @Test
+    void retriesTransientFailuresAndDeadLettersTheRest() throws Exception {
+        // "flaky" fails twice and then succeeds; "broken" fails until it is fixed
+        AtomicInteger flakyAttempts = new AtomicInteger();
+        AtomicInteger brokenAttempts = new AtomicInteger();
+        AtomicInteger processed = new AtomicInteger();
+        boolean[] brokenFixed = {false};
+        doAnswer(invocation -> {
+            PatientEvent event = invocation.getArgument(0);
+            if (event.getPatientId().equals("flaky") && flakyAttempts.incrementAndGet() <= 2) {
+                throw new IllegalStateException("database unavailable");
+            }
+            if (event.getPatientId().equals("broken") && !brokenFixed[0]) {
+                brokenAttempts.incrementAndGet();
+                throw new IllegalStateException("bug");
+            }
+            processed.incrementAndGet();
+            return null;
+        }).when(processor).process(argThat(event -> true));
+
+        send("flaky");
+        send("broken");
+        kafkaTemplate.send(KafkaConsumer.TOPIC, "poison", new byte[]{(byte) 0xFF, 0x01}).get();
+        byte[] healthy = send("healthy");
+        kafkaTemplate.send(KafkaConsumer.TOPIC, "healthy", healthy).get(); // Redelivered: same event id
+
+        await(() -> deadLetters() == 2);
+        await(() -> processed.get() == 2); // flaky on its third attempt and healthy
+        await(() -> meterRegistry.get("patient.events.duplicates").counter().count() == 1);
+        assertEquals(3, flakyAttempts.get());
+        assertEquals(4, brokenAttempts.get());
+        // flaky was retried twice, broken three times
+        assertEquals(5.0, meterRegistry.find("patient.events.retries").counters().stream()
+                .mapToDouble(counter -> counter.count()).sum());
+        assertEquals(1.0, meterRegistry.get("patient.events.dead.letters")
+                .tag("exception", "InvalidProtocolBufferException").counter().count());
+
+        brokenFixed[0] = true;
+        assertEquals(2, dltReplayEndpoint.replay(null).get("replayed"));
+        await(() -> processed.get() == 3);
+        // The poison record can't succeed and is dead-lettered again; nothing new is left to replay after it
+        await(() -> deadLetters() == 3);
+        assertEquals(1, dltReplayEndpoint.replay(null).get("replayed"));
+    }
+
+    @Test
+    void theReplayEndpointIsOffUnlessTurnedOn() throws Exception {
+        mockMvc.perform(post("/actuator/dltreplay"))
+                .andExpect(status().isNotFound());
+    }
+
+    private byte[] send(String patientId) throws Exception {
+        UUID eventId = UUID.randomUUID();
+        byte[] event = PatientEvent.newBuilder()
+                .setPatientId(patientId)
+                .setEventType("PATIENT_CREATED")
+                .setEventIdHigh(eventId.getMostSignificantBits())
+                .setEventIdLow(eventId.getLeastSignificantBits())
+                .build()
+                .toByteArray();
+        kafkaTemplate.send(KafkaConsumer.TOPIC, patientId, event).get();
+        return event;
+    }
+
+    private double deadLetters() {
+        return meterRegistry.find("patient.events.dead.letters").counters().stream()
+                .mapToDouble(counter -> counter.count()).sum();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean(), "condition not met within 30s");
+    }
+}
@@ -0,0 +1,78 @@
+package com.medilynk.analyticsservice.state;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OffHeapLongPairMapTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storesValuesPerKey() {
+        OffHeapLongPairMap map = OffHeapLongPairMap.allocate(1024, 16);
+        for (long i = 0; i < 700; i++) {
+            int slot = map.findOrInsert(i, -i);
+            map.putLong(slot, 0, i * 10);
+            map.putInt(slot, 8, (int) i);
+        }
+
+        assertEquals(700, map.size());
+        for (long i = 0; i < 700; i++) {
+            int slot = map.find(i, -i);
+            assertEquals(slot, map.findOrInsert(i, -i));
+            assertEquals(i * 10, map.getLong(slot, 0));
+            assertEquals((int) i, map.getInt(slot, 8));
+        }
+        assertEquals(-1, map.find(700, -700));
+        assertEquals(700, map.size());
+    }
+
+    @Test
+    void rejectsValueAccessOutsideTheSlot() {
+        OffHeapLongPairMap map = OffHeapLongPairMap.allocate(16, 16);
+        int slot = map.findOrInsert(1, 1);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> map.getLong(slot, 12));
+        assertThrows(IndexOutOfBoundsException.class, () -> map.putInt(slot, -4, 1));
+        assertThrows(IllegalArgumentException.class, () -> OffHeapLongPairMap.allocate(16, 12));
+    }
+
+    @Test
+    void throwsWhenFull() {
+        OffHeapLongPairMap map = OffHeapLongPairMap.allocate(16, 8);
+        for (long i = 0; i < 16; i++) {
+            map.findOrInsert(i, i);
+        }
+
+        assertEquals(map.find(3, 3), map.findOrInsert(3, 3)); // Existing keys are still found
+        assertThrows(IllegalStateException.class, () -> map.findOrInsert(16, 16));
+    }
+
+    @Test
+    void keepsEntriesInTheMappedFileAcrossReopens() throws IOException {
+        Path file = directory.resolve("state.bin");
+        try (OffHeapLongPairMap map = OffHeapLongPairMap.map(file, 1024, 8)) {
+            for (long i = 1; i <= 100; i++) {
+                map.putLong(map.findOrInsert(i, i), 0, i);
+            }
+        }
+
+        try (OffHeapLongPairMap map = OffHeapLongPairMap.map(file, 1024, 8)) {
+            assertEquals(100, map.size());
+            assertEquals(42, map.getLong(map.find(42, 42), 0));
+        }
+
+        // A different layout starts over instead of misreading the old one
+        try (OffHeapLongPairMap map = OffHeapLongPairMap.map(file, 1024, 16)) {
+            assertEquals(0, map.size());
+            assertEquals(-1, map.find(42, 42));
+        }
+    }
+}
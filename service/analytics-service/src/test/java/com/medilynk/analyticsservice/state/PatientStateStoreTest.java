@@ -0,0 +1,37 @@
+package com.medilynk.analyticsservice.state;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PatientStateStoreTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void tracksFirstAndLatestEventEvenOutOfOrder() throws Exception {
+        PatientStateStore store = new PatientStateStore(64, "", meterRegistry);
+
+        store.record(1, 2, "PATIENT_UPDATED", 2_000);
+        store.record(1, 2, "PATIENT_DELETED", 3_000);
+        store.record(1, 2, "PATIENT_CREATED", 1_000); // Retried, arrives last
+
+        assertEquals(new PatientState(1_000, 3_000, 3, "PATIENT_DELETED"), store.get(1, 2));
+        assertNull(store.get(2, 1));
+    }
+
+    @Test
+    void stopsTrackingNewPatientsAtThreeQuartersFull() throws Exception {
+        PatientStateStore store = new PatientStateStore(16, "", meterRegistry);
+        for (long i = 1; i <= 20; i++) {
+            store.record(i, i, "PATIENT_CREATED", i);
+        }
+        store.record(1, 1, "PATIENT_UPDATED", 100); // Known patients are still updated
+
+        assertEquals(12, store.patients());
+        assertEquals(8.0, meterRegistry.get("analytics.patient.state.full").counter().count());
+        assertEquals("PATIENT_UPDATED", store.get(1, 1).lastEventType());
+    }
+}
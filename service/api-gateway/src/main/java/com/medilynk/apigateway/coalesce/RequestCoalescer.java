@@ -0,0 +1,168 @@
+package com.medilynk.apigateway.coalesce;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Single-flight table for identical requests, with an optional short-lived cache of the results.
+ *
+ * The first caller for a key becomes the leader of a new Flight and makes the real call; callers that arrive
+ * while it is in progress join the flight and wait for its result instead of calling the upstream themselves.
+ * The leader ends the flight in one of three ways:
+ * - complete: every waiter receives the same buffered response (and it is cached when a TTL is set);
+ * - fail: every waiter receives the same error, so a failing upstream is not hit once per waiter;
+ * - abandon: the response could not be shared (too large, streamed, or the leader was cancelled), and
+ *   waiters are told to make their own call.
+ * The flight leaves the table as soon as it ends, so later requests start a new one.
+ *
+ * Cached entries are bounded by maxCachedEntries; when the cache is full, expired entries are purged and if
+ * none are, the new response is simply not cached.
+ */
+public class RequestCoalescer {
+
+    private final long cacheTtlNanos;
+    private final int maxCachedEntries;
+    private final LongSupplier nanoClock;
+
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    private final Map<String, CachedResponse> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param cacheTtlNanos    how long a completed response is served to new requests, 0 to disable caching
+     * @param maxCachedEntries upper bound on the number of cached responses
+     * @param nanoClock        monotonic time source in nanoseconds (System::nanoTime outside of tests)
+     */
+    public RequestCoalescer(long cacheTtlNanos, int maxCachedEntries, LongSupplier nanoClock) {
+        this.cacheTtlNanos = cacheTtlNanos;
+        this.maxCachedEntries = maxCachedEntries;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Returns the cached response for the key, or null if there is none or it has expired.
+     */
+    public BufferedResponse cached(String key) {
+        if (cacheTtlNanos <= 0) {
+            return null;
+        }
+        CachedResponse entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (nanoClock.getAsLong() - entry.expiresAt() >= 0) {
+            cache.remove(key, entry);
+            return null;
+        }
+        return entry.response();
+    }
+
+    /**
+     * Joins the flight in progress for the key, or starts one with the caller as its leader.
+     */
+    public Flight join(String key) {
+        Flight created = new Flight(key, true);
+        Flight existing = flights.putIfAbsent(key, created);
+        return existing == null ? created : existing.asFollower();
+    }
+
+    public int inFlight() {
+        return flights.size();
+    }
+
+    public int cachedEntries() {
+        return cache.size();
+    }
+
+    private void store(String key, BufferedResponse response) {
+        long now = nanoClock.getAsLong();
+        if (cache.size() >= maxCachedEntries) {
+            cache.values().removeIf(entry -> now - entry.expiresAt() >= 0);
+            if (cache.size() >= maxCachedEntries) {
+                return;
+            }
+        }
+        cache.put(key, new CachedResponse(response, now + cacheTtlNanos));
+    }
+
+    /**
+     * One upstream call shared by every request with the same key. Only the leader may end it; ending a flight
+     * that has already ended does nothing.
+     */
+    public final class Flight {
+
+        private final String key;
+        private final boolean leader;
+        private final Sinks.One<BufferedResponse> result;
+
+        private Flight(String key, boolean leader) {
+            this(key, leader, Sinks.one());
+        }
+
+        private Flight(String key, boolean leader, Sinks.One<BufferedResponse> result) {
+            this.key = key;
+            this.leader = leader;
+            this.result = result;
+        }
+
+        private Flight asFollower() {
+            return new Flight(key, false, result);
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * The shared response; completes empty when the leader abandoned the flight.
+         */
+        public Mono<BufferedResponse> result() {
+            return result.asMono();
+        }
+
+        public void complete(BufferedResponse response) {
+            // Cache before leaving the table, so there is no window where a new request finds neither
+            if (cacheTtlNanos > 0 && response.cacheable()) {
+                store(key, response);
+            }
+            end();
+            result.tryEmitValue(response);
+        }
+
+        public void fail(Throwable error) {
+            end();
+            result.tryEmitError(error);
+        }
+
+        public void abandon() {
+            end();
+            result.tryEmitEmpty();
+        }
+
+        private void end() {
+            if (leader) {
+                flights.remove(key, this);
+            }
+        }
+    }
+
+    /**
+     * A complete upstream response held in memory so it can be written to several clients.
+     */
+    public record BufferedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+
+        // Only successful responses that don't forbid storage are reused for later requests
+        boolean cacheable() {
+            String cacheControl = headers.getCacheControl();
+            return status.is2xxSuccessful() && (cacheControl == null || !cacheControl.contains("no-store"));
+        }
+    }
+
+    private record CachedResponse(BufferedResponse response, long expiresAt) {
+    }
+}
@@ -0,0 +1,164 @@
+package com.medilynk.apigateway.coalesce;
+
+import com.medilynk.apigateway.coalesce.RequestCoalescer.BufferedResponse;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Response decorator that lets a flight leader share its response.
+ *
+ * Until share() is called it passes everything straight through. After that, the body is streamed to the
+ * leader's own client unchanged while a copy is kept in memory, and the complete response is handed to the
+ * flight once written. Bodies over the size limit and streamed responses abandon the flight instead, so the
+ * waiters make their own calls.
+ *
+ * The gateway writes proxied responses from NettyWriteResponseFilter, a global filter that runs outside the
+ * route filters, so this decorator has to be installed by a global filter ordered before it
+ * (SharingResponseGlobalFilter); the Coalesce route filter then attaches the flight.
+ */
+public class SharingResponse extends ServerHttpResponseDecorator {
+
+    private volatile RequestCoalescer.Flight flight;
+    private volatile long maxBodySize;
+
+    public SharingResponse(ServerHttpResponse delegate) {
+        super(delegate);
+    }
+
+    /**
+     * Shares this response with the followers of the given flight, if its body is at most maxBodySize bytes.
+     */
+    public void share(RequestCoalescer.Flight flight, long maxBodySize) {
+        this.maxBodySize = maxBodySize;
+        this.flight = flight;
+    }
+
+    /**
+     * Ends the flight with the error that ended the exchange.
+     */
+    public void fail(Throwable error) {
+        RequestCoalescer.Flight flight = this.flight;
+        if (flight != null) {
+            flight.fail(error);
+        }
+    }
+
+    /**
+     * Releases the waiters if the response was never shared (e.g. the leader's client went away).
+     */
+    public void abandon() {
+        RequestCoalescer.Flight flight = this.flight;
+        if (flight != null) {
+            flight.abandon();
+        }
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+        RequestCoalescer.Flight flight = this.flight;
+        if (flight == null) {
+            return super.writeWith(body);
+        }
+        // Snapshot before the write commits the response and makes the headers read-only
+        HttpStatusCode status = status();
+        HttpHeaders headers = snapshot(getHeaders());
+        if (headers.getContentLength() > maxBodySize) {
+            flight.abandon();
+            return super.writeWith(body);
+        }
+        BodyCopy copy = new BodyCopy(maxBodySize);
+        Flux<? extends DataBuffer> teed = Flux.from(body).doOnNext(buffer -> {
+            if (!copy.append(buffer)) {
+                flight.abandon();
+            }
+        });
+        return super.writeWith(teed)
+                .doOnSuccess(done -> {
+                    if (copy.complete()) {
+                        flight.complete(new BufferedResponse(status, headers, copy.toByteArray()));
+                    }
+                });
+    }
+
+    @Override
+    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+        abandon(); // Streamed responses (e.g. server-sent events) are never shared
+        return super.writeAndFlushWith(body);
+    }
+
+    @Override
+    public Mono<Void> setComplete() {
+        RequestCoalescer.Flight flight = this.flight;
+        if (flight == null) {
+            return super.setComplete();
+        }
+        HttpStatusCode status = status();
+        HttpHeaders headers = snapshot(getHeaders());
+        return super.setComplete()
+                .doOnSuccess(done -> flight.complete(new BufferedResponse(status, headers, new byte[0])));
+    }
+
+    private HttpStatusCode status() {
+        HttpStatusCode status = getStatusCode();
+        return status != null ? status : HttpStatus.OK;
+    }
+
+    private static HttpHeaders snapshot(HttpHeaders headers) {
+        HttpHeaders copy = new HttpHeaders();
+        copy.addAll(headers);
+        return HttpHeaders.readOnlyHttpHeaders(copy);
+    }
+
+    /**
+     * Growable copy of a response body that gives up once it passes the size limit.
+     */
+    private static final class BodyCopy {
+
+        private final long limit;
+        private byte[] bytes = new byte[1024];
+        private int size;
+        private boolean overflowed;
+
+        private BodyCopy(long limit) {
+            this.limit = limit;
+        }
+
+        // Returns false once the body has grown past the limit
+        private boolean append(DataBuffer buffer) {
+            if (overflowed) {
+                return false;
+            }
+            int length = buffer.readableByteCount();
+            if (size + (long) length > limit) {
+                overflowed = true;
+                bytes = null;
+                return false;
+            }
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+            // Copies without moving the read position, so the buffer is still written out in full
+            buffer.toByteBuffer(buffer.readPosition(), ByteBuffer.wrap(bytes), size, length);
+            size += length;
+            return true;
+        }
+
+        private boolean complete() {
+            return !overflowed;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
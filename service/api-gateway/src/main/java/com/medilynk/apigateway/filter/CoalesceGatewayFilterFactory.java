@@ -0,0 +1,211 @@
+package com.medilynk.apigateway.filter;
+
+import com.medilynk.apigateway.coalesce.RequestCoalescer;
+import com.medilynk.apigateway.coalesce.RequestCoalescer.BufferedResponse;
+import com.medilynk.apigateway.coalesce.SharingResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * CoalesceGatewayFilterFactory collapses concurrent identical GET requests into a single upstream call.
+ *
+ * Usage in a route (largest response that may be shared, how long a response is reused after it completes):
+ *   filters:
+ *     - JwtValidation
+ *     - Coalesce=256KB, 0s
+ *     - CircuitBreaker=...
+ *
+ * Requests are identical when they have the same path and query, the same Authorization header and the same
+ * content negotiation and conditional headers (see KEY_HEADERS). Because the credentials are part of the key,
+ * a response is only ever shared between requests that presented the same token. Place the filter after
+ * JwtValidation, so every request is still authenticated on its own, and before CircuitBreaker, so a
+ * coalesced group takes one bulkhead permit instead of one each.
+ *
+ * The leader's response is copied into memory while it streams to its own client (see SharingResponse) and
+ * written to the waiting requests once complete. Responses larger than the size limit, streamed responses and cancelled
+ * leaders release the waiters to make their own calls. Upstream errors are shared like responses.
+ *
+ * With a TTL above zero, successful responses are also served to new requests for that long. Use it only on
+ * routes where that much staleness is acceptable: it applies even to responses marked no-cache (but never
+ * to no-store, or when the client itself sends Cache-Control: no-cache).
+ */
+@Component // Registers this filter factory as a Spring bean for use in gateway routes
+public class CoalesceGatewayFilterFactory extends AbstractGatewayFilterFactory<CoalesceGatewayFilterFactory.Config> {
+
+    // Request headers that can change the upstream response, besides the path and query
+    private static final List<String> KEY_HEADERS = List.of(
+            HttpHeaders.AUTHORIZATION,
+            HttpHeaders.ACCEPT,
+            HttpHeaders.ACCEPT_ENCODING,
+            HttpHeaders.ACCEPT_LANGUAGE,
+            HttpHeaders.IF_NONE_MATCH,
+            HttpHeaders.IF_MODIFIED_SINCE);
+    // Response headers that describe one connection or one copy of the body, not the response itself
+    private static final Set<String> NOT_SHARED_HEADERS = Set.of(
+            HttpHeaders.CONNECTION.toLowerCase(),
+            HttpHeaders.TRANSFER_ENCODING.toLowerCase(),
+            HttpHeaders.CONTENT_LENGTH.toLowerCase());
+
+    private final MeterRegistry meterRegistry;
+    private final int maxCachedEntries;
+
+    /**
+     * @param meterRegistry    Registry used to count coalesced requests per route
+     * @param maxCachedEntries Maximum number of responses cached per route when a TTL is set
+     */
+    public CoalesceGatewayFilterFactory(
+            MeterRegistry meterRegistry,
+            @Value("${gateway.coalesce.max-cached-entries:1000}") int maxCachedEntries) {
+        super(Config.class);
+        this.meterRegistry = meterRegistry;
+        this.maxCachedEntries = maxCachedEntries;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("maxBodySize", "cacheTtl");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // One table per route, so routes never share responses with each other
+        RequestCoalescer coalescer = new RequestCoalescer(config.getCacheTtl().toNanos(), maxCachedEntries, System::nanoTime);
+        long maxBodySize = config.getMaxBodySize().toBytes();
+        String routeId = config.getRouteId() != null ? config.getRouteId() : "unknown";
+        Counter leaders = counter(routeId, "leader");
+        Counter joined = counter(routeId, "joined");
+        Counter cached = counter(routeId, "cached");
+        Counter bypassed = counter(routeId, "bypassed");
+
+        return (exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            if (request.getMethod() != HttpMethod.GET) {
+                bypassed.increment();
+                return chain.filter(exchange);
+            }
+            String key = key(request);
+            String cacheControl = request.getHeaders().getCacheControl();
+            if (cacheControl == null || !cacheControl.contains("no-cache")) {
+                BufferedResponse response = coalescer.cached(key);
+                if (response != null) {
+                    cached.increment();
+                    return write(exchange, response);
+                }
+            }
+
+            RequestCoalescer.Flight flight = coalescer.join(key);
+            if (!flight.isLeader()) {
+                joined.increment();
+                return flight.result()
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .flatMap(response -> response.isPresent()
+                                ? write(exchange, response.get())
+                                : chain.filter(exchange)); // Abandoned: make our own call
+            }
+            leaders.increment();
+            SharingResponse response = exchange.getAttribute(SharingResponseGlobalFilter.SHARING_RESPONSE_ATTR);
+            if (response == null) {
+                flight.abandon();
+            } else {
+                response.share(flight, maxBodySize); // SharingResponseGlobalFilter ends the flight with the exchange
+            }
+            return chain.filter(exchange);
+        };
+    }
+
+    private Counter counter(String routeId, String result) {
+        return Counter.builder("gateway.coalesce.requests")
+                .description("GET requests by how the coalescing filter served them")
+                .tag("route", routeId)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static String key(ServerHttpRequest request) {
+        StringBuilder key = new StringBuilder(256).append(request.getURI().getRawPath());
+        String query = request.getURI().getRawQuery();
+        if (query != null) {
+            key.append('?').append(query);
+        }
+        HttpHeaders headers = request.getHeaders();
+        for (String name : KEY_HEADERS) {
+            key.append('\n');
+            List<String> values = headers.get(name);
+            if (values != null) {
+                key.append(String.join(",", values));
+            }
+        }
+        return key.toString();
+    }
+
+    // Writes a shared response, keeping headers this request's own filters already set (e.g. X-RateLimit-*)
+    private static Mono<Void> write(ServerWebExchange exchange, BufferedResponse shared) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(shared.status());
+        HttpHeaders headers = response.getHeaders();
+        shared.headers().forEach((name, values) -> {
+            if (!NOT_SHARED_HEADERS.contains(name.toLowerCase()) && !headers.containsKey(name)) {
+                headers.put(name, values);
+            }
+        });
+        if (shared.body().length == 0) {
+            return response.setComplete();
+        }
+        headers.setContentLength(shared.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(shared.body())));
+    }
+
+    /**
+     * Per-route coalescing settings.
+     */
+    public static class Config implements HasRouteId {
+
+        private DataSize maxBodySize = DataSize.ofKilobytes(256); // Larger responses are not shared
+        private Duration cacheTtl = Duration.ZERO; // How long a completed response is reused, 0 to only coalesce
+        private String routeId;
+
+        public DataSize getMaxBodySize() {
+            return maxBodySize;
+        }
+
+        public void setMaxBodySize(DataSize maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+
+        public Duration getCacheTtl() {
+            return cacheTtl;
+        }
+
+        public void setCacheTtl(Duration cacheTtl) {
+            this.cacheTtl = cacheTtl;
+        }
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+    }
+}
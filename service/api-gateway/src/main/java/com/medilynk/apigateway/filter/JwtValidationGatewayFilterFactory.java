@@ -1,12 +1,23 @@
 package com.medilynk.apigateway.filter;
 
+import com.medilynk.apigateway.resilience.HedgedRequests;
+import com.medilynk.apigateway.upstream.UpstreamConnections;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreaker;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
 
 /**
  * JwtValidationGatewayFilterFactory is a custom GatewayFilterFactory for Spring Cloud Gateway.
@@ -20,12 +31,21 @@ import org.springframework.web.reactive.function.client.WebClient;
  * - Allows the request to proceed only if the token is valid.
  *
  * This approach centralizes authentication logic at the gateway, ensuring downstream services receive only validated requests.
+ *
+ * The call to the auth-service is protected so that a slow auth-service cannot pile up requests in the gateway:
+ * - Connect and response timeouts on the WebClient, and its own bounded connection pool (UpstreamConnections).
+ * - The "auth-service" circuit breaker, bulkhead and time limiter (resilience4j.* in application.yml).
+ *   Rejections are turned into 503/504 responses by UpstreamFailureGlobalFilter.
+ * - Hedging: /validate is an idempotent GET, so a second attempt is sent when the first is slower than the recent p95.
  */
 @Component // Registers this filter factory as a Spring bean for use in gateway routes
 public class JwtValidationGatewayFilterFactory extends AbstractGatewayFilterFactory<Object> {
 
     // WebClient is used to make HTTP requests to the external auth-service
     private final WebClient webClient;
+    private final MeterRegistry meterRegistry;
+    private final ReactiveCircuitBreaker circuitBreaker;
+    private final HedgedRequests hedging;
 
     /**
      * Constructor initializes the WebClient with the base URL of the auth-service.
@@ -33,12 +53,33 @@ public class JwtValidationGatewayFilterFactory extends AbstractGatewayFilterFact
      *
      * @param webClientBuilder Spring's reactive WebClient builder
      * @param authServiceUrl   Base URL of the authentication service (e.g., http://localhost:8081)
+     * @param meterRegistry    Registry used to time the token validation hop
+     * @param circuitBreakerFactory Creates the auth-service circuit breaker (with its bulkhead and time limiter)
+     * @param hedging          Hedging policy for the /validate call
+     * @param connectTimeout   Maximum time to establish a connection to the auth-service
+     * @param responseTimeout  Maximum time to wait for the auth-service response
+     * @param upstreamConnections Connection pool, protocol and keepalive settings for the auth-service client
      */
     public JwtValidationGatewayFilterFactory(
             WebClient.Builder webClientBuilder,
-            @Value("${auth.service.url}") String authServiceUrl) {
+            @Value("${auth.service.url}") String authServiceUrl,
+            MeterRegistry meterRegistry,
+            ReactiveCircuitBreakerFactory<?, ?> circuitBreakerFactory,
+            HedgedRequests hedging,
+            @Value("${auth.service.connect-timeout:1s}") Duration connectTimeout,
+            @Value("${auth.service.response-timeout:2s}") Duration responseTimeout,
+            UpstreamConnections upstreamConnections) {
+        HttpClient httpClient = upstreamConnections.configure(HttpClient.create(upstreamConnections.connectionProvider("auth-service")))
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(responseTimeout);
         // Configure WebClient to use the auth-service base URL
-        this.webClient = webClientBuilder.baseUrl(authServiceUrl).build();
+        this.webClient = webClientBuilder
+                .baseUrl(authServiceUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+        this.meterRegistry = meterRegistry;
+        this.circuitBreaker = circuitBreakerFactory.create("auth-service");
+        this.hedging = hedging;
     }
 
     /**
@@ -67,12 +108,24 @@ public class JwtValidationGatewayFilterFactory extends AbstractGatewayFilterFact
                 return exchange.getResponse().setComplete();
             }
             // Call the auth-service /validate endpoint to check token validity
-            return webClient.get()
-                    .uri("/validate")
-                    .header(HttpHeaders.AUTHORIZATION, token)
-                    .retrieve()
-                    .toBodilessEntity() // Only care about the response status, not the body
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return circuitBreaker.run(hedging.execute(() -> webClient.get()
+                            .uri("/validate")
+                            .header(HttpHeaders.AUTHORIZATION, token)
+                            .retrieve()
+                            .toBodilessEntity())) // Only care about the response status, not the body
+                    // Time only the auth-service hop, not the downstream route
+                    .doOnSuccess(response -> sample.stop(validationTimer("valid")))
+                    .doOnError(error -> sample.stop(validationTimer("invalid")))
                     .then(chain.filter((exchange))); // If valid, continue the filter chain
         };
     }
+
+    private Timer validationTimer(String outcome) {
+        return Timer.builder("gateway.jwt.validation")
+                .description("Latency of JWT validation calls to the auth-service")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 }
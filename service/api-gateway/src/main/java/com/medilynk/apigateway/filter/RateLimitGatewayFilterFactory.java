@@ -0,0 +1,166 @@
+package com.medilynk.apigateway.filter;
+
+import com.medilynk.apigateway.ratelimit.ClientKeyResolver;
+import com.medilynk.apigateway.ratelimit.TokenBucketRateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RateLimitGatewayFilterFactory throttles each client to a per-route token bucket held in gateway memory.
+ *
+ * Usage in a route (tokens per second, burst capacity, optionally the key):
+ *   filters:
+ *     - RateLimit=50, 100           # Per client IP, safe in front of authentication
+ *     - name: JwtValidation
+ *     - RateLimit=5, 10, SUBJECT    # Per JWT subject, only after JwtValidation has verified the token
+ *
+ * Clients are identified by ClientKeyResolver. Keys never come from unverified headers: a client that could pick
+ * its key freely would get a new bucket on every request, and fill maxKeys for everyone else. Allowed requests carry the
+ * X-RateLimit-* headers used by Spring Cloud Gateway's RequestRateLimiter; rejected requests get
+ * 429 Too Many Requests with a Retry-After header and never reach the downstream service.
+ *
+ * Limits are per gateway instance: with N instances behind the load balancer a client can get up to N times
+ * the configured rate.
+ */
+@Component // Registers this filter factory as a Spring bean for use in gateway routes
+public class RateLimitGatewayFilterFactory extends AbstractGatewayFilterFactory<RateLimitGatewayFilterFactory.Config> {
+
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    public static final String REPLENISH_RATE_HEADER = "X-RateLimit-Replenish-Rate";
+    public static final String BURST_CAPACITY_HEADER = "X-RateLimit-Burst-Capacity";
+
+    private final ClientKeyResolver keyResolver;
+    private final MeterRegistry meterRegistry;
+    private final Duration idleTimeout;
+    private final int maxKeys;
+
+    /**
+     * @param keyResolver   Resolves the client key a request is counted against
+     * @param meterRegistry Registry used to count rejected requests per route
+     * @param idleTimeout   How long an unused client bucket is kept before eviction
+     * @param maxKeys       Maximum number of client buckets kept per route
+     */
+    public RateLimitGatewayFilterFactory(
+            ClientKeyResolver keyResolver,
+            MeterRegistry meterRegistry,
+            @Value("${gateway.rate-limit.idle-timeout:10m}") Duration idleTimeout,
+            @Value("${gateway.rate-limit.max-keys:100000}") int maxKeys) {
+        super(Config.class);
+        this.keyResolver = keyResolver;
+        this.meterRegistry = meterRegistry;
+        this.idleTimeout = idleTimeout;
+        this.maxKeys = maxKeys;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("replenishRate", "burstCapacity", "key");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // One limiter per route, so each route has its own limits and its own set of client buckets.
+        // Eviction sweeps run on boundedElastic to keep them off the event loop.
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(
+                config.getReplenishRate(),
+                config.getBurstCapacity(),
+                idleTimeout.toMillis(), TimeUnit.MILLISECONDS,
+                maxKeys,
+                sweep -> Schedulers.boundedElastic().schedule(sweep),
+                System::nanoTime);
+        Counter rejected = Counter.builder("gateway.ratelimit.rejected")
+                .description("Requests rejected with 429 by the gateway rate limiter")
+                .tag("route", config.getRouteId() != null ? config.getRouteId() : "unknown")
+                .register(meterRegistry);
+        String replenishRate = Long.toString(limiter.replenishRate());
+        String burstCapacity = Long.toString(limiter.burstCapacity());
+        boolean bySubject = config.getKey() == Key.SUBJECT;
+
+        return (exchange, chain) -> {
+            String key = bySubject
+                    ? keyResolver.resolveSubject(exchange.getRequest())
+                    : keyResolver.resolve(exchange.getRequest());
+            TokenBucketRateLimiter.Decision decision = limiter.tryAcquire(key);
+            ServerHttpResponse response = exchange.getResponse();
+            HttpHeaders headers = response.getHeaders();
+            headers.set(REPLENISH_RATE_HEADER, replenishRate);
+            headers.set(BURST_CAPACITY_HEADER, burstCapacity);
+            headers.set(REMAINING_HEADER, Long.toString(decision.remaining()));
+            if (decision.allowed()) {
+                return chain.filter(exchange);
+            }
+            rejected.increment();
+            // Retry-After is in whole seconds, rounded up so clients that honour it are not rejected again
+            long retryAfterSeconds = Math.max(1, (decision.retryAfterMillis() + 999) / 1000);
+            headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+            response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+            return response.setComplete();
+        };
+    }
+
+    /**
+     * What a client is identified by.
+     */
+    public enum Key {
+        IP, // The (forwarded) client address
+        SUBJECT // The JWT subject; only after JwtValidation
+    }
+
+    /**
+     * Per-route limits.
+     */
+    public static class Config implements HasRouteId {
+
+        private int replenishRate = 10; // Tokens added per second
+        private int burstCapacity = 20; // Maximum tokens a client can spend at once
+        private Key key = Key.IP;
+        private String routeId;
+
+        public int getReplenishRate() {
+            return replenishRate;
+        }
+
+        public void setReplenishRate(int replenishRate) {
+            this.replenishRate = replenishRate;
+        }
+
+        public int getBurstCapacity() {
+            return burstCapacity;
+        }
+
+        public void setBurstCapacity(int burstCapacity) {
+            this.burstCapacity = burstCapacity;
+        }
+
+        public Key getKey() {
+            return key;
+        }
+
+        public void setKey(Key key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+    }
+}
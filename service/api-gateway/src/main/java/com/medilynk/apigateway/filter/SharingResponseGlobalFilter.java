@@ -0,0 +1,44 @@
+package com.medilynk.apigateway.filter;
+
+import com.medilynk.apigateway.coalesce.SharingResponse;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * SharingResponseGlobalFilter wraps the response of every GET in a SharingResponse, so the Coalesce route filter
+ * can share a leader's response with its waiters.
+ *
+ * It must run before NettyWriteResponseFilter, which writes the proxied body to whatever response its exchange
+ * holds; route filters run after it and can't replace that response themselves. The decorator only passes
+ * calls through unless a Coalesce filter attaches a flight, and this filter also ends that flight when the
+ * exchange fails or finishes without sharing its response.
+ */
+@Component
+public class SharingResponseGlobalFilter implements GlobalFilter, Ordered {
+
+    public static final String SHARING_RESPONSE_ATTR = SharingResponseGlobalFilter.class.getName() + ".response";
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (exchange.getRequest().getMethod() != HttpMethod.GET) {
+            return chain.filter(exchange);
+        }
+        SharingResponse response = new SharingResponse(exchange.getResponse());
+        ServerWebExchange sharing = exchange.mutate().response(response).build();
+        sharing.getAttributes().put(SHARING_RESPONSE_ATTR, response);
+        return chain.filter(sharing)
+                .doOnError(response::fail)
+                .doFinally(signal -> response.abandon()); // No-op once the response has been shared
+    }
+
+    @Override
+    public int getOrder() {
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1; // Wrap the filter that writes the response
+    }
+}
@@ -0,0 +1,58 @@
+package com.medilynk.apigateway.filter;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquirePendingLimitException;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquireTimeoutException;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * UpstreamFailureGlobalFilter maps resilience rejections raised anywhere in the filter chain to proper HTTP statuses,
+ * instead of letting them surface as 500 Internal Server Error:
+ * - open circuit breaker, full bulkhead, or no upstream connection available in time (the upstream was not
+ *   called) -> 503 Service Unavailable
+ * - time limit exceeded -> 504 Gateway Timeout
+ *
+ * The CircuitBreaker route filter already does this for its own breaker state and time limit; this covers
+ * the bulkhead and the auth-service call made by JwtValidation.
+ */
+@Component
+public class UpstreamFailureGlobalFilter implements GlobalFilter, Ordered {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        return chain.filter(exchange)
+                .onErrorMap(UpstreamFailureGlobalFilter::isRejection,
+                        error -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, error.getMessage(), error))
+                .onErrorMap(TimeoutException.class,
+                        error -> new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Upstream timed out", error));
+    }
+
+    private static boolean isRejection(Throwable error) {
+        if (error instanceof CallNotPermittedException || error instanceof BulkheadFullException) {
+            return true;
+        }
+        // Connection pool limits (UpstreamConnections); Reactor Netty ships reactor-pool shaded. WebClient and the
+        // circuit breaker wrap them, so look through the causes.
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PoolAcquirePendingLimitException || cause instanceof PoolAcquireTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE; // Wrap every other filter, including route filters
+    }
+}
@@ -0,0 +1,120 @@
+package com.medilynk.apigateway.ratelimit;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Derives the rate-limit key for a request:
+ * - resolve: the client IP address ("ip:<address>"). Behind the load balancer this is the X-Forwarded-For entry
+ *   appended by the outermost trusted proxy (gateway.rate-limit.trusted-proxies hops from the right), i.e. the
+ *   address that connected to the load balancer. Entries to its left come from the client and are ignored, so
+ *   a client can't pick its key by sending its own X-Forwarded-For. Used wherever the request has not been
+ *   authenticated yet, e.g. in front of JwtValidation and on the public auth routes.
+ * - resolveSubject: the subject of the Bearer JWT ("sub:<email>"), so a user is limited the same way from any
+ *   address. The token's signature is not checked here, so this may only be used after JwtValidation has
+ *   accepted the token; otherwise every made-up subject would get a bucket of its own.
+ */
+@Component
+public class ClientKeyResolver {
+
+    private static final String BEARER = "Bearer ";
+    private static final String X_FORWARDED_FOR = "X-Forwarded-For";
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final int trustedProxies;
+
+    /**
+     * @param trustedProxies Proxies in front of the gateway that append to X-Forwarded-For (1 behind the ALB),
+     *                       0 to use the connection's address
+     */
+    public ClientKeyResolver(@Value("${gateway.rate-limit.trusted-proxies:0}") int trustedProxies) {
+        if (trustedProxies < 0) {
+            throw new IllegalArgumentException("gateway.rate-limit.trusted-proxies must not be negative");
+        }
+        this.trustedProxies = trustedProxies;
+    }
+
+    public String resolve(ServerHttpRequest request) {
+        if (trustedProxies > 0) {
+            String forwarded = forwardedAddress(request.getHeaders().getOrEmpty(X_FORWARDED_FOR));
+            if (forwarded != null) {
+                return "ip:" + forwarded;
+            }
+        }
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress != null && remoteAddress.getAddress() != null) {
+            return "ip:" + remoteAddress.getAddress().getHostAddress();
+        }
+        return "ip:unknown";
+    }
+
+    /**
+     * The key of a request whose token JwtValidation has already verified; falls back to the address if the
+     * token has no subject.
+     */
+    public String resolveSubject(ServerHttpRequest request) {
+        String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.startsWith(BEARER)) {
+            String subject = subject(authorization);
+            if (subject != null) {
+                return "sub:" + subject;
+            }
+        }
+        return resolve(request);
+    }
+
+    // The entry trustedProxies hops from the right, across repeated headers; null if the request passed fewer
+    // proxies (e.g. a health check sent straight to the gateway), which then falls back to the connection's address
+    private String forwardedAddress(List<String> headers) {
+        List<String> hops = new ArrayList<>();
+        for (String header : headers) {
+            for (String hop : header.split(",")) {
+                hops.add(hop.strip());
+            }
+        }
+        if (hops.size() < trustedProxies) {
+            return null;
+        }
+        String address = hops.get(hops.size() - trustedProxies);
+        return address.isEmpty() ? null : address;
+    }
+
+    // Reads the "sub" claim from the token payload, or returns null if the token is malformed
+    private static String subject(String authorization) {
+        int payloadStart = authorization.indexOf('.', BEARER.length()) + 1;
+        int payloadEnd = authorization.indexOf('.', payloadStart);
+        if (payloadStart == 0 || payloadEnd < 0) {
+            return null;
+        }
+        try {
+            byte[] payload = Base64.getUrlDecoder().decode(authorization.substring(payloadStart, payloadEnd));
+            try (JsonParser parser = JSON.createParser(payload)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return null;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    boolean isSubject = "sub".equals(parser.currentName());
+                    JsonToken value = parser.nextToken();
+                    if (isSubject) {
+                        return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    }
+                    parser.skipChildren();
+                }
+                return null;
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.medilynk.apigateway.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory token bucket per client key.
+ *
+ * Each bucket is a single AtomicLong holding the time of its last update (milliseconds since the limiter was
+ * created, upper 40 bits) and its token count in thousandths of a token (lower 24 bits). Acquiring a token is
+ * one read and one CAS on that long, so no locks are taken on the request path. Refill is computed lazily from
+ * the elapsed time: at replenishRate tokens per second a bucket gains exactly replenishRate thousandths of a
+ * token per millisecond, so integer arithmetic is exact.
+ *
+ * Memory is bounded in two ways:
+ * - Buckets idle for longer than the idle timeout are removed by a periodic sweep. The timeout is never
+ *   shorter than the time it takes an empty bucket to refill, so an evicted bucket was already full and
+ *   recreating it later is indistinguishable from keeping it.
+ * - Once maxKeys clients are tracked, requests from new keys share a single overflow bucket until the next
+ *   sweep frees room, instead of growing the map without limit.
+ */
+public class TokenBucketRateLimiter {
+
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long MILLI_TOKENS = 1000; // Fixed-point scale: one token is 1000 units
+    private static final String OVERFLOW_KEY = "";
+
+    private final long replenishRate;
+    private final long capacity;
+    private final long idleTimeoutMillis;
+    private final int maxKeys;
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+    private final Executor sweeper;
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflow;
+    private final AtomicLong nextSweepAt;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    /**
+     * @param replenishRate   tokens added per second
+     * @param burstCapacity   maximum tokens a bucket holds, i.e. the largest burst a client can send at once
+     * @param idleTimeout     how long a key may stay unused before its bucket is evicted
+     * @param maxKeys         upper bound on the number of tracked client keys
+     * @param sweeper         runs eviction sweeps, so they don't hold up the request that triggers them
+     * @param nanoClock       monotonic time source in nanoseconds (System::nanoTime outside of tests)
+     */
+    public TokenBucketRateLimiter(int replenishRate, int burstCapacity, long idleTimeout, TimeUnit unit,
+                                  int maxKeys, Executor sweeper, LongSupplier nanoClock) {
+        if (replenishRate < 1) {
+            throw new IllegalArgumentException("replenishRate must be at least 1 token per second");
+        }
+        if (burstCapacity < 1 || burstCapacity * MILLI_TOKENS > TOKEN_MASK) {
+            throw new IllegalArgumentException("burstCapacity must be between 1 and " + TOKEN_MASK / MILLI_TOKENS);
+        }
+        this.replenishRate = replenishRate;
+        this.capacity = burstCapacity * MILLI_TOKENS;
+        long refillMillis = (capacity + replenishRate - 1) / replenishRate;
+        this.idleTimeoutMillis = Math.max(unit.toMillis(idleTimeout), refillMillis);
+        this.maxKeys = maxKeys;
+        this.sweeper = sweeper;
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+        this.overflow = new AtomicLong(pack(0, capacity));
+        this.nextSweepAt = new AtomicLong(idleTimeoutMillis);
+    }
+
+    /**
+     * Takes one token from the bucket of the given client key.
+     */
+    public Decision tryAcquire(String key) {
+        long now = nowMillis();
+        maybeSweep(now);
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = newBucket(key, now);
+        }
+        while (true) {
+            long state = bucket.get();
+            long available = refill(state, now);
+            if (available < MILLI_TOKENS) {
+                // Not enough for a whole token; nothing to write back, the refill is recomputed on the next call
+                long retryAfterMillis = (MILLI_TOKENS - available + replenishRate - 1) / replenishRate;
+                return new Decision(false, 0, retryAfterMillis);
+            }
+            long remaining = available - MILLI_TOKENS;
+            if (bucket.compareAndSet(state, pack(now, remaining))) {
+                return new Decision(true, remaining / MILLI_TOKENS, 0);
+            }
+        }
+    }
+
+    /**
+     * Number of client keys currently tracked.
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    public long replenishRate() {
+        return replenishRate;
+    }
+
+    public long burstCapacity() {
+        return capacity / MILLI_TOKENS;
+    }
+
+    private AtomicLong newBucket(String key, long now) {
+        if (buckets.size() >= maxKeys) {
+            return overflow;
+        }
+        AtomicLong bucket = new AtomicLong(pack(now, capacity));
+        AtomicLong existing = buckets.putIfAbsent(key, bucket);
+        return existing != null ? existing : bucket;
+    }
+
+    private long refill(long state, long now) {
+        long elapsed = now - (state >>> TOKEN_BITS);
+        long tokens = state & TOKEN_MASK;
+        if (elapsed <= 0) {
+            return tokens;
+        }
+        // Clamp before multiplying so a bucket idle for a very long time cannot overflow
+        if (elapsed >= capacity) {
+            return capacity;
+        }
+        return Math.min(capacity, tokens + elapsed * replenishRate);
+    }
+
+    private void maybeSweep(long now) {
+        long due = nextSweepAt.get();
+        // Only the thread that moves the deadline forward schedules the sweep, and only one sweep runs at a time
+        if (now < due || !nextSweepAt.compareAndSet(due, now + idleTimeoutMillis) || !sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        sweeper.execute(() -> {
+            try {
+                long cutoff = nowMillis() - idleTimeoutMillis;
+                // A request racing with the sweep may still take its token from a bucket that was just removed.
+                // Evicted buckets are full, so at worst that client gets one extra token.
+                buckets.entrySet().removeIf(entry -> (entry.getValue().get() >>> TOKEN_BITS) <= cutoff);
+            } finally {
+                sweeping.set(false);
+            }
+        });
+    }
+
+    private long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanoClock.getAsLong() - startNanos);
+    }
+
+    private static long pack(long millis, long tokens) {
+        return (millis << TOKEN_BITS) | tokens;
+    }
+
+    /**
+     * Outcome of tryAcquire.
+     *
+     * @param allowed          whether a token was taken
+     * @param remaining        whole tokens left in the bucket after this request
+     * @param retryAfterMillis when rejected, how long until the bucket holds a whole token again
+     */
+    public record Decision(boolean allowed, long remaining, long retryAfterMillis) {
+    }
+}
@@ -0,0 +1,60 @@
+package com.medilynk.apigateway.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.core.registry.EntryAddedEvent;
+import io.github.resilience4j.core.registry.EntryRemovedEvent;
+import io.github.resilience4j.core.registry.EntryReplacedEvent;
+import io.github.resilience4j.core.registry.RegistryEventConsumer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts circuit breaker state transitions as gateway.circuitbreaker.transitions (tagged name, from, to) and
+ * logs them, so a breaker that opened and closed again between two scrapes still shows up.
+ *
+ * Resilience4j's own meters cover the rest: resilience4j.circuitbreaker.state for the current state and
+ * resilience4j.circuitbreaker.not.permitted.calls for requests short-circuited while open.
+ */
+@Component
+public class CircuitBreakerTransitionMetrics implements RegistryEventConsumer<CircuitBreaker> {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreakerTransitionMetrics.class);
+
+    private final MeterRegistry meterRegistry;
+
+    public CircuitBreakerTransitionMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void onEntryAddedEvent(EntryAddedEvent<CircuitBreaker> entryAddedEvent) {
+        countTransitions(entryAddedEvent.getAddedEntry());
+    }
+
+    @Override
+    public void onEntryRemovedEvent(EntryRemovedEvent<CircuitBreaker> entryRemoveEvent) {
+    }
+
+    @Override
+    public void onEntryReplacedEvent(EntryReplacedEvent<CircuitBreaker> entryReplacedEvent) {
+        countTransitions(entryReplacedEvent.getNewEntry());
+    }
+
+    private void countTransitions(CircuitBreaker circuitBreaker) {
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            CircuitBreaker.StateTransition transition = event.getStateTransition();
+            log.warn("Circuit breaker {} changed from {} to {}",
+                    event.getCircuitBreakerName(), transition.getFromState(), transition.getToState());
+            Counter.builder("gateway.circuitbreaker.transitions")
+                    .description("Circuit breaker state transitions")
+                    .tag("name", event.getCircuitBreakerName())
+                    .tag("from", transition.getFromState().name())
+                    .tag("to", transition.getToState().name())
+                    .register(meterRegistry)
+                    .increment();
+        });
+    }
+}
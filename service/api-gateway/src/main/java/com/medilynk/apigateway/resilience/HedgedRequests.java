@@ -0,0 +1,145 @@
+package com.medilynk.apigateway.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests for idempotent calls to one upstream.
+ *
+ * The first attempt is sent immediately. If it has not answered after the hedge delay, a second identical
+ * attempt is sent and whichever answers first wins; the other is cancelled. The delay tracks the p95 latency
+ * of recent successful attempts, so only the slowest ~5% of calls are hedged, clamped to [minDelay, maxDelay].
+ *
+ * Hedges are also limited by a budget: each call earns one credit and a hedge costs 1 / maxHedgeRatio credits,
+ * so when the upstream is slow for everyone the extra load stays around maxHedgeRatio instead of doubling.
+ *
+ * Only use this for requests that are safe to send twice (GETs).
+ */
+public class HedgedRequests {
+
+    private static final int SAMPLES = 1024;
+    private static final int MIN_SAMPLES = 64; // Until then the p95 is not meaningful, so maxDelay is used
+    private static final int RECOMPUTE_EVERY = 128;
+    private static final long MAX_BURST_HEDGES = 10; // Credits are capped at this many hedges
+
+    private final boolean enabled;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final long hedgeCost;
+
+    // Ring of the latest successful attempt latencies; p95Nanos is refreshed from it every RECOMPUTE_EVERY samples
+    private final AtomicLongArray samples = new AtomicLongArray(SAMPLES);
+    private final AtomicLong recorded = new AtomicLong();
+    private volatile long p95Nanos;
+    private final AtomicLong credits;
+
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+
+    public HedgedRequests(String upstream, boolean enabled, Duration minDelay, Duration maxDelay,
+                          double maxHedgeRatio, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.minDelayNanos = minDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.hedgeCost = Math.max(1, Math.round(1 / maxHedgeRatio));
+        this.p95Nanos = maxDelayNanos;
+        this.credits = new AtomicLong(MAX_BURST_HEDGES * hedgeCost);
+        this.hedgesSent = Counter.builder("gateway.hedged.requests")
+                .description("Hedge attempts sent because the first attempt was slower than the hedge delay")
+                .tag("upstream", upstream)
+                .tag("result", "sent")
+                .register(meterRegistry);
+        this.hedgesWon = Counter.builder("gateway.hedged.requests")
+                .description("Hedge attempts that answered before the first attempt")
+                .tag("upstream", upstream)
+                .tag("result", "won")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the call, hedging it if the first attempt is slow.
+     *
+     * @param attempt creates a new, independent attempt each time it is called
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> attempt) {
+        if (!enabled) {
+            return attempt.get();
+        }
+        return Mono.defer(() -> {
+            earnCredit();
+            Mono<T> primary = timed(attempt.get());
+            Mono<T> hedge = Mono.delay(Duration.ofNanos(hedgeDelayNanos()))
+                    .filter(tick -> spendCredit())
+                    .flatMap(tick -> {
+                        hedgesSent.increment();
+                        return timed(attempt.get()).doOnNext(value -> hedgesWon.increment());
+                    })
+                    // A failed hedge must not win the race; the primary attempt still decides the outcome
+                    .onErrorResume(error -> Mono.never())
+                    // No budget for a hedge: wait for the primary alone
+                    .switchIfEmpty(Mono.never());
+            // First attempt to signal wins; if the primary fails before the delay, its error is returned right away
+            return Mono.firstWithSignal(primary, hedge);
+        });
+    }
+
+    /**
+     * Current hedge delay: the recent p95 latency clamped to [minDelay, maxDelay].
+     */
+    public Duration hedgeDelay() {
+        return Duration.ofNanos(hedgeDelayNanos());
+    }
+
+    private long hedgeDelayNanos() {
+        return Math.min(maxDelayNanos, Math.max(minDelayNanos, p95Nanos));
+    }
+
+    private <T> Mono<T> timed(Mono<T> attempt) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return attempt.doOnSuccess(value -> record(System.nanoTime() - start));
+        });
+    }
+
+    private void record(long latencyNanos) {
+        long n = recorded.getAndIncrement();
+        samples.set((int) (n % SAMPLES), latencyNanos);
+        if (n + 1 >= MIN_SAMPLES && (n + 1) % RECOMPUTE_EVERY == 0) {
+            int count = (int) Math.min(n + 1, SAMPLES);
+            long[] copy = new long[count];
+            for (int i = 0; i < count; i++) {
+                copy[i] = samples.get(i);
+            }
+            Arrays.sort(copy);
+            p95Nanos = copy[(int) (count * 0.95)];
+        }
+    }
+
+    private void earnCredit() {
+        long current;
+        do {
+            current = credits.get();
+            if (current >= MAX_BURST_HEDGES * hedgeCost) {
+                return;
+            }
+        } while (!credits.compareAndSet(current, current + 1));
+    }
+
+    private boolean spendCredit() {
+        long current;
+        do {
+            current = credits.get();
+            if (current < hedgeCost) {
+                return false;
+            }
+        } while (!credits.compareAndSet(current, current - hedgeCost));
+        return true;
+    }
+}
@@ -0,0 +1,26 @@
+package com.medilynk.apigateway.resilience;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Hedging settings for upstream calls made by the gateway itself (as opposed to proxied routes).
+ * Circuit breakers, bulkheads and time limits are configured under resilience4j.* in application.yml.
+ */
+@Configuration
+public class ResilienceConfig {
+
+    @Bean
+    public HedgedRequests authServiceHedging(
+            @Value("${auth.service.hedging.enabled:true}") boolean enabled,
+            @Value("${auth.service.hedging.min-delay:20ms}") Duration minDelay,
+            @Value("${auth.service.hedging.max-delay:500ms}") Duration maxDelay,
+            @Value("${auth.service.hedging.max-ratio:0.1}") double maxRatio,
+            MeterRegistry meterRegistry) {
+        return new HedgedRequests("auth-service", enabled, minDelay, maxDelay, maxRatio, meterRegistry);
+    }
+}
@@ -0,0 +1,132 @@
+package com.medilynk.apigateway.upstream;
+
+import io.netty.channel.ChannelOption;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.Http2AllocationStrategy;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Connection settings shared by every HTTP client the gateway uses to reach its upstreams: the pool behind
+ * the proxied routes and the auth-service client used by JwtValidation.
+ *
+ * - Protocol: h2c (HTTP/2 over cleartext, prior knowledge) by default, so a few multiplexed connections
+ *   carry all concurrent requests to an upstream instead of one connection per in-flight request.
+ *   Set gateway.upstream.protocols=HTTP11 for upstreams that only speak HTTP/1.1.
+ * - Pool: bounded connections per upstream host, a bounded queue of requests waiting for one (Spring Cloud
+ *   Gateway's own pool leaves that queue unbounded), and idle connections closed before the upstream's
+ *   keep-alive timeout (20s on Tomcat) so a request is never sent on a connection the server is closing.
+ *   Over h2c every request goes through that queue to get a stream, also while the first connection to an
+ *   upstream is being opened and while the event loops are busy, so the queue timeout defaults to the
+ *   response timeout rather than something shorter; the bounded queue is what sheds load.
+ * - TCP keepalive, with per-socket timings when the native epoll transport is available (Linux), which
+ *   Reactor Netty then also uses instead of NIO.
+ */
+@Component
+public class UpstreamConnections {
+
+    private static final Logger log = LoggerFactory.getLogger(UpstreamConnections.class);
+
+    private final List<HttpProtocol> protocols;
+    private final int maxConnections;
+    private final int http2MaxConnections;
+    private final int pendingAcquireMaxCount;
+    private final Duration pendingAcquireTimeout;
+    private final Duration maxIdleTime;
+    private final Duration maxLifeTime;
+    private final Duration evictionInterval;
+    private final boolean metrics;
+    private final Duration keepAliveIdle;
+    private final Duration keepAliveInterval;
+    private final int keepAliveCount;
+
+    /**
+     * @param protocols             HTTP protocols offered to upstreams (H2C, HTTP11, or both for an h2c upgrade)
+     * @param maxConnections        Maximum HTTP/1.1 connections per upstream host
+     * @param http2MaxConnections   Maximum HTTP/2 connections per upstream host, each carrying many streams
+     * @param pendingAcquireMaxCount Requests that may wait for a connection before new ones are rejected
+     * @param pendingAcquireTimeout Maximum time a request waits for a connection
+     * @param maxIdleTime           Idle connections are closed after this long
+     * @param maxLifeTime           Connections are closed after this long, so new upstream instances get traffic
+     * @param evictionInterval      How often idle and expired connections are evicted in the background
+     * @param metrics               Whether to publish reactor.netty.connection.provider.* pool metrics
+     * @param keepAliveIdle         Idle time before the first TCP keepalive probe
+     * @param keepAliveInterval     Time between TCP keepalive probes
+     * @param keepAliveCount        Unanswered probes before the connection is dropped
+     */
+    public UpstreamConnections(
+            @Value("${gateway.upstream.protocols:H2C}") List<HttpProtocol> protocols,
+            @Value("${gateway.upstream.pool.max-connections:500}") int maxConnections,
+            @Value("${gateway.upstream.pool.http2-max-connections:8}") int http2MaxConnections,
+            @Value("${gateway.upstream.pool.pending-acquire-max-count:1000}") int pendingAcquireMaxCount,
+            @Value("${gateway.upstream.pool.pending-acquire-timeout:5s}") Duration pendingAcquireTimeout,
+            @Value("${gateway.upstream.pool.max-idle-time:15s}") Duration maxIdleTime,
+            @Value("${gateway.upstream.pool.max-life-time:5m}") Duration maxLifeTime,
+            @Value("${gateway.upstream.pool.eviction-interval:30s}") Duration evictionInterval,
+            @Value("${gateway.upstream.pool.metrics:true}") boolean metrics,
+            @Value("${gateway.upstream.keep-alive.idle:60s}") Duration keepAliveIdle,
+            @Value("${gateway.upstream.keep-alive.interval:15s}") Duration keepAliveInterval,
+            @Value("${gateway.upstream.keep-alive.count:4}") int keepAliveCount) {
+        this.protocols = protocols;
+        this.maxConnections = maxConnections;
+        this.http2MaxConnections = http2MaxConnections;
+        this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+        this.pendingAcquireTimeout = pendingAcquireTimeout;
+        this.maxIdleTime = maxIdleTime;
+        this.maxLifeTime = maxLifeTime;
+        this.evictionInterval = evictionInterval;
+        this.metrics = metrics;
+        this.keepAliveIdle = keepAliveIdle;
+        this.keepAliveInterval = keepAliveInterval;
+        this.keepAliveCount = keepAliveCount;
+        log.info("Upstream protocols {}, native epoll transport {}", protocols,
+                Epoll.isAvailable() ? "enabled" : "unavailable (" + Epoll.unavailabilityCause() + ")");
+    }
+
+    /**
+     * Builds a connection pool; each pool keeps separate limits per upstream host.
+     */
+    public ConnectionProvider connectionProvider(String name) {
+        ConnectionProvider.Builder builder = ConnectionProvider.builder(name)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictionInterval)
+                .metrics(metrics);
+        if (protocols.equals(List.of(HttpProtocol.H2C))) {
+            // Prior-knowledge HTTP/2 only: open a new connection once the existing ones run out of streams
+            builder.allocationStrategy(Http2AllocationStrategy.builder()
+                    .maxConnections(http2MaxConnections)
+                    .minConnections(1)
+                    .build());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Applies the protocol and TCP keepalive settings to a client.
+     */
+    public HttpClient configure(HttpClient client) {
+        HttpClient configured = client
+                .protocol(protocols.toArray(HttpProtocol[]::new))
+                .option(ChannelOption.SO_KEEPALIVE, true);
+        if (Epoll.isAvailable()) {
+            configured = configured
+                    .option(EpollChannelOption.TCP_KEEPIDLE, (int) keepAliveIdle.toSeconds())
+                    .option(EpollChannelOption.TCP_KEEPINTVL, (int) keepAliveInterval.toSeconds())
+                    .option(EpollChannelOption.TCP_KEEPCNT, keepAliveCount);
+        }
+        return configured;
+    }
+}
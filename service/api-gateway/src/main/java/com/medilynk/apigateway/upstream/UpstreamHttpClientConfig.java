@@ -0,0 +1,42 @@
+package com.medilynk.apigateway.upstream;
+
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientFactory;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.List;
+
+/**
+ * Applies UpstreamConnections to the HTTP client behind the proxied routes. Timeouts, SSL and proxy settings
+ * still come from spring.cloud.gateway.httpclient.*; the pool comes from gateway.upstream.pool.* instead of
+ * spring.cloud.gateway.httpclient.pool.*.
+ */
+@Configuration
+public class UpstreamHttpClientConfig {
+
+    // Replaces the gateway's default factory (it backs off when an HttpClientFactory bean exists)
+    @Bean
+    public HttpClientFactory gatewayHttpClientFactory(
+            HttpClientProperties properties,
+            ServerProperties serverProperties,
+            List<HttpClientCustomizer> customizers,
+            HttpClientSslConfigurer sslConfigurer,
+            UpstreamConnections upstreamConnections) {
+        return new HttpClientFactory(properties, serverProperties, sslConfigurer, customizers) {
+            @Override
+            protected ConnectionProvider buildConnectionProvider(HttpClientProperties properties) {
+                return upstreamConnections.connectionProvider("gateway-routes");
+            }
+        };
+    }
+
+    @Bean
+    public HttpClientCustomizer upstreamProtocolCustomizer(UpstreamConnections upstreamConnections) {
+        return upstreamConnections::configure;
+    }
+}
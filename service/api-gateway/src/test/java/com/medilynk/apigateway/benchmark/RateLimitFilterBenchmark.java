@@ -0,0 +1,122 @@
+package com.medilynk.apigateway.benchmark;
+
+import com.medilynk.apigateway.filter.RateLimitGatewayFilterFactory;
+import com.medilynk.apigateway.ratelimit.ClientKeyResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request overhead of the RateLimit filter on the reactive path, measured against running the chain without it.
+ * The limit is set high enough that every request is allowed, so the numbers are the cost paid by normal traffic.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimitFilterBenchmark {
+
+    private static final int CLIENTS = 10_000;
+
+    private final GatewayFilterChain chain = exchange -> Mono.empty();
+    private GatewayFilter filter;
+    private GatewayFilter subjectFilter;
+    private MockServerWebExchange ipExchange;
+    private MockServerWebExchange jwtExchange;
+    private MockServerWebExchange[] clientExchanges;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        RateLimitGatewayFilterFactory factory = new RateLimitGatewayFilterFactory(
+                new ClientKeyResolver(0), new SimpleMeterRegistry(), Duration.ofMinutes(10), 100_000);
+        RateLimitGatewayFilterFactory.Config config = new RateLimitGatewayFilterFactory.Config();
+        config.setReplenishRate(Integer.MAX_VALUE / 2);
+        config.setBurstCapacity(10_000);
+        config.setRouteId("benchmark");
+        filter = factory.apply(config);
+        config.setKey(RateLimitGatewayFilterFactory.Key.SUBJECT);
+        subjectFilter = factory.apply(config);
+
+        ipExchange = exchange("10.0.0.1", null);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String token = "Bearer " + encoder.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString("{\"sub\":\"testuser@test.com\",\"role\":\"ADMIN\",\"iat\":1735689600,\"exp\":1735725600}"
+                .getBytes(StandardCharsets.UTF_8))
+                + ".c2lnbmF0dXJlc2lnbmF0dXJlc2lnbmF0dXJlc2lnbmF0dXJl";
+        jwtExchange = exchange("10.0.0.1", token);
+        clientExchanges = new MockServerWebExchange[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            clientExchanges[i] = exchange("10.1." + (i >> 8) + "." + (i & 0xff), null);
+        }
+    }
+
+    private static MockServerWebExchange exchange(String ip, String authorization) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/api/patients")
+                .remoteAddress(new InetSocketAddress(ip, 40000));
+        if (authorization != null) {
+            request.header(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        return MockServerWebExchange.from(request);
+    }
+
+    @Benchmark
+    public Void withoutFilter() {
+        return chain.filter(ipExchange).block();
+    }
+
+    @Benchmark
+    public Void ipKey() {
+        return filter.filter(ipExchange, chain).block();
+    }
+
+    @Benchmark
+    public Void jwtSubjectKey() {
+        return subjectFilter.filter(jwtExchange, chain).block();
+    }
+
+    @Benchmark
+    public Void manyClients() {
+        MockServerWebExchange exchange = clientExchanges[next];
+        next = (next + 1) % CLIENTS;
+        return filter.filter(exchange, chain).block();
+    }
+
+    /**
+     * Each thread has its own exchange (response headers are not thread-safe), all from the same client,
+     * so every request hits the same bucket.
+     */
+    @State(Scope.Thread)
+    public static class SameClient {
+        private final MockServerWebExchange exchange = exchange("10.0.0.1", null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Void contendedKey(SameClient client) {
+        return filter.filter(client.exchange, chain).block();
+    }
+}
@@ -0,0 +1,145 @@
+package com.medilynk.apigateway.benchmark;
+
+import com.medilynk.apigateway.ApiGatewayApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end latency of GET /api/patients through a running gateway under high concurrency, with the gateway
+ * talking to its upstreams over HTTP/1.1 or h2c (gateway.upstream.protocols). The upstreams are Reactor Netty
+ * stubs that accept both; the patient stub takes 50ms per request, so requests overlap upstream even on a small machine.
+ *
+ * SampleTime reports the latency distribution (p99 in the results); the number of TCP connections the gateway
+ * opened to each stub is printed after every trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class UpstreamProtocolBenchmark {
+
+    @Param({"HTTP11", "H2C"})
+    private String protocol;
+
+    // The gateway's ephemeral ports seen by each stub, i.e. its TCP connections
+    private final Set<String> patientConnections = ConcurrentHashMap.newKeySet();
+    private final Set<String> authConnections = ConcurrentHashMap.newKeySet();
+    private DisposableServer patientService;
+    private DisposableServer authService;
+    private ConfigurableApplicationContext gateway;
+    private HttpClient client;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        patientService = HttpServer.create()
+                .port(0)
+                .protocol(HttpProtocol.HTTP11, HttpProtocol.H2C)
+                .route(routes -> routes.get("/patients", (request, response) -> {
+                    patientConnections.add(String.valueOf(request.remoteAddress()));
+                    return Mono.delay(Duration.ofMillis(50)).then(response.sendString(Mono.just("[]")).then());
+                }))
+                .bindNow();
+        authService = HttpServer.create()
+                .port(0)
+                .protocol(HttpProtocol.HTTP11, HttpProtocol.H2C)
+                .route(routes -> routes.get("/validate", (request, response) -> {
+                    authConnections.add(String.valueOf(request.remoteAddress()));
+                    return response.status(200).send();
+                }))
+                .bindNow();
+        gateway = new SpringApplicationBuilder(ApiGatewayApplication.class)
+                .properties(
+                        "server.port=0",
+                        "logging.level.root=warn",
+                        "patient.service.url=http://localhost:" + patientService.port(),
+                        "auth.service.url=http://localhost:" + authService.port(),
+                        "UPSTREAM_PROTOCOLS=" + protocol, // Default properties lose to application.yml, so set the placeholder
+                        "RATE_LIMIT_PATIENTS_RATE=10000",
+                        "RATE_LIMIT_PATIENTS_BURST=10000",
+                        "RATE_LIMIT_PATIENTS_IP_RATE=10000",
+                        "RATE_LIMIT_PATIENTS_IP_BURST=10000",
+                        "AUTH_SERVICE_MAX_CONCURRENT_CALLS=1000",
+                        "PATIENT_SERVICE_MAX_CONCURRENT_CALLS=1000")
+                .run();
+        int port = ((WebServerApplicationContext) gateway).getWebServer().getPort();
+        baseUrl = "http://localhost:" + port + "/api/patients?request=";
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        // Warm the gateway up at low concurrency first; a cold JVM hit by every thread at once only measures startup
+        for (int i = 0; i < 2_000; i++) {
+            try {
+                client.send(HttpRequest.newBuilder(URI.create(baseUrl + "warm-up-" + i))
+                        .header("Authorization", "Bearer warm-up-" + i % 8)
+                        .build(), HttpResponse.BodyHandlers.discarding());
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException("Warm-up request failed", e);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n%s: %d patient-service and %d auth-service connections%n",
+                protocol, patientConnections.size(), authConnections.size());
+        gateway.close();
+        patientService.disposeNow();
+        authService.disposeNow();
+    }
+
+    /**
+     * One client per benchmark thread, each with its own token, so the Coalesce filter never merges requests.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        private static final AtomicInteger ids = new AtomicInteger();
+        private final String token = "Bearer client-" + ids.incrementAndGet();
+        private final AtomicLong requests = new AtomicLong();
+    }
+
+    @Benchmark
+    public int getPatients(Client caller) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + caller.requests.incrementAndGet()))
+                .header("Authorization", caller.token)
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Gateway returned " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+}
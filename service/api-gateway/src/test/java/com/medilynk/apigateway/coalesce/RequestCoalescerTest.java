@@ -0,0 +1,114 @@
+package com.medilynk.apigateway.coalesce;
+
+import com.medilynk.apigateway.coalesce.RequestCoalescer.BufferedResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestCoalescerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private static BufferedResponse response(HttpStatus status, String cacheControl) {
+        HttpHeaders headers = new HttpHeaders();
+        if (cacheControl != null) {
+            headers.setCacheControl(cacheControl);
+        }
+        return new BufferedResponse(status, headers, "[]".getBytes());
+    }
+
+    @Test
+    void followersReceiveTheLeadersResponse() {
+        RequestCoalescer coalescer = new RequestCoalescer(0, 10, nanos::get);
+
+        RequestCoalescer.Flight leader = coalescer.join("/patients");
+        RequestCoalescer.Flight follower = coalescer.join("/patients");
+        assertTrue(leader.isLeader());
+        assertFalse(follower.isLeader());
+        assertTrue(coalescer.join("/other").isLeader());
+
+        Mono<BufferedResponse> result = follower.result();
+        BufferedResponse response = response(HttpStatus.OK, null);
+        leader.complete(response);
+
+        assertSame(response, result.block());
+        // The flight has ended, so the next request leads a new one
+        assertTrue(coalescer.join("/patients").isLeader());
+    }
+
+    @Test
+    void abandonedFlightCompletesEmpty() {
+        RequestCoalescer coalescer = new RequestCoalescer(0, 10, nanos::get);
+        RequestCoalescer.Flight leader = coalescer.join("/patients");
+        RequestCoalescer.Flight follower = coalescer.join("/patients");
+
+        leader.abandon();
+        leader.complete(response(HttpStatus.OK, null)); // Ignored: the flight already ended
+
+        assertEquals(Optional.empty(), follower.result().blockOptional());
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    void failureIsSharedWithFollowers() {
+        RequestCoalescer coalescer = new RequestCoalescer(0, 10, nanos::get);
+        RequestCoalescer.Flight leader = coalescer.join("/patients");
+        RequestCoalescer.Flight follower = coalescer.join("/patients");
+
+        leader.fail(new IllegalStateException("upstream down"));
+
+        assertThrows(IllegalStateException.class, () -> follower.result().block());
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    void cachesSuccessfulResponsesForTheTtl() {
+        RequestCoalescer coalescer = new RequestCoalescer(Duration.ofMillis(500).toNanos(), 10, nanos::get);
+        BufferedResponse response = response(HttpStatus.OK, "no-cache, private");
+        coalescer.join("/patients").complete(response);
+
+        nanos.addAndGet(Duration.ofMillis(499).toNanos());
+        assertSame(response, coalescer.cached("/patients"));
+
+        nanos.addAndGet(Duration.ofMillis(1).toNanos());
+        assertNull(coalescer.cached("/patients"));
+        assertEquals(0, coalescer.cachedEntries());
+    }
+
+    @Test
+    void neverCachesErrorsOrNoStoreResponses() {
+        RequestCoalescer coalescer = new RequestCoalescer(Duration.ofSeconds(1).toNanos(), 10, nanos::get);
+        coalescer.join("/error").complete(response(HttpStatus.BAD_GATEWAY, null));
+        coalescer.join("/no-store").complete(response(HttpStatus.OK, "no-store"));
+
+        assertNull(coalescer.cached("/error"));
+        assertNull(coalescer.cached("/no-store"));
+    }
+
+    @Test
+    void cacheIsBoundedAndMakesRoomFromExpiredEntries() {
+        RequestCoalescer coalescer = new RequestCoalescer(Duration.ofSeconds(1).toNanos(), 2, nanos::get);
+        coalescer.join("/a").complete(response(HttpStatus.OK, null));
+        coalescer.join("/b").complete(response(HttpStatus.OK, null));
+        coalescer.join("/c").complete(response(HttpStatus.OK, null));
+        assertNull(coalescer.cached("/c")); // Full, and nothing has expired yet
+
+        nanos.addAndGet(Duration.ofSeconds(1).toNanos());
+        coalescer.join("/d").complete(response(HttpStatus.OK, null));
+        assertEquals(1, coalescer.cachedEntries());
+        assertNotNull(coalescer.cached("/d"));
+    }
+}
@@ -0,0 +1,156 @@
+package com.medilynk.apigateway.filter;
+
+import com.medilynk.apigateway.ratelimit.ClientKeyResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RateLimitGatewayFilterFactoryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger forwarded = new AtomicInteger();
+    private final GatewayFilterChain chain = exchange -> {
+        forwarded.incrementAndGet();
+        return Mono.empty();
+    };
+
+    private GatewayFilter filter(int replenishRate, int burstCapacity) {
+        return filter(replenishRate, burstCapacity, RateLimitGatewayFilterFactory.Key.IP);
+    }
+
+    private GatewayFilter filter(int replenishRate, int burstCapacity, RateLimitGatewayFilterFactory.Key key) {
+        RateLimitGatewayFilterFactory factory = new RateLimitGatewayFilterFactory(
+                new ClientKeyResolver(0), meterRegistry, Duration.ofMinutes(10), 1000);
+        RateLimitGatewayFilterFactory.Config config = new RateLimitGatewayFilterFactory.Config();
+        config.setReplenishRate(replenishRate);
+        config.setBurstCapacity(burstCapacity);
+        config.setKey(key);
+        config.setRouteId("test-route");
+        return factory.apply(config);
+    }
+
+    private static MockServerWebExchange fromAddress(String ip) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/patients")
+                .remoteAddress(new InetSocketAddress(ip, 40000)));
+    }
+
+    private static String token(String subject) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return "Bearer " + encoder.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString(("{\"sub\":\"" + subject + "\",\"role\":\"ADMIN\"}").getBytes(StandardCharsets.UTF_8))
+                + ".signature";
+    }
+
+    @Test
+    void rejectsWith429AndRetryAfterOnceBurstIsSpent() {
+        GatewayFilter filter = filter(1, 2);
+
+        MockServerWebExchange first = fromAddress("10.0.0.1");
+        filter.filter(first, chain).block();
+        assertEquals("1", first.getResponse().getHeaders().getFirst(RateLimitGatewayFilterFactory.REMAINING_HEADER));
+        filter.filter(fromAddress("10.0.0.1"), chain).block();
+
+        MockServerWebExchange rejected = fromAddress("10.0.0.1");
+        filter.filter(rejected, chain).block();
+
+        assertEquals(2, forwarded.get());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getResponse().getStatusCode());
+        assertEquals("1", rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1.0, meterRegistry.get("gateway.ratelimit.rejected").tag("route", "test-route").counter().count());
+    }
+
+    @Test
+    void limitsByJwtSubjectAcrossAddresses() {
+        GatewayFilter filter = filter(1, 1, RateLimitGatewayFilterFactory.Key.SUBJECT);
+        String token = token("user@test.com");
+
+        MockServerWebExchange first = MockServerWebExchange.from(MockServerHttpRequest.get("/api/patients")
+                .header(HttpHeaders.AUTHORIZATION, token)
+                .remoteAddress(new InetSocketAddress("10.0.0.1", 40000)));
+        MockServerWebExchange second = MockServerWebExchange.from(MockServerHttpRequest.get("/api/patients")
+                .header(HttpHeaders.AUTHORIZATION, token)
+                .remoteAddress(new InetSocketAddress("10.0.0.2", 40000)));
+        filter.filter(first, chain).block();
+        filter.filter(second, chain).block();
+
+        assertNull(first.getResponse().getStatusCode());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, second.getResponse().getStatusCode());
+    }
+
+    @Test
+    void ignoresClientChosenKeysInFrontOfAuthentication() {
+        GatewayFilter filter = filter(1, 1);
+
+        // A different made-up subject and API key on every request still counts against the one address
+        for (int i = 0; i < 3; i++) {
+            MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/patients")
+                    .header(HttpHeaders.AUTHORIZATION, token("forged-" + i + "@test.com"))
+                    .header("X-API-Key", "key-" + i)
+                    .remoteAddress(new InetSocketAddress("10.0.0.1", 40000)));
+            filter.filter(exchange, chain).block();
+        }
+
+        assertEquals(1, forwarded.get());
+    }
+
+    @Test
+    void resolvesAddressOrVerifiedSubject() {
+        ClientKeyResolver resolver = new ClientKeyResolver(0);
+        MockServerHttpRequest withToken = MockServerHttpRequest.get("/")
+                .header(HttpHeaders.AUTHORIZATION, token("user@test.com"))
+                .remoteAddress(new InetSocketAddress("10.0.0.1", 40000))
+                .build();
+
+        assertEquals("ip:10.0.0.1", resolver.resolve(withToken));
+        assertEquals("sub:user@test.com", resolver.resolveSubject(withToken));
+        assertEquals("ip:10.0.0.1", resolver.resolveSubject(MockServerHttpRequest.get("/")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer not-a-jwt")
+                .remoteAddress(new InetSocketAddress("10.0.0.1", 40000))
+                .build()));
+    }
+
+    @Test
+    void keysOnTheAddressAppendedByTheTrustedProxy() {
+        ClientKeyResolver behindLoadBalancer = new ClientKeyResolver(1);
+        InetSocketAddress loadBalancer = new InetSocketAddress("10.0.1.5", 40000);
+
+        // Whatever the client puts in front, the load balancer appends the address it connected from
+        assertEquals("ip:203.0.113.7", behindLoadBalancer.resolve(MockServerHttpRequest.get("/auth/login")
+                .header("X-Forwarded-For", "203.0.113.7")
+                .remoteAddress(loadBalancer)
+                .build()));
+        assertEquals("ip:203.0.113.7", behindLoadBalancer.resolve(MockServerHttpRequest.get("/auth/login")
+                .header("X-Forwarded-For", "198.51.100.1, 198.51.100.2")
+                .header("X-Forwarded-For", "203.0.113.7")
+                .remoteAddress(loadBalancer)
+                .build()));
+        // Two proxies: the second appended the first one's address
+        assertEquals("ip:203.0.113.7", new ClientKeyResolver(2).resolve(MockServerHttpRequest.get("/auth/login")
+                .header("X-Forwarded-For", "198.51.100.1, 203.0.113.7, 10.0.2.9")
+                .remoteAddress(loadBalancer)
+                .build()));
+        // Not through the load balancer, or no proxy configured: the connection's address
+        assertEquals("ip:10.0.1.5", behindLoadBalancer.resolve(MockServerHttpRequest.get("/auth/login")
+                .remoteAddress(loadBalancer)
+                .build()));
+        assertEquals("ip:10.0.1.5", new ClientKeyResolver(0).resolve(MockServerHttpRequest.get("/auth/login")
+                .header("X-Forwarded-For", "203.0.113.7")
+                .remoteAddress(loadBalancer)
+                .build()));
+    }
+}
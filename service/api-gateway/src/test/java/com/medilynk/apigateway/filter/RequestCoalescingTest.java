@@ -0,0 +1,140 @@
+package com.medilynk.apigateway.filter;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Thundering herd against a slow stub patient-service: many clients request the same list at once, as after a
+ * dashboard refresh, and the Coalesce filter should turn them into (close to) one upstream call.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "RATE_LIMIT_PATIENTS_RATE=10000",
+        "RATE_LIMIT_PATIENTS_BURST=10000",
+        "RATE_LIMIT_PATIENTS_IP_RATE=10000",
+        "RATE_LIMIT_PATIENTS_IP_BURST=10000",
+        "COALESCE_PATIENTS_MAX_BODY=4KB"
+})
+class RequestCoalescingTest {
+
+    private static final int HERD_SIZE = 100;
+    private static final String PATIENTS = "[{\"id\":\"1\",\"name\":\"John Doe\"}]";
+    private static final String LARGE_BODY = "x".repeat(16 * 1024); // Over the 4KB limit set above
+
+    private static final AtomicInteger patientCalls = new AtomicInteger();
+    private static DisposableServer patientService;
+    private static DisposableServer authService;
+
+    @DynamicPropertySource
+    static void upstreams(DynamicPropertyRegistry registry) {
+        patientService = HttpServer.create()
+                .port(0)
+                .protocol(HttpProtocol.H2C) // h2c, like the Tomcat services
+                .route(routes -> routes
+                        .get("/patients", (request, response) -> {
+                            patientCalls.incrementAndGet();
+                            // Slow enough that the whole herd arrives while the first call is in progress
+                            return Mono.delay(Duration.ofMillis(300))
+                                    .then(response.header(HttpHeaders.CONTENT_TYPE, "application/json")
+                                            .sendString(Mono.just(PATIENTS)).then());
+                        })
+                        .get("/patients/large", (request, response) -> {
+                            patientCalls.incrementAndGet();
+                            return Mono.delay(Duration.ofMillis(300))
+                                    .then(response.sendString(Mono.just(LARGE_BODY)).then());
+                        }))
+                .bindNow();
+        authService = HttpServer.create()
+                .port(0)
+                .protocol(HttpProtocol.H2C)
+                .route(routes -> routes.get("/validate", (request, response) -> response.status(200).send()))
+                .bindNow();
+        registry.add("patient.service.url", () -> "http://localhost:" + patientService.port());
+        registry.add("auth.service.url", () -> "http://localhost:" + authService.port());
+    }
+
+    @AfterAll
+    static void stopUpstreams() {
+        patientService.disposeNow();
+        authService.disposeNow();
+    }
+
+    @LocalServerPort
+    private int port;
+
+    private WebClient client;
+
+    @BeforeEach
+    void warmUp() {
+        client = WebClient.create("http://localhost:" + port);
+        // Open connections first, so the herd is not spread out by connection setup
+        herd(i -> "Bearer warm-up-" + i, "/api/patients?warm-up={n}");
+        patientCalls.set(0);
+    }
+
+    private List<ResponseEntity<String>> herd(IntFunction<String> authorization, String uri) {
+        return Flux.range(0, HERD_SIZE)
+                .flatMap(i -> client.get()
+                        .uri(uri, i)
+                        .header(HttpHeaders.AUTHORIZATION, authorization.apply(i))
+                        .retrieve()
+                        .toEntity(String.class), HERD_SIZE)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void identicalRequestsShareOneUpstreamCall() {
+        List<ResponseEntity<String>> responses = herd(i -> "Bearer same-token", "/api/patients");
+
+        assertEquals(HERD_SIZE, responses.size());
+        for (ResponseEntity<String> response : responses) {
+            assertEquals(200, response.getStatusCode().value());
+            assertEquals(PATIENTS, response.getBody());
+            assertEquals("application/json", response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+            // Each client still gets its own rate-limit headers
+            assertTrue(response.getHeaders().containsKey(RateLimitGatewayFilterFactory.REMAINING_HEADER));
+        }
+        int calls = patientCalls.get();
+        assertTrue(calls <= 3, "upstream calls: " + calls);
+    }
+
+    @Test
+    void requestsWithDifferentCredentialsAreNotShared() {
+        List<ResponseEntity<String>> responses = herd(i -> "Bearer token-" + i, "/api/patients");
+
+        assertEquals(HERD_SIZE, responses.size());
+        assertEquals(HERD_SIZE, patientCalls.get());
+    }
+
+    @Test
+    void responsesOverTheSizeLimitAreNotShared() {
+        List<ResponseEntity<String>> responses = herd(i -> "Bearer same-token", "/api/patients/large");
+
+        for (ResponseEntity<String> response : responses) {
+            assertEquals(LARGE_BODY, response.getBody());
+        }
+        // Waiters are released to make their own calls once the leader's response passes the limit
+        assertEquals(HERD_SIZE, patientCalls.get());
+    }
+}
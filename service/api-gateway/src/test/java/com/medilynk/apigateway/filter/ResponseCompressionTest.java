@@ -0,0 +1,150 @@
+package com.medilynk.apigateway.filter;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.decoder.Decoder;
+import com.aayushatharva.brotli4j.decoder.DecoderJNI;
+import com.aayushatharva.brotli4j.decoder.DirectDecompress;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the gateway compresses JSON responses with the encoding the client asks for, and that
+ * conditional requests pass through to the upstream untouched.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "RATE_LIMIT_PATIENTS_RATE=10000",
+        "RATE_LIMIT_PATIENTS_BURST=10000",
+        "RATE_LIMIT_PATIENTS_IP_RATE=10000",
+        "RATE_LIMIT_PATIENTS_IP_BURST=10000"
+})
+class ResponseCompressionTest {
+
+    private static final String ETAG = "\"patients-42\"";
+    // A patient list page, large enough to pass the minimum response size
+    private static final byte[] PATIENTS = IntStream.range(0, 100)
+            .mapToObj(i -> "{\"id\":\"" + i + "\",\"name\":\"Patient " + i + "\",\"email\":\"patient" + i
+                    + "@example.com\",\"address\":\"" + i + " Main Street\",\"dateOfBirth\":\"1990-01-01\"}")
+            .collect(Collectors.joining(",", "[", "]"))
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static DisposableServer patientService;
+    private static DisposableServer authService;
+
+    @DynamicPropertySource
+    static void upstreams(DynamicPropertyRegistry registry) {
+        patientService = HttpServer.create()
+                .port(0)
+                .protocol(HttpProtocol.H2C) // h2c, like the Tomcat services
+                .route(routes -> routes.get("/patients", (request, response) -> {
+                    if (ETAG.equals(request.requestHeaders().get(HttpHeaders.IF_NONE_MATCH))) {
+                        return response.status(304).header(HttpHeaders.ETAG, ETAG).send();
+                    }
+                    return response.header(HttpHeaders.CONTENT_TYPE, "application/json")
+                            .header(HttpHeaders.ETAG, ETAG)
+                            .sendByteArray(Mono.just(PATIENTS))
+                            .then();
+                }))
+                .bindNow();
+        authService = HttpServer.create()
+                .port(0)
+                .protocol(HttpProtocol.H2C)
+                .route(routes -> routes.get("/validate", (request, response) -> response.status(200).send()))
+                .bindNow();
+        registry.add("patient.service.url", () -> "http://localhost:" + patientService.port());
+        registry.add("auth.service.url", () -> "http://localhost:" + authService.port());
+    }
+
+    @AfterAll
+    static void stopUpstreams() {
+        patientService.disposeNow();
+        authService.disposeNow();
+    }
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    // The JDK client, because WebClient transparently decompresses and hides Content-Encoding
+    private HttpResponse<byte[]> getPatients(String acceptEncoding, String ifNoneMatch) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/patients"))
+                .header(HttpHeaders.AUTHORIZATION, "Bearer test-token");
+        if (acceptEncoding != null) {
+            request.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        if (ifNoneMatch != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static String header(HttpResponse<?> response, String name) {
+        return response.headers().firstValue(name).orElse(null);
+    }
+
+    @Test
+    void prefersBrotliWhenAccepted() throws Exception {
+        Brotli4jLoader.ensureAvailability();
+
+        HttpResponse<byte[]> response = getPatients("gzip, deflate, br", null);
+
+        assertEquals("br", header(response, HttpHeaders.CONTENT_ENCODING));
+        assertEquals(ETAG, header(response, HttpHeaders.ETAG));
+        assertTrue(response.body().length < PATIENTS.length / 4, "compressed to " + response.body().length);
+        DirectDecompress decompressed = Decoder.decompress(response.body());
+        assertEquals(DecoderJNI.Status.DONE, decompressed.getResultStatus());
+        assertArrayEquals(PATIENTS, decompressed.getDecompressedData());
+    }
+
+    @Test
+    void fallsBackToGzip() throws Exception {
+        HttpResponse<byte[]> response = getPatients("gzip", null);
+
+        assertEquals("gzip", header(response, HttpHeaders.CONTENT_ENCODING));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            assertArrayEquals(PATIENTS, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void leavesResponseUncompressedWithoutAcceptEncoding() throws Exception {
+        HttpResponse<byte[]> response = getPatients(null, null);
+
+        assertNull(header(response, HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(PATIENTS, response.body());
+    }
+
+    @Test
+    void passesConditionalRequestsThrough() throws Exception {
+        HttpResponse<byte[]> response = getPatients("gzip, br", ETAG);
+
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.statusCode());
+        assertEquals(ETAG, header(response, HttpHeaders.ETAG));
+        assertEquals(0, response.body().length);
+    }
+}
@@ -0,0 +1,204 @@
+package com.medilynk.apigateway.filter;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the gateway against local stub upstreams that can be made slow or failing, and checks that
+ * latency stays bounded by the time limits, bulkheads and circuit breakers.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "resilience4j.timelimiter.instances.patient-service.timeout-duration=2s",
+        "resilience4j.circuitbreaker.instances.patient-service.sliding-window-size=10",
+        "resilience4j.circuitbreaker.instances.patient-service.minimum-number-of-calls=5",
+        "resilience4j.circuitbreaker.instances.patient-service.wait-duration-in-open-state=1m",
+        "resilience4j.bulkhead.instances.patient-service.max-concurrent-calls=4",
+        "auth.service.hedging.max-delay=200ms",
+        "RATE_LIMIT_PATIENTS_RATE=10000",
+        "RATE_LIMIT_PATIENTS_BURST=10000",
+        "RATE_LIMIT_PATIENTS_IP_RATE=10000",
+        "RATE_LIMIT_PATIENTS_IP_BURST=10000"
+})
+class UpstreamResilienceTest {
+
+    private static final String TOKEN = "Bearer test-token";
+
+    // What the stub patient-service does with the next requests
+    private static final AtomicReference<Duration> patientDelay = new AtomicReference<>(Duration.ZERO);
+    private static final AtomicInteger patientStatus = new AtomicInteger(200);
+    private static final AtomicInteger patientCalls = new AtomicInteger();
+    // When set, the next /validate call hangs for 3s
+    private static final AtomicBoolean slowNextValidation = new AtomicBoolean();
+    private static final AtomicInteger validateCalls = new AtomicInteger();
+
+    private static DisposableServer patientService;
+    private static DisposableServer authService;
+
+    @DynamicPropertySource
+    static void upstreams(DynamicPropertyRegistry registry) {
+        patientService = HttpServer.create()
+                .port(0)
+                .protocol(HttpProtocol.H2C) // h2c, like the Tomcat services
+                .route(routes -> routes.get("/patients", (request, response) -> {
+                    patientCalls.incrementAndGet();
+                    return Mono.delay(patientDelay.get())
+                            .then(response.status(patientStatus.get()).sendString(Mono.just("[]")).then());
+                }))
+                .bindNow();
+        authService = HttpServer.create()
+                .port(0)
+                .protocol(HttpProtocol.H2C)
+                .route(routes -> routes.get("/validate", (request, response) -> {
+                    validateCalls.incrementAndGet();
+                    Duration delay = slowNextValidation.getAndSet(false) ? Duration.ofSeconds(3) : Duration.ZERO;
+                    return Mono.delay(delay).then(response.status(200).send());
+                }))
+                .bindNow();
+        registry.add("patient.service.url", () -> "http://localhost:" + patientService.port());
+        registry.add("auth.service.url", () -> "http://localhost:" + authService.port());
+    }
+
+    @AfterAll
+    static void stopUpstreams() {
+        patientService.disposeNow();
+        authService.disposeNow();
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private WebClient client;
+    private final AtomicInteger requestCounter = new AtomicInteger();
+
+    @BeforeEach
+    void reset() {
+        patientDelay.set(Duration.ZERO);
+        patientStatus.set(200);
+        slowNextValidation.set(false);
+        circuitBreakerRegistry.circuitBreaker("patient-service").reset();
+        client = WebClient.create("http://localhost:" + port);
+        // Warm up connection pools so the latency assertions measure the gateway, not connection setup
+        Flux.range(0, 4).flatMap(i -> getPatients()).blockLast();
+        patientCalls.set(0);
+        validateCalls.set(0);
+    }
+
+    private Mono<Result> getPatients() {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return client.get()
+                    // A distinct query per request, so the Coalesce filter doesn't merge concurrent requests
+                    .uri("/api/patients?request={n}", requestCounter.incrementAndGet())
+                    .header(HttpHeaders.AUTHORIZATION, TOKEN)
+                    .exchangeToMono(response -> response.releaseBody()
+                            .thenReturn(new Result(response.statusCode(), Duration.ofNanos(System.nanoTime() - start))));
+        });
+    }
+
+    @Test
+    void slowUpstreamIsCutOffAtTimeLimit() {
+        patientDelay.set(Duration.ofSeconds(10));
+
+        List<Result> results = Flux.range(0, 4).flatMap(i -> getPatients()).collectList().block();
+
+        for (Result result : results) {
+            assertEquals(HttpStatus.GATEWAY_TIMEOUT, result.status());
+            assertTrue(result.latency().compareTo(Duration.ofSeconds(3)) < 0, "latency " + result.latency());
+        }
+    }
+
+    @Test
+    void bulkheadRejectsExcessConcurrentCalls() {
+        patientDelay.set(Duration.ofSeconds(1)); // Slow, but within the 2s time limit
+
+        List<Result> results = Flux.range(0, 10).flatMap(i -> getPatients()).collectList().block();
+
+        long ok = results.stream().filter(result -> result.status().value() == 200).count();
+        long rejected = results.stream().filter(result -> result.status() == HttpStatus.SERVICE_UNAVAILABLE).count();
+        assertEquals(4, ok);
+        assertEquals(6, rejected);
+        // Rejected calls never reached the upstream and did not wait for it
+        assertEquals(4, patientCalls.get());
+        results.stream()
+                .filter(result -> result.status() == HttpStatus.SERVICE_UNAVAILABLE)
+                .forEach(result -> assertTrue(result.latency().compareTo(Duration.ofMillis(700)) < 0, "latency " + result.latency()));
+    }
+
+    @Test
+    void failingUpstreamOpensCircuitBreaker() {
+        double opened = count("gateway.circuitbreaker.transitions", "name", "patient-service", "from", "CLOSED", "to", "OPEN");
+        double notPermitted = count("resilience4j.circuitbreaker.not.permitted.calls", "name", "patient-service");
+        patientStatus.set(500);
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker("patient-service");
+        // The window also holds the successful warm-up calls: the breaker opens once half of the calls failed
+        for (int i = 0; i < 10 && circuitBreaker.getState() == CircuitBreaker.State.CLOSED; i++) {
+            assertEquals(500, getPatients().block().status().value());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        int upstreamCalls = patientCalls.get();
+
+        Result shortCircuited = getPatients().block();
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, shortCircuited.status());
+        assertEquals(upstreamCalls, patientCalls.get());
+        assertEquals(opened + 1, count("gateway.circuitbreaker.transitions", "name", "patient-service", "from", "CLOSED", "to", "OPEN"));
+        assertEquals(notPermitted + 1, count("resilience4j.circuitbreaker.not.permitted.calls", "name", "patient-service"));
+    }
+
+    @Test
+    void slowTokenValidationIsHedged() {
+        double hedgesWon = count("gateway.hedged.requests", "result", "won");
+        slowNextValidation.set(true);
+
+        Result result = getPatients().block();
+
+        // The first /validate attempt hangs for 3s; the hedge sent after 200ms answers instead
+        assertEquals(200, result.status().value());
+        assertTrue(result.latency().compareTo(Duration.ofSeconds(1)) < 0, "latency " + result.latency());
+        assertEquals(2, validateCalls.get());
+        assertEquals(hedgesWon + 1, count("gateway.hedged.requests", "result", "won"));
+    }
+
+    // Current value of a counter, 0 if it has not been registered yet
+    private double count(String name, String... tags) {
+        Counter counter = meterRegistry.find(name).tags(tags).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private record Result(HttpStatusCode status, Duration latency) {
+    }
+}
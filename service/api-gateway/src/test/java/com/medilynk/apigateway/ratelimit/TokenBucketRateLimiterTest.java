@@ -0,0 +1,122 @@
+package com.medilynk.apigateway.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketRateLimiterTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private TokenBucketRateLimiter limiter(int rate, int burst, int maxKeys) {
+        return new TokenBucketRateLimiter(rate, burst, 1, TimeUnit.MINUTES, maxKeys, Runnable::run, nanos::get);
+    }
+
+    private void advanceMillis(long millis) {
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    void allowsBurstThenRejectsWithRetryAfter() {
+        TokenBucketRateLimiter limiter = limiter(2, 3, 100);
+
+        assertEquals(2, limiter.tryAcquire("a").remaining());
+        assertEquals(1, limiter.tryAcquire("a").remaining());
+        assertEquals(0, limiter.tryAcquire("a").remaining());
+
+        TokenBucketRateLimiter.Decision rejected = limiter.tryAcquire("a");
+        assertFalse(rejected.allowed());
+        // 2 tokens per second: the next whole token is 500ms away
+        assertEquals(500, rejected.retryAfterMillis());
+
+        advanceMillis(499);
+        assertFalse(limiter.tryAcquire("a").allowed());
+        assertEquals(1, limiter.tryAcquire("a").retryAfterMillis());
+        advanceMillis(1);
+        assertTrue(limiter.tryAcquire("a").allowed());
+    }
+
+    @Test
+    void keepsSeparateBucketsPerKey() {
+        TokenBucketRateLimiter limiter = limiter(1, 1, 100);
+
+        assertTrue(limiter.tryAcquire("a").allowed());
+        assertFalse(limiter.tryAcquire("a").allowed());
+        assertTrue(limiter.tryAcquire("b").allowed());
+    }
+
+    @Test
+    void refillIsCappedAtBurstCapacity() {
+        TokenBucketRateLimiter limiter = limiter(10, 5, 100);
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire("a");
+        }
+
+        advanceMillis(TimeUnit.DAYS.toMillis(365));
+
+        assertEquals(4, limiter.tryAcquire("a").remaining());
+    }
+
+    @Test
+    void evictsIdleKeys() {
+        TokenBucketRateLimiter limiter = limiter(1, 1, 100);
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("b");
+        assertEquals(2, limiter.size());
+
+        advanceMillis(TimeUnit.MINUTES.toMillis(1));
+        // Sweeps are triggered by requests; "c" is the only recently used key afterwards
+        limiter.tryAcquire("c");
+
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    void newKeysShareOverflowBucketWhenFull() {
+        TokenBucketRateLimiter limiter = limiter(1, 1, 2);
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("b");
+
+        assertTrue(limiter.tryAcquire("c").allowed());
+        assertFalse(limiter.tryAcquire("d").allowed());
+        assertEquals(2, limiter.size());
+    }
+
+    @Test
+    void concurrentCallersNeverExceedCapacity() throws InterruptedException {
+        TokenBucketRateLimiter limiter = limiter(1, 10_000, 100);
+        AtomicInteger allowed = new AtomicInteger();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < 5_000; i++) {
+                    if (limiter.tryAcquire("shared").allowed()) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        // The clock is frozen, so exactly the burst capacity is handed out across all threads
+        assertEquals(10_000, allowed.get());
+    }
+}
@@ -0,0 +1,104 @@
+package com.medilynk.apigateway.upstream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the gateway against upstreams that only accept h2c with prior knowledge, as the Tomcat services do with
+ * server.http2.enabled, and checks that concurrent requests are multiplexed over a few connections.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "RATE_LIMIT_PATIENTS_RATE=10000",
+        "RATE_LIMIT_PATIENTS_BURST=10000",
+        "RATE_LIMIT_PATIENTS_IP_RATE=10000",
+        "RATE_LIMIT_PATIENTS_IP_BURST=10000"
+})
+class UpstreamHttp2Test {
+
+    private static final int CONCURRENCY = 100;
+
+    // The gateway's ephemeral ports seen by each stub, i.e. its TCP connections (streams share their connection's)
+    private static final Set<String> patientConnections = ConcurrentHashMap.newKeySet();
+    private static final Set<String> authConnections = ConcurrentHashMap.newKeySet();
+    private static final Set<String> protocolsSeen = ConcurrentHashMap.newKeySet();
+    private static DisposableServer patientService;
+    private static DisposableServer authService;
+
+    @DynamicPropertySource
+    static void upstreams(DynamicPropertyRegistry registry) {
+        patientService = HttpServer.create()
+                .port(0)
+                .protocol(HttpProtocol.H2C)
+                .route(routes -> routes.get("/patients", (request, response) -> {
+                    protocolsSeen.add(request.protocol());
+                    patientConnections.add(String.valueOf(request.remoteAddress()));
+                    return Mono.delay(Duration.ofMillis(50)).then(response.sendString(Mono.just("[]")).then());
+                }))
+                .bindNow();
+        authService = HttpServer.create()
+                .port(0)
+                .protocol(HttpProtocol.H2C)
+                .route(routes -> routes.get("/validate", (request, response) -> {
+                    protocolsSeen.add(request.protocol());
+                    authConnections.add(String.valueOf(request.remoteAddress()));
+                    return response.status(200).send();
+                }))
+                .bindNow();
+        registry.add("patient.service.url", () -> "http://localhost:" + patientService.port());
+        registry.add("auth.service.url", () -> "http://localhost:" + authService.port());
+    }
+
+    @AfterAll
+    static void stopUpstreams() {
+        patientService.disposeNow();
+        authService.disposeNow();
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void multiplexesConcurrentRequestsOverFewH2cConnections() {
+        WebClient client = WebClient.create("http://localhost:" + port);
+        // One request first, so the burst below measures multiplexing rather than a cold JVM opening connections
+        client.get().uri("/api/patients?request=warm-up")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer warm-up")
+                .retrieve().toBodilessEntity().block(Duration.ofSeconds(10));
+
+        List<ResponseEntity<String>> responses = Flux.range(0, CONCURRENCY)
+                .flatMap(i -> client.get()
+                        .uri("/api/patients?request={n}", i) // Distinct, so the Coalesce filter doesn't merge them
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer token-" + i)
+                        .retrieve()
+                        .toEntity(String.class), CONCURRENCY)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+
+        assertEquals(CONCURRENCY, responses.size());
+        responses.forEach(response -> assertEquals("[]", response.getBody()));
+        assertEquals(Set.of("HTTP/2.0"), protocolsSeen);
+        // Bounded by gateway.upstream.pool.http2-max-connections (8), instead of one connection per request
+        assertTrue(patientConnections.size() <= 8, "patient-service connections: " + patientConnections);
+        assertTrue(authConnections.size() <= 8, "auth-service connections: " + authConnections);
+    }
+}
@@ -0,0 +1,25 @@
+package com.medilynk.authservice.datasource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The primary pool as seen by read-write transactions: every connection handed out is recorded as a write in
+ * ReadRouting. Read-only transactions that fall back to the primary get their connections from the pool
+ * directly, so they aren't counted.
+ */
+public class PrimaryWriteTrackingDataSource extends DelegatingDataSource {
+
+    public PrimaryWriteTrackingDataSource(DataSource primary) {
+        super(primary);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        ReadRouting.recordWrite();
+        return super.getConnection();
+    }
+}
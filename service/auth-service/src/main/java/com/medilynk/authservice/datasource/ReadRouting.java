@@ -0,0 +1,53 @@
+package com.medilynk.authservice.datasource;
+
+/**
+ * Per-thread routing state of the current request, set by ReadYourWritesFilter and PrimaryWriteTrackingDataSource
+ * and cleared by ReadYourWritesFilter:
+ * - useReplica: read-only transactions go to the replica. Decided once when the request starts, and only ever
+ *   changed to the primary afterwards; threads without a decision (e.g. startup) read from the primary;
+ * - wrote: a read-write transaction has used the primary. Only tracked between beginRequest() and clear(), so
+ *   threads outside requests (e.g. startup) are never left pinned.
+ */
+public final class ReadRouting {
+
+    private static final ThreadLocal<Boolean> USE_REPLICA = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> WROTE = new ThreadLocal<>(); // Unset outside requests
+
+    private ReadRouting() {
+    }
+
+    public static void useReplica() {
+        USE_REPLICA.set(Boolean.TRUE);
+    }
+
+    public static void pinToPrimary() {
+        USE_REPLICA.set(Boolean.FALSE);
+    }
+
+    public static boolean isReplicaAllowed() {
+        return Boolean.TRUE.equals(USE_REPLICA.get());
+    }
+
+    public static void beginRequest() {
+        WROTE.set(Boolean.FALSE);
+    }
+
+    /**
+     * Records a read-write transaction, and sends the rest of the request's reads to the primary so they see it.
+     */
+    public static void recordWrite() {
+        if (WROTE.get() != null) {
+            WROTE.set(Boolean.TRUE);
+            pinToPrimary();
+        }
+    }
+
+    public static boolean wrote() {
+        return Boolean.TRUE.equals(WROTE.get());
+    }
+
+    public static void clear() {
+        USE_REPLICA.remove();
+        WROTE.remove();
+    }
+}
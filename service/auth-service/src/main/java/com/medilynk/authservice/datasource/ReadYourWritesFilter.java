@@ -0,0 +1,77 @@
+package com.medilynk.authservice.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides per request whether its read-only transactions may use the replica. They go to the primary when:
+ * - the same client ran a read-write transaction less than window ago, so it sees its own changes;
+ * - the replica is not usable when the request starts, so a request never moves from the primary to an
+ *   older replica halfway. The decision is kept in ReadRouting, which ReplicaFallbackDataSource routes on.
+ * Writes are detected from the transactions themselves rather than the HTTP method, since POST /login only
+ * reads.
+ *
+ * Clients are told apart by their Authorization header, else by address. The window should cover the largest
+ * lag the replica is used at plus the lag check interval. Writes are remembered by each instance, so
+ * stickiness holds as long as the client's requests reach the same instance.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private static final int PURGE_THRESHOLD = 10_000; // Remembered clients before expired entries are dropped
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final long windowNanos;
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>(); // Client -> System.nanoTime() of its last write
+
+    public ReadYourWritesFilter(ReplicaLagMonitor lagMonitor, Duration window) {
+        this.lagMonitor = lagMonitor;
+        this.windowNanos = window.toNanos();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String client = clientKey(request);
+        ReadRouting.beginRequest();
+        if (wroteRecently(client) || !lagMonitor.isReplicaUsable()) {
+            ReadRouting.pinToPrimary();
+        } else {
+            ReadRouting.useReplica();
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (ReadRouting.wrote()) {
+                recordWrite(client);
+            }
+            ReadRouting.clear();
+        }
+    }
+
+    private boolean wroteRecently(String client) {
+        Long lastWrite = lastWrites.get(client);
+        return lastWrite != null && System.nanoTime() - lastWrite < windowNanos;
+    }
+
+    private void recordWrite(String client) {
+        long now = System.nanoTime();
+        if (lastWrites.size() >= PURGE_THRESHOLD) {
+            lastWrites.values().removeIf(lastWrite -> now - lastWrite >= windowNanos);
+        }
+        lastWrites.put(client, now);
+    }
+
+    private static String clientKey(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return authorization != null ? authorization : request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,55 @@
+package com.medilynk.authservice.datasource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Connections for read-only transactions: from the replica if ReadRouting allows it for the current request,
+ * else from the primary. Whether the replica is lagging (ReplicaLagMonitor) is part of that decision and is not
+ * checked again here, so a request doesn't switch sources when the lag changes halfway. A replica connection
+ * that can't be obtained is replaced by a primary one, so a replica outage never fails a read; the rest of the
+ * request then stays on the primary.
+ */
+public class ReplicaFallbackDataSource extends AbstractDataSource {
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final ReplicaLagMonitor lagMonitor;
+
+    public ReplicaFallbackDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor) {
+        this.primary = primary;
+        this.replica = replica;
+        this.lagMonitor = lagMonitor;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!ReadRouting.isReplicaAllowed()) {
+            return primary.getConnection();
+        }
+        try {
+            return replica.getConnection();
+        } catch (SQLException e) {
+            lagMonitor.markUnavailable(e);
+            ReadRouting.pinToPrimary();
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (!ReadRouting.isReplicaAllowed()) {
+            return primary.getConnection(username, password);
+        }
+        try {
+            return replica.getConnection(username, password);
+        } catch (SQLException e) {
+            lagMonitor.markUnavailable(e);
+            ReadRouting.pinToPrimary();
+            return primary.getConnection(username, password);
+        }
+    }
+}
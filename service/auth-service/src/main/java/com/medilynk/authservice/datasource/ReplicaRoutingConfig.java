@@ -0,0 +1,105 @@
+package com.medilynk.authservice.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+
+/**
+ * Read replica routing, enabled by setting spring.datasource.replica.url. Without it the single data source
+ * auto-configured by Spring Boot is used, as before.
+ *
+ * The data source handed to JPA is a LazyConnectionDataSourceProxy: it only fetches a physical connection at
+ * the first statement, when the transaction is known to be read-only or not. Read-write transactions use the
+ * primary pool; read-only ones (@Transactional(readOnly = true), e.g. UserService.findByEmail) use
+ * ReplicaFallbackDataSource.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.datasource.replica.url")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Pool settings come from spring.datasource.replica.hikari.*; credentials default to the primary's,
+     * as for an RDS read replica.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(
+            DataSourceProperties properties,
+            @Value("${spring.datasource.replica.url}") String url,
+            @Value("${spring.datasource.replica.username:}") String username,
+            @Value("${spring.datasource.replica.password:}") String password) {
+        return DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(url)
+                .username(username.isEmpty() ? properties.determineUsername() : username)
+                .password(password.isEmpty() ? properties.determinePassword() : password)
+                .build();
+    }
+
+    /**
+     * @param lagQuery      Query returning the replication lag in seconds. The default reports 0 while the
+     *                      replica has replayed all WAL it received, and the age of the last replayed
+     *                      transaction otherwise.
+     * @param maxLag        Largest lag at which reads still go to the replica
+     * @param checkInterval Time between lag checks
+     */
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(
+            @Qualifier("replicaDataSource") DataSource replicaDataSource,
+            @Value("${spring.datasource.replica.lag-query:select case when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0 else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0) end}") String lagQuery,
+            @Value("${spring.datasource.replica.max-lag:2s}") Duration maxLag,
+            @Value("${spring.datasource.replica.lag-check-interval:1s}") Duration checkInterval,
+            MeterRegistry meterRegistry) {
+        return new ReplicaLagMonitor(replicaDataSource, lagQuery, maxLag, checkInterval, meterRegistry);
+    }
+
+    /**
+     * Read-write transactions get their connections through PrimaryWriteTrackingDataSource, so
+     * ReadYourWritesFilter knows which requests wrote.
+     */
+    @Bean
+    @Primary
+    public DataSource routingDataSource(
+            @Qualifier("primaryDataSource") DataSource primaryDataSource,
+            @Qualifier("replicaDataSource") DataSource replicaDataSource,
+            ReplicaLagMonitor replicaLagMonitor) {
+        LazyConnectionDataSourceProxy routingDataSource =
+                new LazyConnectionDataSourceProxy(new PrimaryWriteTrackingDataSource(primaryDataSource));
+        // Known up front, so the proxy doesn't borrow a primary connection (and record a write) to find them out
+        routingDataSource.setDefaultAutoCommit(true);
+        routingDataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        routingDataSource.setReadOnlyDataSource(
+                new ReplicaFallbackDataSource(primaryDataSource, replicaDataSource, replicaLagMonitor));
+        return routingDataSource;
+    }
+
+    /**
+     * @param window How long a client's reads stay on the primary after its last write
+     */
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(
+            ReplicaLagMonitor replicaLagMonitor,
+            @Value("${spring.datasource.replica.read-your-writes-window:5s}") Duration window) {
+        return new ReadYourWritesFilter(replicaLagMonitor, window);
+    }
+}
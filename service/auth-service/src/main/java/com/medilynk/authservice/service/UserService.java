@@ -4,6 +4,7 @@ import com.medilynk.authservice.dto.LoginRequestDTO;
 import com.medilynk.authservice.model.User;
 import com.medilynk.authservice.repository.UserRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -13,6 +14,7 @@ public class UserService {
     public UserService(UserRepository userRepository) {
         this.userRepository = userRepository;
     }
+    @Transactional(readOnly = true) // Served by the read replica when one is configured
     public Optional<User> findByEmail(String email) {
         return userRepository.findByEmail(email);
     }
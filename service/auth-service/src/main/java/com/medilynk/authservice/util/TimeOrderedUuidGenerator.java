@@ -0,0 +1,47 @@
+package com.medilynk.authservice.util;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.uuid.UuidValueGenerator;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates time-ordered (version 7) UUIDs on the client side.
+ *
+ * The 48 most significant bits hold the Unix epoch millisecond timestamp, followed by a 12-bit
+ * monotonic counter, so ids created one after another sort one after another. New rows are therefore
+ * appended to the right-most leaf of the primary key B-tree instead of being scattered across the index
+ * the way random (version 4) UUIDs are, which keeps inserts cache friendly and avoids page splits.
+ */
+public class TimeOrderedUuidGenerator implements UuidValueGenerator {
+
+    // Packed (timestamp << 12 | counter) of the last id handed out, shared by all instances
+    private static final AtomicLong LAST_TIMESTAMP_AND_COUNTER = new AtomicLong();
+
+    @Override
+    public UUID generateUuid(SharedSessionContractImplementor session) {
+        return next();
+    }
+
+    /**
+     * Returns the next time-ordered UUID. Ids are strictly increasing within this JVM, even when
+     * several are requested in the same millisecond or the wall clock steps backwards.
+     */
+    public static UUID next() {
+        long candidate;
+        long previous;
+        do {
+            previous = LAST_TIMESTAMP_AND_COUNTER.get();
+            // Either move to the current millisecond or bump the counter of the last one handed out
+            candidate = Math.max(System.currentTimeMillis() << 12, previous + 1);
+        } while (!LAST_TIMESTAMP_AND_COUNTER.compareAndSet(previous, candidate));
+
+        long timestamp = candidate >>> 12;
+        long counter = candidate & 0xFFFL;
+        long mostSigBits = (timestamp << 16) | 0x7000L | counter; // version 7
+        long leastSigBits = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L; // IETF variant
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
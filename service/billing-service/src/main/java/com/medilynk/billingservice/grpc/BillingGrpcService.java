@@ -1,21 +1,43 @@
 package com.medilynk.billingservice.grpc;
 
+import billing.BalanceRequest;
+import billing.BalanceResponse;
 import billing.BillingRequest;
 import billing.BillingResponse;
 import billing.BillingServiceGrpc.BillingServiceImplBase;
+import billing.ChargeRequest;
+import billing.ChargeResponse;
+import billing.PostChargesSummary;
+import com.medilynk.billingservice.ledger.AccountBalance;
+import com.medilynk.billingservice.ledger.LedgerOverloadedException;
+import com.medilynk.billingservice.ledger.LedgerService;
+import com.medilynk.billingservice.ledger.PostedEntry;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 @Slf4j
 @GrpcService
 public class BillingGrpcService extends BillingServiceImplBase {
+
+    private final LedgerService ledgerService;
+
+    public BillingGrpcService(LedgerService ledgerService) {
+        this.ledgerService = ledgerService;
+    }
+
     @Override
     public void createBillingAccount(
             BillingRequest request,
             StreamObserver<BillingResponse> responseObserver) {
 
-        log.info("createBillingAccount request received: {}", request);
+        log.debug("createBillingAccount request received: {}", request);
 
         // Business logic - e.g save to database, perform calculations, etc.
 
@@ -27,4 +49,102 @@ public class BillingGrpcService extends BillingServiceImplBase {
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
+
+    /**
+     * Answers once the entry's batch is committed, without holding the calling thread while it waits.
+     */
+    @Override
+    public void postCharge(ChargeRequest request, StreamObserver<ChargeResponse> responseObserver) {
+        CompletableFuture<PostedEntry> posted;
+        try {
+            posted = ledgerService.post(request.getAccountId(), request.getAmountCents(), request.getDescription());
+        } catch (RuntimeException e) {
+            responseObserver.onError(toStatus(e));
+            return;
+        }
+        posted.whenComplete((result, failure) -> {
+            if (failure != null) {
+                responseObserver.onError(toStatus(failure));
+                return;
+            }
+            responseObserver.onNext(ChargeResponse.newBuilder()
+                    .setSequence(result.entry().sequence())
+                    .setBalanceCents(result.balance().balanceCents())
+                    .build());
+            responseObserver.onCompleted();
+        });
+    }
+
+    /**
+     * Queues every entry as it arrives, so consecutive messages end up in the same insert batches, and
+     * answers when the client has finished sending and all entries are stored. A rejected entry fails the
+     * call; entries queued before it are still stored. Entries are validated by post() before they are queued, so
+     * an invalid one (e.g. a description too long for the table) is rejected with INVALID_ARGUMENT and never reaches
+     * an insert batch shared with other calls.
+     */
+    @Override
+    public StreamObserver<ChargeRequest> postChargesStream(StreamObserver<PostChargesSummary> responseObserver) {
+        return new StreamObserver<>() {
+            private final List<CompletableFuture<PostedEntry>> pending = new ArrayList<>();
+            private boolean failed;
+
+            @Override
+            public void onNext(ChargeRequest request) {
+                if (failed) {
+                    return;
+                }
+                try {
+                    pending.add(ledgerService.post(request.getAccountId(), request.getAmountCents(), request.getDescription()));
+                } catch (RuntimeException e) {
+                    failed = true;
+                    responseObserver.onError(toStatus(e));
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.debug("postChargesStream cancelled by the client after {} entries", pending.size(), t);
+            }
+
+            @Override
+            public void onCompleted() {
+                if (failed) {
+                    return;
+                }
+                CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).whenComplete((ignored, failure) -> {
+                    if (failure != null) {
+                        responseObserver.onError(toStatus(failure));
+                        return;
+                    }
+                    long lastSequence = pending.isEmpty() ? 0 : pending.getLast().join().entry().sequence();
+                    responseObserver.onNext(PostChargesSummary.newBuilder()
+                            .setAccepted(pending.size())
+                            .setLastSequence(lastSequence)
+                            .build());
+                    responseObserver.onCompleted();
+                });
+            }
+        };
+    }
+
+    @Override
+    public void getBalance(BalanceRequest request, StreamObserver<BalanceResponse> responseObserver) {
+        AccountBalance balance = ledgerService.balance(request.getAccountId());
+        responseObserver.onNext(BalanceResponse.newBuilder()
+                .setAccountId(request.getAccountId())
+                .setBalanceCents(balance.balanceCents())
+                .setSequence(balance.sequence())
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    private static Throwable toStatus(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        Status status = switch (cause) {
+            case IllegalArgumentException e -> Status.INVALID_ARGUMENT.withDescription(e.getMessage());
+            case LedgerOverloadedException e -> Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage());
+            default -> Status.UNAVAILABLE.withDescription("Ledger write failed").withCause(cause);
+        };
+        return status.asRuntimeException();
+    }
 }
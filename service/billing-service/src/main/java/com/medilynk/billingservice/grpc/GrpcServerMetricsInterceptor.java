@@ -0,0 +1,94 @@
+package com.medilynk.billingservice.grpc;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the latency of every incoming gRPC call as the grpc.server.requests timer,
+ * tagged with the service, method and resulting status code, and the number of calls currently being
+ * handled per method as the grpc.server.in.flight gauge (a call leaves it when it completes or is cancelled).
+ * Registered as a global interceptor, so it applies to every @GrpcService.
+ */
+@GrpcGlobalServerInterceptor
+public class GrpcServerMetricsInterceptor implements ServerInterceptor {
+
+    private final MeterRegistry meterRegistry;
+    // In-flight counters by full method name, each backing one gauge
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public GrpcServerMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call,
+            Metadata headers,
+            ServerCallHandler<ReqT, RespT> next) {
+
+        long startNanos = System.nanoTime();
+        AtomicInteger methodInFlight = inFlight(call.getMethodDescriptor());
+        methodInFlight.incrementAndGet();
+        AtomicBoolean done = new AtomicBoolean();
+        Runnable leave = () -> {
+            if (done.compareAndSet(false, true)) {
+                methodInFlight.decrementAndGet();
+            }
+        };
+        ServerCall.Listener<ReqT> listener = next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                Timer.builder("grpc.server.requests")
+                        .description("Latency of incoming gRPC calls")
+                        .tag("service", call.getMethodDescriptor().getServiceName())
+                        .tag("method", call.getMethodDescriptor().getBareMethodName())
+                        .tag("status", status.getCode().name())
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                super.close(status, trailers);
+            }
+        }, headers);
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onComplete() {
+                leave.run();
+                super.onComplete();
+            }
+
+            @Override
+            public void onCancel() {
+                leave.run();
+                super.onCancel();
+            }
+        };
+    }
+
+    private AtomicInteger inFlight(MethodDescriptor<?, ?> method) {
+        return inFlight.computeIfAbsent(method.getFullMethodName(), name -> {
+            AtomicInteger count = new AtomicInteger();
+            Gauge.builder("grpc.server.in.flight", count, AtomicInteger::get)
+                    .description("Incoming gRPC calls currently being handled")
+                    .tag("service", method.getServiceName())
+                    .tag("method", method.getBareMethodName())
+                    .register(meterRegistry);
+            return count;
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package com.medilynk.billingservice.grpc;
+
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tunes the gRPC server beyond what grpc.server.* covers (port, message size, keepalive and connection age
+ * are set there):
+ * - Executor: where service methods run. The starter's default is an unbounded cached thread pool;
+ *   "virtual" gives every call a virtual thread (cheap to block on I/O), "fixed" bounds the platform
+ *   threads and queues the rest, "direct" runs calls on the Netty event loop (only for handlers that
+ *   never block).
+ * - Max concurrent calls per connection: the HTTP/2 MAX_CONCURRENT_STREAMS the server advertises, so one
+ *   client can't hold an unbounded number of calls open.
+ * - Flow-control window: the per-stream HTTP/2 receive window. Larger windows let clients streaming
+ *   large requests send more before waiting for a window update, at the cost of memory per stream.
+ *
+ * gRPC's Netty transport already uses the native epoll transport on Linux when it is available (the
+ * shaded jar ships the natives); the active transport is logged at startup.
+ */
+@Slf4j
+@Configuration
+public class GrpcServerTuning {
+
+    private final String executorType;
+    private final int executorThreads;
+    private final int maxConcurrentCallsPerConnection;
+    private final DataSize flowControlWindow;
+    private final ExecutorService executor; // null when calls run on the transport threads
+
+    /**
+     * @param executorType                    virtual, fixed or direct
+     * @param executorThreads                 Threads of the fixed executor
+     * @param maxConcurrentCallsPerConnection Maximum calls in flight on one client connection
+     * @param flowControlWindow               Initial HTTP/2 flow-control window per stream
+     */
+    public GrpcServerTuning(
+            @Value("${billing.grpc.executor:virtual}") String executorType,
+            @Value("${billing.grpc.executor-threads:32}") int executorThreads,
+            @Value("${billing.grpc.max-concurrent-calls-per-connection:1000}") int maxConcurrentCallsPerConnection,
+            @Value("${billing.grpc.flow-control-window:1MB}") DataSize flowControlWindow) {
+        this.executorType = executorType;
+        this.executorThreads = executorThreads;
+        this.maxConcurrentCallsPerConnection = maxConcurrentCallsPerConnection;
+        this.flowControlWindow = flowControlWindow;
+        this.executor = switch (executorType) {
+            case "virtual" -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-vt-", 0).factory());
+            case "fixed" -> Executors.newFixedThreadPool(executorThreads, Thread.ofPlatform().name("grpc-exec-", 0).factory());
+            case "direct" -> null;
+            default -> throw new IllegalArgumentException(
+                    "billing.grpc.executor must be virtual, fixed or direct, not " + executorType);
+        };
+    }
+
+    @Bean
+    public GrpcServerConfigurer grpcServerTuningConfigurer() {
+        log.info("gRPC server: {} executor, {} calls per connection, {} flow-control window, {} transport",
+                executorType, maxConcurrentCallsPerConnection, flowControlWindow,
+                Epoll.isAvailable() ? "epoll" : "nio");
+        return serverBuilder -> {
+            if (executor == null) {
+                serverBuilder.directExecutor();
+            } else {
+                serverBuilder.executor(executor);
+            }
+            if (serverBuilder instanceof NettyServerBuilder netty) {
+                netty.maxConcurrentCallsPerConnection(maxConcurrentCallsPerConnection)
+                        .initialFlowControlWindow((int) flowControlWindow.toBytes());
+            }
+        };
+    }
+
+    /**
+     * Runs after the gRPC server has stopped (it is a lifecycle bean), so no call is still using the executor.
+     */
+    @PreDestroy
+    public void shutdownExecutor() {
+        if (executor != null) {
+            executor.close(); // Waits for calls still running
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.medilynk.billingservice.ledger;
+
+/**
+ * Running total of an account's ledger entries up to and including the entry with the given sequence.
+ */
+public record AccountBalance(long balanceCents, long sequence) {
+
+    public static final AccountBalance EMPTY = new AccountBalance(0, 0);
+
+    /**
+     * The balance after the entry, or this balance if the entry is already included (its sequence is not
+     * newer), so applying the same entry twice can't count it twice.
+     */
+    AccountBalance apply(LedgerEntry entry) {
+        if (entry.sequence() <= sequence) {
+            return this;
+        }
+        return new AccountBalance(balanceCents + entry.amountCents(), entry.sequence());
+    }
+}
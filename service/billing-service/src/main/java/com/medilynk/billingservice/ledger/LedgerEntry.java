@@ -0,0 +1,15 @@
+package com.medilynk.billingservice.ledger;
+
+import java.time.Instant;
+
+/**
+ * One row of the append-only ledger. Sequences are assigned by LedgerRepository when the entry is inserted,
+ * in commit order, and are unique across all accounts and billing-service instances.
+ */
+public record LedgerEntry(
+        long sequence,
+        String accountId,
+        long amountCents,
+        String description,
+        Instant createdAt) {
+}
@@ -0,0 +1,11 @@
+package com.medilynk.billingservice.ledger;
+
+/**
+ * Thrown when an entry can't be queued because the ledger writer is too far behind.
+ */
+public class LedgerOverloadedException extends RuntimeException {
+
+    public LedgerOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,162 @@
+package com.medilynk.billingservice.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JDBC access to the ledger_entry and account_balance tables (schema.sql). Ledger entries are only ever
+ * inserted, never updated or deleted; account_balance holds each account's running total and is updated in
+ * the same transaction as the entries it includes.
+ *
+ * Any number of billing-service instances may append to the same database. Each batch takes the sequences
+ * after the highest stored one; if another instance committed those first, the insert fails on the
+ * primary key and the whole batch is retried with new sequences.
+ */
+@Slf4j
+@Repository
+public class LedgerRepository {
+
+    // Batches still colliding with other writers after this many attempts are failed
+    private static final int MAX_ATTEMPTS = 5;
+
+    private static final String INSERT = """
+            INSERT INTO ledger_entry (sequence, account_id, amount_cents, description, created_at)
+            VALUES (?, ?, ?, ?, ?)""";
+    private static final String INSERT_BALANCE =
+            "INSERT INTO account_balance (balance_cents, sequence, account_id) VALUES (?, ?, ?)";
+    private static final String UPDATE_BALANCE =
+            "UPDATE account_balance SET balance_cents = ?, sequence = ? WHERE account_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public LedgerRepository(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Stores the entries as one JDBC batch in one transaction, either all of them or none, with consecutive
+     * sequences after the highest stored one. Sequences of the given entries are ignored.
+     *
+     * @return the stored entries, in the given order, each with its account's balance right after it
+     */
+    public List<PostedEntry> appendAll(List<LedgerEntry> entries) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> append(entries));
+            } catch (DuplicateKeyException | ConcurrencyFailureException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Ledger batch collided with another writer, retrying (attempt {})", attempt, e);
+            }
+        }
+    }
+
+    /**
+     * An account's balance as of the last committed entry, {@link AccountBalance#EMPTY} if it has none.
+     */
+    public AccountBalance balance(String accountId) {
+        List<AccountBalance> balances = jdbcTemplate.query(
+                "SELECT balance_cents, sequence FROM account_balance WHERE account_id = ?",
+                (row, rowNum) -> new AccountBalance(row.getLong(1), row.getLong(2)),
+                accountId);
+        return balances.isEmpty() ? AccountBalance.EMPTY : balances.getFirst();
+    }
+
+    /**
+     * Adds the balance of every account that has ledger entries but no account_balance row, aggregated by
+     * the database in one pass over the ledger (e.g. a ledger written before the table existed).
+     *
+     * @return the number of accounts added
+     */
+    public int backfillBalances() {
+        return jdbcTemplate.update("""
+                INSERT INTO account_balance (account_id, balance_cents, sequence)
+                SELECT account_id, SUM(amount_cents), MAX(sequence) FROM ledger_entry e
+                WHERE NOT EXISTS (SELECT 1 FROM account_balance b WHERE b.account_id = e.account_id)
+                GROUP BY account_id""");
+    }
+
+    public long maxSequence() {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(sequence) FROM ledger_entry", Long.class);
+        return max == null ? 0 : max;
+    }
+
+    private List<PostedEntry> append(List<LedgerEntry> entries) {
+        long first = maxSequence() + 1;
+        List<LedgerEntry> sequenced = new ArrayList<>(entries.size());
+        for (LedgerEntry entry : entries) {
+            sequenced.add(new LedgerEntry(first + sequenced.size(), entry.accountId(), entry.amountCents(),
+                    entry.description(), entry.createdAt()));
+        }
+        // Inserted first: a concurrent batch from another instance waits here on the same primary keys and
+        // fails once this one commits, so balances are only ever updated by one batch at a time
+        jdbcTemplate.batchUpdate(INSERT, sequenced, sequenced.size(), (statement, entry) -> {
+            statement.setLong(1, entry.sequence());
+            statement.setString(2, entry.accountId());
+            statement.setLong(3, entry.amountCents());
+            statement.setString(4, entry.description());
+            statement.setTimestamp(5, Timestamp.from(entry.createdAt()));
+        });
+
+        Set<String> accountIds = new LinkedHashSet<>();
+        sequenced.forEach(entry -> accountIds.add(entry.accountId()));
+        Map<String, AccountBalance> stored = lockBalances(accountIds);
+        Map<String, AccountBalance> balances = new HashMap<>(stored);
+        List<PostedEntry> posted = new ArrayList<>(sequenced.size());
+        for (LedgerEntry entry : sequenced) {
+            AccountBalance balance = balances.getOrDefault(entry.accountId(), AccountBalance.EMPTY).apply(entry);
+            balances.put(entry.accountId(), balance);
+            posted.add(new PostedEntry(entry, balance));
+        }
+
+        List<Map.Entry<String, AccountBalance>> updates = new ArrayList<>();
+        List<Map.Entry<String, AccountBalance>> inserts = new ArrayList<>();
+        for (String accountId : accountIds) {
+            (stored.containsKey(accountId) ? updates : inserts).add(Map.entry(accountId, balances.get(accountId)));
+        }
+        writeBalances(UPDATE_BALANCE, updates);
+        writeBalances(INSERT_BALANCE, inserts);
+        return posted;
+    }
+
+    private Map<String, AccountBalance> lockBalances(Set<String> accountIds) {
+        Map<String, AccountBalance> balances = new HashMap<>();
+        String placeholders = String.join(",", Collections.nCopies(accountIds.size(), "?"));
+        jdbcTemplate.query(
+                "SELECT account_id, balance_cents, sequence FROM account_balance WHERE account_id IN ("
+                        + placeholders + ") FOR UPDATE",
+                row -> {
+                    balances.put(row.getString(1), new AccountBalance(row.getLong(2), row.getLong(3)));
+                },
+                accountIds.toArray());
+        return balances;
+    }
+
+    private void writeBalances(String sql, List<Map.Entry<String, AccountBalance>> balances) {
+        if (balances.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(sql, balances, balances.size(), (statement, balance) -> {
+            statement.setLong(1, balance.getValue().balanceCents());
+            statement.setLong(2, balance.getValue().sequence());
+            statement.setString(3, balance.getKey());
+        });
+    }
+}
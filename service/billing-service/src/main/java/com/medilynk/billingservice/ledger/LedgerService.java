@@ -0,0 +1,202 @@
+package com.medilynk.billingservice.ledger;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posts charges and payments to the append-only ledger and reads balances from the database.
+ *
+ * - Writes: post() queues the entry and returns a future. A single writer thread drains the queue and
+ *   hands everything it drained to LedgerRepository as one batch, inserted with one JDBC batch in one
+ *   transaction, so under load many entries share a round trip and a commit. The database assigns the
+ *   sequences and updates the account balances in the same transaction. The futures complete once the
+ *   batch is committed.
+ * - Balances: read from the account_balance table, so every instance answers with what is committed,
+ *   including entries posted through other instances. Each balance carries the sequence of the last entry
+ *   in it, and a caller that posted an entry can tell whether a balance includes it.
+ *
+ * Nothing but the queue is kept in memory, so any number of billing-service instances may share a ledger
+ * and a restart loses only entries whose futures haven't completed. A batch whose commit fails is reported
+ * as failed even if the database did commit it; its sequences are never reused either way.
+ */
+@Slf4j
+@Service
+public class LedgerService {
+
+    // Column sizes of ledger_entry (schema.sql); a longer value would fail the whole batch it is written in
+    private static final int MAX_ACCOUNT_ID_LENGTH = 64;
+    private static final int MAX_DESCRIPTION_LENGTH = 255;
+
+    private final LedgerRepository repository;
+    private final int maxBatchSize;
+    private final Duration enqueueTimeout;
+    private final BlockingQueue<PendingEntry> queue;
+    private final Timer batchTimer;
+    private final DistributionSummary batchSize;
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * @param repository     Ledger table access
+     * @param meterRegistry  Registry for the batch and queue metrics
+     * @param maxBatchSize   Maximum entries inserted in one batch
+     * @param queueCapacity  Entries that may wait for the writer before post() blocks
+     * @param enqueueTimeout How long post() waits for room in the queue before rejecting the entry
+     */
+    public LedgerService(
+            LedgerRepository repository,
+            MeterRegistry meterRegistry,
+            @Value("${billing.ledger.max-batch-size:500}") int maxBatchSize,
+            @Value("${billing.ledger.queue-capacity:10000}") int queueCapacity,
+            @Value("${billing.ledger.enqueue-timeout:1s}") Duration enqueueTimeout) {
+        this.repository = repository;
+        this.maxBatchSize = maxBatchSize;
+        this.enqueueTimeout = enqueueTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchTimer = Timer.builder("billing.ledger.batch.write")
+                .description("Time to insert and commit one batch of ledger entries")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("billing.ledger.batch.size")
+                .description("Ledger entries per insert batch")
+                .register(meterRegistry);
+        Gauge.builder("billing.ledger.queue.size", queue, BlockingQueue::size)
+                .description("Ledger entries waiting for the writer")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            int added = repository.backfillBalances();
+            if (added > 0) {
+                log.info("Added balances of {} accounts from the ledger", added);
+            }
+        } catch (DuplicateKeyException e) {
+            log.info("Another instance is adding balances from the ledger", e);
+        }
+
+        running = true;
+        writer = Thread.ofPlatform().name("ledger-writer").start(this::writeLoop);
+    }
+
+    /**
+     * Queues an entry for the ledger. Blocks up to the enqueue timeout while the queue is full, which slows
+     * down streaming clients instead of buffering without bound.
+     *
+     * @return completes with the stored entry and the account's balance including it
+     * @throws IllegalArgumentException  if the entry doesn't fit the ledger table, checked here so it is rejected
+     *                                   on its own instead of failing the batch it would be written in
+     * @throws LedgerOverloadedException if the queue stayed full
+     */
+    public CompletableFuture<PostedEntry> post(String accountId, long amountCents, String description) {
+        if (accountId == null || accountId.isBlank()) {
+            throw new IllegalArgumentException("accountId is required");
+        }
+        if (accountId.codePointCount(0, accountId.length()) > MAX_ACCOUNT_ID_LENGTH) {
+            throw new IllegalArgumentException("accountId must be at most " + MAX_ACCOUNT_ID_LENGTH + " characters");
+        }
+        if (description != null && description.codePointCount(0, description.length()) > MAX_DESCRIPTION_LENGTH) {
+            throw new IllegalArgumentException("description must be at most " + MAX_DESCRIPTION_LENGTH + " characters");
+        }
+        if (amountCents == 0) {
+            throw new IllegalArgumentException("amountCents must not be zero");
+        }
+        if (!running) {
+            throw new LedgerOverloadedException("Ledger is shutting down");
+        }
+
+        PendingEntry pending = new PendingEntry(accountId, amountCents, description, new CompletableFuture<>());
+        try {
+            if (!queue.offer(pending, enqueueTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new LedgerOverloadedException("Ledger queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LedgerOverloadedException("Interrupted while waiting for the ledger queue");
+        }
+        return pending.result();
+    }
+
+    public AccountBalance balance(String accountId) {
+        return repository.balance(accountId);
+    }
+
+    /**
+     * Runs after the gRPC server has stopped, so nothing posts anymore; entries already queued are written.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingEntry> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEntry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Everything that queued up during the previous write goes into this one
+                queue.drainTo(batch, maxBatchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingEntry> batch) {
+        Instant now = Instant.now();
+        List<LedgerEntry> entries = new ArrayList<>(batch.size());
+        for (PendingEntry pending : batch) {
+            // The sequence is assigned when the batch is inserted
+            entries.add(new LedgerEntry(0, pending.accountId(), pending.amountCents(), pending.description(), now));
+        }
+
+        List<PostedEntry> posted;
+        try {
+            posted = batchTimer.recordCallable(() -> repository.appendAll(entries));
+        } catch (Exception e) {
+            log.error("Failed to write {} ledger entries", entries.size(), e);
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+            return;
+        }
+        batchSize.record(entries.size());
+
+        for (int i = 0; i < posted.size(); i++) {
+            batch.get(i).result().complete(posted.get(i));
+        }
+    }
+
+    private record PendingEntry(
+            String accountId,
+            long amountCents,
+            String description,
+            CompletableFuture<PostedEntry> result) {
+    }
+}
@@ -0,0 +1,7 @@
+package com.medilynk.billingservice.ledger;
+
+/**
+ * A stored entry and the account's balance right after it.
+ */
+public record PostedEntry(LedgerEntry entry, AccountBalance balance) {
+}
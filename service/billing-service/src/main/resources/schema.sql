@@ -0,0 +1,18 @@
+-- Append-only billing ledger. Rows are never updated or deleted; balances are the sum of an account's rows.
+-- No secondary index: every insert stays a single append. The primary key is what keeps concurrent writers
+-- from taking the same sequence.
+CREATE TABLE IF NOT EXISTS ledger_entry (
+    sequence     BIGINT       PRIMARY KEY,
+    account_id   VARCHAR(64)  NOT NULL,
+    amount_cents BIGINT       NOT NULL,
+    description  VARCHAR(255),
+    created_at   TIMESTAMP    NOT NULL
+);
+
+-- Running total of each account's ledger entries, updated in the transaction that inserts them.
+-- sequence is the last entry included.
+CREATE TABLE IF NOT EXISTS account_balance (
+    account_id    VARCHAR(64) PRIMARY KEY,
+    balance_cents BIGINT      NOT NULL,
+    sequence      BIGINT      NOT NULL
+);
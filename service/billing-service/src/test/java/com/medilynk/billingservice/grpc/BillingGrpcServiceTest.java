@@ -0,0 +1,117 @@
+package com.medilynk.billingservice.grpc;
+
+import billing.BalanceRequest;
+import billing.BalanceResponse;
+import billing.BillingServiceGrpc;
+import billing.ChargeRequest;
+import billing.PostChargesSummary;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import net.devh.boot.grpc.server.event.GrpcServerStartedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.event.EventListener;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Drives the ledger RPCs through the gRPC server, the writer and the database of a running application.
+ */
+@SpringBootTest(properties = "grpc.server.port=0") // Any free port, so the test doesn't clash with 9001
+class BillingGrpcServiceTest {
+
+    @Autowired
+    private ServerPort serverPort;
+    private ManagedChannel channel;
+
+    @BeforeEach
+    void connect() {
+        channel = ManagedChannelBuilder.forAddress("localhost", serverPort.port).usePlaintext().build();
+    }
+
+    @AfterEach
+    void disconnect() {
+        channel.shutdownNow();
+    }
+
+    @Test
+    void postChargesStreamStoresEveryEntryBeforeAnswering() throws Exception {
+        PostChargesSummary summary = postStream(
+                charge("stream-account", 1000),
+                charge("other-account", 200),
+                charge("stream-account", -250)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(3, summary.getAccepted());
+        BalanceResponse balance = balance("stream-account");
+        assertEquals(750, balance.getBalanceCents());
+        assertEquals(summary.getLastSequence(), balance.getSequence());
+        assertEquals(200, balance("other-account").getBalanceCents());
+    }
+
+    @Test
+    void postChargesStreamRejectsAnInvalidEntry() {
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> postStream(
+                charge("invalid-account", 100),
+                charge("invalid-account", 0)).get(10, TimeUnit.SECONDS));
+
+        StatusRuntimeException status = assertInstanceOf(StatusRuntimeException.class, failure.getCause());
+        assertEquals(Status.Code.INVALID_ARGUMENT, status.getStatus().getCode());
+    }
+
+    private CompletableFuture<PostChargesSummary> postStream(ChargeRequest... charges) {
+        CompletableFuture<PostChargesSummary> result = new CompletableFuture<>();
+        StreamObserver<ChargeRequest> requests = BillingServiceGrpc.newStub(channel).postChargesStream(new StreamObserver<>() {
+            @Override
+            public void onNext(PostChargesSummary summary) {
+                result.complete(summary);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        });
+        for (ChargeRequest charge : charges) {
+            requests.onNext(charge);
+        }
+        requests.onCompleted();
+        return result;
+    }
+
+    private BalanceResponse balance(String accountId) {
+        return BillingServiceGrpc.newBlockingStub(channel)
+                .getBalance(BalanceRequest.newBuilder().setAccountId(accountId).build());
+    }
+
+    @TestConfiguration
+    static class ServerPort {
+
+        private volatile int port;
+
+        @EventListener
+        void started(GrpcServerStartedEvent event) {
+            port = event.getPort();
+        }
+    }
+
+    private static ChargeRequest charge(String accountId, long amountCents) {
+        return ChargeRequest.newBuilder().setAccountId(accountId).setAmountCents(amountCents).setDescription("claim").build();
+    }
+}
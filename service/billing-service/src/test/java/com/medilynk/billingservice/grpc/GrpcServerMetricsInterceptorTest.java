@@ -0,0 +1,96 @@
+package com.medilynk.billingservice.grpc;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import billing.BillingServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the in-flight gauge and latency timer recorded by GrpcServerMetricsInterceptor, for calls that
+ * complete and calls the client cancels.
+ */
+class GrpcServerMetricsInterceptorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch entered = new CountDownLatch(3);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private Server server;
+    private ManagedChannel channel;
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    void countsCallsInFlightUntilTheyCompleteOrAreCancelled() throws Exception {
+        start();
+        BillingServiceGrpc.BillingServiceFutureStub stub = BillingServiceGrpc.newFutureStub(channel);
+        BillingRequest request = BillingRequest.newBuilder().setPatientId("patient-1").build();
+
+        var first = stub.createBillingAccount(request);
+        var second = stub.createBillingAccount(request);
+        var cancelled = stub.createBillingAccount(request);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        assertEquals(3.0, inFlight());
+
+        cancelled.cancel(true); // Still in flight until its handler returns
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        awaitInFlight(0.0);
+
+        // The cancelled call's handler still responded, so it may be timed too
+        assertTrue(meterRegistry.get("grpc.server.requests").tag("status", "OK").timer().count() >= 2);
+    }
+
+    private void start() throws IOException {
+        server = NettyServerBuilder.forPort(0)
+                .addService(ServerInterceptors.intercept(new BillingServiceGrpc.BillingServiceImplBase() {
+                    @Override
+                    public void createBillingAccount(BillingRequest request, StreamObserver<BillingResponse> responseObserver) {
+                        entered.countDown();
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        responseObserver.onNext(BillingResponse.newBuilder().setAccountId("1").setStatus("ACTIVE").build());
+                        responseObserver.onCompleted();
+                    }
+                }, new GrpcServerMetricsInterceptor(meterRegistry)))
+                .build()
+                .start();
+        channel = ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("grpc.server.in.flight").tag("method", "CreateBillingAccount").gauge().value();
+    }
+
+    // Cancellation and completion reach the server asynchronously
+    private void awaitInFlight(double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inFlight() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, inFlight());
+    }
+}
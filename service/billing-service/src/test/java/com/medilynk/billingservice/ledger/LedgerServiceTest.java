@@ -0,0 +1,171 @@
+package com.medilynk.billingservice.ledger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LedgerServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private EmbeddedDatabase database;
+    private LedgerRepository repository;
+    private LedgerService ledger;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        repository = new LedgerRepository(new JdbcTemplate(database), new DataSourceTransactionManager(database));
+        ledger = startLedger();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        ledger.stop();
+        database.shutdown();
+    }
+
+    @Test
+    void batchesConcurrentPostsAndKeepsRunningBalances() throws Exception {
+        // 8 clients posting 250 entries each, spread over 10 accounts; odd clients post payments
+        List<CompletableFuture<PostedEntry>> posted = Collections.synchronizedList(new ArrayList<>());
+        try (ExecutorService clients = Executors.newFixedThreadPool(8)) {
+            for (int client = 0; client < 8; client++) {
+                long amount = client % 2 == 0 ? 100 : -30;
+                clients.submit(() -> {
+                    for (int i = 0; i < 250; i++) {
+                        posted.add(ledger.post("account-" + (i % 10), amount, "claim"));
+                    }
+                });
+            }
+        }
+        CompletableFuture.allOf(posted.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        // Every account got 100 charges of 100 and 100 payments of -30
+        for (int i = 0; i < 10; i++) {
+            assertEquals(7_000, ledger.balance("account-" + i).balanceCents());
+        }
+        assertEquals(2000, repository.maxSequence());
+        var batches = meterRegistry.get("billing.ledger.batch.size").summary();
+        assertTrue(batches.count() < 2000, "every entry was written on its own");
+        assertEquals(2000, (long) batches.totalAmount());
+    }
+
+    @Test
+    void balanceIncludesEntriesUpToItsSequence() throws Exception {
+        PostedEntry first = ledger.post("account-1", 1000, "visit").get(5, TimeUnit.SECONDS);
+        ledger.post("account-2", 300, "lab").get(5, TimeUnit.SECONDS);
+        PostedEntry payment = ledger.post("account-1", -400, "payment").get(5, TimeUnit.SECONDS);
+
+        assertEquals(new AccountBalance(1000, 1), first.balance());
+        assertEquals(new AccountBalance(600, 3), payment.balance());
+        assertEquals(payment.balance(), ledger.balance("account-1"));
+        assertEquals(AccountBalance.EMPTY, ledger.balance("unknown"));
+    }
+
+    @Test
+    void keepsTheLedgerAcrossRestarts() throws Exception {
+        ledger.post("account-1", 1000, "visit").get(5, TimeUnit.SECONDS);
+        ledger.post("account-2", 300, "lab").get(5, TimeUnit.SECONDS);
+        ledger.post("account-1", -400, "payment").get(5, TimeUnit.SECONDS);
+        ledger.stop();
+
+        ledger = startLedger();
+
+        assertEquals(new AccountBalance(600, 3), ledger.balance("account-1"));
+        assertEquals(new AccountBalance(300, 2), ledger.balance("account-2"));
+        // The sequence continues after the stored entries
+        assertEquals(4, ledger.post("account-2", 50, "lab").get(5, TimeUnit.SECONDS).entry().sequence());
+    }
+
+    @Test
+    void instancesSharingALedgerTakeDistinctSequencesAndSeeEachOthersEntries() throws Exception {
+        LedgerService other = startLedger();
+        try {
+            List<CompletableFuture<PostedEntry>> posted = Collections.synchronizedList(new ArrayList<>());
+            try (ExecutorService clients = Executors.newFixedThreadPool(4)) {
+                for (int client = 0; client < 4; client++) {
+                    LedgerService instance = client % 2 == 0 ? ledger : other;
+                    clients.submit(() -> {
+                        for (int i = 0; i < 100; i++) {
+                            posted.add(instance.post("account-" + (i % 5), 10, "claim"));
+                        }
+                    });
+                }
+            }
+            CompletableFuture.allOf(posted.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+            Set<Long> sequences = new HashSet<>();
+            for (CompletableFuture<PostedEntry> entry : posted) {
+                assertTrue(sequences.add(entry.join().entry().sequence()), "sequence taken twice");
+            }
+            assertEquals(400, repository.maxSequence());
+            for (int i = 0; i < 5; i++) {
+                assertEquals(800, ledger.balance("account-" + i).balanceCents());
+                assertEquals(ledger.balance("account-" + i), other.balance("account-" + i));
+            }
+        } finally {
+            other.stop();
+        }
+    }
+
+    @Test
+    void addsBalancesForAccountsOnlyInTheLedgerOnStartup() throws Exception {
+        ledger.stop();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.update("INSERT INTO ledger_entry VALUES (1, 'account-1', 1000, 'visit', CURRENT_TIMESTAMP)");
+        jdbcTemplate.update("INSERT INTO ledger_entry VALUES (2, 'account-1', -400, 'payment', CURRENT_TIMESTAMP)");
+
+        ledger = startLedger();
+
+        assertEquals(new AccountBalance(600, 2), ledger.balance("account-1"));
+        assertEquals(new AccountBalance(650, 3), ledger.post("account-1", 50, "lab").get(5, TimeUnit.SECONDS).balance());
+    }
+
+    @Test
+    void rejectsEntriesWithoutAccountOrAmount() {
+        assertThrows(IllegalArgumentException.class, () -> ledger.post("", 100, "visit"));
+        assertThrows(IllegalArgumentException.class, () -> ledger.post("account-1", 0, "visit"));
+    }
+
+    @Test
+    void rejectsEntriesTooLongForTheTableWithoutFailingOthers() throws Exception {
+        CompletableFuture<PostedEntry> before = ledger.post("account-1", 100, "visit");
+        assertThrows(IllegalArgumentException.class, () -> ledger.post("a".repeat(65), 100, "visit"));
+        assertThrows(IllegalArgumentException.class, () -> ledger.post("account-1", 100, "d".repeat(256)));
+        CompletableFuture<PostedEntry> after = ledger.post("a".repeat(64), 100, "d".repeat(255));
+
+        assertEquals(1, before.get(5, TimeUnit.SECONDS).entry().sequence());
+        assertEquals(2, after.get(5, TimeUnit.SECONDS).entry().sequence());
+    }
+
+    private LedgerService startLedger() {
+        LedgerService service = new LedgerService(repository, meterRegistry, 100, 1000, Duration.ofSeconds(1));
+        service.start();
+        return service;
+    }
+}
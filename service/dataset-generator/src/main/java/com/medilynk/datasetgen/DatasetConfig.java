@@ -0,0 +1,74 @@
+package com.medilynk.datasetgen;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of a generator run, parsed from --key=value command line arguments. A step whose target is left
+ * empty (patientDb, authDb, kafka) is skipped.
+ *
+ * @param seed             Seed of every generated value; the same seed and counts give the same rows
+ * @param patients         Patients to generate
+ * @param users            Users to generate
+ * @param asOf             Latest registration date; fixed rather than today, so the rows don't change daily
+ * @param threads          Connections loading in parallel
+ * @param batchSize        Rows per INSERT batch and transaction, or per buffer sent to COPY
+ * @param patientDb        JDBC url of the patient-service database
+ * @param authDb           JDBC url of the auth-service database
+ * @param kafka            Bootstrap servers the patients are replayed to as PATIENT_CREATED events
+ * @param topic            Topic of the events
+ * @param eventRate        Events per second; 0 sends them as fast as the producer accepts them
+ */
+public record DatasetConfig(
+        long seed,
+        long patients,
+        long users,
+        LocalDate asOf,
+        int threads,
+        int batchSize,
+        Database patientDb,
+        Database authDb,
+        String kafka,
+        String topic,
+        double eventRate) {
+
+    public record Database(String url, String user, String password) {
+    }
+
+    public static DatasetConfig parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value but got: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1).trim());
+        }
+
+        return new DatasetConfig(
+                Long.parseLong(options.getOrDefault("seed", "42")),
+                Long.parseLong(options.getOrDefault("patients", "1000000")),
+                Long.parseLong(options.getOrDefault("users", "100000")),
+                LocalDate.parse(options.getOrDefault("as-of", "2025-01-01")),
+                Integer.parseInt(options.getOrDefault("threads", "4")),
+                Integer.parseInt(options.getOrDefault("batch-size", "5000")),
+                database(options, "patient-db"),
+                database(options, "auth-db"),
+                emptyToNull(options.get("kafka")),
+                options.getOrDefault("topic", "patient"),
+                Double.parseDouble(options.getOrDefault("event-rate", "0")));
+    }
+
+    private static Database database(Map<String, String> options, String prefix) {
+        String url = emptyToNull(options.get(prefix));
+        if (url == null) {
+            return null;
+        }
+        return new Database(url, options.getOrDefault(prefix + "-user", ""), options.getOrDefault(prefix + "-password", ""));
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
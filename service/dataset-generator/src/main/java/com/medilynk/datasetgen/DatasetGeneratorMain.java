@@ -0,0 +1,48 @@
+package com.medilynk.datasetgen;
+
+/**
+ * Entry point of the dataset generator.
+ *
+ * Generates `patients` patients and `users` users from `seed`, loads them into the patient-service and
+ * auth-service databases, and replays the patients to Kafka as PATIENT_CREATED events, for each target that is
+ * given. The databases must already have their schema, i.e. the services have started against them once; the
+ * generated rows are added next to what is there, so load into a fresh database to get the same dataset.
+ *
+ * With patient-service sharding, --patient-db must be shard 0 (spring.datasource), and only before the first
+ * POST /actuator/reshard: the patients are all written there, which is only where the service looks for them while
+ * every bucket is still on shard 0. Their emails are added to the patient_email directory as well. Loading into
+ * shard 0 after a reshard is refused; run the reshard after loading instead, and it spreads the generated patients
+ * like any others.
+ *
+ * Example:
+ *   mvn verify -Pgenerate -Ddataset.patients=10000000 -Ddataset.patient-db=jdbc:postgresql://localhost:5432/patient-service-db
+ */
+public class DatasetGeneratorMain {
+
+    public static void main(String[] args) throws Exception {
+        DatasetConfig config = DatasetConfig.parse(args);
+        if (config.patientDb() == null && config.authDb() == null && config.kafka() == null) {
+            throw new IllegalArgumentException("Nothing to do: give --patient-db, --auth-db and/or --kafka");
+        }
+
+        if (config.patientDb() != null) {
+            DatasetLoader loader = new DatasetLoader(config.patientDb(), config.threads(), config.batchSize());
+            boolean sharded = loader.hasTable("patient_email"); // Only on shard 0 of a sharded patient-service
+            if (sharded && loader.queryLong("select count(*) from patient_shard_bucket where shard <> 0") > 0) {
+                throw new IllegalStateException("--patient-db has been resharded: patients written to it would be "
+                        + "stored on the wrong shard. Load before resharding");
+            }
+            loader.load(TableSpec.patients(config.seed(), config.asOf(), sharded), config.patients());
+        }
+        if (config.authDb() != null) {
+            PasswordPool passwords = new PasswordPool(config.seed());
+            new DatasetLoader(config.authDb(), config.threads(), config.batchSize())
+                    .load(TableSpec.users(config.seed(), passwords), config.users());
+            System.out.printf("users: user<i>@medilynk.test log in with password-<i %% %d>%n", PasswordPool.SIZE);
+        }
+        if (config.kafka() != null) {
+            new EventReplayer(config.kafka(), config.topic(), config.eventRate())
+                    .replay(config.seed(), config.patients(), config.asOf());
+        }
+    }
+}
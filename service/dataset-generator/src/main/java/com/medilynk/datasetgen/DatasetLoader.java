@@ -0,0 +1,163 @@
+package com.medilynk.datasetgen;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads generated rows into an existing table (created by the service on its first start), CHUNK_ROWS rows per
+ * task on `threads` connections in parallel.
+ *
+ * On PostgreSQL each chunk is one COPY ... FROM STDIN in CSV format, which skips per-statement parsing and
+ * planning; the CSV is sent batchSize rows at a time. Other databases (the services' local H2) get batched
+ * INSERTs, committed every batchSize rows.
+ */
+public class DatasetLoader {
+
+    static final long CHUNK_ROWS = 100_000;
+
+    private final DatasetConfig.Database database;
+    private final int threads;
+    private final int batchSize;
+
+    public DatasetLoader(DatasetConfig.Database database, int threads, int batchSize) {
+        this.database = database;
+        this.threads = threads;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return Rows loaded
+     */
+    public long load(TableSpec spec, long count) throws SQLException, InterruptedException {
+        boolean postgres;
+        try (Connection connection = connect()) {
+            postgres = connection.isWrapperFor(PGConnection.class);
+        }
+
+        AtomicLong loaded = new AtomicLong();
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<Long>> chunks = new ArrayList<>();
+            for (long from = 0; from < count; from += CHUNK_ROWS) {
+                long chunkFrom = from;
+                long chunkTo = Math.min(from + CHUNK_ROWS, count);
+                chunks.add(executor.submit(() -> {
+                    long rows = postgres ? copy(spec, chunkFrom, chunkTo) : insert(spec, chunkFrom, chunkTo);
+                    long total = loaded.addAndGet(rows);
+                    System.out.printf("%s: %,d / %,d rows%n", spec.table(), total, count);
+                    return rows;
+                }));
+            }
+            for (Future<Long> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            for (String sql : spec.afterLoad()) {
+                statement.execute(sql);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s: loaded %,d rows in %.1fs (%,.0f rows/s, %s)%n", spec.table(), loaded.get(), seconds,
+                loaded.get() / seconds, postgres ? "COPY" : "batched INSERT");
+        return loaded.get();
+    }
+
+    public boolean hasTable(String table) throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.executeQuery("select 1 from " + table + " where 1 = 0").close();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    public long queryLong(String sql) throws SQLException {
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private long copy(TableSpec spec, long from, long to) throws SQLException {
+        try (Connection connection = connect()) {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                    "COPY " + spec.table() + " (" + String.join(", ", spec.columns()) + ") FROM STDIN (FORMAT csv)");
+            try {
+                StringBuilder csv = new StringBuilder();
+                for (long index = from; index < to; index++) {
+                    appendCsv(csv, spec.row().apply(index));
+                    if ((index - from + 1) % batchSize == 0 || index == to - 1) {
+                        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+                        copyIn.writeToCopy(bytes, 0, bytes.length);
+                        csv.setLength(0);
+                    }
+                }
+                return copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        }
+    }
+
+    private long insert(TableSpec spec, long from, long to) throws SQLException {
+        String sql = "insert into " + spec.table() + " (" + String.join(", ", spec.columns()) + ") values ("
+                + String.join(", ", Collections.nCopies(spec.columns().size(), "?")) + ")";
+        try (Connection connection = connect(); PreparedStatement insert = connection.prepareStatement(sql)) {
+            connection.setAutoCommit(false);
+            for (long index = from; index < to; index++) {
+                Object[] values = spec.row().apply(index);
+                for (int column = 0; column < values.length; column++) {
+                    insert.setObject(column + 1, values[column]);
+                }
+                insert.addBatch();
+                if ((index - from + 1) % batchSize == 0 || index == to - 1) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            return to - from;
+        }
+    }
+
+    // Every value quoted, with quotes doubled, so commas in addresses need no other handling
+    static void appendCsv(StringBuilder csv, Object[] values) {
+        for (int column = 0; column < values.length; column++) {
+            if (column > 0) {
+                csv.append(',');
+            }
+            csv.append('"').append(values[column].toString().replace("\"", "\"\"")).append('"');
+        }
+        csv.append('\n');
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(database.url(), database.user(), database.password());
+    }
+}
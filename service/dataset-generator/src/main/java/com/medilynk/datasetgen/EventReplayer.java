@@ -0,0 +1,95 @@
+package com.medilynk.datasetgen;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import patent.event.PatientEvent;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays the generated patients as PATIENT_CREATED events, in the format patient-service's KafkaProducer
+ * sends (unkeyed records on the patient topic), at a fixed rate. Events are paced against their scheduled send
+ * times, so a stall is caught up on instead of lowering the overall rate.
+ */
+public class EventReplayer {
+
+    private final String bootstrapServers;
+    private final String topic;
+    private final double eventsPerSecond;
+
+    public EventReplayer(String bootstrapServers, String topic, double eventsPerSecond) {
+        this.bootstrapServers = bootstrapServers;
+        this.topic = topic;
+        this.eventsPerSecond = eventsPerSecond;
+    }
+
+    public static PatientEvent event(long seed, long index, LocalDate asOf) {
+        Rows.PatientRow patient = Rows.patient(seed, index, asOf);
+        var eventId = Rows.eventId(seed, index, patient.registeredDate());
+        return PatientEvent.newBuilder()
+                .setPatientId(patient.id().toString())
+                .setName(patient.name())
+                .setEmail(patient.email())
+                .setEventType("PATIENT_CREATED")
+                .setEventIdHigh(eventId.getMostSignificantBits())
+                .setEventIdLow(eventId.getLeastSignificantBits())
+                .setDateOfBirth(Math.toIntExact(patient.dateOfBirth().toEpochDay()))
+                .setRegisteredDate(Math.toIntExact(patient.registeredDate().toEpochDay()))
+                .build();
+    }
+
+    /**
+     * @return Events the broker acknowledged
+     */
+    public long replay(long seed, long count, LocalDate asOf) {
+        Map<String, Object> properties = Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class,
+                ProducerConfig.LINGER_MS_CONFIG, 5,
+                ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+        AtomicLong acknowledged = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long intervalNanos = eventsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / eventsPerSecond) : 0;
+        long start = System.nanoTime();
+        long nextReport = start + TimeUnit.SECONDS.toNanos(5);
+
+        try (KafkaProducer<String, byte[]> producer = new KafkaProducer<>(properties)) {
+            for (long index = 0; index < count; index++) {
+                if (intervalNanos > 0) {
+                    long due = start + index * intervalNanos;
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                PatientEvent event = event(seed, index, asOf);
+                // Keyed by patient like patient-service's events, so a patient's events stay in order
+                producer.send(new ProducerRecord<>(topic, event.getPatientId(), event.toByteArray()), (metadata, e) -> {
+                    if (e == null) {
+                        acknowledged.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                });
+                if (System.nanoTime() - nextReport > 0) {
+                    System.out.printf("events: %,d sent, %,d acknowledged, %,d failed%n",
+                            index + 1, acknowledged.get(), failed.get());
+                    nextReport += TimeUnit.SECONDS.toNanos(5);
+                }
+            }
+            producer.flush();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("events: %,d acknowledged, %,d failed in %.1fs (%,.0f events/s)%n",
+                acknowledged.get(), failed.get(), seconds, acknowledged.get() / seconds);
+        return acknowledged.get();
+    }
+}
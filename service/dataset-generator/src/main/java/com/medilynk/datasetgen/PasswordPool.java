@@ -0,0 +1,41 @@
+package com.medilynk.datasetgen;
+
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * A few BCrypt hashes shared by all generated users. Hashing is deliberately slow (about 70ms at cost 10), so
+ * hashing a password per user would take hours for millions of users; instead user i gets password
+ * "password-(i % SIZE)" and its precomputed hash. The salts come from the seed, so the hashes are the same on
+ * every run with that seed.
+ */
+public final class PasswordPool {
+
+    public static final int SIZE = 16;
+    static final int COST = 10; // BCryptPasswordEncoder's default strength, which auth-service uses
+
+    private final String[] hashes = new String[SIZE];
+
+    public PasswordPool(long seed) {
+        SecureRandom salts;
+        try {
+            salts = SecureRandom.getInstance("SHA1PRNG");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        salts.setSeed(seed); // Set before the first use, SHA1PRNG then generates only from this seed
+        for (int i = 0; i < SIZE; i++) {
+            hashes[i] = BCrypt.hashpw(password(i), BCrypt.gensalt(COST, salts));
+        }
+    }
+
+    public static String password(long user) {
+        return "password-" + (user % SIZE);
+    }
+
+    public String hash(long user) {
+        return hashes[(int) (user % SIZE)];
+    }
+}
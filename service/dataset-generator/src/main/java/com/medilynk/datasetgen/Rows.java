@@ -0,0 +1,101 @@
+package com.medilynk.datasetgen;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Deterministic rows: row i of a table is derived from (seed, table, i) alone, so any range of rows can be
+ * generated on any thread, in any order, and a run with the same seed produces the same dataset.
+ */
+public final class Rows {
+
+    public record PatientRow(UUID id, String name, String email, String address, LocalDate dateOfBirth,
+                             LocalDate registeredDate) {
+    }
+
+    public record UserRow(UUID id, String email, String passwordHash, String role) {
+    }
+
+    static final int REGISTRATION_YEARS = 10;
+
+    private static final long PATIENT_STREAM = 0x50415449454e54L;
+    private static final long USER_STREAM = 0x55534552L;
+    private static final long EVENT_STREAM = 0x4556454e54L;
+
+    private static final String[] FIRST_NAMES = {
+            "James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael", "Linda", "David", "Elizabeth",
+            "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen",
+            "Christopher", "Lisa", "Daniel", "Nancy", "Matthew", "Betty", "Anthony", "Sandra", "Mark", "Margaret",
+            "Aarav", "Priya", "Wei", "Mei", "Mohammed", "Fatima", "Carlos", "Sofia", "Kenji", "Yuki",
+            "Olu", "Amara", "Liam", "Emma", "Noah", "Olivia", "Lucas", "Mia", "Mateo", "Ava"};
+    private static final String[] LAST_NAMES = {
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+            "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin",
+            "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark", "Ramirez", "Lewis", "Robinson",
+            "Patel", "Singh", "Chen", "Wang", "Kim", "Nguyen", "Tanaka", "Okafor", "Silva", "Kowalski"};
+    private static final String[] STREETS = {
+            "Main St", "Elm St", "Oak Ave", "Maple Dr", "Cedar Ln", "Pine St", "Washington Blvd", "Lake Rd",
+            "Hill St", "Park Ave", "River Rd", "Sunset Blvd", "Church St", "Mill Ln", "High St", "Station Rd"};
+    private static final String[] CITIES = {
+            "Springfield", "Shelbyville", "Riverside", "Fairview", "Franklin", "Greenville", "Bristol", "Clinton",
+            "Madison", "Georgetown", "Salem", "Oxford", "Arlington", "Ashland", "Dover", "Milton"};
+
+    private Rows() {
+    }
+
+    public static PatientRow patient(long seed, long index, LocalDate asOf) {
+        SplittableRandom random = random(seed, PATIENT_STREAM, index);
+        String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+        String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        String address = (1 + random.nextInt(9999)) + " " + STREETS[random.nextInt(STREETS.length)] + ", "
+                + CITIES[random.nextInt(CITIES.length)];
+        LocalDate dateOfBirth = asOf.minusDays(random.nextInt(95 * 365));
+        // Registrations grow over time: more of them are recent than old
+        long daysAgo = (long) (REGISTRATION_YEARS * 365 * (1 - Math.sqrt(random.nextDouble())));
+        LocalDate registeredDate = asOf.minusDays(daysAgo);
+        if (registeredDate.isBefore(dateOfBirth)) {
+            registeredDate = dateOfBirth; // Registered at birth
+        }
+        // The index keeps emails unique; the names make them look like real ones
+        String email = (first + "." + last + "." + index + "@example.com").toLowerCase();
+        return new PatientRow(timeOrderedId(registeredDate, random), first + " " + last, email, address,
+                dateOfBirth, registeredDate);
+    }
+
+    public static UserRow user(long seed, long index, PasswordPool passwords) {
+        SplittableRandom random = random(seed, USER_STREAM, index);
+        String role = random.nextInt(100) == 0 ? "ADMIN" : "USER";
+        // Version 4 layout: users have no date to order them by
+        long high = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long low = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UserRow(new UUID(high, low), "user" + index + "@medilynk.test", passwords.hash(index), role);
+    }
+
+    /**
+     * Id of the PATIENT_CREATED event of patient i; replaying with the same seed sends the same ids, so
+     * consumers deduplicate a replay the way they would a redelivery.
+     */
+    public static UUID eventId(long seed, long index, LocalDate registeredDate) {
+        return timeOrderedId(registeredDate, random(seed, EVENT_STREAM, index));
+    }
+
+    // UUID version 7 layout, like TimeOrderedUuidGenerator: ids sort by registration time
+    private static UUID timeOrderedId(LocalDate date, SplittableRandom random) {
+        long millis = date.toEpochDay() * 86_400_000L + random.nextLong(86_400_000L);
+        long high = (millis << 16) | 0x7000L | (random.nextLong() & 0x0FFFL);
+        long low = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(high, low);
+    }
+
+    private static SplittableRandom random(long seed, long stream, long index) {
+        return new SplittableRandom(mix(mix(seed ^ stream) + index));
+    }
+
+    // SplitMix64 finalizer, so neighbouring indexes get unrelated streams
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,47 @@
+package com.medilynk.datasetgen;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+
+/**
+ * What DatasetLoader writes to a table: the generated row i as its column values (UUID, String, LocalDate or
+ * Number), plus statements to run once all rows are in.
+ */
+public record TableSpec(String table, List<String> columns, LongFunction<Object[]> row, List<String> afterLoad) {
+
+    /**
+     * @param sharded The target is shard 0 of a sharded patient-service, so every generated email is also added to
+     *                its patient_email directory, as ShardingConfig does for the patients it finds on startup
+     */
+    public static TableSpec patients(long seed, LocalDate asOf, boolean sharded) {
+        List<String> afterLoad = new ArrayList<>();
+        // The patient list's ETag (TableVersionService) must change, or clients keep their cached list
+        afterLoad.add("update table_version set version = version + 1 where table_name = 'patient'");
+        if (sharded) {
+            afterLoad.add("""
+                    insert into patient_email (email, patient_id)
+                    select p.email, p.id from patient p
+                    where not exists (select 1 from patient_email e where e.patient_id = p.id)""");
+        }
+        return new TableSpec("patient",
+                List.of("id", "name", "email", "address", "date_of_birth", "registered_date"),
+                index -> {
+                    Rows.PatientRow patient = Rows.patient(seed, index, asOf);
+                    return new Object[]{patient.id(), patient.name(), patient.email(), patient.address(),
+                            patient.dateOfBirth(), patient.registeredDate()};
+                },
+                List.copyOf(afterLoad));
+    }
+
+    public static TableSpec users(long seed, PasswordPool passwords) {
+        return new TableSpec("\"users\"", // Quoted, as in auth-service's data.sql: USERS is reserved in H2
+                List.of("id", "email", "password", "role"),
+                index -> {
+                    Rows.UserRow user = Rows.user(seed, index, passwords);
+                    return new Object[]{user.id(), user.email(), user.passwordHash(), user.role()};
+                },
+                List.of());
+    }
+}
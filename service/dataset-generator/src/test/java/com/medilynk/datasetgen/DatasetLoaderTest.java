@@ -0,0 +1,97 @@
+package com.medilynk.datasetgen;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Loads into an in-memory H2 database with patient-service's schema, through the batched INSERT path.
+ */
+class DatasetLoaderTest {
+
+    private static final String URL = "jdbc:h2:mem:dataset-generator;DB_CLOSE_DELAY=-1";
+    private static final long PATIENTS = DatasetLoader.CHUNK_ROWS * 2 + 500; // Three chunks, the last one partial
+
+    private Connection connection;
+
+    @BeforeEach
+    void createSchema() throws SQLException {
+        connection = DriverManager.getConnection(URL);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    CREATE TABLE patient (
+                        id UUID PRIMARY KEY,
+                        name VARCHAR(255) NOT NULL,
+                        email VARCHAR(255) UNIQUE NOT NULL,
+                        address VARCHAR(255) NOT NULL,
+                        date_of_birth DATE NOT NULL,
+                        registered_date DATE NOT NULL,
+                        version BIGINT DEFAULT 0 NOT NULL)""");
+            statement.execute("CREATE TABLE table_version (table_name VARCHAR(255) PRIMARY KEY, version BIGINT NOT NULL)");
+            statement.execute("INSERT INTO table_version VALUES ('patient', 1)");
+        }
+    }
+
+    @AfterEach
+    void dropSchema() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    void loadsEveryPatientInParallelAndBumpsTheListVersion() throws Exception {
+        LocalDate asOf = LocalDate.of(2025, 1, 1);
+        DatasetLoader loader = new DatasetLoader(new DatasetConfig.Database(URL, "", ""), 3, 1000);
+
+        assertEquals(PATIENTS, loader.load(TableSpec.patients(42, asOf, false), PATIENTS));
+
+        assertEquals(PATIENTS, queryLong("select count(*) from patient"));
+        assertEquals(2, queryLong("select version from table_version where table_name = 'patient'"));
+        Rows.PatientRow last = Rows.patient(42, PATIENTS - 1, asOf);
+        assertEquals(1, queryLong("select count(*) from patient where id = '" + last.id() + "' and email = '"
+                + last.email() + "' and registered_date = '" + last.registeredDate() + "'"));
+    }
+
+    @Test
+    void fillsTheEmailDirectoryOfAShardedTarget() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE patient_email (email VARCHAR(255) PRIMARY KEY, patient_id UUID NOT NULL)");
+        }
+        LocalDate asOf = LocalDate.of(2025, 1, 1);
+        DatasetLoader loader = new DatasetLoader(new DatasetConfig.Database(URL, "", ""), 3, 1000);
+        assertTrue(loader.hasTable("patient_email"));
+        assertFalse(loader.hasTable("patient_shard_bucket"));
+
+        loader.load(TableSpec.patients(42, asOf, true), 1000);
+
+        assertEquals(1000, queryLong("select count(*) from patient_email e join patient p on p.id = e.patient_id "
+                + "and p.email = e.email"));
+    }
+
+    @Test
+    void quotesCsvValues() {
+        StringBuilder csv = new StringBuilder();
+        DatasetLoader.appendCsv(csv, new Object[]{"12 Elm St, Springfield", "say \"hi\"", LocalDate.of(2025, 1, 1)});
+        assertEquals("\"12 Elm St, Springfield\",\"say \"\"hi\"\"\",\"2025-01-01\"\n", csv.toString());
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
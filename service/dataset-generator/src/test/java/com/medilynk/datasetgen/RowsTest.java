@@ -0,0 +1,54 @@
+package com.medilynk.datasetgen;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RowsTest {
+
+    private static final LocalDate AS_OF = LocalDate.of(2025, 1, 1);
+
+    @Test
+    void theSameSeedGivesTheSameRows() {
+        for (long index : new long[]{0, 1, 999_999, 123_456_789}) {
+            assertEquals(Rows.patient(42, index, AS_OF), Rows.patient(42, index, AS_OF));
+            assertEquals(Rows.eventId(42, index, AS_OF), Rows.eventId(42, index, AS_OF));
+        }
+        assertNotEquals(Rows.patient(42, 7, AS_OF), Rows.patient(43, 7, AS_OF));
+        assertEquals(new PasswordPool(42).hash(3), new PasswordPool(42).hash(3));
+    }
+
+    @Test
+    void patientsAreUniqueAndPlausible() {
+        Set<UUID> ids = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (long index = 0; index < 100_000; index++) {
+            Rows.PatientRow patient = Rows.patient(42, index, AS_OF);
+            assertTrue(ids.add(patient.id()));
+            assertTrue(emails.add(patient.email()));
+            assertEquals(7, patient.id().version());
+            assertFalse(patient.registeredDate().isAfter(AS_OF));
+            assertFalse(patient.registeredDate().isBefore(AS_OF.minusYears(Rows.REGISTRATION_YEARS)));
+            assertFalse(patient.registeredDate().isBefore(patient.dateOfBirth()));
+        }
+    }
+
+    @Test
+    void userPasswordsMatchTheirHashes() {
+        PasswordPool passwords = new PasswordPool(42);
+        for (long index = 0; index < PasswordPool.SIZE + 1; index++) {
+            Rows.UserRow user = Rows.user(42, index, passwords);
+            assertTrue(BCrypt.checkpw(PasswordPool.password(index), user.passwordHash()));
+            assertEquals(4, user.id().version());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.medilynk.grpcbench;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of a benchmark run, parsed from --key=value command line arguments.
+ *
+ * @param target      host:port (or any gRPC target URI) of the billing gRPC server
+ * @param method      RPC to call: CreateBillingAccount or PostCharge
+ * @param concurrency Calls kept in flight, one run per value
+ * @param connections Client connections the calls are spread over, one run per value
+ * @param duration    Length of the measured window of each run
+ * @param warmup      Length of the unmeasured warm-up before each run
+ * @param output      File the JSON results are written to
+ */
+public record BenchConfig(
+        String target,
+        String method,
+        List<Integer> concurrency,
+        List<Integer> connections,
+        Duration duration,
+        Duration warmup,
+        Path output) {
+
+    public static BenchConfig parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value but got: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1).trim());
+        }
+
+        return new BenchConfig(
+                options.getOrDefault("target", "localhost:9001"),
+                options.getOrDefault("method", "CreateBillingAccount"),
+                parseInts(options.getOrDefault("concurrency", "1,10,50,200")),
+                parseInts(options.getOrDefault("connections", "1")),
+                parseDuration(options.getOrDefault("duration", "20s")),
+                parseDuration(options.getOrDefault("warmup", "5s")),
+                Path.of(options.getOrDefault("output", "target/grpc-bench-results.json")));
+    }
+
+    /**
+     * Parses "1,10,50" into a list of positive integers.
+     */
+    static List<Integer> parseInts(String value) {
+        List<Integer> values = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            int parsed = Integer.parseInt(entry.trim());
+            if (parsed < 1) {
+                throw new IllegalArgumentException("Expected a positive number but got: " + entry);
+            }
+            values.add(parsed);
+        }
+        return values;
+    }
+
+    /**
+     * Parses durations such as "500ms", "30s" or "5m".
+     */
+    static Duration parseDuration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            default -> throw new IllegalArgumentException("Unsupported duration: " + value);
+        };
+    }
+}
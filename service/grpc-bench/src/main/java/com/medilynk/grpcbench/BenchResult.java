@@ -0,0 +1,17 @@
+package com.medilynk.grpcbench;
+
+/**
+ * Measured outcome of one concurrency/connections combination. Latencies are in milliseconds.
+ */
+public record BenchResult(
+        int concurrency,
+        int connections,
+        long calls,
+        long errors,
+        double rps,
+        double p50Ms,
+        double p90Ms,
+        double p99Ms,
+        double p999Ms,
+        double maxMs) {
+}
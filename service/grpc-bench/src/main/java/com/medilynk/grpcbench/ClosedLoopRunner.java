@@ -0,0 +1,164 @@
+package com.medilynk.grpcbench;
+
+import billing.BillingRequest;
+import billing.BillingServiceGrpc;
+import billing.ChargeRequest;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives CreateBillingAccount or PostCharge with a closed loop, like ghz: a fixed number of workers each keep exactly
+ * one call in flight and send the next one as soon as the previous completes, so the throughput is what
+ * the server sustains at that concurrency.
+ *
+ * Workers are spread round-robin over a number of channels, each with its own HTTP/2 connection, to see
+ * whether one connection (and its MAX_CONCURRENT_STREAMS and flow-control window) is the bottleneck.
+ * Calls are sent with the async stub and the next one is started from the response callback, so the
+ * harness needs no thread per worker.
+ */
+public class ClosedLoopRunner {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final Duration CALL_DEADLINE = Duration.ofSeconds(10);
+
+    private final String target;
+    private final String method;
+    private final Duration warmup;
+    private final Duration duration;
+
+    public ClosedLoopRunner(String target, String method, Duration warmup, Duration duration) {
+        if (!method.equals("CreateBillingAccount") && !method.equals("PostCharge")) {
+            throw new IllegalArgumentException("Unsupported method: " + method);
+        }
+        this.target = target;
+        this.method = method;
+        this.warmup = warmup;
+        this.duration = duration;
+    }
+
+    public BenchResult run(int concurrency, int connections) throws InterruptedException {
+        List<ManagedChannel> channels = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            channels.add(ManagedChannelBuilder.forTarget(target).usePlaintext().build());
+        }
+        try {
+            Recorder latencies = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+            LongAdder completed = new LongAdder();
+            LongAdder errors = new LongAdder();
+            CountDownLatch stopped = new CountDownLatch(concurrency);
+
+            long start = System.nanoTime();
+            long measureFrom = start + warmup.toNanos();
+            long end = measureFrom + duration.toNanos();
+            for (int worker = 0; worker < concurrency; worker++) {
+                BillingServiceGrpc.BillingServiceStub stub = BillingServiceGrpc.newStub(channels.get(worker % connections));
+                new Worker(stub, method, worker, measureFrom, end, latencies, completed, errors, stopped).next();
+            }
+
+            // Every worker stops after its call in flight at the end completes or hits its deadline
+            if (!stopped.await(duration.plus(warmup).plus(CALL_DEADLINE).toSeconds() + 5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Workers did not finish, is " + target + " responding?");
+            }
+            Histogram histogram = latencies.getIntervalHistogram();
+            return new BenchResult(
+                    concurrency,
+                    connections,
+                    completed.sum(),
+                    errors.sum(),
+                    completed.sum() / (duration.toNanos() / 1e9),
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        } finally {
+            for (ManagedChannel channel : channels) {
+                channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * One call in flight at a time; only calls started inside the measured window are counted.
+     */
+    private record Worker(
+            BillingServiceGrpc.BillingServiceStub stub,
+            String method,
+            int id,
+            long measureFrom,
+            long end,
+            Recorder latencies,
+            LongAdder completed,
+            LongAdder errors,
+            CountDownLatch stopped) {
+
+        private static final BillingRequest REQUEST = BillingRequest.newBuilder()
+                .setPatientId("00000000-0000-0000-0000-000000000000")
+                .setName("gRPC Bench")
+                .setEmail("bench@test.com")
+                .build();
+
+        void next() {
+            long sentAt = System.nanoTime();
+            if (sentAt >= end) {
+                stopped.countDown();
+                return;
+            }
+            boolean measured = sentAt >= measureFrom;
+            BillingServiceGrpc.BillingServiceStub call = stub.withDeadlineAfter(CALL_DEADLINE.toMillis(), TimeUnit.MILLISECONDS);
+            if (method.equals("PostCharge")) {
+                call.postCharge(charge(), observer(sentAt, measured));
+            } else {
+                call.createBillingAccount(REQUEST, observer(sentAt, measured));
+            }
+        }
+
+        // One account per worker, so the ledger sees many accounts
+        private ChargeRequest charge() {
+            return ChargeRequest.newBuilder()
+                    .setAccountId("bench-" + id)
+                    .setAmountCents(100)
+                    .setDescription("gRPC Bench")
+                    .build();
+        }
+
+        private <T> StreamObserver<T> observer(long sentAt, boolean measured) {
+            return new StreamObserver<>() {
+                @Override
+                public void onNext(T response) {
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    if (measured) {
+                        errors.increment();
+                    }
+                    next();
+                }
+
+                @Override
+                public void onCompleted() {
+                    if (measured) {
+                        latencies.recordValue(Math.min(System.nanoTime() - sentAt, HIGHEST_TRACKABLE_NANOS));
+                        completed.increment();
+                    }
+                    next();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.medilynk.grpcbench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point of the gRPC benchmark.
+ *
+ * Runs the closed-loop benchmark once for every combination of --concurrency and --connections against a
+ * running billing-service, prints a table of RPCs/sec and latency percentiles and writes the results as
+ * JSON. Compare server settings (billing.grpc.executor, max-concurrent-calls-per-connection, ...) by
+ * restarting billing-service with each one and running the same sweep.
+ *
+ * Example:
+ *   mvn verify -Pbench -Dbench.concurrency=1,10,100 -Dbench.connections=1,4
+ */
+public class GrpcBenchMain {
+
+    public static void main(String[] args) throws Exception {
+        BenchConfig config = BenchConfig.parse(args);
+        ClosedLoopRunner runner = new ClosedLoopRunner(config.target(), config.method(), config.warmup(), config.duration());
+
+        List<BenchResult> results = new ArrayList<>();
+        for (int connections : config.connections()) {
+            for (int concurrency : config.concurrency()) {
+                System.out.printf("Running %d concurrent %s calls over %d connection(s) against %s%n",
+                        concurrency, config.method(), connections, config.target());
+                results.add(runner.run(concurrency, connections));
+            }
+        }
+
+        writeResults(config.output(), results);
+        printSummary(results, System.out);
+    }
+
+    private static void writeResults(Path output, List<BenchResult> results) throws IOException {
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        new ObjectMapper()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(output.toFile(), results);
+    }
+
+    static void printSummary(List<BenchResult> results, PrintStream out) {
+        out.printf("%11s %11s %10s %8s %10s %9s %9s %9s %9s %9s%n",
+                "concurrency", "connections", "calls", "errors", "rps", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (BenchResult result : results) {
+            out.printf("%11d %11d %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    result.concurrency(), result.connections(), result.calls(), result.errors(), result.rps(),
+                    result.p50Ms(), result.p90Ms(), result.p99Ms(), result.p999Ms(), result.maxMs());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.medilynk.grpcbench;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import billing.BillingServiceGrpc;
+import io.grpc.Grpc;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClosedLoopRunnerTest {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final Set<String> clients = ConcurrentHashMap.newKeySet();
+    private Server server;
+
+    @AfterEach
+    void stop() {
+        server.shutdownNow();
+    }
+
+    @Test
+    void keepsConcurrencyCallsInFlightOverTheConfiguredConnections() throws Exception {
+        start(Status.OK);
+
+        BenchResult result = new ClosedLoopRunner("localhost:" + server.getPort(), "CreateBillingAccount", Duration.ofMillis(200), Duration.ofSeconds(1))
+                .run(8, 2);
+
+        // Each call takes about 10 ms, so 8 workers manage at most about 800 calls per second
+        assertEquals(0, result.errors());
+        assertTrue(result.calls() > 100 && result.calls() <= 900, "calls were " + result.calls());
+        assertTrue(result.p50Ms() >= 10, "p50 was " + result.p50Ms());
+        assertEquals(8, maxInFlight.get());
+        assertEquals(2, clients.size());
+    }
+
+    @Test
+    void countsFailedCallsAsErrors() throws Exception {
+        start(Status.UNAVAILABLE);
+
+        BenchResult result = new ClosedLoopRunner("localhost:" + server.getPort(), "CreateBillingAccount", Duration.ZERO, Duration.ofMillis(500))
+                .run(2, 1);
+
+        assertEquals(0, result.calls());
+        assertTrue(result.errors() > 0);
+    }
+
+    private void start(Status status) throws IOException {
+        server = NettyServerBuilder.forPort(0)
+                .addService(new BillingServiceGrpc.BillingServiceImplBase() {
+                    @Override
+                    public void createBillingAccount(BillingRequest request, StreamObserver<BillingResponse> responseObserver) {
+                        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        try {
+                            Thread.sleep(10);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        inFlight.decrementAndGet();
+                        if (!status.isOk()) {
+                            responseObserver.onError(status.asRuntimeException());
+                            return;
+                        }
+                        responseObserver.onNext(BillingResponse.newBuilder().setAccountId("1").setStatus("ACTIVE").build());
+                        responseObserver.onCompleted();
+                    }
+                })
+                .intercept(new ServerInterceptor() { // One remote address per client connection
+                    @Override
+                    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+                            ServerCall<ReqT, RespT> call, Metadata headers,
+                            ServerCallHandler<ReqT, RespT> next) {
+                        clients.add(String.valueOf(call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR)));
+                        return next.startCall(call, headers);
+                    }
+                })
+                .build()
+                .start();
+    }
+}
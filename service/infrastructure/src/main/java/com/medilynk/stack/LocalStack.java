@@ -20,7 +20,7 @@ import java.util.stream.Collectors;
  * LocalStack defines the AWS infrastructure for the MediLynk healthcare platform.
  * This class creates a complete microservices architecture using AWS CDK including:
  * - VPC with networking infrastructure
- * - PostgreSQL databases for data persistence
+ * - PostgreSQL databases for data persistence, with optional read replicas
  * - ECS Fargate services for containerized microservices
  * - MSK (Managed Streaming for Kafka) for event streaming
  * - Health checks for database monitoring
@@ -57,11 +57,21 @@ public class LocalStack extends Stack {
         DatabaseInstance authServiceDb = createDatabase("AuthServiceDB", "auth-service-db");
         // Patient service database stores patient records, medical history, appointments
         DatabaseInstance patientServiceDb = createDatabase("PatientServiceDB", "patient-service-db");
+        // Billing service database stores the ledger, shared by every billing-service replica
+        DatabaseInstance billingServiceDb = createDatabase("BillingServiceDB", "billing-service-db");
+        // Read replicas serve the read-only transactions (logins, patient lists and lookups), so they don't
+        // compete with writes on the primaries. Disable with: cdk synth -c readReplicas=false
+        boolean readReplicas = !"false".equals(String.valueOf(this.getNode().tryGetContext("readReplicas")));
+        DatabaseInstanceReadReplica authServiceDbReplica =
+                readReplicas ? createReadReplica(authServiceDb, "AuthServiceDBReplica") : null;
+        DatabaseInstanceReadReplica patientServiceDbReplica =
+                readReplicas ? createReadReplica(patientServiceDb, "PatientServiceDBReplica") : null;
 
         // Step 3: Create health checks to monitor database availability
         // These ensure services only start when their databases are ready
         CfnHealthCheck authDbHealthCheck = createDbHealthCheck(authServiceDb, "AuthDBHealthCheck");
         CfnHealthCheck patientDbHealthCheck = createDbHealthCheck(patientServiceDb, "PatientDBHealthCheck");
+        CfnHealthCheck billingDbHealthCheck = createDbHealthCheck(billingServiceDb, "BillingDBHealthCheck");
 
         // Step 4: Create Kafka cluster for event-driven communication between services
         CfnCluster mskCluster = createMskCluster();
@@ -78,20 +88,28 @@ public class LocalStack extends Stack {
                 "auth-service",
                 List.of(4005), // Service runs on port 4005
                 authServiceDb,
+                authServiceDbReplica,
                 Map.of("JWT_SECRET", "9740c22c0fe531c2572077b6f1bd57df59b78dbee8df3c618a4b30efaa6a2867"));
         // Ensure auth service waits for database health check and database availability
         authService.getNode().addDependency(authDbHealthCheck);
         authService.getNode().addDependency(authServiceDb);
+        if (authServiceDbReplica != null) {
+            authService.getNode().addDependency(authServiceDbReplica);
+        }
 
         // Billing Service - manages financial transactions, invoicing, payments
         // Runs on port 4001 (HTTP) and 9001 (gRPC for internal communication)
-        // No database dependency - likely uses external payment processors
+        // Depends on billing database, which holds the ledger and account balances
         FargateService billingService = createFargateService(
                 "BillingService",
                 "billing-service",
                 List.of(4001, 9001), // HTTP API and gRPC ports
-                null, // No dedicated database
+                billingServiceDb,
+                null, // No read replica - balances are read right after the writes they include
                 null); // No additional environment variables
+        // Ensure billing service waits for database health check and database availability
+        billingService.getNode().addDependency(billingDbHealthCheck);
+        billingService.getNode().addDependency(billingServiceDb);
 
         // Analytics Service - processes data for reporting and insights
         // Consumes events from Kafka for real-time analytics
@@ -100,6 +118,7 @@ public class LocalStack extends Stack {
                 "analytics-service",
                 List.of(4002), // Service runs on port 4002
                 null, // No dedicated database - likely uses data lake/warehouse
+                null,
                 null);
         // Must wait for Kafka cluster to be available for event streaming
         analyticsService.getNode().addDependency(mskCluster);
@@ -111,6 +130,7 @@ public class LocalStack extends Stack {
                 "patient-service",
                 List.of(4000), // Service runs on port 4000
                 patientServiceDb,
+                patientServiceDbReplica,
                 Map.of(
                         // Configuration for calling billing service via gRPC
                         "BILLING_SERVICE_ADDRESS", "host.docker.internal",
@@ -119,6 +139,9 @@ public class LocalStack extends Stack {
         // Complex dependency chain: database health -> database -> billing service -> kafka
         patientService.getNode().addDependency(patientDbHealthCheck);
         patientService.getNode().addDependency(patientServiceDb);
+        if (patientServiceDbReplica != null) {
+            patientService.getNode().addDependency(patientServiceDbReplica);
+        }
         patientService.getNode().addDependency(billingService);
         patientService.getNode().addDependency(mskCluster);
 
@@ -173,6 +196,29 @@ public class LocalStack extends Stack {
                 .build();
     }
 
+    /**
+     * Creates a read replica of a service database, kept up to date by PostgreSQL streaming replication.
+     * The services route read-only transactions to it and fall back to the primary while it lags
+     * (see ReplicaRoutingConfig in patient-service and auth-service).
+     *
+     * Configuration rationale:
+     * - Same instance class as the primary, so replay keeps up with the primary's write rate
+     * - Database name, credentials and storage are inherited from the source instance
+     * - DESTROY removal policy: Allows easy cleanup in development environments
+     *
+     * @param source The database instance to replicate
+     * @param id Unique identifier for the replica instance
+     * @return Configured read replica
+     */
+    private DatabaseInstanceReadReplica createReadReplica(DatabaseInstance source, String id) {
+        return DatabaseInstanceReadReplica.Builder.create(this, id)
+                .sourceDatabaseInstance(source) // Replicates from the primary
+                .vpc(vpc) // Same VPC as the primary and the services
+                .instanceType(InstanceType.of(InstanceClass.BURSTABLE2, InstanceSize.MICRO)) // Matches the primary
+                .removalPolicy(RemovalPolicy.DESTROY) // Allow deletion with stack (development setting)
+                .build();
+    }
+
     /**
      * Creates a health check for database monitoring and dependency management.
      * Health checks ensure services don't start until their dependencies are ready.
@@ -213,6 +259,7 @@ public class LocalStack extends Stack {
      * @param imageName Docker image name for the service
      * @param ports List of ports the service listens on
      * @param db Database instance (null if service doesn't need database)
+     * @param replica Read replica of db (null to send all reads to db)
      * @param additionalEnvVars Additional environment variables for service configuration
      * @return Configured Fargate service
      */
@@ -221,6 +268,7 @@ public class LocalStack extends Stack {
             String imageName,
             List<Integer> ports,
             DatabaseInstance db,
+            DatabaseInstanceReadReplica replica,
             Map<String, String> additionalEnvVars ) {
 
         // Create task definition - defines the container execution requirements
@@ -280,6 +328,17 @@ public class LocalStack extends Stack {
             envVars.put("SPRING_JPA_HIBERNATE_DDL_AUTO", "update"); // Auto-update database schema
             envVars.put("SPRING_DATASOURCE_INIT_MODE", "always"); // Always initialize datasource
             envVars.put("SPRING_DATASOURCE_HIKARI_INITIALIZATION_FAIL_TIMEOUT", "60000"); // 60 second timeout
+            // Enable PostgreSQL driver tuning (statement cache, batched insert rewriting)
+            envVars.put("SPRING_PROFILES_ACTIVE", "postgres");
+        }
+
+        // Route read-only transactions to the replica; it shares the primary's credentials
+        if (replica != null) {
+            envVars.put("SPRING_DATASOURCE_REPLICA_URL", "jdbc:postgresql://%s:%s/%s-db".formatted(
+                    replica.getDbInstanceEndpointAddress(), // RDS replica endpoint
+                    replica.getDbInstanceEndpointPort(),     // Database port
+                    imageName                                // Database name
+            ));
         }
 
         // Apply environment variables to container
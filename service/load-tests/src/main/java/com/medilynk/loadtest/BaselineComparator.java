@@ -0,0 +1,57 @@
+package com.medilynk.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares a run against a baseline run and reports scenarios whose p99 latency or throughput regressed
+ * beyond the allowed relative thresholds, or whose share of failed or dropped requests went up at all.
+ * Dropped requests (over maxInFlight) and failed ones are left out of the latency percentiles, so a run that
+ * overloads the target can keep a good p99 by shedding requests; their shares catch that. Scenarios missing
+ * from the baseline are not compared.
+ */
+public class BaselineComparator {
+
+    private final double maxP99Regression;
+    private final double maxThroughputRegression;
+
+    public BaselineComparator(double maxP99Regression, double maxThroughputRegression) {
+        this.maxP99Regression = maxP99Regression;
+        this.maxThroughputRegression = maxThroughputRegression;
+    }
+
+    /**
+     * @return a human readable description of every regression, empty when the run is within the thresholds
+     */
+    public List<String> compare(LoadTestResults baseline, LoadTestResults current) {
+        List<String> regressions = new ArrayList<>();
+        for (ScenarioResult result : current.scenarios()) {
+            baseline.find(result.scenario()).ifPresent(base -> {
+                double p99Limit = base.p99Ms() * (1 + maxP99Regression);
+                if (result.p99Ms() > p99Limit) {
+                    regressions.add("%s: p99 %.2f ms exceeds baseline %.2f ms by more than %.0f%%"
+                            .formatted(result.scenario(), result.p99Ms(), base.p99Ms(), maxP99Regression * 100));
+                }
+                double throughputLimit = base.throughput() * (1 - maxThroughputRegression);
+                if (result.throughput() < throughputLimit) {
+                    regressions.add("%s: throughput %.1f req/s is below baseline %.1f req/s by more than %.0f%%"
+                            .formatted(result.scenario(), result.throughput(), base.throughput(), maxThroughputRegression * 100));
+                }
+                if (share(result.errors(), result) > share(base.errors(), base)) {
+                    regressions.add("%s: %d errors in %d requests, more than the baseline's %d in %d"
+                            .formatted(result.scenario(), result.errors(), result.requests(), base.errors(), base.requests()));
+                }
+                if (share(result.dropped(), result) > share(base.dropped(), base)) {
+                    regressions.add("%s: %d requests dropped of %d, more than the baseline's %d of %d"
+                            .formatted(result.scenario(), result.dropped(), result.requests(), base.dropped(), base.requests()));
+                }
+            });
+        }
+        return regressions;
+    }
+
+    // Share of the scenario's requests, so runs at different rates or durations compare
+    private static double share(long count, ScenarioResult result) {
+        return result.requests() == 0 ? 0 : (double) count / result.requests();
+    }
+}
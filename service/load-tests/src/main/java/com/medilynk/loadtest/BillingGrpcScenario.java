@@ -0,0 +1,65 @@
+package com.medilynk.loadtest;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import billing.BillingServiceGrpc;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls CreateBillingAccount directly on the billing gRPC server.
+ */
+public class BillingGrpcScenario implements Scenario, AutoCloseable {
+
+    private final ManagedChannel channel;
+    private final BillingServiceGrpc.BillingServiceFutureStub stub;
+
+    public BillingGrpcScenario(String target) {
+        this.channel = ManagedChannelBuilder.forTarget(target)
+                .usePlaintext()
+                .build();
+        this.stub = BillingServiceGrpc.newFutureStub(channel);
+    }
+
+    @Override
+    public String name() {
+        return "billing";
+    }
+
+    @Override
+    public CompletableFuture<?> execute() {
+        BillingRequest request = BillingRequest.newBuilder()
+                .setPatientId(UUID.randomUUID().toString())
+                .setName("Load Test")
+                .setEmail("load@test.com")
+                .build();
+
+        CompletableFuture<BillingResponse> result = new CompletableFuture<>();
+        Futures.addCallback(stub.withDeadlineAfter(10, TimeUnit.SECONDS).createBillingAccount(request),
+                new FutureCallback<>() {
+                    @Override
+                    public void onSuccess(BillingResponse response) {
+                        result.complete(response);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        result.completeExceptionally(t);
+                    }
+                },
+                MoreExecutors.directExecutor());
+        return result;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
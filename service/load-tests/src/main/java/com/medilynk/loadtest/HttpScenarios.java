@@ -0,0 +1,158 @@
+package com.medilynk.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * HTTP scenarios sent through the API gateway, using the same test user as the integration tests.
+ */
+public class HttpScenarios {
+
+    private static final String LOGIN_PAYLOAD = """
+            {
+                "email": "testuser@test.com",
+                "password": "password123"
+            }
+            """;
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong patientCounter = new AtomicLong();
+    private String token;
+
+    public HttpScenarios(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    /**
+     * Logs in once to obtain the token used by the authenticated scenarios.
+     */
+    public void login() throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(loginRequest(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed with status " + response.statusCode());
+        }
+        JsonNode body = new ObjectMapper().readTree(response.body());
+        token = body.get("token").asText();
+    }
+
+    public Scenario loginScenario() {
+        return scenario("login", this::loginRequest);
+    }
+
+    public Scenario validateScenario() {
+        return scenario("validate", () -> authorized("/auth/validate").GET().build());
+    }
+
+    public Scenario listPatientsScenario() {
+        return scenario("listPatients", () -> authorized("/api/patients").GET().build());
+    }
+
+    /**
+     * A client polling the patient list: sends the last ETag it saw in If-None-Match and accepts compressed
+     * responses, so an unchanged list costs a 304 with an empty body.
+     */
+    public Scenario pollPatientsScenario() {
+        AtomicReference<String> lastEtag = new AtomicReference<>();
+        return new Scenario() {
+            @Override
+            public String name() {
+                return "pollPatients";
+            }
+
+            @Override
+            public CompletableFuture<?> execute() {
+                HttpRequest.Builder request = authorized("/api/patients")
+                        .header("Accept-Encoding", "br, gzip")
+                        .GET();
+                String etag = lastEtag.get();
+                if (etag != null) {
+                    request.header("If-None-Match", etag);
+                }
+                return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding())
+                        .thenApply(response -> {
+                            if (response.statusCode() >= 400) {
+                                throw new IllegalStateException("pollPatients returned status " + response.statusCode());
+                            }
+                            response.headers().firstValue("ETag").ifPresent(lastEtag::set);
+                            return response;
+                        });
+            }
+        };
+    }
+
+    public Scenario createPatientScenario() {
+        return scenario("createPatient", () -> {
+            // Unique email per request, otherwise every request after the first is rejected as a duplicate
+            String email = "load-%s-%d@test.com".formatted(runId, patientCounter.incrementAndGet());
+            String payload = """
+                    {
+                        "name": "Load Test",
+                        "email": "%s",
+                        "address": "1 Load St, Springfield",
+                        "dateOfBirth": "1990-01-01",
+                        "registeredDate": "%s"
+                    }
+                    """.formatted(email, LocalDate.now());
+            return authorized("/api/patients")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(payload))
+                    .build();
+        });
+    }
+
+    private HttpRequest loginRequest() {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(LOGIN_PAYLOAD))
+                .build();
+    }
+
+    private HttpRequest.Builder authorized(String path) {
+        if (token == null) {
+            throw new IllegalStateException("login() must be called before running authenticated scenarios");
+        }
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Authorization", "Bearer " + token);
+    }
+
+    private Scenario scenario(String name, RequestFactory requestFactory) {
+        return new Scenario() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public CompletableFuture<?> execute() {
+                return httpClient.sendAsync(requestFactory.create(), HttpResponse.BodyHandlers.discarding())
+                        .thenApply(response -> {
+                            if (response.statusCode() >= 400) {
+                                throw new IllegalStateException(name + " returned status " + response.statusCode());
+                            }
+                            return response;
+                        });
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface RequestFactory {
+        HttpRequest create();
+    }
+}
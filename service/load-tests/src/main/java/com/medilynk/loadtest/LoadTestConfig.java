@@ -0,0 +1,88 @@
+package com.medilynk.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Settings of a load run, parsed from --key=value command line arguments.
+ *
+ * @param baseUrl                 Base URL of the API gateway
+ * @param grpcTarget              host:port of the billing gRPC server
+ * @param rates                   Target arrival rate (requests/second) per scenario name; only these scenarios run
+ * @param duration                Length of the measured window
+ * @param warmup                  Length of the unmeasured warm-up run before the measured window
+ * @param output                  File the JSON results are written to (HdrHistogram .hgrm files go next to it)
+ * @param baseline                Results of a previous run to compare against, or null to skip the comparison
+ * @param maxP99Regression        Allowed relative p99 increase over the baseline (0.10 = 10%)
+ * @param maxThroughputRegression Allowed relative throughput decrease below the baseline
+ * @param maxInFlight             Requests allowed in flight per scenario before new arrivals are dropped
+ */
+public record LoadTestConfig(
+        String baseUrl,
+        String grpcTarget,
+        Map<String, Double> rates,
+        Duration duration,
+        Duration warmup,
+        Path output,
+        Path baseline,
+        double maxP99Regression,
+        double maxThroughputRegression,
+        int maxInFlight) {
+
+    public static LoadTestConfig parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value but got: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1).trim());
+        }
+
+        String baseline = options.getOrDefault("baseline", "");
+        return new LoadTestConfig(
+                options.getOrDefault("base-url", "http://localhost:4004"),
+                options.getOrDefault("grpc-target", "localhost:9001"),
+                parseRates(options.getOrDefault("rates", "login=5,validate=50,listPatients=50,createPatient=10,billing=50")),
+                parseDuration(options.getOrDefault("duration", "60s")),
+                parseDuration(options.getOrDefault("warmup", "10s")),
+                Path.of(options.getOrDefault("output", "target/load-results.json")),
+                baseline.isEmpty() ? null : Path.of(baseline),
+                Double.parseDouble(options.getOrDefault("max-p99-regression", "0.10")),
+                Double.parseDouble(options.getOrDefault("max-throughput-regression", "0.05")),
+                Integer.parseInt(options.getOrDefault("max-in-flight", "10000")));
+    }
+
+    /**
+     * Parses "login=5,billing=50" into an ordered scenario -> rate map.
+     */
+    static Map<String, Double> parseRates(String value) {
+        Map<String, Double> rates = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected scenario=rate but got: " + entry);
+            }
+            rates.put(parts[0].trim(), Double.parseDouble(parts[1].trim()));
+        }
+        return rates;
+    }
+
+    /**
+     * Parses durations such as "500ms", "30s" or "5m".
+     */
+    static Duration parseDuration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            default -> throw new IllegalArgumentException("Unsupported duration: " + value);
+        };
+    }
+}
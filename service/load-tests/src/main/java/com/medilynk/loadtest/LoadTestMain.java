@@ -0,0 +1,130 @@
+package com.medilynk.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Entry point of the load harness.
+ *
+ * Runs every scenario listed in --rates concurrently at its own arrival rate, prints a summary, writes the
+ * results as JSON (plus one HdrHistogram .hgrm percentile file per scenario) and, when --baseline is given,
+ * fails if p99 or throughput regressed past the configured thresholds, or more requests failed or were dropped.
+ *
+ * Example:
+ *   mvn verify -Pload-test -Dload.rates=listPatients=200,billing=500 -Dload.baseline=baseline.json
+ */
+public class LoadTestMain {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        LoadTestResults results = run(config);
+        writeResults(config.output(), results);
+        printSummary(results, System.out);
+
+        if (config.baseline() != null) {
+            ObjectMapper mapper = new ObjectMapper();
+            LoadTestResults baseline = mapper.readValue(config.baseline().toFile(), LoadTestResults.class);
+            List<String> regressions = new BaselineComparator(config.maxP99Regression(), config.maxThroughputRegression())
+                    .compare(baseline, results);
+            if (!regressions.isEmpty()) {
+                regressions.forEach(regression -> System.out.println("REGRESSION " + regression));
+                throw new IllegalStateException(regressions.size() + " performance regression(s) against " + config.baseline());
+            }
+            System.out.println("No regressions against " + config.baseline());
+        }
+    }
+
+    static LoadTestResults run(LoadTestConfig config) throws Exception {
+        String startedAt = Instant.now().toString();
+        Map<String, Scenario> scenarios = createScenarios(config);
+        OpenModelRunner runner = new OpenModelRunner(config.warmup(), config.duration(), config.maxInFlight());
+
+        // One scheduling thread per scenario so every scenario keeps its own arrival rate
+        ExecutorService executor = Executors.newFixedThreadPool(scenarios.size());
+        try {
+            Map<String, Future<OpenModelRunner.Measurement>> running = new LinkedHashMap<>();
+            scenarios.forEach((name, scenario) ->
+                    running.put(name, executor.submit(() -> runner.run(scenario, config.rates().get(name)))));
+
+            List<ScenarioResult> scenarioResults = new ArrayList<>();
+            for (Map.Entry<String, Future<OpenModelRunner.Measurement>> entry : running.entrySet()) {
+                OpenModelRunner.Measurement measurement = entry.getValue().get();
+                writeHistogram(config.output(), entry.getKey(), measurement);
+                scenarioResults.add(measurement.toResult(entry.getKey(), config.rates().get(entry.getKey())));
+            }
+            return new LoadTestResults(startedAt, config.duration().toSeconds(), scenarioResults);
+        } finally {
+            executor.shutdownNow();
+            for (Scenario scenario : scenarios.values()) {
+                if (scenario instanceof AutoCloseable closeable) {
+                    closeable.close();
+                }
+            }
+        }
+    }
+
+    private static Map<String, Scenario> createScenarios(LoadTestConfig config) throws Exception {
+        HttpScenarios http = new HttpScenarios(config.baseUrl());
+        boolean needsToken = config.rates().keySet().stream()
+                .anyMatch(name -> name.equals("validate") || name.equals("listPatients") || name.equals("createPatient"));
+        if (needsToken) {
+            http.login();
+        }
+
+        Map<String, Scenario> scenarios = new LinkedHashMap<>();
+        for (String name : config.rates().keySet()) {
+            Scenario scenario = switch (name) {
+                case "login" -> http.loginScenario();
+                case "validate" -> http.validateScenario();
+                case "listPatients" -> http.listPatientsScenario();
+                case "pollPatients" -> http.pollPatientsScenario();
+                case "createPatient" -> http.createPatientScenario();
+                case "billing" -> new BillingGrpcScenario(config.grpcTarget());
+                default -> throw new IllegalArgumentException("Unknown scenario: " + name);
+            };
+            scenarios.put(name, scenario);
+        }
+        return scenarios;
+    }
+
+    private static void writeResults(Path output, LoadTestResults results) throws IOException {
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        new ObjectMapper()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(output.toFile(), results);
+    }
+
+    private static void writeHistogram(Path output, String scenario, OpenModelRunner.Measurement measurement) throws IOException {
+        Path directory = output.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(scenario + ".hgrm")))) {
+            // Values are recorded in nanoseconds, scale the percentile distribution to milliseconds
+            measurement.corrected().outputPercentileDistribution(out, 1e6);
+        }
+    }
+
+    private static void printSummary(LoadTestResults results, PrintStream out) {
+        out.printf("%-14s %9s %9s %8s %7s %9s %9s %9s %9s %12s%n",
+                "scenario", "target/s", "actual/s", "errors", "dropped", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "p99 (no CO)");
+        for (ScenarioResult result : results.scenarios()) {
+            out.printf("%-14s %9.1f %9.1f %8d %7d %9.2f %9.2f %9.2f %9.2f %12.2f%n",
+                    result.scenario(), result.targetRate(), result.throughput(), result.errors(), result.dropped(),
+                    result.p50Ms(), result.p99Ms(), result.p999Ms(), result.maxMs(), result.uncorrectedP99Ms());
+        }
+    }
+}
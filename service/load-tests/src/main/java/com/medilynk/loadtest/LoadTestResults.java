@@ -0,0 +1,17 @@
+package com.medilynk.loadtest;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JSON document written at the end of a run and read back as a baseline.
+ */
+public record LoadTestResults(
+        String startedAt,
+        long durationSeconds,
+        List<ScenarioResult> scenarios) {
+
+    public Optional<ScenarioResult> find(String scenario) {
+        return scenarios.stream().filter(result -> result.scenario().equals(scenario)).findFirst();
+    }
+}
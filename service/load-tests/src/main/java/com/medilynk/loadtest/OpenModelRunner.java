@@ -0,0 +1,138 @@
+package com.medilynk.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a scenario with an open arrival model: requests are started on a fixed schedule derived from
+ * the target rate, independently of how long earlier requests take.
+ *
+ * Each latency is recorded from the request's intended start time, so when the harness or the system
+ * stalls, the time the queued-up requests spend waiting is included in the percentiles instead of being
+ * silently omitted (coordinated omission). The latency from the actual send time is recorded alongside
+ * for comparison.
+ */
+public class OpenModelRunner {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final Duration warmup;
+    private final Duration duration;
+    private final int maxInFlight;
+
+    public OpenModelRunner(Duration warmup, Duration duration, int maxInFlight) {
+        this.warmup = warmup;
+        this.duration = duration;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public Measurement run(Scenario scenario, double ratePerSecond) throws InterruptedException {
+        Recorder corrected = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+        Recorder uncorrected = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+        LongAdder completed = new LongAdder();
+        LongAdder errors = new LongAdder();
+        long dropped = 0;
+        AtomicInteger inFlight = new AtomicInteger();
+
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            boolean measured = intended >= measureFrom;
+            // Bound memory when the target is far slower than the arrival rate
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                if (measured) {
+                    dropped++;
+                }
+                continue;
+            }
+
+            long sentAt = System.nanoTime();
+            CompletableFuture<?> response;
+            try {
+                response = scenario.execute();
+            } catch (RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            response.whenComplete((result, failure) -> {
+                long now = System.nanoTime();
+                inFlight.decrementAndGet();
+                if (!measured) {
+                    return;
+                }
+                if (failure != null) {
+                    errors.increment();
+                    return;
+                }
+                corrected.recordValue(Math.min(now - intended, HIGHEST_TRACKABLE_NANOS));
+                uncorrected.recordValue(Math.min(now - sentAt, HIGHEST_TRACKABLE_NANOS));
+                completed.increment();
+            });
+        }
+
+        // Let the requests still in flight finish before taking the histograms
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+
+        return new Measurement(
+                corrected.getIntervalHistogram(),
+                uncorrected.getIntervalHistogram(),
+                completed.sum(),
+                errors.sum() + inFlight.get(), // requests that never completed count as errors
+                dropped,
+                duration);
+    }
+
+    /**
+     * Raw histograms and counters of one scenario run.
+     */
+    public record Measurement(
+            Histogram corrected,
+            Histogram uncorrected,
+            long completed,
+            long errors,
+            long dropped,
+            Duration duration) {
+
+        public ScenarioResult toResult(String scenario, double targetRate) {
+            return new ScenarioResult(
+                    scenario,
+                    targetRate,
+                    completed / (duration.toNanos() / 1e9),
+                    completed + errors + dropped,
+                    errors,
+                    dropped,
+                    millis(corrected.getValueAtPercentile(50)),
+                    millis(corrected.getValueAtPercentile(90)),
+                    millis(corrected.getValueAtPercentile(99)),
+                    millis(corrected.getValueAtPercentile(99.9)),
+                    millis(corrected.getMaxValue()),
+                    millis(uncorrected.getValueAtPercentile(99)));
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.medilynk.loadtest;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A single request type driven by the load harness.
+ * execute() must not block: it starts the request and returns a future that completes when the
+ * response has been received, or completes exceptionally when the request failed.
+ */
+public interface Scenario {
+
+    String name();
+
+    CompletableFuture<?> execute();
+}
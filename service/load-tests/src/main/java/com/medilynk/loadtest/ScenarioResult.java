@@ -0,0 +1,21 @@
+package com.medilynk.loadtest;
+
+/**
+ * Measured outcome of one scenario. Latencies are in milliseconds and, except for uncorrectedP99Ms,
+ * are corrected for coordinated omission: they are measured from the time the request was scheduled
+ * to be sent, not from when the harness actually managed to send it.
+ */
+public record ScenarioResult(
+        String scenario,
+        double targetRate,
+        double throughput,
+        long requests,
+        long errors,
+        long dropped,
+        double p50Ms,
+        double p90Ms,
+        double p99Ms,
+        double p999Ms,
+        double maxMs,
+        double uncorrectedP99Ms) {
+}
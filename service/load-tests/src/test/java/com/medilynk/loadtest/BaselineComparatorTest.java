@@ -0,0 +1,68 @@
+package com.medilynk.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BaselineComparatorTest {
+
+    private final BaselineComparator comparator = new BaselineComparator(0.10, 0.05);
+
+    @Test
+    void acceptsRunWithinThresholds() {
+        LoadTestResults baseline = results(result("billing", 500, 10.0));
+        LoadTestResults current = results(result("billing", 480, 10.9));
+
+        assertTrue(comparator.compare(baseline, current).isEmpty());
+    }
+
+    @Test
+    void reportsP99AndThroughputRegressions() {
+        LoadTestResults baseline = results(result("billing", 500, 10.0), result("login", 5, 100.0));
+        LoadTestResults current = results(result("billing", 400, 12.0), result("login", 5, 100.0));
+
+        List<String> regressions = comparator.compare(baseline, current);
+
+        assertEquals(2, regressions.size());
+        assertTrue(regressions.stream().allMatch(regression -> regression.startsWith("billing")));
+    }
+
+    @Test
+    void reportsMoreErrorsOrDropsThanTheBaseline() {
+        LoadTestResults baseline = results(result("billing", 500, 10.0, 30_000, 3, 0), result("login", 5, 100.0, 300, 0, 0));
+        // Same p99 and throughput, but the overloaded runs shed or failed requests instead of slowing down
+        LoadTestResults current = results(result("billing", 500, 10.0, 60_000, 12, 0), result("login", 5, 100.0, 300, 0, 9));
+
+        List<String> regressions = comparator.compare(baseline, current);
+
+        assertEquals(List.of("billing: 12 errors in 60000 requests, more than the baseline's 3 in 30000",
+                "login: 9 requests dropped of 300, more than the baseline's 0 of 300"), regressions);
+        // The same share of errors at twice the requests is not a regression
+        assertTrue(comparator.compare(baseline, results(result("billing", 500, 10.0, 60_000, 6, 0))).isEmpty());
+    }
+
+    @Test
+    void ignoresScenariosMissingFromBaseline() {
+        LoadTestResults baseline = results(result("billing", 500, 10.0));
+        LoadTestResults current = results(result("createPatient", 1, 900.0));
+
+        assertTrue(comparator.compare(baseline, current).isEmpty());
+    }
+
+    private static LoadTestResults results(ScenarioResult... scenarios) {
+        return new LoadTestResults("2026-01-01T00:00:00Z", 60, List.of(scenarios));
+    }
+
+    private static ScenarioResult result(String scenario, double throughput, double p99Ms) {
+        return result(scenario, throughput, p99Ms, 0, 0, 0);
+    }
+
+    private static ScenarioResult result(String scenario, double throughput, double p99Ms, long requests, long errors,
+                                         long dropped) {
+        return new ScenarioResult(scenario, throughput, throughput, requests, errors, dropped, p99Ms / 2, p99Ms / 1.5,
+                p99Ms, p99Ms, p99Ms, p99Ms);
+    }
+}
@@ -0,0 +1,94 @@
+package com.medilynk.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpenModelRunnerTest {
+
+    @Test
+    void sendsRequestsAtTheTargetRate() throws InterruptedException {
+        Scenario instant = scenario(() -> CompletableFuture.completedFuture(null));
+
+        OpenModelRunner.Measurement measurement = new OpenModelRunner(Duration.ZERO, Duration.ofSeconds(1), 1000)
+                .run(instant, 200);
+
+        assertEquals(200, measurement.completed());
+        assertEquals(0, measurement.errors());
+    }
+
+    @Test
+    void includesStallTimeOfQueuedRequestsInCorrectedLatency() throws InterruptedException {
+        // The 10th request blocks the sender for 200 ms, as a stalled connection would
+        AtomicInteger calls = new AtomicInteger();
+        Scenario stallOnce = scenario(() -> {
+            if (calls.incrementAndGet() == 10) {
+                sleep(200);
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+
+        ScenarioResult result = new OpenModelRunner(Duration.ZERO, Duration.ofSeconds(1), 1000)
+                .run(stallOnce, 100)
+                .toResult("stall", 100);
+
+        // About 20 requests were due during the stall; their waiting time must show up in the tail
+        assertTrue(result.p99Ms() >= 100, "corrected p99 was " + result.p99Ms());
+        assertTrue(result.uncorrectedP99Ms() < result.p99Ms(), "uncorrected p99 was " + result.uncorrectedP99Ms());
+    }
+
+    @Test
+    void countsFailedRequestsAsErrors() throws InterruptedException {
+        Scenario failing = scenario(() -> CompletableFuture.failedFuture(new IllegalStateException("boom")));
+
+        OpenModelRunner.Measurement measurement = new OpenModelRunner(Duration.ZERO, Duration.ofMillis(500), 1000)
+                .run(failing, 100);
+
+        assertEquals(0, measurement.completed());
+        assertEquals(50, measurement.errors());
+    }
+
+    @Test
+    void countsArrivalsOverMaxInFlightAsDropped() throws InterruptedException {
+        // Every request takes 200 ms, so with 10 ms between arrivals at most 5 can be in flight and the rest are dropped
+        Scenario slow = scenario(() -> CompletableFuture.runAsync(() -> {
+        }, CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS)));
+
+        ScenarioResult result = new OpenModelRunner(Duration.ZERO, Duration.ofMillis(500), 5)
+                .run(slow, 100)
+                .toResult("slow", 100);
+
+        assertEquals(50, result.requests());
+        assertTrue(result.dropped() >= 30, "dropped " + result.dropped());
+        assertEquals(50, result.throughput() * 0.5 + result.errors() + result.dropped(), 1e-9);
+    }
+
+    private static Scenario scenario(Supplier<CompletableFuture<?>> execute) {
+        return new Scenario() {
+            @Override
+            public String name() {
+                return "test";
+            }
+
+            @Override
+            public CompletableFuture<?> execute() {
+                return execute.get();
+            }
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
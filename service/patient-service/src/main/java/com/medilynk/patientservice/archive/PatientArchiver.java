@@ -0,0 +1,123 @@
+package com.medilynk.patientservice.archive;
+
+import com.medilynk.patientservice.repository.PatientRepository;
+import com.medilynk.patientservice.service.TableVersionService;
+import com.medilynk.patientservice.sharding.PatientShards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves patients registered more than patient.archive.retention ago from the patient table to the
+ * patient_archive cold table, every patient.archive.interval and on POST /actuator/archive. The patient table
+ * and its indexes then only grow with the patients registered within the retention period, and the patient
+ * list reads just those unless archived patients are asked for (see PatientService). The endpoint is off unless
+ * management.endpoint.archive.access is set to unrestricted, as it has no authentication of its own.
+ *
+ * Each shard archives its own patients, BATCH_SIZE per transaction. Archived patients stay on the shard they
+ * were archived on, also if ShardRebalancer later moves their bucket, so the archive is always read from every
+ * shard.
+ */
+@Slf4j
+@Component
+@Endpoint(id = "archive")
+public class PatientArchiver implements AutoCloseable {
+
+    static final int BATCH_SIZE = 500;
+
+    private final PatientRepository patientRepository;
+    private final PatientShards patientShards;
+    private final TableVersionService tableVersionService;
+    private final Period retention;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param retention How long patients stay in the patient table after registering; zero disables archival
+     * @param interval  Time between scheduled runs; zero leaves archival to the endpoint
+     */
+    public PatientArchiver(PatientRepository patientRepository,
+                           PatientShards patientShards,
+                           TableVersionService tableVersionService,
+                           @Value("${patient.archive.retention:0d}") Period retention,
+                           @Value("${patient.archive.interval:1h}") Duration interval) {
+        this.patientRepository = patientRepository;
+        this.patientShards = patientShards;
+        this.tableVersionService = tableVersionService;
+        this.retention = retention;
+
+        // Also without archival, so archived patients stay readable if it is turned off again
+        patientShards.onEveryShard(shard -> {
+            patientRepository.createArchive();
+            return null;
+        });
+
+        if (!retention.isZero() && interval.isPositive()) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                    .name("patient-archiver")
+                    .daemon()
+                    .factory());
+            scheduler.scheduleWithFixedDelay(this::archiveQuietly, interval.toNanos(), interval.toNanos(),
+                    TimeUnit.NANOSECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    @WriteOperation
+    public synchronized Map<String, Object> archive() {
+        if (retention.isZero()) {
+            throw new IllegalStateException("Archival is not enabled (patient.archive.retention)");
+        }
+        LocalDate horizon = LocalDate.now().minus(retention);
+        int archived = patientShards.onEveryShard(shard -> archiveShard(shard, horizon))
+                .stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+        if (archived > 0) {
+            tableVersionService.bump(TableVersionService.PATIENT_TABLE);
+            log.info("Archived {} patients registered before {}", archived, horizon);
+        }
+        return Map.of("registeredBefore", horizon.toString(), "patientsArchived", archived);
+    }
+
+    private int archiveShard(int shard, LocalDate horizon) {
+        patientRepository.createArchivePartitions(horizon);
+        int archived = 0;
+        UUID after = new UUID(0, 0); // Lowest id in database order
+        List<UUID> batch;
+        while (!(batch = patientRepository.findIdsRegisteredBefore(horizon, after, Limit.of(BATCH_SIZE))).isEmpty()) {
+            List<UUID> owned = batch.stream().filter(id -> patientShards.owns(shard, id)).toList();
+            archived += patientShards.writeAll(owned, (target, ids) -> patientRepository.archive(ids, horizon)).size();
+            after = batch.getLast();
+        }
+        return archived;
+    }
+
+    private void archiveQuietly() {
+        try {
+            archive();
+        } catch (RuntimeException e) {
+            log.warn("Archiving patients failed, retrying in the next run", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.medilynk.patientservice.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Limit on the requests in flight, adapted to their latency like Envoy's adaptive concurrency (gradient)
+ * controller:
+ * - minRtt, the latency without queueing, is measured every minRttInterval (plus up to 15% jitter): the limit is
+ *   pinned to minLimit until minRttRequests requests that started after the pin have finished, and their median
+ *   latency becomes minRtt;
+ * - in between, the median latency of each sampleWindow (sampleRtt) moves the limit to
+ *   limit * gradient + sqrt(limit * gradient), with gradient = minRtt * (1 + buffer) / sampleRtt clamped to
+ *   [0.5, 2]. The limit grows while requests are about as fast as without load and shrinks once they queue
+ *   for a database connection or a billing call; the square root leaves a little queue, so more capacity is
+ *   noticed when it appears.
+ *
+ * Requests over the limit are rejected, not queued. Writes may use the whole limit, reads only what
+ * writeReserve of it leaves, so reads are shed first.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Priority {
+        READ, WRITE
+    }
+
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double MAX_GRADIENT = 2.0;
+    private static final double MIN_RTT_INTERVAL_JITTER = 0.15;
+    private static final int MAX_WINDOW_SAMPLES = 4096; // Later samples of a window are left out
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double writeReserve;
+    private final double buffer;
+    private final long sampleWindowNanos;
+    private final long minRttIntervalNanos;
+    private final int minRttRequests;
+    private final LongSupplier nanoTime;
+    private final Map<Priority, Counter> rejected;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    // Guarded by this
+    private final long[] samples = new long[MAX_WINDOW_SAMPLES];
+    private int sampleCount;
+    private long windowEnd;
+    private boolean measuringMinRtt;
+    private long measurementStart;
+    private int limitBeforeMeasurement; // Restored after the measurement
+    private long nextMeasurement;
+    private volatile long minRttNanos; // 0 until the first measurement
+
+    /**
+     * @param minLimit       Lowest limit, also used while measuring minRtt
+     * @param maxLimit       Highest limit; more than the server has threads doesn't help
+     * @param writeReserve   Share of the limit only writes may use
+     * @param buffer         Latency over minRtt, as a share of it, still taken as unloaded
+     * @param sampleWindow   Time between limit updates
+     * @param minRttInterval Time between minRtt measurements
+     * @param minRttRequests Requests a minRtt measurement takes the median of
+     */
+    public AdaptiveConcurrencyLimiter(int minLimit, int maxLimit, double writeReserve, double buffer,
+                                      Duration sampleWindow, Duration minRttInterval, int minRttRequests,
+                                      MeterRegistry meterRegistry) {
+        this(minLimit, maxLimit, writeReserve, buffer, sampleWindow, minRttInterval, minRttRequests, meterRegistry,
+                System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(int minLimit, int maxLimit, double writeReserve, double buffer,
+                               Duration sampleWindow, Duration minRttInterval, int minRttRequests,
+                               MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        if (minLimit < 1 || maxLimit < minLimit || minRttRequests < 1 || minRttRequests > MAX_WINDOW_SAMPLES) {
+            throw new IllegalArgumentException("Need 1 <= minLimit <= maxLimit and 1 <= minRttRequests <= "
+                    + MAX_WINDOW_SAMPLES);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.writeReserve = writeReserve;
+        this.buffer = buffer;
+        this.sampleWindowNanos = sampleWindow.toNanos();
+        this.minRttIntervalNanos = minRttInterval.toNanos();
+        this.minRttRequests = minRttRequests;
+        this.nanoTime = nanoTime;
+
+        Gauge.builder("http.server.concurrency.limit", this, l -> l.limit)
+                .description("Requests to /patients allowed in flight at once; more are rejected with 503")
+                .register(meterRegistry);
+        Gauge.builder("http.server.concurrency.in.flight", inFlight, AtomicInteger::get)
+                .description("Requests to /patients in flight")
+                .register(meterRegistry);
+        Gauge.builder("http.server.concurrency.min.rtt", this, l -> l.minRttNanos / 1e9)
+                .description("Latency of /patients requests without queueing, at the last measurement")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        rejected = Map.of(
+                Priority.READ, rejectedCounter(meterRegistry, Priority.READ),
+                Priority.WRITE, rejectedCounter(meterRegistry, Priority.WRITE));
+
+        // Nothing is known about the latency yet, so start with a measurement
+        limit = minLimit;
+        startMeasurement(nanoTime.getAsLong());
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, Priority priority) {
+        return Counter.builder("http.server.concurrency.rejected")
+                .description("Requests to /patients rejected with 503 because the concurrency limit was reached")
+                .tag("priority", priority.name().toLowerCase())
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return The permit to release when the request is done, or null if it is over the limit
+     */
+    public Permit tryAcquire(Priority priority) {
+        int current = limit;
+        int allowed = priority == Priority.WRITE ? current : Math.max(1, current - (int) (current * writeReserve));
+        while (true) {
+            int running = inFlight.get();
+            if (running >= allowed) {
+                rejected.get(priority).increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(running, running + 1)) {
+                return new Permit(nanoTime.getAsLong());
+            }
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public final class Permit {
+
+        private final long start;
+
+        private Permit(long start) {
+            this.start = start;
+        }
+
+        public void release() {
+            inFlight.decrementAndGet();
+            record(start, nanoTime.getAsLong());
+        }
+    }
+
+    private synchronized void record(long start, long end) {
+        if (measuringMinRtt) {
+            if (start - measurementStart < 0) {
+                return; // Admitted before the limit was pinned, so it may have queued
+            }
+            addSample(end - start);
+            if (sampleCount >= minRttRequests) {
+                minRttNanos = Math.max(1, median());
+                measuringMinRtt = false;
+                limit = limitBeforeMeasurement;
+                nextMeasurement = end + minRttIntervalNanos
+                        + (long) (minRttIntervalNanos * MIN_RTT_INTERVAL_JITTER * ThreadLocalRandom.current().nextDouble());
+                startWindow(end);
+            }
+            return;
+        }
+        addSample(end - start);
+        if (end - windowEnd < 0) {
+            return;
+        }
+        if (end - nextMeasurement >= 0) {
+            startMeasurement(end);
+            return;
+        }
+        double gradient = Math.clamp(minRttNanos * (1 + buffer) / median(), MIN_GRADIENT, MAX_GRADIENT);
+        double newLimit = limit * gradient;
+        limit = (int) Math.clamp(Math.round(newLimit + Math.sqrt(newLimit)), minLimit, maxLimit);
+        startWindow(end);
+    }
+
+    private void startMeasurement(long now) {
+        measuringMinRtt = true;
+        measurementStart = now;
+        limitBeforeMeasurement = limit;
+        limit = minLimit;
+        sampleCount = 0;
+    }
+
+    private void startWindow(long now) {
+        windowEnd = now + sampleWindowNanos;
+        sampleCount = 0;
+    }
+
+    private void addSample(long rtt) {
+        if (sampleCount < samples.length) {
+            samples[sampleCount++] = rtt;
+        }
+    }
+
+    private long median() {
+        long[] sorted = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sorted);
+        return sorted[(sorted.length - 1) / 2];
+    }
+}
@@ -0,0 +1,47 @@
+package com.medilynk.patientservice.concurrency;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+/**
+ * Adaptive concurrency limit on /patients, on unless patient.concurrency-limit.enabled is false. Actuator
+ * endpoints (health checks, metrics) are not limited, so an overloaded instance still answers its probes.
+ */
+@Configuration
+@ConditionalOnProperty(name = "patient.concurrency-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    public AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter(
+            @Value("${patient.concurrency-limit.min-limit:3}") int minLimit,
+            @Value("${patient.concurrency-limit.max-limit:200}") int maxLimit,
+            @Value("${patient.concurrency-limit.write-reserve:0.2}") double writeReserve,
+            @Value("${patient.concurrency-limit.buffer:0.25}") double buffer,
+            @Value("${patient.concurrency-limit.sample-window:100ms}") Duration sampleWindow,
+            @Value("${patient.concurrency-limit.min-rtt-interval:60s}") Duration minRttInterval,
+            @Value("${patient.concurrency-limit.min-rtt-requests:50}") int minRttRequests,
+            MeterRegistry meterRegistry) {
+        return new AdaptiveConcurrencyLimiter(minLimit, maxLimit, writeReserve, buffer, sampleWindow, minRttInterval,
+                minRttRequests, meterRegistry);
+    }
+
+    /**
+     * Runs right after the observation filter, so rejected requests still show up in http.server.requests and
+     * traces, and before everything else, so they cost as little as possible.
+     */
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(AdaptiveConcurrencyLimiter limiter) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(limiter));
+        registration.addUrlPatterns("/patients", "/patients/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+}
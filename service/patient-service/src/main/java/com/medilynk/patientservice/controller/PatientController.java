@@ -1,16 +1,28 @@
 package com.medilynk.patientservice.controller;
 
+import com.medilynk.patientservice.dto.PatientBulkDeleteResponseDTO;
+import com.medilynk.patientservice.dto.PatientPatchDTO;
 import com.medilynk.patientservice.dto.PatientRequestDTO;
 import com.medilynk.patientservice.dto.PatientResponseDTO;
 import com.medilynk.patientservice.dto.validator.CreatePatientValidationGroup;
+import com.medilynk.patientservice.exception.PatientVersionMismatchException;
+import com.medilynk.patientservice.idempotency.IdempotencyStore;
 import com.medilynk.patientservice.service.PatientService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.groups.Default;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
 
@@ -19,35 +31,94 @@ import java.util.UUID;
 @Tag(name = "Patient Management", description = "APIs for managing patients") // Swagger tag for grouping related endpoints
 public class PatientController {
 
+    // Patient data is personal: only the client itself may cache it, and it must revalidate on every use
+    private static final CacheControl PATIENT_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final PatientService patientService;
+    private final IdempotencyStore idempotencyStore;
 
-    public PatientController(PatientService patientService) {
+    public PatientController(PatientService patientService, IdempotencyStore idempotencyStore) {
         this.patientService = patientService;
+        this.idempotencyStore = idempotencyStore;
     }
 
     @GetMapping
-    @Operation(summary = "Get all patients", description = "Retrieve a list of all patients") // Swagger operation description and summary
-    public ResponseEntity<List<PatientResponseDTO>> getPatients() {
-        List<PatientResponseDTO> patients = patientService.getPatients();
-        return ResponseEntity.ok().body(patients);
+    @Operation(summary = "Get all patients", description = "Retrieve a list of all patients. Archived patients "
+            + "(registered before the retention period) are left out unless includeArchived=true. Supports If-None-Match: "
+            + "returns 304 Not Modified when the list has not changed since the given ETag") // Swagger operation description and summary
+    public ResponseEntity<List<PatientResponseDTO>> getPatients(
+            @RequestParam(defaultValue = "false") boolean includeArchived, WebRequest request) {
+        // Check the ETag before loading anything, so unchanged polls cost one primary key lookup and no serialization
+        String etag = "\"patients-" + (includeArchived ? "all-" : "") + patientService.getPatientsVersion() + "\"";
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(PATIENT_CACHE_CONTROL).build();
+        }
+        List<PatientResponseDTO> patients = patientService.getPatients(includeArchived);
+        return ResponseEntity.ok().eTag(etag).cacheControl(PATIENT_CACHE_CONTROL).body(patients);
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get a patient", description = "Retrieve a patient by ID, archived ones included (those are "
+            + "read-only). The ETag is the patient's version: send it in If-Match when updating, or in If-None-Match to "
+            + "get 304 Not Modified while it is unchanged")
+    public ResponseEntity<PatientResponseDTO> getPatient(@PathVariable UUID id, WebRequest request) {
+        PatientResponseDTO patient = patientService.getPatient(id);
+        String etag = etag(patient);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(PATIENT_CACHE_CONTROL).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(PATIENT_CACHE_CONTROL).body(patient);
     }
 
     @PostMapping
-    @Operation(summary = "Create a new patient", description = "Create a new patient with the provided details")
+    @Operation(summary = "Create a new patient", description = "Create a new patient with the provided details. "
+            + "With an Idempotency-Key header, retries with the same key and body get the first response back "
+            + "(marked Idempotent-Replayed: true) instead of creating the patient again; the same key with a "
+            + "different body is refused with 422, and 409 is returned if the first request is still running")
     public ResponseEntity<PatientResponseDTO> createPatient(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            HttpServletRequest request,
             @Validated({Default.class, CreatePatientValidationGroup.class}) @RequestBody PatientRequestDTO patientRequestDTO) { // @Validated to trigger validation on the DTO fields and specify validation groups
-        PatientResponseDTO createdPatient = patientService.createPatient(patientRequestDTO);
-        return ResponseEntity.ok().body(createdPatient);
+        if (idempotencyKey == null) {
+            return created(patientService.createPatient(patientRequestDTO));
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Idempotency-Key must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        return idempotencyStore.execute(client(request), idempotencyKey, patientRequestDTO, PatientResponseDTO.class,
+                committed -> created(patientService.createPatient(patientRequestDTO,
+                        inserted -> committed.accept(created(inserted)))));
+    }
+
+    private static ResponseEntity<PatientResponseDTO> created(PatientResponseDTO createdPatient) {
+        return ResponseEntity.ok().eTag(etag(createdPatient)).body(createdPatient);
     }
 
     @PutMapping("/{id}") // ? Should we get id from path variable or request param
-    @Operation(summary = "Update an existing patient", description = "Update the details of an existing patient by ID")
+    @Operation(summary = "Update an existing patient", description = "Update the details of an existing patient by ID. "
+            + "With If-Match, only if the patient still has that ETag (412 Precondition Failed otherwise)")
     public ResponseEntity<PatientResponseDTO> updatePatient(
             @PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Validated({Default.class}) @RequestBody PatientRequestDTO patientRequestDTO) { // @Validated to trigger validation on the DTO fields
 
-        PatientResponseDTO updatedPatient = patientService.updatePatient(id, patientRequestDTO);
-        return ResponseEntity.ok().body(updatedPatient);
+        PatientResponseDTO updatedPatient = patientService.updatePatient(id, expectedVersion(ifMatch), patientRequestDTO);
+        return ResponseEntity.ok().eTag(etag(updatedPatient)).body(updatedPatient);
+    }
+
+    @PatchMapping("/{id}")
+    @Operation(summary = "Partially update a patient", description = "Change only the fields given, in a single UPDATE. "
+            + "With If-Match, only if the patient still has that ETag (412 Precondition Failed otherwise)")
+    public ResponseEntity<PatientResponseDTO> patchPatient(
+            @PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Validated @RequestBody PatientPatchDTO patientPatchDTO) {
+
+        PatientResponseDTO patchedPatient = patientService.patchPatient(id, expectedVersion(ifMatch), patientPatchDTO);
+        return ResponseEntity.ok().eTag(etag(patchedPatient)).body(patchedPatient);
     }
 
     @DeleteMapping("/{id}")
@@ -56,4 +127,48 @@ public class PatientController {
         patientService.deletePatient(id);
         return ResponseEntity.noContent().build();
     }
+
+    @DeleteMapping
+    @Operation(summary = "Delete patients in bulk", description = "Delete the patients with the given ids "
+            + "(?id=...&id=...) or every patient registered before a date (?registeredBefore=yyyy-MM-dd), "
+            + "as batched DELETE statements of up to 500 patients per transaction")
+    public ResponseEntity<PatientBulkDeleteResponseDTO> deletePatients(
+            @RequestParam(name = "id", required = false) List<UUID> ids,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate registeredBefore) {
+        if ((ids == null || ids.isEmpty()) == (registeredBefore == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Give either id or registeredBefore");
+        }
+        PatientBulkDeleteResponseDTO response = new PatientBulkDeleteResponseDTO();
+        response.setDeleted(registeredBefore == null
+                ? patientService.deletePatients(ids)
+                : patientService.deletePatientsRegisteredBefore(registeredBefore));
+        return ResponseEntity.ok().body(response);
+    }
+
+    // Idempotency keys are per client: the Authorization header forwarded by the gateway, else the address
+    private static String client(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return authorization != null ? authorization : request.getRemoteAddr();
+    }
+
+    // Strong ETag of a single patient: its version
+    private static String etag(PatientResponseDTO patient) {
+        return "\"" + patient.getVersion() + "\"";
+    }
+
+    // Version an If-Match header requires, or null for none (absent or *). A weak or unknown tag can never match.
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException e) {
+                // Not one of ours
+            }
+        }
+        throw new PatientVersionMismatchException("If-Match " + ifMatch + " is not a current patient ETag");
+    }
 }
@@ -0,0 +1,30 @@
+package com.medilynk.patientservice.datasource;
+
+/**
+ * Per-thread decision, made once per request by ReadYourWritesFilter, whether the read-only transactions of the
+ * current request use the replica or the primary. Threads without a decision (gRPC calls, scheduled jobs) read
+ * from the primary.
+ */
+public final class ReadRouting {
+
+    private static final ThreadLocal<Boolean> USE_REPLICA = new ThreadLocal<>();
+
+    private ReadRouting() {
+    }
+
+    public static void useReplica() {
+        USE_REPLICA.set(Boolean.TRUE);
+    }
+
+    public static void pinToPrimary() {
+        USE_REPLICA.set(Boolean.FALSE);
+    }
+
+    public static boolean isReplicaAllowed() {
+        return Boolean.TRUE.equals(USE_REPLICA.get());
+    }
+
+    public static void clear() {
+        USE_REPLICA.remove();
+    }
+}
@@ -0,0 +1,80 @@
+package com.medilynk.patientservice.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides per request whether its read-only transactions may use the replica. They go to the primary when:
+ * - the request is a write, so it reads back what it just changed (and loads entities at their current version);
+ * - the same client made a write less than window ago, so it sees its own changes on the next request;
+ * - the replica is not usable when the request starts. Deciding once per request means a request never moves
+ *   from the primary to an older replica halfway, e.g. between reading the list version and the list; the
+ *   decision is kept in ReadRouting, which ReplicaFallbackDataSource routes on.
+ *
+ * Clients are told apart by their Authorization header (forwarded by the gateway), else by address. The window
+ * should cover the largest lag the replica is used at plus the lag check interval. Writes are remembered by
+ * each instance, so stickiness holds as long as the client's requests reach the same instance.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS", "TRACE");
+    private static final int PURGE_THRESHOLD = 10_000; // Remembered clients before expired entries are dropped
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final long windowNanos;
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>(); // Client -> System.nanoTime() of its last write
+
+    public ReadYourWritesFilter(ReplicaLagMonitor lagMonitor, Duration window) {
+        this.lagMonitor = lagMonitor;
+        this.windowNanos = window.toNanos();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String client = clientKey(request);
+        boolean write = !SAFE_METHODS.contains(request.getMethod());
+        if (write || wroteRecently(client) || !lagMonitor.isReplicaUsable()) {
+            ReadRouting.pinToPrimary();
+        } else {
+            ReadRouting.useReplica();
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadRouting.clear();
+            // Also after an error: the request may have committed before failing
+            if (write) {
+                recordWrite(client);
+            }
+        }
+    }
+
+    private boolean wroteRecently(String client) {
+        Long lastWrite = lastWrites.get(client);
+        return lastWrite != null && System.nanoTime() - lastWrite < windowNanos;
+    }
+
+    private void recordWrite(String client) {
+        long now = System.nanoTime();
+        if (lastWrites.size() >= PURGE_THRESHOLD) {
+            lastWrites.values().removeIf(lastWrite -> now - lastWrite >= windowNanos);
+        }
+        lastWrites.put(client, now);
+    }
+
+    private static String clientKey(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return authorization != null ? authorization : request.getRemoteAddr();
+    }
+}
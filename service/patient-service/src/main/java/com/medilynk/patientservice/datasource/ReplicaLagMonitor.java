@@ -0,0 +1,109 @@
+package com.medilynk.patientservice.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how far the replica is behind the primary, every checkInterval, with lagQuery (a single row with
+ * the lag in seconds). The replica stays usable for reads while the last check succeeded within
+ * 2 * checkInterval and found a lag of at most maxLag; otherwise reads fall back to the primary until a later
+ * check finds it caught up.
+ */
+@Slf4j
+public class ReplicaLagMonitor implements AutoCloseable {
+
+    private final DataSource replica;
+    private final String lagQuery;
+    private final long maxLagNanos;
+    private final long checkIntervalNanos;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile double lagSeconds = Double.NaN; // NaN until the first successful check
+    private volatile long usableUntil; // System.nanoTime() after which the last check is too old to trust
+    private volatile boolean usable;
+
+    /**
+     * @param replica       Replica pool the lag query runs on
+     * @param lagQuery      Query returning the replication lag in seconds
+     * @param maxLag        Largest lag at which reads still go to the replica
+     * @param checkInterval Time between lag checks; zero disables the scheduled checks (see check())
+     */
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, Duration maxLag, Duration checkInterval,
+                             MeterRegistry meterRegistry) {
+        this.replica = replica;
+        this.lagQuery = lagQuery;
+        this.maxLagNanos = maxLag.toNanos();
+        this.checkIntervalNanos = checkInterval.toNanos();
+
+        Gauge.builder("db.replica.lag", this, m -> m.lagSeconds)
+                .description("Replication lag of the read replica at the last check, in seconds")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("db.replica.usable", this, m -> m.isReplicaUsable() ? 1 : 0)
+                .description("1 while read-only transactions are routed to the replica, 0 while they fall back to the primary")
+                .register(meterRegistry);
+
+        if (checkIntervalNanos > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                    .name("replica-lag-monitor")
+                    .daemon()
+                    .factory());
+            scheduler.scheduleWithFixedDelay(this::check, 0, checkIntervalNanos, TimeUnit.NANOSECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    public boolean isReplicaUsable() {
+        return usable && (scheduler == null || System.nanoTime() - usableUntil < 0);
+    }
+
+    /**
+     * Runs the lag query once and updates whether the replica is usable.
+     */
+    public void check() {
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            resultSet.next();
+            double lag = resultSet.getDouble(1);
+            lagSeconds = lag;
+            boolean caughtUp = (long) (lag * 1e9) <= maxLagNanos;
+            if (caughtUp != usable) {
+                log.info("Read replica is {} (lag {}s)", caughtUp ? "usable" : "lagging, reading from the primary", lag);
+            }
+            usableUntil = System.nanoTime() + 2 * checkIntervalNanos;
+            usable = caughtUp;
+        } catch (SQLException | RuntimeException e) {
+            markUnavailable(e);
+        }
+    }
+
+    /**
+     * Sends reads to the primary until the next successful check.
+     */
+    public void markUnavailable(Exception cause) {
+        if (usable) {
+            log.warn("Read replica is unavailable, reading from the primary: {}", cause.getMessage());
+        }
+        usable = false;
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.medilynk.patientservice.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class PatientBulkDeleteResponseDTO {
+    private int deleted; // Patients that existed and were deleted
+}
@@ -0,0 +1,36 @@
+package com.medilynk.patientservice.dto;
+
+import com.medilynk.patientservice.dto.validator.IsoDate;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Body of PATCH /patients/{id}: only the fields that are present are changed, so every field is optional,
+ * but a field that is present must be valid.
+ */
+@Getter
+@Setter
+public class PatientPatchDTO {
+    @Pattern(regexp = ".*\\S.*", message = "Name must not be blank")
+    @Size(max = 100, message = "Name can have at most 100 characters")
+    private String name;
+
+    @Pattern(regexp = ".*\\S.*", message = "Email must not be blank")
+    @Email(message = "Email should be valid")
+    private String email;
+
+    @Pattern(regexp = ".*\\S.*", message = "Address must not be blank")
+    private String address;
+
+    @IsoDate(message = "Date of Birth must be a valid yyyy-MM-dd date")
+    private String dateOfBirth;
+
+    @AssertTrue(message = "At least one field must be given")
+    public boolean isAnyFieldGiven() {
+        return name != null || email != null || address != null || dateOfBirth != null;
+    }
+}
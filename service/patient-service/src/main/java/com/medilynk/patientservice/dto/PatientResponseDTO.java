@@ -1,5 +1,6 @@
 package com.medilynk.patientservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -12,4 +13,6 @@ public class PatientResponseDTO {
     private String address;
     private String dateOfBirth;
     private String registeredDate;
+    @JsonIgnore // Sent as the ETag header instead
+    private Long version;
 }
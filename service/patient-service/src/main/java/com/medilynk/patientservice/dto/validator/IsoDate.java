@@ -0,0 +1,25 @@
+package com.medilynk.patientservice.dto.validator;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A yyyy-MM-dd date that exists in the calendar, so 2023-02-30 is rejected like any other malformed date.
+ * Null is valid; combine with @NotBlank where the field is required.
+ */
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+@Constraint(validatedBy = IsoDateValidator.class)
+public @interface IsoDate {
+
+    String message() default "Must be a valid yyyy-MM-dd date";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
@@ -0,0 +1,24 @@
+package com.medilynk.patientservice.dto.validator;
+
+import com.medilynk.patientservice.util.IsoDates;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+import java.time.format.DateTimeParseException;
+
+public class IsoDateValidator implements ConstraintValidator<IsoDate, String> {
+
+    @Override
+    public boolean isValid(String value, ConstraintValidatorContext context) {
+        if (value == null) {
+            return true;
+        }
+        // Parsed the same way as PatientService will, so whatever passes here can be stored
+        try {
+            IsoDates.parse(value);
+            return value.length() == 10;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.medilynk.patientservice.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -39,4 +41,35 @@ public class GlobalExceptionHandler { // Centralized exception handling across a
         return ResponseEntity.badRequest().body(error);
     }
 
+    @ExceptionHandler(PatientVersionMismatchException.class) // If-Match named a version the patient no longer has
+    public ResponseEntity<Map<String, String>> handlePatientVersionMismatchException(PatientVersionMismatchException ex) {
+        log.warn("Patient version mismatch: {}", ex.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("message", "Patient was modified, fetch it again");
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(error);
+    }
+
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class) // Another update committed between load and save
+    public ResponseEntity<Map<String, String>> handleOptimisticLockingFailureException(ObjectOptimisticLockingFailureException ex) {
+        log.warn("Concurrent patient update: {}", ex.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("message", "Patient was modified concurrently, try again");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
+    @ExceptionHandler(IdempotencyKeyMismatchException.class) // Idempotency-Key reused with a different body
+    public ResponseEntity<Map<String, String>> handleIdempotencyKeyMismatchException(IdempotencyKeyMismatchException ex) {
+        log.warn("Idempotency key mismatch: {}", ex.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("message", "Idempotency key was already used for a different request");
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(error);
+    }
+
+    @ExceptionHandler(IdempotencyKeyInProgressException.class) // The first request with the key didn't finish in time
+    public ResponseEntity<Map<String, String>> handleIdempotencyKeyInProgressException(IdempotencyKeyInProgressException ex) {
+        log.warn("Idempotency key in progress: {}", ex.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("message", "A request with this idempotency key is still running, try again");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
 }
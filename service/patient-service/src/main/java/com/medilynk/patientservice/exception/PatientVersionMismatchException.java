@@ -0,0 +1,7 @@
+package com.medilynk.patientservice.exception;
+
+public class PatientVersionMismatchException extends RuntimeException {
+    public PatientVersionMismatchException(String message) {
+        super(message);
+    }
+}
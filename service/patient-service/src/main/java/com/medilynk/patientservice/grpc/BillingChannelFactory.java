@@ -0,0 +1,115 @@
+package com.medilynk.patientservice.grpc;
+
+import billing.BillingServiceGrpc;
+import io.grpc.ClientInterceptor;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the channel to the Billing Service.
+ *
+ * - Target: a gRPC target URI. dns:///billing-service:9001 (the default, from billing.service.address/port)
+ *   connects to every address the name resolves to; static:///host1:9001,host2:9001 uses a fixed list
+ *   (StaticNameResolverProvider).
+ * - Load balancing: round_robin opens a subchannel to each endpoint and spreads calls across the ready ones,
+ *   instead of pick_first sending everything to one replica.
+ * - Keepalive: pings on connections with calls in flight, so a dead replica is noticed within
+ *   keepAliveTime + keepAliveTimeout instead of when the OS gives up on the TCP connection. billing-service
+ *   must permit pings at least this often (grpc.server.permit-keep-alive-time).
+ * - Retries: CreateBillingAccount is retried on UNAVAILABLE (the call never reached a server, e.g. a replica
+ *   shutting down), with exponential backoff; round_robin sends the retry to the next subchannel.
+ */
+@Slf4j
+@Component
+public class BillingChannelFactory {
+
+    private final String target;
+    private final String loadBalancingPolicy;
+    private final Duration keepAliveTime;
+    private final Duration keepAliveTimeout;
+    private final Duration idleTimeout;
+    private final int retryMaxAttempts;
+    private final Duration retryInitialBackoff;
+    private final Duration retryMaxBackoff;
+
+    /**
+     * @param target              gRPC target URI of the Billing Service (dns:///host:port or static:///host:port,...)
+     * @param loadBalancingPolicy Load balancing policy across the resolved endpoints
+     * @param keepAliveTime       Time without reads on a connection with calls in flight before a keepalive ping
+     * @param keepAliveTimeout    Time to wait for the ping ack before the connection is considered dead
+     * @param idleTimeout         Time without calls after which the channel closes its connections
+     * @param retryMaxAttempts    Maximum attempts for CreateBillingAccount, including the first one
+     * @param retryInitialBackoff Backoff before the first retry; later ones double up to retryMaxBackoff
+     * @param retryMaxBackoff     Upper bound on the backoff between attempts
+     */
+    public BillingChannelFactory(
+            @Value("${billing.service.target:dns:///${billing.service.address:localhost}:${billing.service.port:9001}}") String target,
+            @Value("${billing.service.load-balancing-policy:round_robin}") String loadBalancingPolicy,
+            @Value("${billing.service.keep-alive-time:30s}") Duration keepAliveTime,
+            @Value("${billing.service.keep-alive-timeout:10s}") Duration keepAliveTimeout,
+            @Value("${billing.service.idle-timeout:5m}") Duration idleTimeout,
+            @Value("${billing.service.retry.max-attempts:3}") int retryMaxAttempts,
+            @Value("${billing.service.retry.initial-backoff:100ms}") Duration retryInitialBackoff,
+            @Value("${billing.service.retry.max-backoff:1s}") Duration retryMaxBackoff) {
+        this.target = target;
+        this.loadBalancingPolicy = loadBalancingPolicy;
+        this.keepAliveTime = keepAliveTime;
+        this.keepAliveTimeout = keepAliveTimeout;
+        this.idleTimeout = idleTimeout;
+        this.retryMaxAttempts = retryMaxAttempts;
+        this.retryInitialBackoff = retryInitialBackoff;
+        this.retryMaxBackoff = retryMaxBackoff;
+    }
+
+    /**
+     * Creates a plaintext channel to the target; the caller owns it and must shut it down.
+     */
+    public ManagedChannel create(ClientInterceptor... interceptors) {
+        log.info("Connecting to Billing Service gRPC service at {} ({})", target, loadBalancingPolicy);
+        return ManagedChannelBuilder.forTarget(target)
+                .usePlaintext()
+                .defaultServiceConfig(serviceConfig())
+                .disableServiceConfigLookUp() // Ours, not one published in DNS TXT records
+                .enableRetry()
+                .maxRetryAttempts(retryMaxAttempts)
+                .keepAliveTime(keepAliveTime.toMillis(), TimeUnit.MILLISECONDS)
+                .keepAliveTimeout(keepAliveTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .keepAliveWithoutCalls(false) // Idle connections are closed by idleTimeout instead
+                .idleTimeout(idleTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .intercept(interceptors)
+                .build();
+    }
+
+    /**
+     * gRPC service config (https://github.com/grpc/grpc/blob/master/doc/service_config.md); numbers must be
+     * doubles and durations strings in seconds.
+     */
+    Map<String, ?> serviceConfig() {
+        Map<String, Object> retryPolicy = Map.of(
+                "maxAttempts", (double) retryMaxAttempts,
+                "initialBackoff", seconds(retryInitialBackoff),
+                "maxBackoff", seconds(retryMaxBackoff),
+                "backoffMultiplier", 2.0,
+                "retryableStatusCodes", List.of("UNAVAILABLE"));
+        Map<String, Object> createBillingAccount = Map.of(
+                "name", List.of(Map.of(
+                        "service", BillingServiceGrpc.SERVICE_NAME,
+                        "method", BillingServiceGrpc.getCreateBillingAccountMethod().getBareMethodName())),
+                "retryPolicy", retryPolicy);
+        return Map.of(
+                "loadBalancingConfig", List.of(Map.of(loadBalancingPolicy, Map.of())),
+                "methodConfig", List.of(createBillingAccount));
+    }
+
+    private static String seconds(Duration duration) {
+        return duration.toMillis() / 1000.0 + "s";
+    }
+}
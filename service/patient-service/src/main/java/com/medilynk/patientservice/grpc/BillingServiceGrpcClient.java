@@ -4,38 +4,52 @@ import billing.BillingRequest;
 import billing.BillingResponse;
 import billing.BillingServiceGrpc;
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
+import io.micrometer.core.instrument.binder.grpc.ObservationGrpcClientInterceptor;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.TimeUnit;
+
 @Slf4j
 @Service
 public class BillingServiceGrpcClient {
+    // Channel to the Billing Service replicas, closed with the application context
+    private final ManagedChannel channel;
     // Blocking stub used to make synchronous gRPC calls to the Billing Service
     private final BillingServiceGrpc.BillingServiceBlockingStub blockingStub;
 
     /**
      * Constructor initializes the gRPC channel and stub for Billing Service communication.
-     * @param serverAddress Address of the Billing Service (from properties or default)
-     * @param serverPort Port of the Billing Service (from properties or default)
+     * @param channelFactory Builds the load-balanced channel (target, keepalive and retry settings)
+     * @param metricsInterceptor Interceptor recording per-method and per-endpoint call latency
+     * @param observationRegistry Registry used to propagate the trace context in the gRPC metadata
      */
     public BillingServiceGrpcClient(
-            @Value("${billing.service.address:localhost}") String serverAddress, // Default to localhost if not set
-            @Value("${billing.service.port:9001}") int serverPort) { // Default to 9001 if not set
-        // Log the connection details for debugging
-        log.info("Connecting to  Billing Service GRPC service at {}:{}", serverAddress, serverPort);
-
-        // Create a gRPC channel to the Billing Service using plaintext (no SSL)
-        ManagedChannel channel = ManagedChannelBuilder
-                .forAddress(serverAddress, serverPort)
-                .usePlaintext()
-                .build();
+            BillingChannelFactory channelFactory,
+            GrpcClientMetricsInterceptor metricsInterceptor,
+            ObservationRegistry observationRegistry) {
+        channel = channelFactory.create(
+                metricsInterceptor, // Record per-method latency
+                new ObservationGrpcClientInterceptor(observationRegistry)); // Client span + traceparent metadata
 
         // Initialize the blocking stub for making synchronous calls
         blockingStub = BillingServiceGrpc.newBlockingStub(channel);
     }
 
+    /**
+     * Closes the channel when the application context shuts down, letting calls in flight finish first.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        channel.shutdown();
+        if (!channel.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("Billing Service gRPC channel did not terminate in time, cancelling remaining calls");
+            channel.shutdownNow();
+        }
+    }
+
     /**
      * Creates a billing account for a patient by making a gRPC call to the Billing Service.
      * @param patientId Unique identifier for the patient
@@ -58,7 +72,7 @@ public class BillingServiceGrpcClient {
         // Make the gRPC call to create the billing account and receive the response
         BillingResponse response = blockingStub.createBillingAccount(request);
         // Log the response for debugging and traceability
-        log.info("Received response form billing service via grpc {}", response);
+        log.debug("Received response form billing service via grpc {}", response);
         return response;
     }
 }
@@ -0,0 +1,71 @@
+package com.medilynk.patientservice.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Grpc;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency of every outgoing gRPC call as the grpc.client.requests timer,
+ * tagged with the service, method, resulting status code and the endpoint (subchannel) that served it.
+ * The endpoint tag shows how a load-balanced channel spreads calls across replicas; calls that never got
+ * a connection are tagged "none".
+ */
+@Component
+public class GrpcClientMetricsInterceptor implements ClientInterceptor {
+
+    private final MeterRegistry meterRegistry;
+
+    public GrpcClientMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+            MethodDescriptor<ReqT, RespT> method,
+            CallOptions callOptions,
+            Channel next) {
+
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                long startNanos = System.nanoTime();
+                ClientCall<ReqT, RespT> call = this;
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        // Record the call latency once the server has closed the call
+                        Timer.builder("grpc.client.requests")
+                                .description("Latency of outgoing gRPC calls")
+                                .tag("service", method.getServiceName())
+                                .tag("method", method.getBareMethodName())
+                                .tag("status", status.getCode().name())
+                                .tag("endpoint", endpoint(call))
+                                .publishPercentileHistogram()
+                                .register(meterRegistry)
+                                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    // Remote address of the transport the call ran on, once it has one
+    private static String endpoint(ClientCall<?, ?> call) {
+        SocketAddress address = call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+        return address != null ? address.toString() : "none";
+    }
+}
@@ -0,0 +1,125 @@
+package com.medilynk.patientservice.grpc;
+
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Resolves gRPC targets of the form static:///host1:port1,host2:port2 to a fixed list of endpoints, one
+ * address group per endpoint so a round_robin channel opens a subchannel to each of them.
+ *
+ * For deployments without a DNS name that returns every replica (for those, use dns:///name:port).
+ * Registered through META-INF/services, so any channel built with forTarget("static:///...") can use it.
+ * Targets are checked when the channel is built, which fails with an IllegalArgumentException naming the
+ * target if an endpoint is not host:port with a port from 0 to 65535.
+ */
+public class StaticNameResolverProvider extends NameResolverProvider {
+
+    static final String SCHEME = "static";
+
+    @Override
+    public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+        if (!SCHEME.equals(targetUri.getScheme())) {
+            return null;
+        }
+        String endpoints = targetUri.getPath().startsWith("/") ? targetUri.getPath().substring(1) : targetUri.getPath();
+        List<Endpoint> parsed = new ArrayList<>();
+        for (String endpoint : endpoints.split(",")) {
+            parsed.add(Endpoint.parse(endpoint.trim(), targetUri));
+        }
+        return new StaticNameResolver(endpoints, parsed);
+    }
+
+    @Override
+    public String getDefaultScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    protected boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    protected int priority() {
+        return 5; // Same as the built-in providers; only used for targets with this scheme
+    }
+
+    @Override
+    public Collection<Class<? extends SocketAddress>> getProducedSocketAddressTypes() {
+        return List.of(InetSocketAddress.class);
+    }
+
+    private record Endpoint(String host, int port) {
+
+        static Endpoint parse(String hostAndPort, URI target) {
+            int colon = hostAndPort.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException(
+                        "Expected host:port, got '" + hostAndPort + "' in gRPC target " + target);
+            }
+            int port;
+            try {
+                port = Integer.parseInt(hostAndPort.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        "Invalid port in '" + hostAndPort + "' in gRPC target " + target, e);
+            }
+            if (port < 0 || port > 65535) {
+                throw new IllegalArgumentException(
+                        "Port out of range in '" + hostAndPort + "' in gRPC target " + target);
+            }
+            return new Endpoint(hostAndPort.substring(0, colon), port);
+        }
+    }
+
+    private static final class StaticNameResolver extends NameResolver {
+
+        private final String endpoints;
+        private final List<Endpoint> parsed;
+        private Listener2 listener;
+
+        private StaticNameResolver(String endpoints, List<Endpoint> parsed) {
+            this.endpoints = endpoints;
+            this.parsed = parsed;
+        }
+
+        @Override
+        public String getServiceAuthority() {
+            int comma = endpoints.indexOf(',');
+            return comma < 0 ? endpoints : endpoints.substring(0, comma);
+        }
+
+        @Override
+        public void start(Listener2 listener) {
+            this.listener = listener;
+            resolve();
+        }
+
+        @Override
+        public void refresh() {
+            resolve(); // Called by the channel when connections fail, so changed host addresses are picked up
+        }
+
+        private void resolve() {
+            // New addresses on every call, so changed host addresses are looked up again
+            List<EquivalentAddressGroup> addresses = new ArrayList<>();
+            for (Endpoint endpoint : parsed) {
+                addresses.add(new EquivalentAddressGroup(new InetSocketAddress(endpoint.host(), endpoint.port())));
+            }
+            listener.onResult(ResolutionResult.newBuilder().setAddresses(addresses).build());
+        }
+
+        @Override
+        public void shutdown() {
+            // Resolution is synchronous, so there is nothing to cancel
+        }
+    }
+}
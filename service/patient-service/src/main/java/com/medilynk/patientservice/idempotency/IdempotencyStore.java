@@ -0,0 +1,363 @@
+package com.medilynk.patientservice.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medilynk.patientservice.exception.IdempotencyKeyInProgressException;
+import com.medilynk.patientservice.exception.IdempotencyKeyMismatchException;
+import com.medilynk.patientservice.sharding.PatientShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Responses to requests sent with an Idempotency-Key header, so a client retrying after a timeout gets the first
+ * response back instead of running the request again.
+ *
+ * The first request claims its key by inserting a row into the idempotency_key table (created by data.sql), and
+ * stores its response (status, ETag and body) in that row when it succeeds. A request that fails before writing
+ * anything releases its key, so a retry runs it again. One that fails after its write committed (e.g. in the
+ * billing call after the insert) stores the response of the write instead, so a retry gets that rather than
+ * writing a second time. Stored responses are replayed for ttl, from a bounded in-memory cache (cache-size entries, least
+ * recently used dropped first) or else from the table; expired rows are purged every purge-interval.
+ *
+ * Duplicates arriving while the first request runs wait for its response, for at most wait-timeout (409 after
+ * that): on the same instance on its future, on other instances by polling the row. A claim not completed
+ * within lease is taken to belong to an instance that died and is taken over.
+ *
+ * Keys are scoped to the client, so a client can't replay another's response, and only replay the same request
+ * body: a different body under a used key is refused with 422. Both are stored as hashes. With sharding the
+ * table lives on shard 0.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore implements AutoCloseable {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PatientShards patientShards;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private final Duration lease;
+    private final Map<String, StoredResponse> cache;
+    private final ConcurrentMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter replayed;
+    private final ScheduledExecutorService scheduler;
+
+    private record StoredResponse(String requestHash, Instant createdAt, int status, String etag, String body) {
+    }
+
+    @FunctionalInterface
+    public interface Operation<T> {
+
+        /**
+         * @param committed To call with the response as soon as the request's write has committed, before any
+         *                  later step that may still fail
+         */
+        ResponseEntity<T> run(Consumer<ResponseEntity<T>> committed);
+    }
+
+    /**
+     * @param ttl           How long a response is replayed after the first request
+     * @param cacheSize     Responses kept in memory; older ones are read from the table
+     * @param waitTimeout   Longest a duplicate waits for the first request to finish
+     * @param lease         Time after which an unfinished claim is taken over
+     * @param purgeInterval Time between deletions of expired rows; zero disables them
+     */
+    public IdempotencyStore(JdbcTemplate jdbcTemplate,
+                            PatientShards patientShards,
+                            ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${patient.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${patient.idempotency.cache-size:10000}") int cacheSize,
+                            @Value("${patient.idempotency.wait-timeout:10s}") Duration waitTimeout,
+                            @Value("${patient.idempotency.lease:30s}") Duration lease,
+                            @Value("${patient.idempotency.purge-interval:1h}") Duration purgeInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.patientShards = patientShards;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+        this.lease = lease;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > cacheSize;
+            }
+        });
+        this.executed = Counter.builder("patient.idempotency.requests")
+                .description("Requests with an Idempotency-Key, by whether they ran or got a stored response")
+                .tag("outcome", "executed")
+                .register(meterRegistry);
+        this.replayed = Counter.builder("patient.idempotency.requests")
+                .description("Requests with an Idempotency-Key, by whether they ran or got a stored response")
+                .tag("outcome", "replayed")
+                .register(meterRegistry);
+
+        if (purgeInterval.isPositive()) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                    .name("idempotency-purge")
+                    .daemon()
+                    .factory());
+            scheduler.scheduleWithFixedDelay(this::purgeQuietly, purgeInterval.toNanos(), purgeInterval.toNanos(),
+                    TimeUnit.NANOSECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Runs operation once per client and key, and returns its response, or the stored one (with the
+     * Idempotent-Replayed header) if it already ran.
+     *
+     * @param client  The caller, e.g. its Authorization header
+     * @param key     The Idempotency-Key header
+     * @param request The request body, which every retry must repeat
+     */
+    public <T> ResponseEntity<T> execute(String client, String key, Object request, Class<T> responseType,
+                                         Operation<T> operation) {
+        String keyHash = sha256(client + "\n" + key);
+        String requestHash = sha256(json(request));
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        while (true) {
+            StoredResponse cached = cached(keyHash);
+            if (cached != null) {
+                return replay(cached, requestHash, responseType);
+            }
+            CompletableFuture<StoredResponse> claim = new CompletableFuture<>();
+            CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(keyHash, claim);
+            if (running != null) {
+                StoredResponse response = await(running, deadline);
+                if (response != null) {
+                    return replay(response, requestHash, responseType);
+                }
+                continue; // The first request failed and released the key
+            }
+            try {
+                StoredResponse stored = claim(keyHash, requestHash, deadline);
+                if (stored != null) {
+                    claim.complete(stored);
+                    cache.put(keyHash, stored);
+                    return replay(stored, requestHash, responseType);
+                }
+                ResponseEntity<T> response = run(keyHash, requestHash, claim, operation);
+                StoredResponse completed = complete(keyHash, requestHash, response);
+                claim.complete(completed);
+                cache.put(keyHash, completed);
+                executed.increment();
+                return response;
+            } catch (RuntimeException | Error e) {
+                claim.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(keyHash, claim);
+            }
+        }
+    }
+
+    private StoredResponse cached(String keyHash) {
+        StoredResponse cached = cache.get(keyHash);
+        if (cached != null && isExpired(cached.createdAt())) {
+            cache.remove(keyHash);
+            return null;
+        }
+        return cached;
+    }
+
+    // The response of the same key's request running on this instance, or null if it failed
+    private StoredResponse await(CompletableFuture<StoredResponse> running, long deadline) {
+        try {
+            return running.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            return null;
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyInProgressException("A request with this idempotency key is still running");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException("Interrupted while waiting for a request with this idempotency key");
+        }
+    }
+
+    // Inserts the key's row, or returns the response another request stored in it; null once the key is ours
+    private StoredResponse claim(String keyHash, String requestHash, long deadline) {
+        return patientShards.onShard(0, () -> {
+            while (true) {
+                Instant now = Instant.now();
+                try {
+                    jdbcTemplate.update("insert into idempotency_key (key_hash, request_hash, created_at) values (?, ?, ?)",
+                            keyHash, requestHash, Timestamp.from(now));
+                    return null;
+                } catch (DuplicateKeyException e) {
+                    // Claimed before, read below
+                }
+                List<StoredResponse> rows = jdbcTemplate.query(
+                        "select request_hash, created_at, status_code, etag, response_body from idempotency_key where key_hash = ?",
+                        (resultSet, rowNum) -> new StoredResponse(resultSet.getString(1), resultSet.getTimestamp(2).toInstant(),
+                                resultSet.getInt(3), resultSet.getString(4), resultSet.getString(5)),
+                        keyHash);
+                if (rows.isEmpty()) {
+                    continue; // Released or purged since the insert
+                }
+                StoredResponse row = rows.getFirst();
+                if (!row.requestHash().equals(requestHash)) {
+                    throw new IdempotencyKeyMismatchException("Idempotency key was already used for a different request");
+                }
+                if (row.body() != null) {
+                    if (!isExpired(row.createdAt())) {
+                        return row;
+                    }
+                    jdbcTemplate.update("delete from idempotency_key where key_hash = ? and created_at < ?",
+                            keyHash, Timestamp.from(now.minus(ttl)));
+                    continue;
+                }
+                if (row.createdAt().isBefore(now.minus(lease))) {
+                    int takenOver = jdbcTemplate.update("update idempotency_key set created_at = ? "
+                                    + "where key_hash = ? and response_body is null and created_at < ?",
+                            Timestamp.from(now), keyHash, Timestamp.from(now.minus(lease)));
+                    if (takenOver == 1) {
+                        log.warn("Took over idempotency key {} claimed at {}, which never completed", keyHash, row.createdAt());
+                        return null;
+                    }
+                    continue;
+                }
+                if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MS) > deadline) {
+                    throw new IdempotencyKeyInProgressException("A request with this idempotency key is still running");
+                }
+                sleep();
+            }
+        });
+    }
+
+    private <T> ResponseEntity<T> run(String keyHash, String requestHash, CompletableFuture<StoredResponse> claim,
+                                      Operation<T> operation) {
+        AtomicReference<ResponseEntity<T>> committed = new AtomicReference<>();
+        try {
+            return operation.run(committed::set);
+        } catch (RuntimeException | Error e) {
+            if (committed.get() != null) {
+                // Written before failing: running it again would write twice, so retries get the write's response
+                StoredResponse stored = complete(keyHash, requestHash, committed.get());
+                claim.complete(stored);
+                cache.put(keyHash, stored);
+                throw e;
+            }
+            try {
+                patientShards.onShard(0, () -> jdbcTemplate.update(
+                        "delete from idempotency_key where key_hash = ? and response_body is null", keyHash));
+            } catch (RuntimeException releaseFailure) {
+                // The claim then expires after lease
+                e.addSuppressed(releaseFailure);
+            }
+            throw e;
+        }
+    }
+
+    private StoredResponse complete(String keyHash, String requestHash, ResponseEntity<?> response) {
+        StoredResponse completed = new StoredResponse(requestHash, Instant.now(), response.getStatusCode().value(),
+                response.getHeaders().getETag(), json(response.getBody()));
+        try {
+            patientShards.onShard(0, () -> jdbcTemplate.update(
+                    "update idempotency_key set status_code = ?, etag = ?, response_body = ? where key_hash = ?",
+                    completed.status(), completed.etag(), completed.body(), keyHash));
+        } catch (RuntimeException e) {
+            // The request did run, so its response is still returned; other instances rerun it after lease
+            log.warn("Storing the response for idempotency key {} failed", keyHash, e);
+        }
+        return completed;
+    }
+
+    private <T> ResponseEntity<T> replay(StoredResponse stored, String requestHash, Class<T> responseType) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyMismatchException("Idempotency key was already used for a different request");
+        }
+        replayed.increment();
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatusCode.valueOf(stored.status()))
+                .header(REPLAYED_HEADER, "true");
+        if (stored.etag() != null) {
+            response.eTag(stored.etag());
+        }
+        try {
+            return response.body(objectMapper.readValue(stored.body(), responseType));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response for an idempotency key is not readable", e);
+        }
+    }
+
+    private boolean isExpired(Instant createdAt) {
+        return createdAt.plus(ttl).isBefore(Instant.now());
+    }
+
+    private void purgeQuietly() {
+        try {
+            int purged = patientShards.onShard(0, () -> jdbcTemplate.update(
+                    "delete from idempotency_key where created_at < ?", Timestamp.from(Instant.now().minus(ttl))));
+            log.debug("Purged {} expired idempotency keys", purged);
+        } catch (RuntimeException e) {
+            log.warn("Purging expired idempotency keys failed, retrying in the next run", e);
+        }
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Not serializable: " + value.getClass().getName(), e);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_INTERVAL_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException("Interrupted while waiting for a request with this idempotency key");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package com.medilynk.patientservice.kafka;
 
 import com.medilynk.patientservice.model.Patient;
+import com.medilynk.patientservice.util.TimeOrderedUuidGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
-import patent.event.PatientEvent;
+
+import java.util.Collection;
+import java.util.UUID;
 
 @Slf4j
 @Service
@@ -12,22 +17,66 @@ public class KafkaProducer {
 
     // Kafka template for sending messages
     private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
 
-    public KafkaProducer(KafkaTemplate<String, byte[]> kafkaTemplate) {
+    public KafkaProducer(KafkaTemplate<String, byte[]> kafkaTemplate, MeterRegistry meterRegistry) {
         this.kafkaTemplate = kafkaTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+    /**
+     * @param eventType PATIENT_CREATED, PATIENT_UPDATED or PATIENT_DELETED
+     */
+    public void sendEvent(Patient patient, String eventType) {
+        // Encoded directly, without building a PatientEvent message first. The id is fixed here, so a record
+        // the producer resends after a lost acknowledgement can be recognized as the same event
+        byte[] event = PatientEventEncoder.encode(
+                patient.getId().toString(),
+                patient.getName(),
+                patient.getEmail(),
+                eventType,
+                TimeOrderedUuidGenerator.next(),
+                patient.getDateOfBirth(),
+                patient.getRegisteredDate());
+
+        send(event, eventType, patient.getId());
+    }
+
+    /**
+     * PATIENT_DELETED events of patients that were deleted without being loaded, so they carry only the id.
+     * The records are handed to the producer back to back, which packs them into as few produce requests
+     * as batch.size allows.
+     */
+    public void sendDeletedEvents(Collection<UUID> patientIds) {
+        for (UUID patientId : patientIds) {
+            byte[] event = PatientEventEncoder.encode(
+                    patientId.toString(), null, null, "PATIENT_DELETED", TimeOrderedUuidGenerator.next(), null, null);
+            send(event, "PATIENT_DELETED", patientId);
+        }
     }
-    public void sendEvent(Patient patient) {
-        PatientEvent event = PatientEvent.newBuilder()
-                .setPatientId(patient.getId().toString())
-                .setName(patient.getName())
-                .setEmail(patient.getEmail())
-                .setEventType("PATIENT_CREATED")
-                .build();
 
+    private void send(byte[] event, String eventType, UUID patientId) {
+        // Measure from the send call until the broker acknowledges (or rejects) the record
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
-            kafkaTemplate.send("patient", event.toByteArray());
+            // Keyed by patient, so all events of a patient go to one partition and are consumed in order
+            kafkaTemplate.send("patient", patientId.toString(), event)
+                    .whenComplete((result, ex) -> {
+                        sample.stop(sendTimer(ex == null ? "success" : "failure"));
+                        if (ex != null) {
+                            log.error("Error sending {} event for patient {}: {}", eventType, patientId, ex.getMessage());
+                        }
+                    });
         } catch (Exception e) {
-            log.error("Error sending PatientCreated event: {}", event);
+            sample.stop(sendTimer("failure"));
+            log.error("Error sending {} event for patient {}: {}", eventType, patientId, e.getMessage());
         }
     }
+
+    private Timer sendTimer(String outcome) {
+        return Timer.builder("patient.events.send")
+                .description("Time until a patient event is acknowledged by Kafka")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 }
@@ -0,0 +1,76 @@
+package com.medilynk.patientservice.kafka;
+
+import com.google.protobuf.CodedOutputStream;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Encodes PatientEvent messages straight from their field values into a per-thread scratch buffer.
+ *
+ * The output is byte-for-byte what PatientEvent.newBuilder()...build().toByteArray() produces (fields in
+ * field-number order, empty proto3 strings and zero numbers omitted), but skips the builder and message objects. The only
+ * allocation per event is the final byte[] handed to Kafka, which has to be owned by the record.
+ *
+ * Keep the field numbers in sync with patient_event.proto.
+ */
+public final class PatientEventEncoder {
+
+    private static final int PATIENT_ID = 1;
+    private static final int NAME = 2;
+    private static final int EMAIL = 3;
+    private static final int EVENT_TYPE = 4;
+    private static final int EVENT_ID_HIGH = 5;
+    private static final int EVENT_ID_LOW = 6;
+    private static final int DATE_OF_BIRTH = 7;
+    private static final int REGISTERED_DATE = 8;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[512]);
+
+    private PatientEventEncoder() {
+    }
+
+    public static byte[] encode(String patientId, String name, String email, String eventType, UUID eventId,
+                                LocalDate dateOfBirth, LocalDate registeredDate) {
+        byte[] scratch = SCRATCH.get();
+        while (true) {
+            try {
+                CodedOutputStream out = CodedOutputStream.newInstance(scratch);
+                writeString(out, PATIENT_ID, patientId);
+                writeString(out, NAME, name);
+                writeString(out, EMAIL, email);
+                writeString(out, EVENT_TYPE, eventType);
+                writeFixed64(out, EVENT_ID_HIGH, eventId.getMostSignificantBits());
+                writeFixed64(out, EVENT_ID_LOW, eventId.getLeastSignificantBits());
+                writeEpochDay(out, DATE_OF_BIRTH, dateOfBirth);
+                writeEpochDay(out, REGISTERED_DATE, registeredDate);
+                return Arrays.copyOf(scratch, out.getTotalBytesWritten());
+            } catch (IOException e) {
+                // Out of space: unusually long field values, grow the scratch buffer and encode again
+                scratch = new byte[scratch.length * 2];
+                SCRATCH.set(scratch);
+            }
+        }
+    }
+
+    // Optional fields have presence: written whenever set, even when the value is 0
+    private static void writeEpochDay(CodedOutputStream out, int fieldNumber, LocalDate date) throws IOException {
+        if (date != null) {
+            out.writeInt32(fieldNumber, Math.toIntExact(date.toEpochDay()));
+        }
+    }
+
+    private static void writeFixed64(CodedOutputStream out, int fieldNumber, long value) throws IOException {
+        if (value != 0) {
+            out.writeFixed64(fieldNumber, value);
+        }
+    }
+
+    private static void writeString(CodedOutputStream out, int fieldNumber, String value) throws IOException {
+        if (value != null && !value.isEmpty()) {
+            out.writeString(fieldNumber, value);
+        }
+    }
+}
@@ -3,9 +3,7 @@ package com.medilynk.patientservice.mappers;
 import com.medilynk.patientservice.dto.PatientRequestDTO;
 import com.medilynk.patientservice.dto.PatientResponseDTO;
 import com.medilynk.patientservice.model.Patient;
-
-import java.time.LocalDate;
-import java.util.Locale;
+import com.medilynk.patientservice.util.IsoDates;
 
 public class PatientMapper {
     public static PatientResponseDTO toDTO(Patient patient) {
@@ -15,8 +13,9 @@ public class PatientMapper {
         dto.setName(patient.getName());
         dto.setEmail(patient.getEmail());
         dto.setAddress(patient.getAddress());
-        dto.setDateOfBirth(patient.getDateOfBirth().toString());
-        dto.setRegisteredDate(patient.getRegisteredDate().toString());
+        dto.setDateOfBirth(IsoDates.format(patient.getDateOfBirth()));
+        dto.setRegisteredDate(IsoDates.format(patient.getRegisteredDate()));
+        dto.setVersion(patient.getVersion());
 
         return dto;
     }
@@ -27,8 +26,8 @@ public class PatientMapper {
         patient.setName(patientRequestDTO.getName());
         patient.setEmail(patientRequestDTO.getEmail());
         patient.setAddress(patientRequestDTO.getAddress());
-        patient.setDateOfBirth(LocalDate.parse(patientRequestDTO.getDateOfBirth()));
-        patient.setRegisteredDate(LocalDate.parse(patientRequestDTO.getRegisteredDate()));
+        patient.setDateOfBirth(IsoDates.parse(patientRequestDTO.getDateOfBirth()));
+        patient.setRegisteredDate(IsoDates.parse(patientRequestDTO.getRegisteredDate()));
 
         return patient;
     }
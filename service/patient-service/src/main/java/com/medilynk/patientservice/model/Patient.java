@@ -1,11 +1,14 @@
 package com.medilynk.patientservice.model;
 
+import com.medilynk.patientservice.util.TimeOrderedUuidGenerator;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotNull;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.time.LocalDate;
 import java.util.UUID;
@@ -13,10 +16,12 @@ import java.util.UUID;
 @Entity // JPA annotation to mark this class as a database entity
 @Getter // Lombok annotation to generate getters for all fields
 @Setter // Lombok annotation to generate setters for all fields
+@DynamicUpdate // UPDATE statements only set the columns that changed
+@Table(indexes = @Index(name = "patient_registered_date", columnList = "registered_date")) // Archival and registeredBefore scans
 public class Patient {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @UuidGenerator(algorithm = TimeOrderedUuidGenerator.class) // Time-ordered ids keep primary key inserts B-tree friendly
     private UUID id;
     @NotNull
     private String name;
@@ -34,4 +39,7 @@ public class Patient {
 
     @NotNull
     private LocalDate registeredDate;
+
+    @Version // Optimistic locking: incremented by every update, sent to clients as the ETag
+    private Long version;
 }
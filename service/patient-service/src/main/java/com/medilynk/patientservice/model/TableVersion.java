@@ -0,0 +1,21 @@
+package com.medilynk.patientservice.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Change counter for a whole table, bumped after every write to it.
+ * Readers use it to answer conditional GETs without loading the table (see TableVersionService).
+ */
+@Entity
+@Getter
+@Setter
+public class TableVersion {
+
+    @Id
+    private String tableName;
+
+    private long version;
+}
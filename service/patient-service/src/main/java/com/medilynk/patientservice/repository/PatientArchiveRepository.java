@@ -0,0 +1,49 @@
+package com.medilynk.patientservice.repository;
+
+import com.medilynk.patientservice.model.Patient;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * The patient_archive cold table, holding patients moved out of the patient table by PatientArchiver
+ * (implemented in PatientArchiveRepositoryImpl). Archived patients are read-only; they can only be read and
+ * deleted.
+ */
+public interface PatientArchiveRepository {
+
+    /**
+     * Creates the archive table if it doesn't exist yet: range partitioned by registered_date on PostgreSQL,
+     * a plain table elsewhere.
+     */
+    void createArchive();
+
+    /**
+     * On PostgreSQL, creates the monthly archive partitions the patients registered before the date will go to.
+     */
+    void createArchivePartitions(LocalDate registeredBefore);
+
+    /**
+     * Moves the patients registered before the date from the patient table to the archive, in one transaction.
+     *
+     * @return Ids that were moved
+     */
+    List<UUID> archive(List<UUID> ids, LocalDate registeredBefore);
+
+    Optional<Patient> findArchivedById(UUID id);
+
+    // In id order
+    List<Patient> findAllArchived();
+
+    // Keyset pagination, like PatientRepository.findIdsRegisteredBefore
+    List<UUID> findArchivedIdsRegisteredBefore(LocalDate before, UUID after, int limit);
+
+    boolean existsArchivedByEmail(String email);
+
+    /**
+     * @return Ids that were archived and are now deleted
+     */
+    List<UUID> deleteArchived(List<UUID> ids);
+}
@@ -0,0 +1,145 @@
+package com.medilynk.patientservice.repository;
+
+import com.medilynk.patientservice.model.Patient;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Plain SQL through JdbcTemplate, which joins the JPA transaction, since the archive table has no entity of
+ * its own. Statements run on the current shard, like the rest of PatientRepository.
+ */
+public class PatientArchiveRepositoryImpl implements PatientArchiveRepository {
+
+    private static final String COLUMNS = "id, name, email, address, date_of_birth, registered_date, version";
+    private static final RowMapper<Patient> PATIENT = (row, rowNum) -> {
+        Patient patient = new Patient();
+        patient.setId(row.getObject(1, UUID.class));
+        patient.setName(row.getString(2));
+        patient.setEmail(row.getString(3));
+        patient.setAddress(row.getString(4));
+        patient.setDateOfBirth(row.getObject(5, LocalDate.class));
+        patient.setRegisteredDate(row.getObject(6, LocalDate.class));
+        patient.setVersion(row.getLong(7));
+        return patient;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean postgres; // Every shard runs the same database product
+
+    public PatientArchiveRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void createArchive() {
+        String script = isPostgres() ? "patient-archive-schema-postgresql.sql" : "patient-archive-schema.sql";
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            new ResourceDatabasePopulator(new ClassPathResource(script)).populate(connection);
+            return null;
+        });
+    }
+
+    @Override
+    public void createArchivePartitions(LocalDate registeredBefore) {
+        if (!isPostgres()) {
+            return;
+        }
+        LocalDate oldest = jdbcTemplate.queryForObject(
+                "select min(registered_date) from patient where registered_date < ?", LocalDate.class, registeredBefore);
+        if (oldest == null) {
+            return;
+        }
+        for (LocalDate month = oldest.withDayOfMonth(1); month.isBefore(registeredBefore); month = month.plusMonths(1)) {
+            // Never updated, so pages are filled completely
+            jdbcTemplate.execute("create table if not exists patient_archive_p%d%02d partition of patient_archive "
+                    .formatted(month.getYear(), month.getMonthValue())
+                    + "for values from ('%s') to ('%s') with (fillfactor = 100)".formatted(month, month.plusMonths(1)));
+        }
+    }
+
+    @Override
+    @Transactional
+    public List<UUID> archive(List<UUID> ids, LocalDate registeredBefore) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        // Locked first, so a concurrent update can't change a patient between the copy and the delete
+        List<Object> arguments = new ArrayList<>(ids);
+        arguments.add(registeredBefore);
+        List<UUID> moved = jdbcTemplate.queryForList("select id from patient where id in (" + placeholders(ids.size())
+                + ") and registered_date < ? for update", UUID.class, arguments.toArray());
+        if (moved.isEmpty()) {
+            return List.of();
+        }
+        String in = " where id in (" + placeholders(moved.size()) + ")";
+        jdbcTemplate.update("insert into patient_archive (" + COLUMNS + ") select " + COLUMNS + " from patient" + in,
+                moved.toArray());
+        jdbcTemplate.update("delete from patient" + in, moved.toArray());
+        return moved;
+    }
+
+    @Override
+    public Optional<Patient> findArchivedById(UUID id) {
+        return jdbcTemplate.query("select " + COLUMNS + " from patient_archive where id = ?", PATIENT, id)
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    public List<Patient> findAllArchived() {
+        return jdbcTemplate.query("select " + COLUMNS + " from patient_archive order by id", PATIENT);
+    }
+
+    @Override
+    public List<UUID> findArchivedIdsRegisteredBefore(LocalDate before, UUID after, int limit) {
+        return jdbcTemplate.queryForList("select id from patient_archive where registered_date < ? and id > ? "
+                + "order by id fetch first " + limit + " rows only", UUID.class, before, after);
+    }
+
+    @Override
+    public boolean existsArchivedByEmail(String email) {
+        return !jdbcTemplate.queryForList(
+                "select 1 from patient_archive where email = ? fetch first 1 rows only", Integer.class, email).isEmpty();
+    }
+
+    @Override
+    @Transactional
+    public List<UUID> deleteArchived(List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String in = " where id in (" + placeholders(ids.size()) + ")";
+        List<UUID> archived = jdbcTemplate.queryForList("select id from patient_archive" + in + " for update",
+                UUID.class, ids.toArray());
+        if (!archived.isEmpty()) {
+            jdbcTemplate.update("delete from patient_archive where id in (" + placeholders(archived.size()) + ")",
+                    archived.toArray());
+        }
+        return archived;
+    }
+
+    private boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            result = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName()));
+            postgres = result;
+        }
+        return result;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
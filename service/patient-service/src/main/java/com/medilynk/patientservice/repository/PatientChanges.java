@@ -0,0 +1,9 @@
+package com.medilynk.patientservice.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Columns a partial update sets; null fields are left unchanged.
+ */
+public record PatientChanges(String name, String email, String address, LocalDate dateOfBirth) {
+}
@@ -0,0 +1,17 @@
+package com.medilynk.patientservice.repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bulk deletes of patients without loading them (implemented in PatientDeleteRepositoryImpl).
+ */
+public interface PatientDeleteRepository {
+
+    /**
+     * Deletes the patients in one transaction, as a single JDBC batch of DELETE ... WHERE id = ? statements.
+     *
+     * @return Ids that existed and were deleted
+     */
+    List<UUID> deleteExisting(List<UUID> ids);
+}
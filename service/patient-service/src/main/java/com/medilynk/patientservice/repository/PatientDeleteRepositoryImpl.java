@@ -0,0 +1,42 @@
+package com.medilynk.patientservice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sends the deletes through JdbcTemplate, which joins the JPA transaction. A batch sends all statements in
+ * one round trip and reports a row count per statement, so the ids that were actually deleted are known
+ * without querying for them first.
+ */
+public class PatientDeleteRepositoryImpl implements PatientDeleteRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PatientDeleteRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public List<UUID> deleteExisting(List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        int[] counts = jdbcTemplate.batchUpdate("delete from patient where id = ?", ids, ids.size(),
+                (statement, id) -> statement.setObject(1, id))[0];
+
+        List<UUID> deleted = new ArrayList<>(ids.size());
+        for (int i = 0; i < counts.length; i++) {
+            // SUCCESS_NO_INFO: the driver ran the statement but doesn't report rows; assume it deleted one
+            if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                deleted.add(ids.get(i));
+            }
+        }
+        return deleted;
+    }
+}
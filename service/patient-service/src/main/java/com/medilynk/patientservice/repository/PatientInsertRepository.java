@@ -0,0 +1,17 @@
+package com.medilynk.patientservice.repository;
+
+import com.medilynk.patientservice.model.Patient;
+
+/**
+ * Insert of a patient whose id the caller assigned (implemented in PatientInsertRepositoryImpl).
+ */
+public interface PatientInsertRepository {
+
+    /**
+     * Inserts the patient with its id as given. The caller needs the id before the insert to pick the patient's
+     * shard, and JPA would replace it with a generated one.
+     *
+     * @return The patient, at version 0
+     */
+    Patient insert(Patient patient);
+}
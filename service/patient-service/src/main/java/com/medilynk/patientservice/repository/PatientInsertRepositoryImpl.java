@@ -0,0 +1,28 @@
+package com.medilynk.patientservice.repository;
+
+import com.medilynk.patientservice.model.Patient;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * A plain INSERT through JdbcTemplate, which joins the JPA transaction.
+ */
+public class PatientInsertRepositoryImpl implements PatientInsertRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PatientInsertRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public Patient insert(Patient patient) {
+        patient.setVersion(0L);
+        jdbcTemplate.update("insert into patient (id, name, email, address, date_of_birth, registered_date, version) "
+                        + "values (?, ?, ?, ?, ?, ?, ?)",
+                patient.getId(), patient.getName(), patient.getEmail(), patient.getAddress(),
+                patient.getDateOfBirth(), patient.getRegisteredDate(), patient.getVersion());
+        return patient;
+    }
+}
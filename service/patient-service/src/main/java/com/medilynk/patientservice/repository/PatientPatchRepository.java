@@ -0,0 +1,18 @@
+package com.medilynk.patientservice.repository;
+
+import java.util.UUID;
+
+/**
+ * Partial updates of patients without loading them first (implemented in PatientPatchRepositoryImpl).
+ */
+public interface PatientPatchRepository {
+
+    /**
+     * Sets the given columns and increments the version in one UPDATE statement, conditional on the
+     * version when expectedVersion is given.
+     *
+     * @param expectedVersion Version the row must still have, or null to update whatever version it has
+     * @return Rows updated: 0 if the patient doesn't exist or has another version
+     */
+    int patch(UUID id, Long expectedVersion, PatientChanges changes);
+}
@@ -0,0 +1,52 @@
+package com.medilynk.patientservice.repository;
+
+import com.medilynk.patientservice.model.Patient;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+/**
+ * Builds the UPDATE with a SET clause per changed column, e.g. for an address change:
+ * update patient set address=?, version=version+1 where id=? and version=?
+ * There are at most 16 statement shapes, so they stay in the query plan and prepared statement caches.
+ */
+public class PatientPatchRepositoryImpl implements PatientPatchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int patch(UUID id, Long expectedVersion, PatientChanges changes) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Patient> update = builder.createCriteriaUpdate(Patient.class);
+        Root<Patient> patient = update.from(Patient.class);
+
+        if (changes.name() != null) {
+            update.set(patient.<String>get("name"), changes.name());
+        }
+        if (changes.email() != null) {
+            update.set(patient.<String>get("email"), changes.email());
+        }
+        if (changes.address() != null) {
+            update.set(patient.<String>get("address"), changes.address());
+        }
+        if (changes.dateOfBirth() != null) {
+            update.set(patient.get("dateOfBirth"), changes.dateOfBirth());
+        }
+        update.set(patient.<Long>get("version"), builder.sum(patient.<Long>get("version"), 1L));
+
+        Predicate where = builder.equal(patient.get("id"), id);
+        if (expectedVersion != null) {
+            where = builder.and(where, builder.equal(patient.get("version"), expectedVersion));
+        }
+        update.where(where);
+        return entityManager.createQuery(update).executeUpdate();
+    }
+}
@@ -1,15 +1,31 @@
 package com.medilynk.patientservice.repository;
 
 import com.medilynk.patientservice.model.Patient;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
-public interface PatientRepository extends JpaRepository<Patient, UUID> {
+public interface PatientRepository extends JpaRepository<Patient, UUID>, PatientPatchRepository, PatientDeleteRepository,
+        PatientInsertRepository, PatientArchiveRepository {
     boolean existsByEmail(String email);
 
     boolean existsByEmailAndIdNot(String email, UUID id); // For checking email uniqueness during updates.
 
+    @Transactional
+    @Modifying
+    @Query("delete from Patient p where p.id = :id")
+    int deleteOne(@Param("id") UUID id); // Single DELETE; deleteById would load the patient first
+
+    // Keyset pagination: the next page starts after the last id of the previous one
+    @Query("select p.id from Patient p where p.registeredDate < :before and p.id > :after order by p.id")
+    List<UUID> findIdsRegisteredBefore(@Param("before") LocalDate before, @Param("after") UUID after, Limit limit);
 }
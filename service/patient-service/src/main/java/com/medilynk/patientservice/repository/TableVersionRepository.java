@@ -0,0 +1,29 @@
+package com.medilynk.patientservice.repository;
+
+import com.medilynk.patientservice.model.TableVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface TableVersionRepository extends JpaRepository<TableVersion, String> {
+
+    @Transactional
+    @Modifying
+    @Query("update TableVersion v set v.version = v.version + 1 where v.tableName = :tableName")
+    int increment(@Param("tableName") String tableName); // Single UPDATE, so concurrent writers never lose a bump
+
+    @Transactional
+    @Modifying
+    @Query(value = "insert into table_version (table_name, version) values (:tableName, :version)", nativeQuery = true)
+    void insert(@Param("tableName") String tableName, @Param("version") long version); // Plain INSERT: fails instead of overwriting an existing row
+
+    @Transactional // Not read-only, so it reads the primary even when reads go to a replica (ReplicaRoutingConfig)
+    @Query("select v.version from TableVersion v where v.tableName = :tableName")
+    Optional<Long> findVersionOnPrimary(@Param("tableName") String tableName);
+}
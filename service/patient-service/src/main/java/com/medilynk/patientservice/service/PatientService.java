@@ -2,75 +2,306 @@ package com.medilynk.patientservice.service;
 
 
 import billing.BillingServiceGrpc;
+import com.medilynk.patientservice.dto.PatientPatchDTO;
 import com.medilynk.patientservice.dto.PatientRequestDTO;
 import com.medilynk.patientservice.dto.PatientResponseDTO;
 import com.medilynk.patientservice.exception.EmailAlreadyExistsException;
 import com.medilynk.patientservice.exception.PatientNotFoundException;
+import com.medilynk.patientservice.exception.PatientVersionMismatchException;
 import com.medilynk.patientservice.grpc.BillingServiceGrpcClient;
 import com.medilynk.patientservice.kafka.KafkaProducer;
 import com.medilynk.patientservice.mappers.PatientMapper;
 import com.medilynk.patientservice.model.Patient;
+import com.medilynk.patientservice.repository.PatientChanges;
 import com.medilynk.patientservice.repository.PatientRepository;
+import com.medilynk.patientservice.sharding.EmailDirectory;
+import com.medilynk.patientservice.sharding.PatientShards;
+import com.medilynk.patientservice.util.IsoDates;
+import com.medilynk.patientservice.util.TimeOrderedUuidGenerator;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service // Marks this class as a Spring service component and a candidate for dependency injection so that it can be injected into other components.
 public class PatientService {
+    private static final int BULK_DELETE_BATCH_SIZE = 500; // Statements per JDBC batch and transaction of a bulk delete
+
     private final PatientRepository patientRepository;
     private final BillingServiceGrpcClient billingServiceGrpcClient;
     private final KafkaProducer kafkaProducer;
+    private final TableVersionService tableVersionService;
+    private final PatientShards patientShards;
+    private final EmailDirectory emailDirectory;
 
     public PatientService(
             PatientRepository patientRepository,
             BillingServiceGrpcClient billingServiceGrpcClient,
-            KafkaProducer kafkaProducer) {
+            KafkaProducer kafkaProducer,
+            TableVersionService tableVersionService,
+            PatientShards patientShards,
+            EmailDirectory emailDirectory) {
         this.patientRepository = patientRepository;
         this.billingServiceGrpcClient = billingServiceGrpcClient;
         this.kafkaProducer = kafkaProducer;
+        this.tableVersionService = tableVersionService;
+        this.patientShards = patientShards;
+        this.emailDirectory = emailDirectory;
+    }
+
+    // Version of the patient list; changes after every create, update, delete or archival. Read it before getPatients().
+    public long getPatientsVersion() {
+        return tableVersionService.current(TableVersionService.PATIENT_TABLE);
     }
 
+    /**
+     * In id (creation) order; with sharding, read from every shard in parallel and merged. Only the patient
+     * table is read unless includeArchived, which adds the patients PatientArchiver moved to the archive.
+     */
+    public List<PatientResponseDTO> getPatients(boolean includeArchived) {
+        List<List<Patient>> patientsByShard = patientShards.onEveryShard(shard -> patientRepository.findAll(Sort.by("id"))
+                .stream()
+                .filter(patient -> patientShards.owns(shard, patient.getId()))
+                .toList());
+        // Merged in the order the shards sorted them in
+        Comparator<Patient> byId = Comparator.comparing(Patient::getId, PatientShards.ID_ORDER);
+        List<Patient> patients = PatientShards.merge(patientsByShard, byId);
+        if (includeArchived) {
+            List<Patient> archived = PatientShards.merge(
+                    patientShards.onEveryShard(shard -> patientRepository.findAllArchived()), byId);
+            patients = PatientShards.merge(List.of(patients, archived), byId);
+        }
+        return patients.stream()
+                .map(PatientMapper::toDTO)
+                .toList();
+    }
 
-    public List<PatientResponseDTO> getPatients() {
-        List<Patient> patients = patientRepository.findAll();
-        return patients.stream().map(PatientMapper::toDTO).toList();
+    // Falls back to the archive, which is read from every shard
+    public PatientResponseDTO getPatient(UUID id) {
+        Patient patient = patientShards.onShardOf(id, () -> patientRepository.findById(id))
+                .or(() -> patientShards.onEveryShard(shard -> patientRepository.findArchivedById(id))
+                        .stream()
+                        .flatMap(Optional::stream)
+                        .findFirst())
+                .orElseThrow(() -> new PatientNotFoundException("Patient not found with id: " + id));
+        return PatientMapper.toDTO(patient);
     }
 
     public PatientResponseDTO createPatient(PatientRequestDTO patientRequestDTO) {
-        if (patientRepository.existsByEmail(patientRequestDTO.getEmail())) {
+        return createPatient(patientRequestDTO, inserted -> {
+        });
+    }
+
+    /**
+     * @param inserted Called with the patient once its insert has committed, before the billing account and the
+     *                 event, which may still fail
+     */
+    public PatientResponseDTO createPatient(PatientRequestDTO patientRequestDTO, Consumer<PatientResponseDTO> inserted) {
+        Patient patient = PatientMapper.toModel(patientRequestDTO);
+        patient.setId(TimeOrderedUuidGenerator.next()); // Known up front, so the insert goes to the patient's shard
+        if (emailDirectory.reserve(patient.getEmail(), patient.getId()) == EmailDirectory.Reservation.TAKEN) {
             throw new EmailAlreadyExistsException("Email already exists with this email: " + patientRequestDTO.getEmail());
         }
-        Patient newPatient = patientRepository.save(PatientMapper.toModel(patientRequestDTO));
+        Patient newPatient;
+        try {
+            newPatient = patientShards.write(patient.getId(), () -> patientRepository.insert(patient));
+        } catch (RuntimeException e) {
+            emailDirectory.release(patient.getEmail(), patient.getId());
+            throw e;
+        }
+        inserted.accept(PatientMapper.toDTO(newPatient));
+        tableVersionService.bump(TableVersionService.PATIENT_TABLE); // save() has already committed the insert
         billingServiceGrpcClient.createBillingAccount(
                                                         newPatient.getId().toString(),
                                                         newPatient.getName(),
                                                         newPatient.getAddress());
 
-        kafkaProducer.sendEvent(newPatient);
+        kafkaProducer.sendEvent(newPatient, "PATIENT_CREATED");
         return PatientMapper.toDTO(newPatient);
     }
 
-    public PatientResponseDTO updatePatient(UUID id, PatientRequestDTO patientRequestDTO) {
-        Patient existingPatient = patientRepository.findById(id).orElseThrow(() -> new PatientNotFoundException("Patient not found with id: " + id));
-        if (patientRepository.existsByEmailAndIdNot(patientRequestDTO.getEmail(), id)) {
-            throw new EmailAlreadyExistsException("Email already exists with this email: " + patientRequestDTO.getEmail());
+    // expectedVersion (from If-Match) is checked here; @Version also rejects a concurrent update made after the load
+    public PatientResponseDTO updatePatient(UUID id, Long expectedVersion, PatientRequestDTO patientRequestDTO) {
+        String email = patientRequestDTO.getEmail();
+        Patient updatedPatient = patientShards.write(id, () -> {
+            Patient existingPatient = findPatient(id);
+            if (expectedVersion != null && !expectedVersion.equals(existingPatient.getVersion())) {
+                throw new PatientVersionMismatchException("Patient " + id + " has version " + existingPatient.getVersion()
+                        + ", not " + expectedVersion);
+            }
+            EmailDirectory.Reservation reservation = email.equals(existingPatient.getEmail())
+                    ? EmailDirectory.Reservation.OWNED
+                    : emailDirectory.reserve(email, id);
+            if (reservation == EmailDirectory.Reservation.TAKEN) {
+                throw new EmailAlreadyExistsException("Email already exists with this email: " + email);
+            }
+            existingPatient.setName(patientRequestDTO.getName());
+            existingPatient.setEmail(email);
+            existingPatient.setAddress(patientRequestDTO.getAddress());
+            existingPatient.setDateOfBirth(IsoDates.parse(patientRequestDTO.getDateOfBirth()));
+            Patient savedPatient;
+            try {
+                savedPatient = patientRepository.save(existingPatient);
+            } catch (RuntimeException e) {
+                if (reservation == EmailDirectory.Reservation.RESERVED) {
+                    emailDirectory.release(email, id);
+                }
+                throw e;
+            }
+            if (reservation == EmailDirectory.Reservation.RESERVED) {
+                emailDirectory.releaseOthers(id, email);
+            }
+            return savedPatient;
+        });
+        tableVersionService.bump(TableVersionService.PATIENT_TABLE);
+        kafkaProducer.sendEvent(updatedPatient, "PATIENT_UPDATED");
+        return PatientMapper.toDTO(updatedPatient);
+    }
+
+    /**
+     * Changes only the fields present in the patch, with a single conditional UPDATE instead of loading the
+     * patient first. Email uniqueness is left to the unique constraint (with sharding, to the email
+     * directory). The patient is read back afterwards for the response and the event.
+     *
+     * @param expectedVersion Version the patient must still have (from If-Match), or null
+     */
+    public PatientResponseDTO patchPatient(UUID id, Long expectedVersion, PatientPatchDTO patientPatchDTO) {
+        PatientChanges changes = new PatientChanges(
+                patientPatchDTO.getName(),
+                patientPatchDTO.getEmail(),
+                patientPatchDTO.getAddress(),
+                patientPatchDTO.getDateOfBirth() == null ? null : IsoDates.parse(patientPatchDTO.getDateOfBirth()));
+        EmailDirectory.Reservation reservation = changes.email() == null
+                ? EmailDirectory.Reservation.OWNED
+                : emailDirectory.reserve(changes.email(), id);
+        if (reservation == EmailDirectory.Reservation.TAKEN) {
+            throw new EmailAlreadyExistsException("Email already exists with this email: " + changes.email());
+        }
+        int updated;
+        try {
+            updated = patientShards.write(id, () -> patientRepository.patch(id, expectedVersion, changes));
+        } catch (RuntimeException e) {
+            if (reservation == EmailDirectory.Reservation.RESERVED) {
+                emailDirectory.release(changes.email(), id);
+            }
+            if (e instanceof DataIntegrityViolationException && changes.email() != null) {
+                throw new EmailAlreadyExistsException("Email already exists with this email: " + changes.email());
+            }
+            throw e;
+        }
+        if (updated == 0) {
+            if (reservation == EmailDirectory.Reservation.RESERVED) {
+                emailDirectory.release(changes.email(), id);
+            }
+            // The failure path is the only one that pays for telling the two cases apart
+            if (!patientShards.onShardOf(id, () -> patientRepository.existsById(id))) {
+                throw new PatientNotFoundException("Patient not found with id: " + id);
+            }
+            throw new PatientVersionMismatchException("Patient " + id + " no longer has version " + expectedVersion);
         }
-        existingPatient.setName(patientRequestDTO.getName());
-        existingPatient.setEmail(patientRequestDTO.getEmail());
-        existingPatient.setAddress(patientRequestDTO.getAddress());
-        existingPatient.setDateOfBirth(LocalDate.parse(patientRequestDTO.getDateOfBirth()));
 
-        Patient updatedPatient = patientRepository.save(existingPatient);
-        return PatientMapper.toDTO(updatedPatient);
+        if (reservation == EmailDirectory.Reservation.RESERVED) {
+            emailDirectory.releaseOthers(id, changes.email());
+        }
+        tableVersionService.bump(TableVersionService.PATIENT_TABLE);
+        Patient patchedPatient = findPatient(id);
+        kafkaProducer.sendEvent(patchedPatient, "PATIENT_UPDATED");
+        return PatientMapper.toDTO(patchedPatient);
     }
 
     public void deletePatient(UUID id) {
-        if (!patientRepository.existsById(id)) {
+        if (patientShards.write(id, () -> patientRepository.deleteOne(id)) == 0
+                && deleteArchived(List.of(id)).isEmpty()) {
             throw new PatientNotFoundException("Patient not found with id: " + id);
         }
-        patientRepository.deleteById(id);
+        deleted(List.of(id));
+    }
+
+    /**
+     * Deletes the patients with the given ids, BULK_DELETE_BATCH_SIZE per batch and a transaction per batch and
+     * shard. Ids not found in the patient table are deleted from the archive; ids of patients that don't exist
+     * are skipped.
+     *
+     * @return Patients deleted
+     */
+    public int deletePatients(List<UUID> ids) {
+        int deleted = 0;
+        for (int from = 0; from < ids.size(); from += BULK_DELETE_BATCH_SIZE) {
+            deleted += deleteBatch(ids.subList(from, Math.min(from + BULK_DELETE_BATCH_SIZE, ids.size())));
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes every patient registered before the date, archived ones included, a batch at a time (each one its
+     * own transaction, so locks are held briefly and a failure keeps the batches already done). Shards are
+     * scanned in parallel.
+     *
+     * @return Patients deleted
+     */
+    public int deletePatientsRegisteredBefore(LocalDate registeredBefore) {
+        return patientShards.onEveryShard(shard -> {
+            int deleted = 0;
+            UUID after = new UUID(0, 0); // Lowest id in database order
+            List<UUID> batch;
+            while (!(batch = patientRepository.findIdsRegisteredBefore(
+                    registeredBefore, after, Limit.of(BULK_DELETE_BATCH_SIZE))).isEmpty()) {
+                deleted += deleteBatch(batch.stream().filter(id -> patientShards.owns(shard, id)).toList());
+                after = batch.getLast();
+            }
+            after = new UUID(0, 0);
+            while (!(batch = patientRepository.findArchivedIdsRegisteredBefore(
+                    registeredBefore, after, BULK_DELETE_BATCH_SIZE)).isEmpty()) {
+                List<UUID> archived = patientRepository.deleteArchived(batch);
+                deleted(archived);
+                deleted += archived.size();
+                after = batch.getLast();
+            }
+            return deleted;
+        }).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    private int deleteBatch(List<UUID> ids) {
+        List<UUID> deleted = new ArrayList<>(
+                patientShards.writeAll(ids, (shard, shardIds) -> patientRepository.deleteExisting(shardIds)));
+        if (deleted.size() < ids.size()) {
+            Set<UUID> found = Set.copyOf(deleted);
+            deleted.addAll(deleteArchived(ids.stream().filter(id -> !found.contains(id)).toList()));
+        }
+        deleted(deleted);
+        return deleted.size();
+    }
+
+    private List<UUID> deleteArchived(List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return patientShards.onEveryShard(shard -> patientRepository.deleteArchived(ids))
+                .stream()
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    private void deleted(List<UUID> ids) {
+        if (!ids.isEmpty()) {
+            emailDirectory.releaseAll(ids);
+            tableVersionService.bump(TableVersionService.PATIENT_TABLE);
+            kafkaProducer.sendDeletedEvents(ids);
+        }
+    }
+
+    private Patient findPatient(UUID id) {
+        return patientShards.onShardOf(id, () -> patientRepository.findById(id))
+                .orElseThrow(() -> new PatientNotFoundException("Patient not found with id: " + id));
     }
 }
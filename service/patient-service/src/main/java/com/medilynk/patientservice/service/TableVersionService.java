@@ -0,0 +1,62 @@
+package com.medilynk.patientservice.service;
+
+import com.medilynk.patientservice.model.TableVersion;
+import com.medilynk.patientservice.repository.TableVersionRepository;
+import com.medilynk.patientservice.sharding.PatientShards;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Per-table change counters stored in the database, so every patient-service instance sees the same value.
+ *
+ * Ordering rules that keep ETags built from these versions from ever describing stale data:
+ * - writers bump the version after their change has been committed;
+ * - readers read the version before they read the data.
+ * A reader can then pair new data with an old version (the client just downloads it again after the bump),
+ * but never old data with a new version.
+ *
+ * With sharding the counters live on shard 0, also when a version is read or bumped from work running on
+ * another shard.
+ */
+@Service
+public class TableVersionService {
+
+    public static final String PATIENT_TABLE = "patient";
+
+    private final TableVersionRepository tableVersionRepository;
+    private final PatientShards patientShards;
+
+    public TableVersionService(TableVersionRepository tableVersionRepository, PatientShards patientShards) {
+        this.tableVersionRepository = tableVersionRepository;
+        this.patientShards = patientShards;
+    }
+
+    public long current(String tableName) {
+        return patientShards.onShard(0, () -> tableVersionRepository.findById(tableName)
+                .map(TableVersion::getVersion)
+                .orElseGet(() -> initialize(tableName)));
+    }
+
+    public void bump(String tableName) {
+        patientShards.onShard(0, () -> {
+            if (tableVersionRepository.increment(tableName) == 0) {
+                initialize(tableName);
+                tableVersionRepository.increment(tableName);
+            }
+            return null;
+        });
+    }
+
+    // Counters start from the current time, so a recreated database never reuses a version (and an ETag)
+    // that clients may still hold from before
+    private long initialize(String tableName) {
+        long version = System.currentTimeMillis();
+        try {
+            tableVersionRepository.insert(tableName, version);
+            return version;
+        } catch (DataIntegrityViolationException e) {
+            // Another instance created the row first; a replica may not have it yet
+            return tableVersionRepository.findVersionOnPrimary(tableName).orElseThrow();
+        }
+    }
+}
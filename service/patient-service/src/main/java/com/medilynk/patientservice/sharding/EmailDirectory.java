@@ -0,0 +1,78 @@
+package com.medilynk.patientservice.sharding;
+
+import com.medilynk.patientservice.repository.PatientRepository;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keeps patient emails unique across shards. Each shard's unique constraint only covers its own patients, so
+ * with sharding every email is first reserved in the patient_email table on shard 0 (email primary key ->
+ * patient id; the shard follows from the id). Without sharding the patient table's own constraint is enough,
+ * and reserve() just checks it, and the archive, whose patients keep their emails.
+ */
+@Component
+public class EmailDirectory {
+
+    public enum Reservation {
+        TAKEN, // Another patient has the email
+        OWNED, // The patient already has the email; nothing to release on failure
+        RESERVED // Newly reserved; release() it if the patient isn't written after all
+    }
+
+    private final PatientShards patientShards;
+    private final PatientRepository patientRepository;
+    private final JdbcTemplate directory;
+
+    public EmailDirectory(PatientShards patientShards, PatientRepository patientRepository) {
+        this.patientShards = patientShards;
+        this.patientRepository = patientRepository;
+        this.directory = patientShards.isSharded() ? new JdbcTemplate(patientShards.dataSource(0)) : null;
+    }
+
+    public Reservation reserve(String email, UUID patientId) {
+        if (directory == null) {
+            // The patient table first, so a patient archived in between is found in the archive
+            boolean taken = patientRepository.existsByEmailAndIdNot(email, patientId)
+                    || patientRepository.existsArchivedByEmail(email);
+            return taken ? Reservation.TAKEN : Reservation.OWNED;
+        }
+        try {
+            directory.update("insert into patient_email (email, patient_id) values (?, ?)", email, patientId);
+            return Reservation.RESERVED;
+        } catch (DuplicateKeyException e) {
+            List<UUID> owner = directory.queryForList(
+                    "select patient_id from patient_email where email = ?", UUID.class, email);
+            return owner.contains(patientId) ? Reservation.OWNED : Reservation.TAKEN;
+        }
+    }
+
+    public void release(String email, UUID patientId) {
+        if (directory != null) {
+            directory.update("delete from patient_email where email = ? and patient_id = ?", email, patientId);
+        }
+    }
+
+    /**
+     * Releases the emails the patient had before changing to the given one.
+     */
+    public void releaseOthers(UUID patientId, String email) {
+        if (directory != null) {
+            directory.update("delete from patient_email where patient_id = ? and email <> ?", patientId, email);
+        }
+    }
+
+    /**
+     * Releases the emails of deleted patients.
+     */
+    public void releaseAll(Collection<UUID> patientIds) {
+        if (directory != null && !patientIds.isEmpty()) {
+            directory.batchUpdate("delete from patient_email where patient_id = ?", patientIds, 500,
+                    (statement, id) -> statement.setObject(1, id));
+        }
+    }
+}
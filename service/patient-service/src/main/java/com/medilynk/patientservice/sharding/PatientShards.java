@@ -0,0 +1,271 @@
+package com.medilynk.patientservice.sharding;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Runs patient repository operations on the right shard. Without sharding (ShardingConfig) there is one shard
+ * and operations run as they are.
+ *
+ * - Single-patient operations run on the shard that owns the id (ShardMap).
+ * - Lists and scans run on every shard in parallel (onEveryShard); merge() combines the per-shard results in
+ *   order. A shard may still hold copies of patients that were moved off it, so scans keep only the patients
+ *   the shard owns (owns()).
+ * - Writes hold their buckets' read locks, so ShardRebalancer can stop writes to the buckets it is moving for
+ *   the moment it switches them over, and note which patients were written while it copied them.
+ */
+public class PatientShards implements AutoCloseable {
+
+    private final List<DataSource> dataSources;
+    private final ShardMap shardMap;
+    private final ReentrantReadWriteLock[] bucketLocks;
+    private final ExecutorService scatterExecutor;
+
+    private volatile BitSet movingBuckets; // Buckets ShardRebalancer is copying, or null
+    private final Set<UUID> writtenWhileMoving = ConcurrentHashMap.newKeySet();
+
+    private PatientShards(List<DataSource> dataSources, ShardMap shardMap) {
+        this.dataSources = List.copyOf(dataSources);
+        this.shardMap = shardMap;
+        this.bucketLocks = new ReentrantReadWriteLock[ShardMap.BUCKETS];
+        for (int bucket = 0; bucket < bucketLocks.length; bucket++) {
+            bucketLocks[bucket] = new ReentrantReadWriteLock();
+        }
+        this.scatterExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * The patient table of the single data source
+     */
+    public static PatientShards single() {
+        return new PatientShards(List.of(), null);
+    }
+
+    /**
+     * @param dataSources Pool of each shard; shard 0 also holds the shard map and email directory
+     */
+    public static PatientShards sharded(List<DataSource> dataSources) {
+        return new PatientShards(dataSources, new ShardMap(dataSources.getFirst()));
+    }
+
+    public boolean isSharded() {
+        return shardMap != null;
+    }
+
+    public int count() {
+        return isSharded() ? dataSources.size() : 1;
+    }
+
+    public int shardOf(UUID id) {
+        return isSharded() ? shardMap.shardOf(id) : 0;
+    }
+
+    /**
+     * Whether the patient belongs on the shard, for filtering scans
+     */
+    public boolean owns(int shard, UUID id) {
+        return shardOf(id) == shard;
+    }
+
+    public <T> T onShard(int shard, Supplier<T> operation) {
+        if (!isSharded()) {
+            return operation.get();
+        }
+        Integer previous = ShardContext.enter(shard);
+        try {
+            return operation.get();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    public <T> T onShardOf(UUID id, Supplier<T> operation) {
+        return onShard(shardOf(id), operation);
+    }
+
+    /**
+     * Runs the operation on every shard in parallel.
+     *
+     * @return The results in shard order
+     */
+    public <T> List<T> onEveryShard(IntFunction<T> operation) {
+        if (count() == 1) {
+            return Collections.singletonList(onShard(0, () -> operation.apply(0))); // Results may be null
+        }
+        List<Future<T>> futures = new ArrayList<>(count());
+        for (int shard = 0; shard < count(); shard++) {
+            int target = shard;
+            futures.add(scatterExecutor.submit(() -> onShard(target, () -> operation.apply(target))));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            results.add(await(future));
+        }
+        return results;
+    }
+
+    /**
+     * Runs a write of one patient on its shard.
+     */
+    public <T> T write(UUID id, Supplier<T> operation) {
+        if (!isSharded()) {
+            return operation.get();
+        }
+        int bucket = ShardMap.bucketOf(id);
+        Lock lock = bucketLocks[bucket].readLock();
+        lock.lock();
+        try {
+            // Looked up under the lock, so the bucket can't be switched to another shard in between
+            return onShard(shardMap.shardOfBucket(bucket), operation);
+        } finally {
+            noteWrite(bucket, id); // Also after a failure, in case it came after the commit
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs a write of several patients, once per shard with the ids that shard owns.
+     *
+     * @param operation Called with the shard and its ids, returns the ids it changed
+     * @return The ids changed on all shards
+     */
+    public List<UUID> writeAll(Collection<UUID> ids, BiFunction<Integer, List<UUID>, List<UUID>> operation) {
+        if (!isSharded()) {
+            return operation.apply(0, List.copyOf(ids));
+        }
+        BitSet buckets = new BitSet(ShardMap.BUCKETS);
+        ids.forEach(id -> buckets.set(ShardMap.bucketOf(id)));
+        // Always in ascending bucket order, like ShardRebalancer, so lockers never wait on each other in a cycle
+        List<Lock> locks = buckets.stream().mapToObj(bucket -> (Lock) bucketLocks[bucket].readLock()).toList();
+        locks.forEach(Lock::lock);
+        try {
+            TreeMap<Integer, List<UUID>> idsByShard = new TreeMap<>();
+            ids.forEach(id -> idsByShard.computeIfAbsent(shardMap.shardOf(id), shard -> new ArrayList<>()).add(id));
+            List<UUID> changed = new ArrayList<>(ids.size());
+            idsByShard.forEach((shard, shardIds) -> changed.addAll(onShard(shard, () -> operation.apply(shard, shardIds))));
+            return changed;
+        } finally {
+            ids.forEach(id -> noteWrite(ShardMap.bucketOf(id), id));
+            locks.forEach(Lock::unlock);
+        }
+    }
+
+    /**
+     * The order the databases sort patient ids in: UUID columns compare as 16 unsigned bytes, whereas
+     * UUID.compareTo compares each half as a signed long and so puts ids from 80000000-... before 00000000-...
+     */
+    public static final Comparator<UUID> ID_ORDER = (a, b) -> {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    };
+
+    /**
+     * Merges lists that are each sorted by the comparator into one sorted list.
+     */
+    public static <T> List<T> merge(List<List<T>> sortedLists, Comparator<? super T> comparator) {
+        if (sortedLists.size() == 1) {
+            return sortedLists.getFirst();
+        }
+        record Cursor<T>(List<T> list, int index) {
+        }
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>(
+                Comparator.comparing((Cursor<T> cursor) -> cursor.list().get(cursor.index()), comparator));
+        int size = 0;
+        for (List<T> list : sortedLists) {
+            size += list.size();
+            if (!list.isEmpty()) {
+                heads.add(new Cursor<>(list, 0));
+            }
+        }
+        List<T> merged = new ArrayList<>(size);
+        while (!heads.isEmpty()) {
+            Cursor<T> head = heads.poll();
+            merged.add(head.list().get(head.index()));
+            if (head.index() + 1 < head.list().size()) {
+                heads.add(new Cursor<>(head.list(), head.index() + 1));
+            }
+        }
+        return merged;
+    }
+
+    DataSource dataSource(int shard) {
+        return dataSources.get(shard);
+    }
+
+    ShardMap shardMap() {
+        return shardMap;
+    }
+
+    /**
+     * Starts noting the ids written in the buckets, for ShardRebalancer to copy again.
+     */
+    void trackWrites(BitSet buckets) {
+        writtenWhileMoving.clear();
+        movingBuckets = buckets;
+    }
+
+    /**
+     * Stops writes to the buckets until the returned locks are unlocked.
+     */
+    List<Lock> lockForMove(BitSet buckets) {
+        List<Lock> locks = buckets.stream().mapToObj(bucket -> (Lock) bucketLocks[bucket].writeLock()).toList();
+        locks.forEach(Lock::lock);
+        return locks;
+    }
+
+    /**
+     * @return The ids written since trackWrites()
+     */
+    Set<UUID> stopTrackingWrites() {
+        movingBuckets = null;
+        Set<UUID> written = Set.copyOf(writtenWhileMoving);
+        writtenWhileMoving.clear();
+        return written;
+    }
+
+    // After the write, so a write that misses the tracking had committed before the copy started
+    private void noteWrite(int bucket, UUID id) {
+        BitSet moving = movingBuckets;
+        if (moving != null && moving.get(bucket)) {
+            writtenWhileMoving.add(id);
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a shard", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        scatterExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,34 @@
+package com.medilynk.patientservice.sharding;
+
+/**
+ * Shard the current thread's database work goes to (ShardRoutingDataSource). Unset means shard 0, which also
+ * holds the shard map, the email directory and the table versions.
+ */
+final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    static Integer current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return The previous shard, to hand back to restore()
+     */
+    static Integer enter(int shard) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        return previous;
+    }
+
+    static void restore(Integer previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
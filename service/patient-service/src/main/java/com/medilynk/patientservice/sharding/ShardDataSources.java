@@ -0,0 +1,16 @@
+package com.medilynk.patientservice.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.util.List;
+
+/**
+ * The connection pool of each shard, shard 0 first.
+ */
+public record ShardDataSources(List<HikariDataSource> pools) implements AutoCloseable {
+
+    @Override
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+}
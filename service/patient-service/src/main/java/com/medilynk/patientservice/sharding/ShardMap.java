@@ -0,0 +1,79 @@
+package com.medilynk.patientservice.sharding;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Assignment of patients to shards. A patient id hashes to one of BUCKETS buckets, and each bucket is assigned
+ * to a shard. Resharding moves whole buckets (ShardRebalancer), so adding a shard moves only the patients of the
+ * buckets it takes over, instead of rehashing every patient as hash-mod-shards would.
+ *
+ * The assignment is kept in the patient_shard_bucket table on shard 0. Buckets without a row are on shard 0,
+ * where every patient was before sharding was enabled.
+ */
+public class ShardMap {
+
+    public static final int BUCKETS = 1024; // Power of two
+
+    private final JdbcTemplate directory;
+    private final TransactionTemplate directoryTransaction;
+    private volatile int[] shardOfBucket; // Replaced, never modified, so readers need no lock
+
+    ShardMap(DataSource directory) {
+        this.directory = new JdbcTemplate(directory);
+        this.directoryTransaction = new TransactionTemplate(new DataSourceTransactionManager(directory));
+        int[] loaded = new int[BUCKETS];
+        this.directory.query("select bucket, shard from patient_shard_bucket",
+                row -> {
+                    loaded[row.getInt(1)] = row.getInt(2);
+                });
+        this.shardOfBucket = loaded;
+    }
+
+    public static int bucketOf(UUID id) {
+        // Murmur3 finalizer over both halves; the random low bits alone would do, but ids needn't be version 7
+        long h = id.getMostSignificantBits() ^ id.getLeastSignificantBits();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & (BUCKETS - 1);
+    }
+
+    public int shardOf(UUID id) {
+        return shardOfBucket[bucketOf(id)];
+    }
+
+    public int shardOfBucket(int bucket) {
+        return shardOfBucket[bucket];
+    }
+
+    public int[] snapshot() {
+        return shardOfBucket.clone();
+    }
+
+    /**
+     * Assigns the buckets to the shard, first in the table and then for the routing of this instance.
+     */
+    synchronized void assign(BitSet buckets, int shard) {
+        List<Object[]> rows = new ArrayList<>();
+        buckets.stream().forEach(bucket -> rows.add(new Object[]{bucket}));
+        directoryTransaction.executeWithoutResult(status -> {
+            directory.batchUpdate("delete from patient_shard_bucket where bucket = ?", rows);
+            directory.batchUpdate("insert into patient_shard_bucket (bucket, shard) values (?, " + shard + ")", rows);
+        });
+
+        int[] updated = Arrays.copyOf(shardOfBucket, BUCKETS);
+        buckets.stream().forEach(bucket -> updated[bucket] = shard);
+        shardOfBucket = updated;
+    }
+}
@@ -0,0 +1,162 @@
+package com.medilynk.patientservice.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Online resharding: POST /actuator/reshard spreads the buckets evenly over the configured shards (bucket b on
+ * shard b % shards), moving the patients of every bucket that changes shard. Run it after adding shards to
+ * patient.sharding.shard-urls; shards can't be removed. The endpoint is off unless
+ * management.endpoint.reshard.access is set to unrestricted, as it has no authentication of its own.
+ *
+ * Buckets move from one source shard to one target shard at a time, while the service keeps serving them:
+ * 1. The source is read in id order, BATCH_SIZE patients at a time, and the patients of the moving buckets are
+ *    copied to the target. Reads and writes still go to the source; PatientShards notes the ids written.
+ * 2. Writes to the moving buckets are stopped, the patients written during the copy are copied again (or
+ *    removed from the target if they were deleted), and the buckets are assigned to the target.
+ * 3. Writes resume on the target, and the copies left on the source are deleted.
+ * Writes only wait for step 2, which touches just the patients written during the copy.
+ *
+ * The shard map is read at startup, so resharding assumes one patient-service instance; others must be
+ * restarted afterwards.
+ */
+@Slf4j
+@Component
+@Endpoint(id = "reshard")
+public class ShardRebalancer {
+
+    static final int BATCH_SIZE = 500;
+
+    private static final String COLUMNS = "id, name, email, address, date_of_birth, registered_date, version";
+    private static final RowMapper<PatientRow> PATIENT_ROW = (row, rowNum) -> new PatientRow(
+            row.getObject(1, UUID.class), row.getString(2), row.getString(3), row.getString(4),
+            row.getObject(5, LocalDate.class), row.getObject(6, LocalDate.class), row.getLong(7));
+
+    private final PatientShards patientShards;
+
+    public ShardRebalancer(PatientShards patientShards) {
+        this.patientShards = patientShards;
+    }
+
+    @WriteOperation
+    public synchronized Map<String, Object> rebalance() {
+        if (!patientShards.isSharded()) {
+            throw new IllegalStateException("Sharding is not enabled (patient.sharding.shard-urls)");
+        }
+        int shards = patientShards.count();
+        int[] current = patientShards.shardMap().snapshot();
+        Map<List<Integer>, BitSet> moves = new LinkedHashMap<>(); // [source, target] -> buckets
+        for (int bucket = 0; bucket < current.length; bucket++) {
+            int target = bucket % shards;
+            if (current[bucket] != target) {
+                moves.computeIfAbsent(List.of(current[bucket], target), move -> new BitSet()).set(bucket);
+            }
+        }
+
+        int buckets = 0;
+        long patients = 0;
+        for (Map.Entry<List<Integer>, BitSet> move : moves.entrySet()) {
+            int source = move.getKey().get(0);
+            int target = move.getKey().get(1);
+            long moved = moveBuckets(source, target, move.getValue());
+            log.info("Moved {} buckets ({} patients) from shard {} to shard {}",
+                    move.getValue().cardinality(), moved, source, target);
+            buckets += move.getValue().cardinality();
+            patients += moved;
+        }
+        return Map.of("bucketsMoved", buckets, "patientsMoved", patients);
+    }
+
+    /**
+     * @return Patients moved
+     */
+    long moveBuckets(int source, int target, BitSet buckets) {
+        JdbcTemplate sourceJdbc = new JdbcTemplate(patientShards.dataSource(source));
+        JdbcTemplate targetJdbc = new JdbcTemplate(patientShards.dataSource(target));
+        TransactionTemplate targetTransaction =
+                new TransactionTemplate(new DataSourceTransactionManager(patientShards.dataSource(target)));
+
+        Set<UUID> moved = new HashSet<>();
+        patientShards.trackWrites(buckets);
+        List<Lock> locks = null;
+        try {
+            UUID after = new UUID(0, 0); // Lowest id in database order
+            List<PatientRow> batch;
+            while (!(batch = sourceJdbc.query("select " + COLUMNS + " from patient where id > ? order by id limit "
+                    + BATCH_SIZE, PATIENT_ROW, after)).isEmpty()) {
+                List<PatientRow> copies = batch.stream().filter(row -> buckets.get(ShardMap.bucketOf(row.id()))).toList();
+                targetTransaction.executeWithoutResult(status -> replace(targetJdbc, copies));
+                copies.forEach(row -> moved.add(row.id()));
+                after = batch.getLast().id();
+            }
+
+            locks = patientShards.lockForMove(buckets);
+            Set<UUID> written = patientShards.stopTrackingWrites();
+            targetTransaction.executeWithoutResult(status -> {
+                for (UUID id : written) {
+                    List<PatientRow> row = sourceJdbc.query("select " + COLUMNS + " from patient where id = ?", PATIENT_ROW, id);
+                    if (row.isEmpty()) {
+                        targetJdbc.update("delete from patient where id = ?", id);
+                    } else {
+                        replace(targetJdbc, row);
+                    }
+                }
+            });
+            moved.addAll(written);
+            patientShards.shardMap().assign(buckets, target);
+        } finally {
+            patientShards.stopTrackingWrites();
+            if (locks != null) {
+                locks.forEach(Lock::unlock);
+            }
+        }
+
+        List<UUID> leftBehind = new ArrayList<>(moved);
+        for (int from = 0; from < leftBehind.size(); from += BATCH_SIZE) {
+            sourceJdbc.batchUpdate("delete from patient where id = ?",
+                    leftBehind.subList(from, Math.min(from + BATCH_SIZE, leftBehind.size())), BATCH_SIZE,
+                    (statement, id) -> statement.setObject(1, id));
+        }
+        return moved.size();
+    }
+
+    // Delete and insert rather than an upsert, which H2 and PostgreSQL spell differently
+    private static void replace(JdbcTemplate jdbc, List<PatientRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbc.batchUpdate("delete from patient where id = ?", rows, rows.size(),
+                (statement, row) -> statement.setObject(1, row.id()));
+        jdbc.batchUpdate("insert into patient (" + COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?)", rows, rows.size(),
+                (statement, row) -> {
+                    statement.setObject(1, row.id());
+                    statement.setString(2, row.name());
+                    statement.setString(3, row.email());
+                    statement.setString(4, row.address());
+                    statement.setObject(5, row.dateOfBirth());
+                    statement.setObject(6, row.registeredDate());
+                    statement.setLong(7, row.version());
+                });
+    }
+
+    private record PatientRow(UUID id, String name, String email, String address,
+                              LocalDate dateOfBirth, LocalDate registeredDate, long version) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.medilynk.patientservice.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Patient sharding, enabled by listing the extra shards in patient.sharding.shard-urls. Shard 0 is the
+ * spring.datasource database, which keeps the shard map, the email directory and the table versions; patients
+ * stay there until ShardRebalancer moves buckets of them to the other shards.
+ *
+ * Repositories see a single data source that routes each transaction to the shard in ShardContext, set by
+ * PatientShards. Without sharding the data source auto-configured by Spring Boot is used, as before.
+ */
+@Configuration
+public class ShardingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "patient.sharding.shard-urls")
+    public ShardDataSources shardDataSources(
+            DataSourceProperties properties,
+            Environment environment,
+            MeterRegistry meterRegistry,
+            @Value("${patient.sharding.shard-urls}") List<String> shardUrls,
+            @Value("${patient.sharding.username:}") String username,
+            @Value("${patient.sharding.password:}") String password) {
+        if (environment.containsProperty("spring.datasource.replica.url")) {
+            throw new IllegalStateException("Sharding and a read replica (spring.datasource.replica.url) can't be combined");
+        }
+        Binder binder = Binder.get(environment);
+        List<HikariDataSource> pools = new ArrayList<>();
+
+        HikariDataSource shard0 = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(shard0));
+        pools.add(shard0);
+        for (String url : shardUrls) {
+            HikariDataSource shard = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url)
+                    .username(username.isEmpty() ? properties.determineUsername() : username)
+                    .password(password.isEmpty() ? properties.determinePassword() : password)
+                    .build();
+            binder.bind("patient.sharding.hikari", Bindable.ofInstance(shard));
+            shard.setPoolName(shard0.getPoolName() + "-shard-" + pools.size());
+            pools.add(shard);
+        }
+        // The pools aren't beans of their own, so register their hikaricp.* metrics here
+        pools.forEach(pool -> pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry)));
+
+        new ResourceDatabasePopulator(new ClassPathResource("patient-shard-directory.sql")).execute(shard0);
+        ResourceDatabasePopulator shardSchema = new ResourceDatabasePopulator(new ClassPathResource("patient-shard-schema.sql"));
+        pools.subList(1, pools.size()).forEach(shardSchema::execute);
+        return new ShardDataSources(pools);
+    }
+
+    /**
+     * Named so the JDBC observation proxy can skip it (jdbc.excluded-data-source-bean-names)
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "patient.sharding.shard-urls")
+    public DataSource shardRoutingDataSource(ShardDataSources shardDataSources) {
+        return new ShardRoutingDataSource(List.copyOf(shardDataSources.pools()));
+    }
+
+    /**
+     * Created after the schema, since the email directory is filled from the patients already on shard 0.
+     */
+    @Bean
+    @DependsOnDatabaseInitialization
+    public PatientShards patientShards(ObjectProvider<ShardDataSources> shardDataSources) {
+        ShardDataSources sharded = shardDataSources.getIfAvailable();
+        if (sharded == null) {
+            return PatientShards.single();
+        }
+        new JdbcTemplate(sharded.pools().getFirst()).update("""
+                insert into patient_email (email, patient_id)
+                select p.email, p.id from patient p
+                where not exists (select 1 from patient_email e where e.patient_id = p.id)""");
+        return PatientShards.sharded(List.copyOf(sharded.pools()));
+    }
+}
@@ -0,0 +1,74 @@
+package com.medilynk.patientservice.util;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Allocation-light replacements for LocalDate.parse and LocalDate.toString on ISO yyyy-MM-dd dates.
+ *
+ * Patient dates (date of birth, registration date) come from a small range of days, so the formatted
+ * form of each day is cached after its first use and mapping a patient to a DTO no longer builds a new
+ * String per date. Parsing reads the digits directly instead of going through DateTimeFormatter.
+ */
+public final class IsoDates {
+
+    // Cache covers 1900-01-01 .. 2099-12-31; dates outside the window are formatted on every call
+    private static final long CACHE_FIRST_DAY = LocalDate.of(1900, 1, 1).toEpochDay();
+    private static final int CACHE_SIZE = (int) (LocalDate.of(2100, 1, 1).toEpochDay() - CACHE_FIRST_DAY);
+    // Racy but benign: Strings are immutable, so a thread either sees a complete cached value or formats again
+    private static final String[] FORMATTED = new String[CACHE_SIZE];
+
+    private IsoDates() {
+    }
+
+    /**
+     * Same result as date.toString(), served from the cache for dates between 1900 and 2099.
+     */
+    public static String format(LocalDate date) {
+        long index = date.toEpochDay() - CACHE_FIRST_DAY;
+        if (index < 0 || index >= CACHE_SIZE) {
+            return date.toString();
+        }
+        String formatted = FORMATTED[(int) index];
+        if (formatted == null) {
+            formatted = date.toString();
+            FORMATTED[(int) index] = formatted;
+        }
+        return formatted;
+    }
+
+    /**
+     * Same result as LocalDate.parse(text) for yyyy-MM-dd input. Anything else (other lengths, signs,
+     * non-digits) is handed to LocalDate.parse, so invalid input fails with the usual DateTimeParseException.
+     */
+    public static LocalDate parse(CharSequence text) {
+        if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return LocalDate.parse(text);
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 7);
+        int day = digits(text, 8, 10);
+        if (year < 0 || month < 0 || day < 0) {
+            return LocalDate.parse(text);
+        }
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+            // Out-of-range month or day such as 2023-02-30: let LocalDate.parse report it as a parse error
+            return LocalDate.parse(text);
+        }
+    }
+
+    // Parses text[from, to) as a non-negative decimal number, or returns -1 if a character is not a digit
+    private static int digits(CharSequence text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -6,9 +6,37 @@ CREATE TABLE IF NOT EXISTS patient
     email           VARCHAR(255) UNIQUE NOT NULL,
     address         VARCHAR(255)        NOT NULL,
     date_of_birth   DATE                NOT NULL,
-    registered_date DATE                NOT NULL
+    registered_date DATE                NOT NULL,
+    version         BIGINT DEFAULT 0    NOT NULL
     );
 
+-- Optimistic locking column (Patient.version) for tables created before it existed
+ALTER TABLE patient ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+
+-- Archival (PatientArchiver) and DELETE /patients?registeredBefore scan by registration date
+CREATE INDEX IF NOT EXISTS patient_registered_date ON patient (registered_date);
+
+-- Per-table change counters behind the GET /patients ETag (see TableVersionService)
+CREATE TABLE IF NOT EXISTS table_version
+(
+    table_name VARCHAR(255) PRIMARY KEY,
+    version    BIGINT NOT NULL
+    );
+
+-- Responses to requests sent with an Idempotency-Key header (see IdempotencyStore), on shard 0 with sharding.
+-- Keys are stored as hashes of the client and the key; response_body stays null while the first request runs.
+CREATE TABLE IF NOT EXISTS idempotency_key
+(
+    key_hash      VARCHAR(64)   PRIMARY KEY,
+    request_hash  VARCHAR(64)   NOT NULL,
+    created_at    TIMESTAMP     NOT NULL,
+    status_code   INT,
+    etag          VARCHAR(64),
+    response_body VARCHAR(4096)
+    );
+
+CREATE INDEX IF NOT EXISTS idempotency_key_created_at ON idempotency_key (created_at);
+
 -- Insert well-known UUIDs for specific patients
 INSERT INTO patient (id, name, email, address, date_of_birth, registered_date)
 SELECT '123e4567-e89b-12d3-a456-426614174000',
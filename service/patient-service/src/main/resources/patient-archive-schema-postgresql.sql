@@ -0,0 +1,18 @@
+-- Cold table of archived patients (see PatientArchiver), range partitioned by month of registered_date.
+-- The monthly partitions are created by PatientArchiveRepositoryImpl before patients are moved into them;
+-- a partition can later be detached, dumped to a file and dropped without touching the others.
+-- PostgreSQL requires the partition key in the primary key, so id is only unique per partition here;
+-- the ids come from the patient table, where they are unique.
+CREATE TABLE IF NOT EXISTS patient_archive
+(
+    id              UUID                NOT NULL,
+    name            VARCHAR(255)        NOT NULL,
+    email           VARCHAR(255)        NOT NULL,
+    address         VARCHAR(255)        NOT NULL,
+    date_of_birth   DATE                NOT NULL,
+    registered_date DATE                NOT NULL,
+    version         BIGINT DEFAULT 0    NOT NULL,
+    PRIMARY KEY (id, registered_date)
+    ) PARTITION BY RANGE (registered_date);
+
+CREATE INDEX IF NOT EXISTS patient_archive_email ON patient_archive (email);
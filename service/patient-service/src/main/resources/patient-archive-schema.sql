@@ -0,0 +1,14 @@
+-- Cold table of archived patients (see PatientArchiver). Archived patients keep their email, so it stays taken.
+CREATE TABLE IF NOT EXISTS patient_archive
+(
+    id              UUID PRIMARY KEY,
+    name            VARCHAR(255)        NOT NULL,
+    email           VARCHAR(255)        NOT NULL,
+    address         VARCHAR(255)        NOT NULL,
+    date_of_birth   DATE                NOT NULL,
+    registered_date DATE                NOT NULL,
+    version         BIGINT DEFAULT 0    NOT NULL
+    );
+
+CREATE INDEX IF NOT EXISTS patient_archive_email ON patient_archive (email);
+CREATE INDEX IF NOT EXISTS patient_archive_registered_date ON patient_archive (registered_date);
@@ -0,0 +1,17 @@
+-- Tables on shard 0 that only exist with sharding enabled (see ShardingConfig)
+
+-- Bucket -> shard assignment (ShardMap); buckets without a row are on shard 0
+CREATE TABLE IF NOT EXISTS patient_shard_bucket
+(
+    bucket INT PRIMARY KEY,
+    shard  INT NOT NULL
+    );
+
+-- Email -> patient directory keeping emails unique across shards (EmailDirectory)
+CREATE TABLE IF NOT EXISTS patient_email
+(
+    email      VARCHAR(255) PRIMARY KEY,
+    patient_id UUID NOT NULL
+    );
+
+CREATE INDEX IF NOT EXISTS patient_email_patient_id ON patient_email (patient_id);
@@ -0,0 +1,15 @@
+-- Patient table of shards 1..n (see ShardingConfig). Emails are kept unique across shards by the
+-- patient_email directory on shard 0, so there is no unique constraint here: a copy left behind by a
+-- bucket move must not block another patient from taking that email.
+CREATE TABLE IF NOT EXISTS patient
+(
+    id              UUID PRIMARY KEY,
+    name            VARCHAR(255)        NOT NULL,
+    email           VARCHAR(255)        NOT NULL,
+    address         VARCHAR(255)        NOT NULL,
+    date_of_birth   DATE                NOT NULL,
+    registered_date DATE                NOT NULL,
+    version         BIGINT DEFAULT 0    NOT NULL
+    );
+
+CREATE INDEX IF NOT EXISTS patient_registered_date ON patient (registered_date);
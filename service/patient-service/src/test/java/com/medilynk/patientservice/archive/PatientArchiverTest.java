@@ -0,0 +1,113 @@
+package com.medilynk.patientservice.archive;
+
+import com.medilynk.patientservice.kafka.KafkaProducer;
+import com.medilynk.patientservice.model.Patient;
+import com.medilynk.patientservice.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "grpc.server.port=-1", // Runs next to the default context, so don't bind the gRPC server port again
+        "patient.archive.retention=365d",
+        "patient.archive.interval=0s"}) // Archived by the tests instead
+@AutoConfigureMockMvc
+class PatientArchiverTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PatientArchiver patientArchiver;
+
+    @MockitoBean
+    private KafkaProducer kafkaProducer;
+
+    private Patient old;
+    private Patient recent;
+
+    @BeforeEach
+    void createPatients() {
+        old = save(LocalDate.now().minusYears(3));
+        recent = save(LocalDate.now().minusDays(10));
+        patientArchiver.archive();
+    }
+
+    @Test
+    void movesOnlyPatientsPastTheRetentionPeriod() {
+        assertTrue(patientRepository.findById(old.getId()).isEmpty());
+        assertTrue(patientRepository.findArchivedById(old.getId()).isPresent());
+        assertTrue(patientRepository.findById(recent.getId()).isPresent());
+        assertEquals(0, patientArchiver.archive().get("patientsArchived"));
+    }
+
+    @Test
+    void theArchiveEndpointIsOffUnlessTurnedOn() throws Exception {
+        mockMvc.perform(post("/actuator/archive"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void listsArchivedPatientsOnlyWhenAskedFor() throws Exception {
+        mockMvc.perform(get("/patients"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id").value(hasItem(recent.getId().toString())))
+                .andExpect(jsonPath("$[*].id").value(not(hasItem(old.getId().toString()))));
+        mockMvc.perform(get("/patients").param("includeArchived", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id").value(hasItem(recent.getId().toString())))
+                .andExpect(jsonPath("$[*].id").value(hasItem(old.getId().toString())));
+        mockMvc.perform(get("/patients/{id}", old.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value(old.getEmail()));
+    }
+
+    @Test
+    void archivedPatientsKeepTheirEmailUntilDeleted() throws Exception {
+        String body = "{\"name\": \"New\", \"email\": \"" + old.getEmail() + "\", \"address\": \"1 Cold Street\", "
+                + "\"dateOfBirth\": \"1980-05-01\", \"registeredDate\": \"2024-01-02\"}";
+        mockMvc.perform(post("/patients").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Email address already exists"));
+
+        mockMvc.perform(delete("/patients/{id}", old.getId()))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/patients/{id}", old.getId()))
+                .andExpect(status().isBadRequest()) // GlobalExceptionHandler maps PatientNotFoundException to 400
+                .andExpect(jsonPath("$.message").value("Patient not found"));
+        assertTrue(patientRepository.findArchivedById(old.getId()).isEmpty());
+        assertFalse(patientRepository.existsArchivedByEmail(old.getEmail()));
+    }
+
+    private Patient save(LocalDate registeredDate) {
+        Patient patient = new Patient();
+        patient.setName("Archive Test");
+        patient.setEmail("archive-" + UUID.randomUUID() + "@example.com");
+        patient.setAddress("1 Old Street");
+        patient.setDateOfBirth(LocalDate.of(1980, 5, 1));
+        patient.setRegisteredDate(registeredDate);
+        return patientRepository.save(patient);
+    }
+}
@@ -0,0 +1,157 @@
+package com.medilynk.patientservice.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries on recently registered patients, at `rows` patients registered evenly over the last ten years:
+ * - single: every patient in the patient table, as without archival
+ * - tiered: only the last year (RETENTION_DAYS) in the patient table, the rest in patient_archive, as
+ *   PatientArchiver leaves them with a one year retention
+ * The databases are H2 files under target/, built on the first run (a few minutes at 10M rows) and reused after.
+ * The size of the patient table with its indexes, which the hot queries work in, is printed at setup.
+ *
+ * For a quick check, lower the rows @Param (e.g. to 1000000); each value gets its own database files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatientArchiveBenchmark {
+
+    private static final int DAYS = 3650;
+    private static final int RETENTION_DAYS = 365;
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final LocalDate TODAY = LocalDate.of(2025, 1, 1); // Fixed, so the files stay reusable
+
+    @Param({"single", "tiered"})
+    private String layout;
+
+    @Param({"10000000"})
+    private int rows;
+
+    private Connection connection;
+    private PreparedStatement byEmail;
+    private PreparedStatement registeredSince;
+
+    @Setup(Level.Trial)
+    public void openDatabase() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:file:./target/patient-archive-" + layout + "-" + rows);
+        if (!exists()) {
+            fill();
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet size = statement.executeQuery("call disk_space_used('PATIENT')")) {
+            size.next();
+            System.out.printf("%n%s: patient table and indexes %,d KiB%n", layout, size.getLong(1) / 1024);
+        }
+        byEmail = connection.prepareStatement("select id, name, address, version from patient where email = ?");
+        registeredSince = connection.prepareStatement("select count(*) from patient where registered_date >= ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabase() throws SQLException {
+        connection.close();
+    }
+
+    // GET by email of a patient registered within the retention period
+    @Benchmark
+    public boolean emailLookup() throws SQLException {
+        int day = ThreadLocalRandom.current().nextInt(RETENTION_DAYS);
+        int patient = ThreadLocalRandom.current().nextInt(rows / DAYS) * DAYS + day;
+        byEmail.setString(1, email(patient));
+        try (ResultSet resultSet = byEmail.executeQuery()) {
+            return resultSet.next();
+        }
+    }
+
+    // Patients registered in the last 30 days, a range scan of the registered_date index
+    @Benchmark
+    public long lastMonthsRegistrations() throws SQLException {
+        registeredSince.setDate(1, Date.valueOf(TODAY.minusDays(30)));
+        try (ResultSet resultSet = registeredSince.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private boolean exists() throws SQLException {
+        try (ResultSet tables = connection.getMetaData().getTables(null, null, "PATIENT", null)) {
+            return tables.next();
+        }
+    }
+
+    private void fill() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String table : new String[]{"patient", "patient_archive"}) {
+                statement.execute("""
+                        CREATE TABLE %s (
+                            id UUID PRIMARY KEY,
+                            name VARCHAR(255) NOT NULL,
+                            email VARCHAR(255) NOT NULL,
+                            address VARCHAR(255) NOT NULL,
+                            date_of_birth DATE NOT NULL,
+                            registered_date DATE NOT NULL,
+                            version BIGINT DEFAULT 0 NOT NULL)""".formatted(table));
+            }
+        }
+        connection.setAutoCommit(false);
+        String columns = " (id, name, email, address, date_of_birth, registered_date) values (?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement hot = connection.prepareStatement("insert into patient" + columns);
+             PreparedStatement cold = connection.prepareStatement("insert into patient_archive" + columns)) {
+            for (int i = 0; i < rows; i++) {
+                int day = i % DAYS; // Days before TODAY
+                PreparedStatement insert = layout.equals("tiered") && day >= RETENTION_DAYS ? cold : hot;
+                insert.setObject(1, UUID.randomUUID());
+                insert.setString(2, "Patient " + i);
+                insert.setString(3, email(i));
+                insert.setString(4, i + " Main Street");
+                insert.setDate(5, Date.valueOf(LocalDate.of(1950 + i % 60, 1 + i % 12, 1 + i % 28)));
+                insert.setDate(6, Date.valueOf(TODAY.minusDays(day)));
+                insert.addBatch();
+                if ((i + 1) % INSERT_BATCH_SIZE == 0 || i == rows - 1) {
+                    hot.executeBatch();
+                    cold.executeBatch();
+                    connection.commit();
+                }
+            }
+        }
+        connection.setAutoCommit(true);
+        // The indexes of data.sql and patient-archive-schema.sql, built after loading
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE UNIQUE INDEX patient_email ON patient (email)");
+            statement.execute("CREATE INDEX patient_registered_date ON patient (registered_date)");
+            statement.execute("CREATE INDEX patient_archive_email ON patient_archive (email)");
+            statement.execute("CREATE INDEX patient_archive_registered_date ON patient_archive (registered_date)");
+        }
+    }
+
+    private static String email(int patient) {
+        return "patient-" + patient + "@example.com";
+    }
+}
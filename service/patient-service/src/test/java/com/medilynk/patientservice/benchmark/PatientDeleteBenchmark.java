@@ -0,0 +1,146 @@
+package com.medilynk.patientservice.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per deleted patient of each delete path, as the statements it sends to an in-memory H2 table. Every
+ * invocation deletes all 10k patients of a freshly filled table:
+ * - loadThenDelete: before: findById, then delete(patient), which loads it again before the DELETE
+ * - singleDelete: DELETE /patients/{id} now: one DELETE ... WHERE id = ?, auto-committed
+ * - bulkDelete: DELETE /patients?id=...: JDBC batches of 500 DELETEs, one transaction per batch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 20)
+@Fork(1)
+public class PatientDeleteBenchmark {
+
+    private static final int PATIENTS = 10_000;
+    private static final int BATCH_SIZE = 500;
+
+    private Connection connection;
+    private final UUID[] ids = new UUID[PATIENTS];
+
+    @Setup(Level.Trial)
+    public void createTable() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:patient-delete;DB_CLOSE_DELAY=-1");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    CREATE TABLE patient (
+                        id UUID PRIMARY KEY,
+                        name VARCHAR(255) NOT NULL,
+                        email VARCHAR(255) UNIQUE NOT NULL,
+                        address VARCHAR(255) NOT NULL,
+                        date_of_birth DATE NOT NULL,
+                        registered_date DATE NOT NULL,
+                        version BIGINT DEFAULT 0 NOT NULL)""");
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void fillTable() throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "insert into patient (id, name, email, address, date_of_birth, registered_date) values (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < PATIENTS; i++) {
+                ids[i] = UUID.randomUUID();
+                insert.setObject(1, ids[i]);
+                insert.setString(2, "Patient " + i);
+                insert.setString(3, ids[i] + "@example.com");
+                insert.setString(4, i + " Main Street");
+                insert.setDate(5, Date.valueOf(LocalDate.of(1950 + i % 60, 1 + i % 12, 1 + i % 28)));
+                insert.setDate(6, Date.valueOf(LocalDate.of(2024, 1, 1)));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATIENTS)
+    public int loadThenDelete() throws SQLException {
+        int deleted = 0;
+        try (PreparedStatement select = connection.prepareStatement(
+                "select id, name, email, address, date_of_birth, registered_date, version from patient where id = ?");
+             PreparedStatement delete = connection.prepareStatement("delete from patient where id = ? and version = ?")) {
+            for (UUID id : ids) {
+                select.setObject(1, id);
+                select.executeQuery().close(); // findById
+                select.executeQuery().close(); // SimpleJpaRepository.delete: em.find before em.remove
+                delete.setObject(1, id);
+                delete.setLong(2, 0);
+                deleted += delete.executeUpdate();
+            }
+        }
+        return deleted;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATIENTS)
+    public int singleDelete() throws SQLException {
+        int deleted = 0;
+        try (PreparedStatement delete = connection.prepareStatement("delete from patient where id = ?")) {
+            for (UUID id : ids) {
+                delete.setObject(1, id);
+                deleted += delete.executeUpdate();
+            }
+        }
+        return deleted;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATIENTS)
+    public int bulkDelete() throws SQLException {
+        int deleted = 0;
+        connection.setAutoCommit(false);
+        try (PreparedStatement delete = connection.prepareStatement("delete from patient where id = ?")) {
+            for (int i = 0; i < PATIENTS; i++) {
+                delete.setObject(1, ids[i]);
+                delete.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0 || i == PATIENTS - 1) {
+                    for (int count : delete.executeBatch()) {
+                        deleted += count;
+                    }
+                    connection.commit();
+                }
+            }
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,67 @@
+package com.medilynk.patientservice.benchmark;
+
+import com.medilynk.patientservice.kafka.PatientEventEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import patent.event.PatientEvent;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a PatientEvent and calling toByteArray (what KafkaProducer used to do) against PatientEventEncoder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatientEventBenchmark {
+
+    private String patientId;
+    private String name;
+    private String email;
+    private UUID eventId;
+    private LocalDate dateOfBirth;
+    private LocalDate registeredDate;
+
+    @Setup
+    public void setUp() {
+        patientId = UUID.randomUUID().toString();
+        name = "John Doe";
+        email = "john.doe@example.com";
+        eventId = UUID.randomUUID();
+        dateOfBirth = LocalDate.of(1958, 3, 14);
+        registeredDate = LocalDate.of(2024, 1, 2);
+    }
+
+    @Benchmark
+    public byte[] builderToByteArray() {
+        return PatientEvent.newBuilder()
+                .setPatientId(patientId)
+                .setName(name)
+                .setEmail(email)
+                .setEventType("PATIENT_CREATED")
+                .setEventIdHigh(eventId.getMostSignificantBits())
+                .setEventIdLow(eventId.getLeastSignificantBits())
+                .setDateOfBirth((int) dateOfBirth.toEpochDay())
+                .setRegisteredDate((int) registeredDate.toEpochDay())
+                .build()
+                .toByteArray();
+    }
+
+    @Benchmark
+    public byte[] directEncoding() {
+        return PatientEventEncoder.encode(patientId, name, email, "PATIENT_CREATED", eventId, dateOfBirth, registeredDate);
+    }
+}
@@ -0,0 +1,70 @@
+package com.medilynk.patientservice.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.medilynk.patientservice.dto.PatientResponseDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the GET /patients response body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatientJsonBenchmark {
+
+    @Param({"15", "1000"})
+    private int patients;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ObjectWriter listWriter;
+    private List<PatientResponseDTO> body;
+
+    @Setup
+    public void setUp() {
+        // Writer with the root type resolved up front, as opposed to looking it up from the value on every call
+        listWriter = objectMapper.writerFor(new TypeReference<List<PatientResponseDTO>>() {
+        });
+        body = new ArrayList<>(patients);
+        for (int i = 0; i < patients; i++) {
+            PatientResponseDTO dto = new PatientResponseDTO();
+            dto.setId(UUID.randomUUID().toString());
+            dto.setName("Patient " + i);
+            dto.setEmail("patient" + i + "@example.com");
+            dto.setAddress(i + " Main St, Springfield");
+            dto.setDateOfBirth("1985-06-15");
+            dto.setRegisteredDate("2024-01-10");
+            body.add(dto);
+        }
+    }
+
+    @Benchmark
+    public byte[] objectMapper() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(body);
+    }
+
+    @Benchmark
+    public byte[] typedWriter() throws JsonProcessingException {
+        return listWriter.writeValueAsBytes(body);
+    }
+}
@@ -0,0 +1,86 @@
+package com.medilynk.patientservice.benchmark;
+
+import com.medilynk.patientservice.dto.PatientRequestDTO;
+import com.medilynk.patientservice.dto.PatientResponseDTO;
+import com.medilynk.patientservice.mappers.PatientMapper;
+import com.medilynk.patientservice.model.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PatientMapper against the LocalDate.parse / LocalDate.toString implementation it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatientMapperBenchmark {
+
+    private Patient patient;
+    private PatientRequestDTO request;
+
+    @Setup
+    public void setUp() {
+        patient = new Patient();
+        patient.setId(UUID.randomUUID());
+        patient.setName("John Doe");
+        patient.setEmail("john.doe@example.com");
+        patient.setAddress("123 Main St, Springfield");
+        patient.setDateOfBirth(LocalDate.of(1985, 6, 15));
+        patient.setRegisteredDate(LocalDate.of(2024, 1, 10));
+
+        request = new PatientRequestDTO();
+        request.setName("John Doe");
+        request.setEmail("john.doe@example.com");
+        request.setAddress("123 Main St, Springfield");
+        request.setDateOfBirth("1985-06-15");
+        request.setRegisteredDate("2024-01-10");
+    }
+
+    @Benchmark
+    public PatientResponseDTO toDTO() {
+        return PatientMapper.toDTO(patient);
+    }
+
+    @Benchmark
+    public PatientResponseDTO toDTOLocalDateToString() {
+        PatientResponseDTO dto = new PatientResponseDTO();
+        dto.setId(patient.getId().toString());
+        dto.setName(patient.getName());
+        dto.setEmail(patient.getEmail());
+        dto.setAddress(patient.getAddress());
+        dto.setDateOfBirth(patient.getDateOfBirth().toString());
+        dto.setRegisteredDate(patient.getRegisteredDate().toString());
+        return dto;
+    }
+
+    @Benchmark
+    public Patient toModel() {
+        return PatientMapper.toModel(request);
+    }
+
+    @Benchmark
+    public Patient toModelLocalDateParse() {
+        Patient model = new Patient();
+        model.setName(request.getName());
+        model.setEmail(request.getEmail());
+        model.setAddress(request.getAddress());
+        model.setDateOfBirth(LocalDate.parse(request.getDateOfBirth()));
+        model.setRegisteredDate(LocalDate.parse(request.getRegisteredDate()));
+        return model;
+    }
+}
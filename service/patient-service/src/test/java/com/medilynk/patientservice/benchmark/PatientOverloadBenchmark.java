@@ -0,0 +1,154 @@
+package com.medilynk.patientservice.benchmark;
+
+import com.medilynk.patientservice.concurrency.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Goodput of patient-service offered three times the requests it can serve, with and without
+ * AdaptiveConcurrencyLimiter in front of the handler.
+ *
+ * The server is modelled as Tomcat (SERVER_THREADS threads taking requests from an unbounded queue) and a handler
+ * that holds one of POOL_SIZE database connections for SERVICE_TIME_MS, so it serves at most
+ * POOL_SIZE * 1000 / SERVICE_TIME_MS requests per second. CLIENTS clients send a request every PERIOD_MS on
+ * average (a fifth of them writes) and give up after TIMEOUT_MS, like the gateway; an abandoned request still
+ * runs to the end on the server, as a servlet doesn't notice that the client left. The time between a client's
+ * requests is random (PERIOD_MS +- 50%), so the clients don't fall into step and send their requests in bursts.
+ *
+ * The aux counters are per second: served (200 within the timeout, the goodput), writesServed, rejected (fast
+ * 503s) and timedOut.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(PatientOverloadBenchmark.CLIENTS)
+@Fork(1)
+public class PatientOverloadBenchmark {
+
+    static final int CLIENTS = 90; // 90 * 1000 / PERIOD_MS = 600 requests/s, 3x capacity
+    private static final int SERVER_THREADS = 40;
+    private static final int POOL_SIZE = 2;
+    private static final long SERVICE_TIME_MS = 10; // 200 requests/s capacity
+    private static final long PERIOD_MS = 150;
+    private static final long TIMEOUT_MS = 75; // Below the shortest period, so a timeout never delays the next request
+    private static final double WRITE_SHARE = 0.2;
+
+    @Param({"none", "adaptive"})
+    private String limiter;
+
+    private ExecutorService server;
+    private Semaphore database;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Responses {
+        public long served;
+        public long writesServed;
+        public long rejected;
+        public long timedOut;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            served = 0;
+            writesServed = 0;
+            rejected = 0;
+            timedOut = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void startServer() {
+        server = Executors.newFixedThreadPool(SERVER_THREADS);
+        database = new Semaphore(POOL_SIZE, true);
+        concurrencyLimiter = limiter.equals("adaptive")
+                // The defaults of application.properties, with the minRtt measured every 10s instead of 60s
+                ? new AdaptiveConcurrencyLimiter(3, SERVER_THREADS, 0.2, 0.25, Duration.ofMillis(100),
+                Duration.ofSeconds(10), 50, new SimpleMeterRegistry())
+                : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        server.shutdownNow();
+    }
+
+    @Benchmark
+    public void request(Responses responses) throws InterruptedException {
+        long sent = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean write = random.nextDouble() < WRITE_SHARE;
+        Future<Integer> response = server.submit(() -> handle(write));
+        try {
+            if (response.get(TIMEOUT_MS, TimeUnit.MILLISECONDS) == 200) {
+                responses.served++;
+                if (write) {
+                    responses.writesServed++;
+                }
+            } else {
+                responses.rejected++;
+            }
+        } catch (TimeoutException e) {
+            responses.timedOut++;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        long period = TimeUnit.MILLISECONDS.toNanos(PERIOD_MS);
+        long idle = sent + random.nextLong(period / 2, period * 3 / 2) - System.nanoTime();
+        if (idle > 0) {
+            TimeUnit.NANOSECONDS.sleep(idle);
+        }
+    }
+
+    // ConcurrencyLimitFilter in front of a handler that needs a database connection
+    private int handle(boolean write) throws InterruptedException {
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+        if (concurrencyLimiter != null) {
+            permit = concurrencyLimiter.tryAcquire(write
+                    ? AdaptiveConcurrencyLimiter.Priority.WRITE
+                    : AdaptiveConcurrencyLimiter.Priority.READ);
+            if (permit == null) {
+                return 503;
+            }
+        }
+        try {
+            database.acquire();
+            try {
+                Thread.sleep(SERVICE_TIME_MS);
+            } finally {
+                database.release();
+            }
+            return 200;
+        } finally {
+            if (permit != null) {
+                permit.release();
+            }
+        }
+    }
+}
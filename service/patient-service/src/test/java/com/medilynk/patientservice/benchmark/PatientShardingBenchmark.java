@@ -0,0 +1,106 @@
+package com.medilynk.patientservice.benchmark;
+
+import com.medilynk.patientservice.sharding.PatientShards;
+import com.medilynk.patientservice.sharding.ShardRebalancer;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Patient inserts per second from 8 concurrent clients, spread over 1, 2 or 4 shards by PatientShards.
+ *
+ * Each shard is an in-memory H2 database behind a single connection, and every insert holds that connection for
+ * an extra SERVICE_TIME_MS, standing in for a database server that is saturated by one shard's share of the
+ * writes. In-process H2 on its own would only measure this machine's CPUs, which all shards share; with the
+ * emulated service time, throughput shows how far the writes scale out with the shard count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class PatientShardingBenchmark {
+
+    private static final int SERVICE_TIME_MS = 1;
+
+    @Param({"1", "2", "4"})
+    private int shards;
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final List<JdbcTemplate> templates = new ArrayList<>();
+    private PatientShards patientShards;
+
+    @Setup(Level.Trial)
+    public void createShards() {
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("patient-shard-schema.sql"));
+        for (int shard = 0; shard < shards; shard++) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setJdbcUrl("jdbc:h2:mem:patient-sharding-" + shard + ";DB_CLOSE_DELAY=-1");
+            pool.setMaximumPoolSize(1);
+            schema.execute(pool);
+            new JdbcTemplate(pool).execute("CREATE ALIAS IF NOT EXISTS SLEEP FOR 'java.lang.Thread.sleep(long)'");
+            pools.add(pool);
+            templates.add(new JdbcTemplate(pool));
+        }
+        new ResourceDatabasePopulator(new ClassPathResource("patient-shard-directory.sql")).execute(pools.getFirst());
+        patientShards = PatientShards.sharded(List.<DataSource>copyOf(pools));
+        new ShardRebalancer(patientShards).rebalance(); // No patients yet, so this only spreads the buckets
+    }
+
+    @TearDown(Level.Trial)
+    public void dropShards() {
+        patientShards.close();
+        for (int shard = 0; shard < pools.size(); shard++) {
+            templates.get(shard).execute("DROP ALL OBJECTS");
+            pools.get(shard).close();
+        }
+        pools.clear();
+        templates.clear();
+    }
+
+    @Benchmark
+    public int insert() {
+        UUID id = UUID.randomUUID();
+        JdbcTemplate shard = templates.get(patientShards.shardOf(id)); // No moves run, so this is the write's shard
+        return patientShards.write(id, () -> shard.execute((ConnectionCallback<Integer>) connection -> {
+            try (var insert = connection.prepareStatement(
+                    "insert into patient (id, name, email, address, date_of_birth, registered_date) values (?, ?, ?, ?, ?, ?)");
+                 var serviceTime = connection.prepareStatement("call sleep(" + SERVICE_TIME_MS + ")")) {
+                insert.setObject(1, id);
+                insert.setString(2, "Patient");
+                insert.setString(3, id + "@example.com");
+                insert.setString(4, "1 Main Street");
+                insert.setObject(5, LocalDate.of(1980, 1, 1));
+                insert.setObject(6, LocalDate.of(2024, 1, 1));
+                int inserted = insert.executeUpdate();
+                serviceTime.execute();
+                return inserted;
+            }
+        }));
+    }
+}
@@ -0,0 +1,165 @@
+package com.medilynk.patientservice.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Changing one patient's address, as the statements Hibernate sends for each kind of update (auto-commit,
+ * like the service's repository calls), against an in-memory H2 table of 100k patients:
+ * - fullPut: PUT before @DynamicUpdate and @Version: load, email check, merge's reload, UPDATE of every column
+ * - dynamicPut: PUT now: the same reads, then an UPDATE of the changed column and the version
+ * - patch: PATCH: one conditional UPDATE, then the read-back for the response and the event
+ * Measures the database work only; H2 has no WAL to compare.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class PatientUpdateBenchmark {
+
+    private static final int PATIENTS = 100_000;
+
+    private Connection connection;
+    private PreparedStatement selectById;
+    private PreparedStatement emailTakenByOther;
+    private PreparedStatement updateAllColumns;
+    private PreparedStatement updateAddress;
+    private final UUID[] ids = new UUID[PATIENTS];
+    private final long[] versions = new long[PATIENTS];
+    private final SplittableRandom random = new SplittableRandom(3);
+
+    @Setup
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:patient-update;DB_CLOSE_DELAY=-1");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    CREATE TABLE patient (
+                        id UUID PRIMARY KEY,
+                        name VARCHAR(255) NOT NULL,
+                        email VARCHAR(255) UNIQUE NOT NULL,
+                        address VARCHAR(255) NOT NULL,
+                        date_of_birth DATE NOT NULL,
+                        registered_date DATE NOT NULL,
+                        version BIGINT DEFAULT 0 NOT NULL)""");
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "insert into patient (id, name, email, address, date_of_birth, registered_date) values (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < PATIENTS; i++) {
+                ids[i] = UUID.randomUUID();
+                insert.setObject(1, ids[i]);
+                insert.setString(2, "Patient " + i);
+                insert.setString(3, "patient" + i + "@example.com");
+                insert.setString(4, i + " Main Street");
+                insert.setDate(5, Date.valueOf(LocalDate.of(1950 + i % 60, 1 + i % 12, 1 + i % 28)));
+                insert.setDate(6, Date.valueOf(LocalDate.of(2024, 1, 1)));
+                insert.addBatch();
+                if (i % 1000 == 999) {
+                    insert.executeBatch();
+                }
+            }
+        }
+        selectById = connection.prepareStatement(
+                "select id, name, email, address, date_of_birth, registered_date, version from patient where id = ?");
+        emailTakenByOther = connection.prepareStatement(
+                "select count(*) from patient where email = ? and id <> ?");
+        updateAllColumns = connection.prepareStatement(
+                "update patient set name = ?, email = ?, address = ?, date_of_birth = ?, registered_date = ? where id = ?");
+        updateAddress = connection.prepareStatement(
+                "update patient set address = ?, version = version + 1 where id = ? and version = ?");
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public int fullPut() throws SQLException {
+        int patient = random.nextInt(PATIENTS);
+        String name;
+        String email;
+        Date dateOfBirth;
+        Date registeredDate;
+        selectById(patient).close(); // findById
+        emailTaken("patient" + patient + "@example.com", patient);
+        try (ResultSet row = selectById(patient)) { // save() merges the detached entity, loading it again
+            row.next();
+            name = row.getString(2);
+            email = row.getString(3);
+            dateOfBirth = row.getDate(5);
+            registeredDate = row.getDate(6);
+        }
+        updateAllColumns.setString(1, name);
+        updateAllColumns.setString(2, email);
+        updateAllColumns.setString(3, random.nextInt() + " New Street");
+        updateAllColumns.setDate(4, dateOfBirth);
+        updateAllColumns.setDate(5, registeredDate);
+        updateAllColumns.setObject(6, ids[patient]);
+        return updateAllColumns.executeUpdate();
+    }
+
+    @Benchmark
+    public int dynamicPut() throws SQLException {
+        int patient = random.nextInt(PATIENTS);
+        selectById(patient).close();
+        emailTaken("patient" + patient + "@example.com", patient);
+        selectById(patient).close();
+        return updateAddress(patient);
+    }
+
+    @Benchmark
+    public int patch() throws SQLException {
+        int patient = random.nextInt(PATIENTS);
+        int updated = updateAddress(patient);
+        selectById(patient).close();
+        return updated;
+    }
+
+    private ResultSet selectById(int patient) throws SQLException {
+        selectById.setObject(1, ids[patient]);
+        return selectById.executeQuery();
+    }
+
+    private void emailTaken(String email, int patient) throws SQLException {
+        emailTakenByOther.setString(1, email);
+        emailTakenByOther.setObject(2, ids[patient]);
+        try (ResultSet count = emailTakenByOther.executeQuery()) {
+            count.next();
+        }
+    }
+
+    private int updateAddress(int patient) throws SQLException {
+        updateAddress.setString(1, random.nextInt() + " New Street");
+        updateAddress.setObject(2, ids[patient]);
+        updateAddress.setLong(3, versions[patient]);
+        int updated = updateAddress.executeUpdate();
+        versions[patient] += updated;
+        return updated;
+    }
+}
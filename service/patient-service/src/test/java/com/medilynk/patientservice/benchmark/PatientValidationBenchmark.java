@@ -0,0 +1,74 @@
+package com.medilynk.patientservice.benchmark;
+
+import com.medilynk.patientservice.dto.PatientRequestDTO;
+import com.medilynk.patientservice.dto.validator.CreatePatientValidationGroup;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import jakarta.validation.groups.Default;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bean validation of a create-patient request, as triggered by @Validated in PatientController.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatientValidationBenchmark {
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private PatientRequestDTO valid;
+    private PatientRequestDTO invalid;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+
+        valid = new PatientRequestDTO();
+        valid.setName("John Doe");
+        valid.setEmail("john.doe@example.com");
+        valid.setAddress("123 Main St, Springfield");
+        valid.setDateOfBirth("1985-06-15");
+        valid.setRegisteredDate("2024-01-10");
+
+        invalid = new PatientRequestDTO();
+        invalid.setName("John Doe");
+        invalid.setEmail("not-an-email");
+        invalid.setAddress("");
+        invalid.setDateOfBirth("1985-06-15");
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PatientRequestDTO>> validRequest() {
+        return validator.validate(valid, Default.class, CreatePatientValidationGroup.class);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PatientRequestDTO>> invalidRequest() {
+        return validator.validate(invalid, Default.class, CreatePatientValidationGroup.class);
+    }
+}
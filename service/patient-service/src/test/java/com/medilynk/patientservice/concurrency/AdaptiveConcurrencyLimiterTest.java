@@ -0,0 +1,97 @@
+package com.medilynk.patientservice.concurrency;
+
+import com.medilynk.patientservice.concurrency.AdaptiveConcurrencyLimiter.Permit;
+import com.medilynk.patientservice.concurrency.AdaptiveConcurrencyLimiter.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private long now;
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(3, 100, 0.2, 0.25,
+            Duration.ofMillis(100), Duration.ofHours(1), 5, meterRegistry, () -> now);
+
+    @Test
+    void growsWhileLatencyStaysAtMinRttAndShrinksWhenRequestsQueue() {
+        assertEquals(3, limiter.getLimit()); // Pinned while measuring minRtt
+        for (int i = 0; i < 5; i++) {
+            run(10 * MS);
+        }
+        assertEquals(3, limiter.getLimit()); // Measured, back to the limit before the measurement
+        assertEquals(0.01, meterRegistry.get("http.server.concurrency.min.rtt").gauge().value(), 1e-9);
+
+        window(10 * MS);
+        assertEquals(6, limiter.getLimit()); // 3 * 1.25, plus its square root
+        window(10 * MS);
+        assertEquals(10, limiter.getLimit());
+        window(10 * MS);
+        assertEquals(16, limiter.getLimit());
+
+        window(40 * MS); // Queued: gradient 12.5 / 40, clamped to 0.5
+        assertEquals(11, limiter.getLimit());
+        for (int i = 0; i < 5; i++) {
+            window(40 * MS);
+        }
+        assertEquals(3, limiter.getLimit()); // Down to minLimit
+        assertEquals(3.0, meterRegistry.get("http.server.concurrency.limit").gauge().value());
+    }
+
+    @Test
+    void shedsReadsBeforeWrites() {
+        for (int i = 0; i < 5; i++) {
+            run(10 * MS);
+        }
+        for (int i = 0; i < 3; i++) {
+            window(10 * MS);
+        }
+        int limit = limiter.getLimit();
+        int reads = limit - (int) (limit * 0.2);
+
+        List<Permit> permits = new ArrayList<>();
+        for (int i = 0; i < reads; i++) {
+            permits.add(limiter.tryAcquire(Priority.READ));
+        }
+        assertNull(limiter.tryAcquire(Priority.READ));
+        for (int i = reads; i < limit; i++) {
+            permits.add(assertNotNullAndReturn(limiter.tryAcquire(Priority.WRITE)));
+        }
+        assertNull(limiter.tryAcquire(Priority.WRITE));
+        assertEquals(limit, limiter.getInFlight());
+        assertEquals(1.0, meterRegistry.get("http.server.concurrency.rejected").tag("priority", "read").counter().count());
+        assertEquals(1.0, meterRegistry.get("http.server.concurrency.rejected").tag("priority", "write").counter().count());
+
+        permits.forEach(Permit::release);
+        assertEquals(0, limiter.getInFlight());
+        assertNotNull(limiter.tryAcquire(Priority.READ));
+    }
+
+    // One request after the current window has ended, so the limit is updated from its latency
+    private void window(long rtt) {
+        now += 100 * MS;
+        run(rtt);
+    }
+
+    private void run(long rtt) {
+        Permit permit = assertNotNullAndReturn(limiter.tryAcquire(Priority.WRITE));
+        now += rtt;
+        permit.release();
+    }
+
+    private static Permit assertNotNullAndReturn(Permit permit) {
+        assertNotNull(permit);
+        return permit;
+    }
+}
@@ -0,0 +1,56 @@
+package com.medilynk.patientservice.concurrency;
+
+import com.medilynk.patientservice.concurrency.AdaptiveConcurrencyLimiter.Permit;
+import com.medilynk.patientservice.concurrency.AdaptiveConcurrencyLimiter.Priority;
+import com.medilynk.patientservice.kafka.KafkaProducer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "grpc.server.port=-1", // Runs next to the default context, so don't bind the gRPC server port again
+        "patient.concurrency-limit.min-limit=1",
+        "patient.concurrency-limit.max-limit=1"})
+@AutoConfigureMockMvc
+class ConcurrencyLimitFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @MockitoBean
+    private KafkaProducer kafkaProducer;
+
+    @Test
+    void rejectsRequestsOverTheLimitButNotHealthChecks() throws Exception {
+        Permit running = limiter.tryAcquire(Priority.WRITE); // Takes the only slot
+        assertNotNull(running);
+        try {
+            mockMvc.perform(get("/patients"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                    .andExpect(jsonPath("$.message").value("Service is overloaded, try again"));
+            mockMvc.perform(get("/actuator/health"))
+                    .andExpect(status().isOk());
+        } finally {
+            running.release();
+        }
+
+        mockMvc.perform(get("/patients"))
+                .andExpect(status().isOk());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -0,0 +1,52 @@
+package com.medilynk.patientservice.controller;
+
+import com.medilynk.patientservice.service.TableVersionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "grpc.server.port=-1") // Runs next to the default context, so don't bind the gRPC server port again
+@AutoConfigureMockMvc
+class PatientControllerConditionalGetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TableVersionService tableVersionService;
+
+    @Test
+    void returnsNotModifiedWhileTheListIsUnchanged() throws Exception {
+        String etag = mockMvc.perform(get("/patients"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/patients").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void returnsTheListAgainAfterAChange() throws Exception {
+        String etag = mockMvc.perform(get("/patients"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        tableVersionService.bump(TableVersionService.PATIENT_TABLE);
+
+        String newEtag = mockMvc.perform(get("/patients").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, newEtag);
+    }
+}
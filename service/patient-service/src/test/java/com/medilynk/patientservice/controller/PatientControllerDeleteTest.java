@@ -0,0 +1,114 @@
+package com.medilynk.patientservice.controller;
+
+import com.medilynk.patientservice.kafka.KafkaProducer;
+import com.medilynk.patientservice.model.Patient;
+import com.medilynk.patientservice.repository.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "grpc.server.port=-1") // Runs next to the default context, so don't bind the gRPC server port again
+@AutoConfigureMockMvc
+class PatientControllerDeleteTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @MockitoBean
+    private KafkaProducer kafkaProducer;
+
+    @Test
+    void deletesOnePatientOrReportsItMissing() throws Exception {
+        UUID id = save(LocalDate.of(2024, 3, 1)).getId();
+
+        mockMvc.perform(delete("/patients/{id}", id)).andExpect(status().isNoContent());
+        mockMvc.perform(delete("/patients/{id}", id))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Patient not found"));
+
+        assertFalse(patientRepository.existsById(id));
+        verify(kafkaProducer).sendDeletedEvents(List.of(id));
+    }
+
+    @Test
+    void deletesTheGivenIdsThatExist() throws Exception {
+        UUID first = save(LocalDate.of(2024, 3, 1)).getId();
+        UUID second = save(LocalDate.of(2024, 3, 1)).getId();
+
+        mockMvc.perform(delete("/patients")
+                        .param("id", first.toString(), UUID.randomUUID().toString(), second.toString(), first.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(2));
+
+        verify(kafkaProducer).sendDeletedEvents(List.of(first, second));
+    }
+
+    @Test
+    void deletesEveryPatientRegisteredBeforeTheDateInBatches() throws Exception {
+        List<Patient> old = new ArrayList<>();
+        for (int i = 0; i < 1_100; i++) {
+            old.add(patient(LocalDate.of(1985, 1, 1)));
+        }
+        Set<UUID> oldIds = new HashSet<>();
+        patientRepository.saveAll(old).forEach(patient -> oldIds.add(patient.getId()));
+        UUID recent = save(LocalDate.of(1990, 1, 1)).getId();
+
+        mockMvc.perform(delete("/patients").param("registeredBefore", "1990-01-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(1_100));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<UUID>> events = ArgumentCaptor.forClass(Collection.class);
+        verify(kafkaProducer, times(3)).sendDeletedEvents(events.capture()); // 500 + 500 + 100
+        Set<UUID> eventIds = new HashSet<>();
+        events.getAllValues().forEach(eventIds::addAll);
+        assertEquals(oldIds, eventIds);
+        assertFalse(patientRepository.existsById(old.getFirst().getId()));
+        assertTrue(patientRepository.existsById(recent));
+    }
+
+    @Test
+    void requiresExactlyOneSelector() throws Exception {
+        mockMvc.perform(delete("/patients")).andExpect(status().isBadRequest());
+        mockMvc.perform(delete("/patients").param("id", UUID.randomUUID().toString()).param("registeredBefore", "2000-01-01"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private Patient save(LocalDate registeredDate) {
+        return patientRepository.save(patient(registeredDate));
+    }
+
+    private static Patient patient(LocalDate registeredDate) {
+        Patient patient = new Patient();
+        patient.setName("Delete Test");
+        patient.setEmail("delete-" + UUID.randomUUID() + "@example.com");
+        patient.setAddress("1 Delete Street");
+        patient.setDateOfBirth(LocalDate.of(1960, 1, 1));
+        patient.setRegisteredDate(registeredDate);
+        return patient;
+    }
+}
@@ -0,0 +1,171 @@
+package com.medilynk.patientservice.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medilynk.patientservice.grpc.BillingServiceGrpcClient;
+import com.medilynk.patientservice.kafka.KafkaProducer;
+import com.medilynk.patientservice.model.Patient;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "grpc.server.port=-1") // Runs next to the default context, so don't bind the gRPC server port again
+@AutoConfigureMockMvc
+class PatientControllerIdempotencyTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private KafkaProducer kafkaProducer;
+
+    @MockitoBean
+    private BillingServiceGrpcClient billingServiceGrpcClient;
+
+    @Test
+    void retriesGetTheFirstResponseWithoutCreatingThePatientAgain() throws Exception {
+        String key = UUID.randomUUID().toString();
+        String body = body("idempotent-" + UUID.randomUUID() + "@example.com");
+
+        MockHttpServletResponse first = create(key, body);
+        assertEquals(200, first.getStatus());
+        assertFalse(first.containsHeader("Idempotent-Replayed"));
+
+        MockHttpServletResponse retry = create(key, body);
+        assertEquals(200, retry.getStatus());
+        assertEquals("true", retry.getHeader("Idempotent-Replayed"));
+        assertEquals(first.getHeader(HttpHeaders.ETAG), retry.getHeader(HttpHeaders.ETAG));
+        assertEquals(id(first), id(retry));
+
+        verify(billingServiceGrpcClient, times(1)).createBillingAccount(eq(id(first)), anyString(), anyString());
+        verify(kafkaProducer, times(1)).sendEvent(any(Patient.class), eq("PATIENT_CREATED"));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "select count(*) from idempotency_key where response_body like ?", Integer.class, "%" + id(first) + "%"));
+    }
+
+    @Test
+    void keysAreTiedToTheirRequestAndClient() throws Exception {
+        String key = UUID.randomUUID().toString();
+        String body = body("scoped-" + UUID.randomUUID() + "@example.com");
+        assertEquals(200, create(key, body).getStatus());
+
+        mockMvc.perform(post("/patients")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body("other-" + UUID.randomUUID() + "@example.com")))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.message").value("Idempotency key was already used for a different request"));
+
+        // Another client's key of the same value runs the request, which finds the email taken
+        mockMvc.perform(post("/patients")
+                        .header("Idempotency-Key", key)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer other-client")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Email address already exists"))
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+    }
+
+    @Test
+    void aRequestFailingAfterTheInsertIsNotRunAgain() throws Exception {
+        when(billingServiceGrpcClient.createBillingAccount(anyString(), anyString(), anyString()))
+                .thenThrow(new IllegalStateException("Billing service is down"));
+        String key = UUID.randomUUID().toString();
+        String email = "half-done-" + UUID.randomUUID() + "@example.com";
+        String body = body(email);
+
+        assertThrows(Exception.class, () -> create(key, body)); // Unhandled, a 500 behind the servlet container
+
+        MockHttpServletResponse retry = create(key, body);
+        assertEquals(200, retry.getStatus());
+        assertEquals("true", retry.getHeader("Idempotent-Replayed"));
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from patient where email = ?", Integer.class, email));
+        assertEquals(id(retry), jdbcTemplate.queryForObject(
+                "select cast(id as varchar) from patient where email = ?", String.class, email));
+        verify(billingServiceGrpcClient, times(1)).createBillingAccount(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void concurrentDuplicatesWaitForTheFirstRequest() throws Exception {
+        CountDownLatch billingCalled = new CountDownLatch(1);
+        CountDownLatch billingReleased = new CountDownLatch(1);
+        when(billingServiceGrpcClient.createBillingAccount(anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+            billingCalled.countDown();
+            assertTrue(billingReleased.await(10, TimeUnit.SECONDS));
+            return null;
+        });
+        String key = UUID.randomUUID().toString();
+        String body = body("concurrent-" + UUID.randomUUID() + "@example.com");
+
+        CompletableFuture<MockHttpServletResponse> first = CompletableFuture.supplyAsync(() -> createUnchecked(key, body));
+        assertTrue(billingCalled.await(10, TimeUnit.SECONDS));
+        CompletableFuture<MockHttpServletResponse> duplicate = CompletableFuture.supplyAsync(() -> createUnchecked(key, body));
+        Thread.sleep(200); // Lets the duplicate reach the store and wait
+        assertFalse(duplicate.isDone());
+        billingReleased.countDown();
+
+        assertEquals(200, first.get(10, TimeUnit.SECONDS).getStatus());
+        assertEquals(200, duplicate.get(10, TimeUnit.SECONDS).getStatus());
+        assertEquals("true", duplicate.get().getHeader("Idempotent-Replayed"));
+        assertEquals(id(first.get()), id(duplicate.get()));
+        verify(billingServiceGrpcClient, times(1)).createBillingAccount(anyString(), anyString(), anyString());
+    }
+
+    private MockHttpServletResponse create(String key, String body) throws Exception {
+        return mockMvc.perform(post("/patients")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andReturn().getResponse();
+    }
+
+    private MockHttpServletResponse createUnchecked(String key, String body) {
+        try {
+            return create(key, body);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String id(MockHttpServletResponse response) throws Exception {
+        return objectMapper.readTree(response.getContentAsString()).get("id").asText();
+    }
+
+    private static String body(String email) {
+        return "{\"name\": \"Retry\", \"email\": \"" + email + "\", \"address\": \"1 Retry Street\", "
+                + "\"dateOfBirth\": \"1980-05-01\", \"registeredDate\": \"2024-01-02\"}";
+    }
+}
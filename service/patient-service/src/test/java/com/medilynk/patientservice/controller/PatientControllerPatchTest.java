@@ -0,0 +1,155 @@
+package com.medilynk.patientservice.controller;
+
+import com.medilynk.patientservice.kafka.KafkaProducer;
+import com.medilynk.patientservice.model.Patient;
+import com.medilynk.patientservice.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "grpc.server.port=-1") // Runs next to the default context, so don't bind the gRPC server port again
+@AutoConfigureMockMvc
+class PatientControllerPatchTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @MockitoBean
+    private KafkaProducer kafkaProducer;
+
+    private Patient patient;
+
+    @BeforeEach
+    void createPatient() {
+        patient = new Patient();
+        patient.setName("Patch Test");
+        patient.setEmail("patch-" + UUID.randomUUID() + "@example.com");
+        patient.setAddress("1 Old Street");
+        patient.setDateOfBirth(LocalDate.of(1980, 5, 1));
+        patient.setRegisteredDate(LocalDate.of(2024, 1, 2));
+        patient = patientRepository.save(patient);
+    }
+
+    @Test
+    void changesOnlyTheGivenFieldsAndBumpsTheETag() throws Exception {
+        String etag = mockMvc.perform(get("/patients/{id}", patient.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(patch("/patients/{id}", patient.getId())
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"address\": \"2 New Street\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.address").value("2 New Street"))
+                .andExpect(jsonPath("$.name").value("Patch Test"))
+                .andExpect(jsonPath("$.dateOfBirth").value("1980-05-01"))
+                .andExpect(jsonPath("$.version").doesNotExist());
+
+        Patient stored = patientRepository.findById(patient.getId()).orElseThrow();
+        assertEquals("2 New Street", stored.getAddress());
+        assertEquals(patient.getEmail(), stored.getEmail());
+        assertEquals(1L, stored.getVersion());
+        verify(kafkaProducer).sendEvent(any(Patient.class), eq("PATIENT_UPDATED"));
+    }
+
+    @Test
+    void rejectsAStaleIfMatch() throws Exception {
+        mockMvc.perform(patch("/patients/{id}", patient.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Someone Else\"}")) // Unconditional
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+
+        mockMvc.perform(patch("/patients/{id}", patient.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"address\": \"3 Lost Street\"}"))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(put("/patients/{id}", patient.getId())
+                        .header(HttpHeaders.IF_MATCH, "W/\"1\"") // Weak tags never match
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Put\", \"email\": \"" + patient.getEmail() + "\", "
+                                + "\"address\": \"4 Put Street\", \"dateOfBirth\": \"1980-05-01\"}"))
+                .andExpect(status().isPreconditionFailed());
+
+        assertEquals("1 Old Street", patientRepository.findById(patient.getId()).orElseThrow().getAddress());
+    }
+
+    @Test
+    void putWithACurrentIfMatchUpdates() throws Exception {
+        mockMvc.perform(put("/patients/{id}", patient.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Put\", \"email\": \"" + patient.getEmail() + "\", "
+                                + "\"address\": \"4 Put Street\", \"dateOfBirth\": \"1980-05-01\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+    }
+
+    @Test
+    void rejectsInvalidPatches() throws Exception {
+        Patient other = new Patient();
+        other.setName("Other");
+        other.setEmail("other-" + UUID.randomUUID() + "@example.com");
+        other.setAddress("5 Other Street");
+        other.setDateOfBirth(LocalDate.of(1990, 1, 1));
+        other.setRegisteredDate(LocalDate.of(2024, 1, 2));
+        patientRepository.save(other);
+
+        mockMvc.perform(patch("/patients/{id}", patient.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\": \"" + other.getEmail() + "\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Email address already exists"));
+        mockMvc.perform(patch("/patients/{id}", patient.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(patch("/patients/{id}", patient.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"  \"}"))
+                .andExpect(status().isBadRequest());
+        for (String dateOfBirth : new String[]{"2023-02-30", "1980-13-01", "1980-5-1"}) {
+            mockMvc.perform(patch("/patients/{id}", patient.getId())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"dateOfBirth\": \"" + dateOfBirth + "\"}"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.dateOfBirth").value("Date of Birth must be a valid yyyy-MM-dd date"));
+        }
+        mockMvc.perform(patch("/patients/{id}", UUID.randomUUID())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Nobody\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Patient not found"));
+
+        assertEquals(0L, patientRepository.findById(patient.getId()).orElseThrow().getVersion());
+        verify(kafkaProducer, never()).sendEvent(any(Patient.class), eq("PATIENT_UPDATED"));
+    }
+}
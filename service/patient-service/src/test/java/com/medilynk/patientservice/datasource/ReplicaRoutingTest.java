@@ -0,0 +1,155 @@
+package com.medilynk.patientservice.datasource;
+
+import com.medilynk.patientservice.kafka.KafkaProducer;
+import com.medilynk.patientservice.repository.PatientRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Routes against two in-memory H2 databases standing in for the primary and its replica. The replica is loaded
+ * with the same seed data plus one patient the primary doesn't have, so each response shows where it was read.
+ */
+@SpringBootTest(properties = {
+        "grpc.server.port=-1", // Runs next to the default context, so don't bind the gRPC server port again
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "spring.datasource.replica.url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=none", // data.sql creates the schema, as in production
+        "spring.datasource.replica.lag-query=select lag_seconds from replica_lag",
+        "spring.datasource.replica.lag-check-interval=0s", // Checked by the tests instead
+        "spring.datasource.replica.max-lag=2s"})
+@AutoConfigureMockMvc
+class ReplicaRoutingTest {
+
+    private static final String SEEDED_PATIENT = "123e4567-e89b-12d3-a456-426614174000";
+    private static final String REPLICA_ONLY_EMAIL = "replica.only@example.com";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private KafkaProducer kafkaProducer;
+
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void loadReplica() {
+        replica = new JdbcTemplate(replicaDataSource);
+        new ResourceDatabasePopulator(new ClassPathResource("data.sql")).execute(replicaDataSource);
+        replica.update("create table if not exists replica_lag (lag_seconds double)");
+        replica.update("delete from replica_lag");
+        replica.update("insert into replica_lag values (0)");
+        replica.update("merge into patient (id, name, email, address, date_of_birth, registered_date) key (id) "
+                + "values ('00000000-0000-7000-8000-000000000001', 'Replica Only', ?, 'Nowhere', '1990-01-01', '2024-01-01')",
+                REPLICA_ONLY_EMAIL);
+        replicaLagMonitor.check();
+    }
+
+    @AfterEach
+    void restoreLag() {
+        replica.update("update replica_lag set lag_seconds = 0");
+        replicaLagMonitor.check();
+    }
+
+    @Test
+    void readsGoToTheReplica() throws Exception {
+        mockMvc.perform(get("/patients").header(HttpHeaders.AUTHORIZATION, "Bearer reader"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].email").value(hasItem(REPLICA_ONLY_EMAIL)));
+    }
+
+    @Test
+    void aClientReadsItsOwnWriteFromThePrimary() throws Exception {
+        mockMvc.perform(patch("/patients/{id}", SEEDED_PATIENT)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer writer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"address\": \"1 Primary Road\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.address").value("1 Primary Road")); // Read back from the primary
+
+        mockMvc.perform(get("/patients/{id}", SEEDED_PATIENT).header(HttpHeaders.AUTHORIZATION, "Bearer writer"))
+                .andExpect(jsonPath("$.address").value("1 Primary Road"));
+        // The replica never receives the change, like one that is behind
+        mockMvc.perform(get("/patients/{id}", SEEDED_PATIENT).header(HttpHeaders.AUTHORIZATION, "Bearer reader"))
+                .andExpect(jsonPath("$.address").value("123 Main St, Springfield"));
+    }
+
+    @Test
+    void readsFallBackToThePrimaryWhileTheReplicaLags() throws Exception {
+        replica.update("update replica_lag set lag_seconds = 30");
+        replicaLagMonitor.check();
+
+        mockMvc.perform(get("/patients").header(HttpHeaders.AUTHORIZATION, "Bearer reader"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].email").value(not(hasItem(REPLICA_ONLY_EMAIL))));
+    }
+
+    @Test
+    void readsFallBackToThePrimaryWhenTheLagCannotBeChecked() throws Exception {
+        replica.update("drop table replica_lag");
+        replicaLagMonitor.check();
+        replica.update("create table replica_lag (lag_seconds double)");
+        replica.update("insert into replica_lag values (0)");
+
+        mockMvc.perform(get("/patients").header(HttpHeaders.AUTHORIZATION, "Bearer reader"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].email").value(not(hasItem(REPLICA_ONLY_EMAIL))));
+    }
+
+    @Test
+    void aRequestKeepsItsDecisionWhenTheLagChanges() {
+        ReadRouting.useReplica(); // As ReadYourWritesFilter decides at the start of a request
+        try {
+            assertTrue(readsReplicaOnlyPatient());
+            replica.update("update replica_lag set lag_seconds = 30");
+            replicaLagMonitor.check();
+            assertTrue(readsReplicaOnlyPatient()); // Same request, same source
+        } finally {
+            ReadRouting.clear();
+        }
+        assertFalse(readsReplicaOnlyPatient()); // No request decided for the replica
+    }
+
+    private boolean readsReplicaOnlyPatient() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return Boolean.TRUE.equals(readOnly.execute(status -> patientRepository.existsByEmail(REPLICA_ONLY_EMAIL)));
+    }
+}
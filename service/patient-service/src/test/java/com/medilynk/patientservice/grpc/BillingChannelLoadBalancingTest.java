@@ -0,0 +1,149 @@
+package com.medilynk.patientservice.grpc;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import billing.BillingServiceGrpc;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs BillingServiceGrpcClient against several billing servers started in this JVM, reached through a
+ * static:/// target, and checks that calls are spread round robin, retried on another replica when one is
+ * unavailable, and recorded per endpoint.
+ */
+class BillingChannelLoadBalancingTest {
+
+    private static final int SERVERS = 3;
+
+    private final List<Server> servers = new ArrayList<>();
+    private final List<AtomicInteger> calls = new ArrayList<>();
+    private final AtomicInteger failingServer = new AtomicInteger(-1);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private BillingServiceGrpcClient client;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (client != null) {
+            client.shutdown();
+        }
+        servers.forEach(Server::shutdownNow);
+    }
+
+    @Test
+    void spreadsCallsAcrossEveryEndpoint() throws IOException {
+        startServers();
+        client = client(target(), 3);
+
+        for (int i = 0; i < 60; i++) {
+            assertEquals("ACTIVE", client.createBillingAccount("patient-" + i, "John Doe", "john@example.com").getStatus());
+        }
+
+        calls.forEach(count -> assertTrue(count.get() >= 10, "calls per server: " + calls));
+        assertEquals(60, calls.stream().mapToInt(AtomicInteger::get).sum());
+        // One latency series per endpoint
+        Set<String> endpoints = meterRegistry.find("grpc.client.requests").timers().stream()
+                .filter(timer -> timer.count() > 0)
+                .map(timer -> timer.getId().getTag("endpoint"))
+                .collect(Collectors.toSet());
+        assertEquals(SERVERS, endpoints.size(), "endpoints: " + endpoints);
+    }
+
+    @Test
+    void retriesUnavailableOnAnotherEndpoint() throws IOException {
+        startServers();
+        client = client(target(), 3);
+        for (int i = 0; i < 30; i++) { // Until every subchannel is connected
+            client.createBillingAccount("warm-up-" + i, "John Doe", "john@example.com");
+        }
+        failingServer.set(0); // The first replica now rejects every call with UNAVAILABLE
+        calls.forEach(count -> count.set(0));
+
+        for (int i = 0; i < 30; i++) {
+            assertEquals("ACTIVE", client.createBillingAccount("patient-" + i, "John Doe", "john@example.com").getStatus());
+        }
+
+        assertTrue(calls.get(0).get() > 0, "the failing replica was never tried");
+        // Retried attempts are not surfaced to the caller
+        assertNull(meterRegistry.find("grpc.client.requests").tag("status", "UNAVAILABLE").timer());
+    }
+
+    @Test
+    void shutdownClosesTheChannel() throws Exception {
+        startServers();
+        client = client(target(), 3);
+        client.createBillingAccount("patient-1", "John Doe", "john@example.com");
+
+        client.shutdown();
+
+        StatusRuntimeException error = assertThrows(StatusRuntimeException.class,
+                () -> client.createBillingAccount("patient-2", "John Doe", "john@example.com"));
+        assertEquals(Status.Code.UNAVAILABLE, error.getStatus().getCode());
+        client = null;
+    }
+
+    @Test
+    void malformedStaticTargetsFailWhenTheChannelIsBuilt() {
+        for (String target : List.of("static:///localhost:9001,localhost:90o1", "static:///localhost:70000",
+                "static:///localhost")) {
+            IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> client(target, 3));
+            assertTrue(error.getMessage().contains(target), error.getMessage());
+        }
+    }
+
+    private void startServers() throws IOException {
+        for (int i = 0; i < SERVERS; i++) {
+            AtomicInteger count = new AtomicInteger();
+            int server = i;
+            calls.add(count);
+            servers.add(NettyServerBuilder.forPort(0)
+                    .addService(new BillingServiceGrpc.BillingServiceImplBase() {
+                        @Override
+                        public void createBillingAccount(BillingRequest request, StreamObserver<BillingResponse> responseObserver) {
+                            count.incrementAndGet();
+                            if (failingServer.get() == server) {
+                                responseObserver.onError(Status.UNAVAILABLE.withDescription("shutting down").asRuntimeException());
+                                return;
+                            }
+                            responseObserver.onNext(BillingResponse.newBuilder().setAccountId("1").setStatus("ACTIVE").build());
+                            responseObserver.onCompleted();
+                        }
+                    })
+                    .build()
+                    .start());
+        }
+    }
+
+    private String target() {
+        return "static:///" + servers.stream()
+                .map(server -> "localhost:" + server.getPort())
+                .collect(Collectors.joining(","));
+    }
+
+    private BillingServiceGrpcClient client(String target, int maxAttempts) {
+        BillingChannelFactory channelFactory = new BillingChannelFactory(target, "round_robin",
+                Duration.ofSeconds(30), Duration.ofSeconds(10), Duration.ofMinutes(5),
+                maxAttempts, Duration.ofMillis(10), Duration.ofMillis(100));
+        return new BillingServiceGrpcClient(channelFactory, new GrpcClientMetricsInterceptor(meterRegistry),
+                ObservationRegistry.NOOP);
+    }
+}
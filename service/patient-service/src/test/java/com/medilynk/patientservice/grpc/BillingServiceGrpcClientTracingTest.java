@@ -0,0 +1,124 @@
+package com.medilynk.patientservice.grpc;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import billing.BillingServiceGrpc;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that calls made through BillingServiceGrpcClient carry the caller's trace context
+ * to the billing server in the gRPC metadata, using an in-memory span exporter so no collector is needed.
+ */
+@SpringBootTest(properties = {
+        "management.tracing.sampling.probability=1.0",
+        "grpc.server.port=-1" // This context runs next to the default one, so don't bind the gRPC server port again
+})
+@AutoConfigureObservability(metrics = false)
+class BillingServiceGrpcClientTracingTest {
+
+    private static final Metadata.Key<String> TRACEPARENT =
+            Metadata.Key.of("traceparent", Metadata.ASCII_STRING_MARSHALLER);
+
+    // traceparent header received by the stub billing server
+    private static final AtomicReference<String> receivedTraceparent = new AtomicReference<>();
+    private static Server billingServer;
+
+    @DynamicPropertySource
+    static void billingServer(DynamicPropertyRegistry registry) throws IOException {
+        ServerInterceptor captureTraceparent = new ServerInterceptor() {
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+                    ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+                receivedTraceparent.set(headers.get(TRACEPARENT));
+                return next.startCall(call, headers);
+            }
+        };
+        billingServer = NettyServerBuilder.forPort(0)
+                .addService(ServerInterceptors.intercept(new BillingServiceGrpc.BillingServiceImplBase() {
+                    @Override
+                    public void createBillingAccount(BillingRequest request, StreamObserver<BillingResponse> responseObserver) {
+                        responseObserver.onNext(BillingResponse.newBuilder().setAccountId("1").setStatus("ACTIVE").build());
+                        responseObserver.onCompleted();
+                    }
+                }, captureTraceparent))
+                .build()
+                .start();
+        registry.add("billing.service.address", () -> "localhost");
+        registry.add("billing.service.port", billingServer::getPort);
+    }
+
+    @AfterAll
+    static void stopBillingServer() {
+        billingServer.shutdownNow();
+    }
+
+    @TestConfiguration
+    static class InMemoryExporterConfig {
+        @Bean
+        InMemorySpanExporter inMemorySpanExporter() {
+            return InMemorySpanExporter.create();
+        }
+    }
+
+    @Autowired
+    private BillingServiceGrpcClient billingServiceGrpcClient;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    @Autowired
+    private InMemorySpanExporter spanExporter;
+
+    @Autowired
+    private SdkTracerProvider tracerProvider;
+
+    @Test
+    void propagatesTraceContextInGrpcMetadata() {
+        Observation.createNotStarted("create-patient", observationRegistry)
+                .observe(() -> billingServiceGrpcClient.createBillingAccount("patient-1", "John Doe", "john@example.com"));
+        tracerProvider.forceFlush().join(5, TimeUnit.SECONDS);
+
+        List<SpanData> spans = spanExporter.getFinishedSpanItems();
+        SpanData parent = spans.stream().filter(span -> span.getName().equals("create-patient")).findFirst().orElseThrow();
+        SpanData grpcCall = spans.stream()
+                .filter(span -> span.getName().equals("BillingService/CreateBillingAccount"))
+                .findFirst()
+                .orElseThrow();
+
+        // The client span is a child of the caller's span and its context reached the server
+        assertEquals(parent.getTraceId(), grpcCall.getTraceId());
+        assertEquals(parent.getSpanId(), grpcCall.getParentSpanId());
+        assertNotNull(receivedTraceparent.get());
+        assertTrue(receivedTraceparent.get().contains(grpcCall.getTraceId()));
+    }
+}
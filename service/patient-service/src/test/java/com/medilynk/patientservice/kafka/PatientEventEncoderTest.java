@@ -0,0 +1,52 @@
+package com.medilynk.patientservice.kafka;
+
+import org.junit.jupiter.api.Test;
+import patent.event.PatientEvent;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PatientEventEncoderTest {
+
+    private static final UUID EVENT_ID = UUID.fromString("0191f3a4-7b2d-7001-9c3e-5a6b7c8d9e0f");
+
+    @Test
+    void encodesSameBytesAsGeneratedBuilder() {
+        byte[] expected = PatientEvent.newBuilder()
+                .setPatientId("0191f3a4-7b2c-7000-8000-000000000001")
+                .setName("John Doe")
+                .setEmail("john.doe@example.com")
+                .setEventType("PATIENT_CREATED")
+                .setEventIdHigh(EVENT_ID.getMostSignificantBits())
+                .setEventIdLow(EVENT_ID.getLeastSignificantBits())
+                .setDateOfBirth((int) LocalDate.of(1958, 3, 14).toEpochDay())
+                .setRegisteredDate(0) // 1970-01-01, still written
+                .build()
+                .toByteArray();
+
+        assertArrayEquals(expected, PatientEventEncoder.encode(
+                "0191f3a4-7b2c-7000-8000-000000000001", "John Doe", "john.doe@example.com", "PATIENT_CREATED", EVENT_ID,
+                LocalDate.of(1958, 3, 14), LocalDate.EPOCH));
+    }
+
+    @Test
+    void skipsEmptyFieldsLikeProto3() {
+        byte[] expected = PatientEvent.newBuilder().setPatientId("1").setEventType("PATIENT_CREATED").build().toByteArray();
+
+        assertArrayEquals(expected, PatientEventEncoder.encode("1", "", "", "PATIENT_CREATED", new UUID(0, 0), null, null));
+    }
+
+    @Test
+    void growsScratchBufferForLargeEvents() throws Exception {
+        String name = "x".repeat(10_000);
+
+        PatientEvent event = PatientEvent.parseFrom(PatientEventEncoder.encode("1", name, "a@b.com", "PATIENT_CREATED", EVENT_ID, null, null));
+
+        assertEquals(name, event.getName());
+        assertEquals("a@b.com", event.getEmail());
+        assertEquals(EVENT_ID, new UUID(event.getEventIdHigh(), event.getEventIdLow()));
+    }
+}
@@ -0,0 +1,173 @@
+package com.medilynk.patientservice.sharding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medilynk.patientservice.grpc.BillingServiceGrpcClient;
+import com.medilynk.patientservice.kafka.KafkaProducer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Shards patients over three in-memory H2 databases. The seed patients start on shard 0 and are spread over all
+ * three by the first rebalance.
+ */
+@SpringBootTest(properties = {
+        "grpc.server.port=-1", // Runs next to the default context, so don't bind the gRPC server port again
+        "spring.datasource.url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+        "patient.sharding.shard-urls=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=none"}) // data.sql creates the schema, as in production
+@AutoConfigureMockMvc
+class PatientShardingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ShardDataSources shardDataSources;
+
+    @Autowired
+    private PatientShards patientShards;
+
+    @Autowired
+    private ShardRebalancer shardRebalancer;
+
+    @MockitoBean
+    private KafkaProducer kafkaProducer;
+
+    @MockitoBean
+    private BillingServiceGrpcClient billingServiceGrpcClient;
+
+    @BeforeEach
+    void rebalance() {
+        shardRebalancer.rebalance(); // Moves nothing after the first test
+    }
+
+    @Test
+    void rebalancingSpreadsThePatientsOverEveryShard() {
+        for (int shard = 0; shard < 3; shard++) {
+            List<UUID> ids = shard(shard).queryForList("select id from patient", UUID.class);
+            assertTrue(!ids.isEmpty(), "shard " + shard + " has no patients");
+            for (UUID id : ids) {
+                assertEquals(shard, patientShards.shardOf(id));
+            }
+        }
+        assertEquals(0, shardRebalancer.rebalance().get("bucketsMoved"));
+    }
+
+    @Test
+    void theReshardEndpointIsOffUnlessTurnedOn() throws Exception {
+        mockMvc.perform(post("/actuator/reshard"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void createdPatientsAreStoredOnTheirShardAndListedInIdOrder() throws Exception {
+        List<UUID> created = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            UUID id = create("Sharded " + i, "sharded-" + UUID.randomUUID() + "@example.com");
+            created.add(id);
+            assertEquals(1, shard(patientShards.shardOf(id))
+                    .queryForObject("select count(*) from patient where id = ?", Integer.class, id));
+            mockMvc.perform(get("/patients/{id}", id))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.name").value("Sharded " + i));
+        }
+
+        JsonNode patients = objectMapper.readTree(mockMvc.perform(get("/patients"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        List<UUID> listed = new ArrayList<>();
+        patients.forEach(patient -> listed.add(UUID.fromString(patient.get("id").asText())));
+        assertTrue(listed.containsAll(created));
+        assertEquals(listed.stream().sorted(PatientShards.ID_ORDER).toList(), listed);
+    }
+
+    @Test
+    void patientsAreListedInTheDatabasesUnsignedIdOrder() throws Exception {
+        // Signed UUID.compareTo would put the last two before the first
+        List<UUID> ids = List.of(
+                UUID.fromString("7fffffff-ffff-4fff-bfff-ffffffffffff"),
+                UUID.fromString("80000000-0000-4000-8000-000000000000"),
+                UUID.fromString("ffffffff-0000-4000-8000-000000000000"));
+        for (UUID id : ids) {
+            shard(patientShards.shardOf(id)).update("""
+                    insert into patient (id, name, email, address, date_of_birth, registered_date)
+                    values (?, 'Unsigned', ?, '1 Shard Street', date '1980-05-01', date '2024-01-02')""",
+                    id, "unsigned-" + id + "@example.com");
+        }
+
+        JsonNode patients = objectMapper.readTree(mockMvc.perform(get("/patients"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        List<UUID> listed = new ArrayList<>();
+        patients.forEach(patient -> listed.add(UUID.fromString(patient.get("id").asText())));
+        assertEquals(ids, listed.stream().filter(ids::contains).toList());
+        assertEquals(listed.stream().sorted(PatientShards.ID_ORDER).toList(), listed);
+    }
+
+    @Test
+    void emailsStayUniqueAcrossShards() throws Exception {
+        String email = "unique-" + UUID.randomUUID() + "@example.com";
+        UUID first = create("First", email);
+
+        // Whichever shard it would land on, the second patient is refused
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/patients")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body("Second", email)))
+                    .andExpect(status().isBadRequest());
+        }
+
+        // Changing the email frees the old one
+        String changed = "changed-" + UUID.randomUUID() + "@example.com";
+        mockMvc.perform(put("/patients/{id}", first)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body("First", changed)))
+                .andExpect(status().isOk());
+        create("Second", email);
+        mockMvc.perform(post("/patients")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body("Third", changed)))
+                .andExpect(status().isBadRequest());
+    }
+
+    private UUID create(String name, String email) throws Exception {
+        String response = mockMvc.perform(post("/patients")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body(name, email)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return UUID.fromString(objectMapper.readTree(response).get("id").asText());
+    }
+
+    private static String body(String name, String email) {
+        return "{\"name\": \"" + name + "\", \"email\": \"" + email + "\", \"address\": \"1 Shard Street\", "
+                + "\"dateOfBirth\": \"1980-05-01\", \"registeredDate\": \"2024-01-02\"}";
+    }
+
+    private JdbcTemplate shard(int shard) {
+        return new JdbcTemplate(shardDataSources.pools().get(shard));
+    }
+}
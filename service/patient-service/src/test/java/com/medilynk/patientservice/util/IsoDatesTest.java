@@ -0,0 +1,44 @@
+package com.medilynk.patientservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IsoDatesTest {
+
+    @Test
+    void formatMatchesLocalDateToString() {
+        for (LocalDate date = LocalDate.of(1899, 12, 1); date.isBefore(LocalDate.of(2100, 2, 1)); date = date.plusDays(1)) {
+            assertEquals(date.toString(), IsoDates.format(date));
+        }
+        assertEquals("+10000-01-01", IsoDates.format(LocalDate.of(10000, 1, 1)));
+    }
+
+    @Test
+    void formatReusesCachedStrings() {
+        LocalDate date = LocalDate.of(1985, 6, 15);
+        assertSame(IsoDates.format(date), IsoDates.format(LocalDate.of(1985, 6, 15)));
+    }
+
+    @Test
+    void parseMatchesLocalDateParse() {
+        for (LocalDate date = LocalDate.of(1899, 12, 1); date.isBefore(LocalDate.of(2100, 2, 1)); date = date.plusDays(1)) {
+            assertEquals(date, IsoDates.parse(date.toString()));
+        }
+    }
+
+    @Test
+    void parseRejectsWhatLocalDateParseRejects() {
+        assertThrows(DateTimeParseException.class, () -> IsoDates.parse("2023-02-30"));
+        assertThrows(DateTimeParseException.class, () -> IsoDates.parse("2023-13-01"));
+        assertThrows(DateTimeParseException.class, () -> IsoDates.parse("2023-1a-01"));
+        assertThrows(DateTimeParseException.class, () -> IsoDates.parse("2023/01/01"));
+        assertThrows(DateTimeParseException.class, () -> IsoDates.parse("23-01-01"));
+        assertThrows(DateTimeParseException.class, () -> IsoDates.parse(""));
+    }
+}